@@ -2,8 +2,12 @@ package compiler;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Set;
 
+import compiler.casl.Simulator;
 import compiler.compiler.Compiler;
+import compiler.compiler.cas.PeepholeOptimizer;
 import compiler.lexer.Lexer;
 
 public class Main {
@@ -14,6 +18,16 @@ public class Main {
 	 * $ java Main lexer data/pas/in.pas tmp/out.ts 
 	 * $ java Main compiler data/ts/in.ts tmp/out.cas 
 	 * $ java Main all data/pas/in.pas tmp/out.ans
+	 * $ java Main all data/pas/in.pas tmp/out.ans --ts
+	 * $ java Main all data/pas/in.pas tmp/out.ans -O
+	 * $ java Main all data/pas/in.pas tmp/out.ans -O2
+	 * $ java Main all data/pas/in.pas tmp/out.ans -O2 --short-circuit
+	 * $ java Main compiler data/ts/in.ts tmp/out.cas --peephole=push-pop,load
+	 * $ java Main all data/pas/in.pas tmp/ --map --line-comments
+	 * $ java Main run tmp/out.cas < in.txt
+	 * $ java Main run tmp/in.cas --profile < in.txt
+	 * $ java Main run tmp/out.cas --interpret < in.txt
+	 * $ java Main jvm data/pas/in.pas -O < in.txt
 	 * 
 	 */
 	public static void main(final String[] args) {
@@ -34,21 +48,86 @@ public class Main {
 			out = args[2];
 		}
 
+		// 4番目 (run/jvmは3番目) 以降はオプション
+		final int first = subcommand.matches("lexer|compiler|all") ? 3 : 2;
+		boolean ts = false;
+		boolean shortCircuit = false;
+		boolean map = false;
+		boolean lineComments = false;
+		boolean profile = false;
+		boolean interpret = false;
+		int level = 0;
+		Set<PeepholeOptimizer.Rule> peephole = null;
+		long limit = Long.MAX_VALUE;
+		int i;
+		for (i = first; i < args.length; i++) {
+			if ("--ts".equals(args[i])) {
+				ts = true;
+			} else if ("--short-circuit".equals(args[i])) {
+				shortCircuit = true;
+			} else if ("--map".equals(args[i])) {
+				map = true;
+			} else if ("--line-comments".equals(args[i])) {
+				lineComments = true;
+			} else if ("--profile".equals(args[i])) {
+				profile = true;
+			} else if ("--interpret".equals(args[i])) {
+				interpret = true;
+			} else if ("-O".equals(args[i]) || "-O1".equals(args[i])) {
+				level = 1;
+			} else if ("-O0".equals(args[i])) {
+				level = 0;
+			} else if ("-O2".equals(args[i])) {
+				level = 2;
+			} else if (args[i].matches("--limit=\\d+")) {
+				limit = Long.parseLong(args[i].substring("--limit=".length()));
+			} else if (args[i].startsWith("--peephole=")) {
+				peephole = EnumSet.noneOf(PeepholeOptimizer.Rule.class);
+				if (!parseRules(args[i].substring("--peephole=".length()), peephole)) {
+					printUsage();
+					return;
+				}
+			} else {
+				printUsage();
+				return;
+			}
+		}
+
 		if ("lexer".equals(subcommand)) {
-			new Lexer().run(in, out);
+			new Lexer().runMapped(in, out);
 		} else if ("compiler".equals(subcommand)) {
-			new Compiler().run(in, out);
+			final Compiler compiler = newCompiler(level, peephole);
+			compiler.setShortCircuit(shortCircuit);
+			compiler.setSourceMap(map);
+			compiler.setLineComments(lineComments);
+			compiler.run(in, out);
 		} else if ("all".equals(subcommand)) {
 			if (!Files.isDirectory(Paths.get(out))) {
 				System.out.println("error: specify an output dir instead of file");
 				return;
 			}
 			final String base = out + "/" + getBaseName(in);
-			final String ts = base + ".ts";
 			final String cas = base + ".cas";
 
-			new Lexer().run(in, ts);
-			new Compiler().run(ts, cas);
+			final Compiler compiler = newCompiler(level, peephole);
+			// --ts: デバッグ用にトークン列もtsファイルに書き出す
+			if (ts) {
+				compiler.setTokenFile(base + ".ts");
+			}
+			compiler.setShortCircuit(shortCircuit);
+			compiler.setSourceMap(map);
+			compiler.setLineComments(lineComments);
+			compiler.runFromSource(in, cas);
+		} else if ("run".equals(subcommand)) {
+			final Simulator simulator = new Simulator();
+			simulator.setLimit(limit);
+			simulator.setProfile(profile);
+			simulator.setTranslation(!interpret);
+			simulator.run(in);
+		} else if ("jvm".equals(subcommand)) {
+			final Compiler compiler = newCompiler(level, peephole);
+			compiler.setShortCircuit(shortCircuit);
+			compiler.runOnJvm(in);
 		} else {
 			printUsage();
 			return;
@@ -58,8 +137,45 @@ public class Main {
 	private static void printUsage() {
 		System.out.println("usage:");
 		System.out.println("  lexer    in.pas out.ts");
-		System.out.println("  compiler in.ts  out.cas");
-		System.out.println("  all      in.pas tmp/");
+		System.out.println("  compiler in.ts  out.cas [-O0 | -O1 | -O2] [--peephole=rule,...] [--short-circuit] [--map] [--line-comments]");
+		System.out.println("  all      in.pas tmp/ [--ts] [-O0 | -O1 | -O2] [--peephole=rule,...] [--short-circuit] [--map] [--line-comments]");
+		System.out.println("  run      in.cas [--limit=N] [--profile] [--interpret]");
+		System.out.println("  jvm      in.pas [-O0 | -O1 | -O2] [--short-circuit]");
+		System.out.println("  -O0: stack, -O1 (-O): stack + folding + dead code + branch fusion + constant mul/div + peephole, -O2: -O1 + registers");
+		System.out.println("  rule: push-pop, load, nop");
+	}
+
+	/**
+	 * 仕様: 最適化の段階を設定したCompilerを作る．peepholeがnullでなければ段階の既定の規則に替えて使う．
+	 */
+	private static Compiler newCompiler(final int level, final Set<PeepholeOptimizer.Rule> peephole) {
+		final Compiler compiler = new Compiler();
+		compiler.setOptimizationLevel(level);
+		if (peephole != null) {
+			compiler.setPeephole(peephole);
+		}
+		return compiler;
+	}
+
+	/**
+	 * 仕様: カンマ区切りの規則名を読み，rulesに加える．空文字列なら何も加えない．知らない名前があればfalseを返す．
+	 */
+	private static boolean parseRules(final String names, final Set<PeepholeOptimizer.Rule> rules) {
+		if (names.isEmpty()) {
+			return true;
+		}
+		for (final String name : names.split(",")) {
+			if ("push-pop".equals(name)) {
+				rules.add(PeepholeOptimizer.Rule.PUSH_POP);
+			} else if ("load".equals(name)) {
+				rules.add(PeepholeOptimizer.Rule.REDUNDANT_LOAD);
+			} else if ("nop".equals(name)) {
+				rules.add(PeepholeOptimizer.Rule.NOP_LABEL);
+			} else {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private static String getBaseName(final String name) {
@@ -0,0 +1,528 @@
+package compiler.casl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import compiler.compiler.cas.Opcode;
+
+public class Assembler {
+
+	/**
+	 * 仕様:
+	 * CASL IIのプログラム (行の並び) を2パスでアセンブルし，Programにする．
+	 * 行は "ラベル 命令 オペランド ;注釈" の形で，ラベルは行頭から書き，命令とオペランドは空白かタブで区切る．
+	 * オペランドはカンマで区切る．' で囲んだ文字定数の中のカンマと ; は区切りにしない．
+	 * START〜ENDを1つの単位とし，単位の中で定義したラベルはその単位の中だけで参照できる．
+	 * STARTのラベルは単位の入口の名前で，どの単位からも参照できる (入口はSTARTのオペランドのラベル，なければ単位の先頭)．
+	 * リテラル (=10, =#FFFF, ='A') は単位の最後 (ENDの位置) に置く．
+	 * マクロ命令は次のように展開する．
+	 *   IN adr,len / OUT adr,len  GR1,GR2を退避し，GR1=adr, GR2=lenとしてSVC 1 (入力) / SVC 2 (出力)
+	 *   RPUSH / RPOP              GR1〜GR7の順にPUSH / GR7〜GR1の順にPOP
+	 * どの単位でも定義していない名前を参照していて，それがlib.casの副プログラム (LibraryRoutine) の名前なら，
+	 * プログラムの後ろに "SVC 番号; RET" だけの副プログラムを置いてその名前にする．
+	 * レジスタはGR0〜GR8 (GR8はSP) を書ける．指標レジスタにGR0は使えない．
+	 * 実行は最初の単位の入口から始める．
+	 * 誤りがあれば "Assemble error: line 行番号" で始まるメッセージのCaslExceptionを投げる．
+	 */
+
+	private static final int MEMORY_SIZE = 0x10000;
+	public static final int SVC_IN = 1;
+	public static final int SVC_OUT = 2;
+
+	private static final class Unit {
+		final String name;
+		final int start;
+		final String entryLabel;
+		final Map<String, Integer> labels;
+		final Map<String, Integer> literals;
+		int entry;
+
+		Unit(String name, int start, String entryLabel) {
+			this.name = name;
+			this.start = start;
+			this.entryLabel = entryLabel;
+			this.labels = new LinkedHashMap<String, Integer>();
+			this.literals = new LinkedHashMap<String, Integer>();
+		}
+	}
+
+	private static final class Line {
+		final int number;
+		final Opcode op;
+		final String[] operands;
+		final Unit unit;
+		final int address;
+
+		Line(int number, Opcode op, String[] operands, Unit unit, int address) {
+			this.number = number;
+			this.op = op;
+			this.operands = operands;
+			this.unit = unit;
+			this.address = address;
+		}
+	}
+
+	private final List<Unit> units;
+	private final List<Line> lines;
+	private final Map<String, Integer> globals;
+	private final Map<Integer, LibraryRoutine> stubs;
+	private final char[] memory;
+	private final int[] lineNumbers;
+	private int location;
+
+	private Assembler() {
+		this.units = new ArrayList<Unit>();
+		this.lines = new ArrayList<Line>();
+		this.globals = new HashMap<String, Integer>();
+		this.stubs = new LinkedHashMap<Integer, LibraryRoutine>();
+		this.memory = new char[MEMORY_SIZE];
+		this.lineNumbers = new int[MEMORY_SIZE];
+		this.location = 0;
+	}
+
+	public static Program assemble(final List<String> source) {
+		return new Assembler().run(source);
+	}
+
+	private Program run(final List<String> source) {
+		defineLabels(source);
+		defineStubs();
+		final int size = location;
+
+		for (final Line line : lines) {
+			location = line.address;
+			emit(line);
+			Arrays.fill(lineNumbers, line.address, location, line.number);
+		}
+		for (final Unit unit : units) {
+			for (final Map.Entry<String, Integer> literal : unit.literals.entrySet()) {
+				location = literal.getValue();
+				emitConstant(unit, literal.getKey().substring(1), 0);
+			}
+		}
+		for (final Map.Entry<Integer, LibraryRoutine> stub : stubs.entrySet()) {
+			location = stub.getKey();
+			word(MachineCode.SVC << 8);
+			word(stub.getValue().getSvc());
+			word(MachineCode.RET << 8);
+		}
+		return new Program(memory, units.get(0).entry, size, lineNumbers, routines(), labels());
+	}
+
+	// 単位と副プログラムの置き換えの先頭番地 → 名前
+	private TreeMap<Integer, String> routines() {
+		final TreeMap<Integer, String> routines = new TreeMap<Integer, String>();
+		for (final Unit unit : units) {
+			routines.put(unit.start, unit.name);
+		}
+		for (final Map.Entry<Integer, LibraryRoutine> stub : stubs.entrySet()) {
+			routines.put(stub.getKey(), stub.getValue().name());
+		}
+		return routines;
+	}
+
+	// 単位の中のラベルの番地 → 名前
+	private TreeMap<Integer, String> labels() {
+		final TreeMap<Integer, String> labels = new TreeMap<Integer, String>();
+		for (final Unit unit : units) {
+			for (final Map.Entry<String, Integer> label : unit.labels.entrySet()) {
+				labels.putIfAbsent(label.getValue(), label.getKey());
+			}
+		}
+		return labels;
+	}
+
+	// 1パス目: ラベルとリテラルに番地を割り当てる
+
+	private void defineLabels(final List<String> source) {
+		Unit unit = null;
+		int i;
+		for (i = 0; i < source.size(); i++) {
+			final int number = i + 1;
+			final String[] fields = fields(source.get(i));
+			final String label = fields[0];
+			if (fields[1].isEmpty()) {
+				if (!label.isEmpty()) {
+					error(number, "instruction expected");
+				}
+				continue;
+			}
+			final Opcode op = opcode(fields[1], number);
+			final String[] operands = operands(fields[2]);
+
+			if (unit == null) {
+				if (op != Opcode.START || label.isEmpty()) {
+					error(number, "START expected");
+				}
+				if (globals.containsKey(label)) {
+					error(number, "duplicate label " + label);
+				}
+				unit = new Unit(label, location, operands.length > 0 ? operands[0] : null);
+				globals.put(label, location);
+				units.add(unit);
+				continue;
+			}
+			if (op == Opcode.START) {
+				error(number, "END expected");
+			}
+			if (!label.isEmpty()) {
+				if (!isLabel(label) || unit.labels.put(label, location) != null) {
+					error(number, "invalid label " + label);
+				}
+			}
+
+			if (op == Opcode.END) {
+				for (final Map.Entry<String, Integer> literal : unit.literals.entrySet()) {
+					literal.setValue(location);
+					location += constantSize(literal.getKey().substring(1), number);
+				}
+				unit.entry = unit.start;
+				if (unit.entryLabel != null) {
+					final Integer entry = unit.labels.get(unit.entryLabel);
+					if (entry == null) {
+						error(number, "undefined label " + unit.entryLabel);
+					}
+					unit.entry = entry;
+				}
+				globals.put(unit.name, unit.entry);
+				unit = null;
+			} else {
+				for (final String operand : operands) {
+					if (operand.startsWith("=")) {
+						unit.literals.put(operand, 0);
+					}
+				}
+				lines.add(new Line(number, op, operands, unit, location));
+				location += size(op, operands, number);
+			}
+			if (location > MEMORY_SIZE) {
+				error(number, "program too large");
+			}
+		}
+		if (unit != null) {
+			error(source.size(), "END expected");
+		}
+		if (units.isEmpty()) {
+			error(source.size(), "START expected");
+		}
+	}
+
+	// 定義されていないlib.casの副プログラムの名前に "SVC 番号; RET" を置く
+	private void defineStubs() {
+		for (final Line line : lines) {
+			for (final String operand : line.operands) {
+				if (isLabel(operand) && !line.unit.labels.containsKey(operand) && !globals.containsKey(operand)) {
+					final LibraryRoutine routine = LibraryRoutine.of(operand);
+					if (routine != null) {
+						globals.put(operand, location);
+						stubs.put(location, routine);
+						location += 3;
+					}
+				}
+			}
+		}
+		if (location > MEMORY_SIZE) {
+			error(lines.get(lines.size() - 1).number, "program too large");
+		}
+	}
+
+	private int size(final Opcode op, final String[] operands, final int number) {
+		switch (op) {
+		case DS:
+			if (operands.length != 1 || !operands[0].matches("\\d+")) {
+				error(number, "invalid DS");
+			}
+			return Integer.parseInt(operands[0]);
+		case DC:
+			int n = 0;
+			for (final String operand : operands) {
+				n += constantSize(operand, number);
+			}
+			return n;
+		case IN:
+		case OUT:
+			return 12;
+		case RPUSH:
+			return 14;
+		case RPOP:
+			return 7;
+		case NOP:
+		case RET:
+		case POP:
+			return 1;
+		default:
+			return isRegisterForm(op, operands) ? 1 : 2;
+		}
+	}
+
+	private static int constantSize(final String constant, final int number) {
+		if (constant.startsWith("'")) {
+			return string(constant, number).length();
+		}
+		return 1;
+	}
+
+	// 2パス目: 機械語を置く
+
+	private void emit(final Line line) {
+		final String[] operands = line.operands;
+		switch (line.op) {
+		case DS:
+			location += Integer.parseInt(operands[0]);
+			break;
+		case DC:
+			if (operands.length == 0) {
+				error(line.number, "operand expected");
+			}
+			for (final String operand : operands) {
+				emitConstant(line.unit, operand, line.number);
+			}
+			break;
+		case IN:
+		case OUT:
+			expect(line, 2);
+			word(MachineCode.PUSH << 8 | 1);
+			word(0);
+			word(MachineCode.PUSH << 8 | 2);
+			word(0);
+			word(MachineCode.LAD << 8 | 1 << 4);
+			word(address(line, operands[0]));
+			word(MachineCode.LAD << 8 | 2 << 4);
+			word(address(line, operands[1]));
+			word(MachineCode.SVC << 8);
+			word(line.op == Opcode.IN ? SVC_IN : SVC_OUT);
+			word(MachineCode.POP << 8 | 2 << 4);
+			word(MachineCode.POP << 8 | 1 << 4);
+			break;
+		case RPUSH:
+			expect(line, 0);
+			int r;
+			for (r = 1; r <= 7; r++) {
+				word(MachineCode.PUSH << 8 | r);
+				word(0);
+			}
+			break;
+		case RPOP:
+			expect(line, 0);
+			for (r = 7; r >= 1; r--)
+				word(MachineCode.POP << 8 | r << 4);
+			break;
+		case NOP:
+		case RET:
+			expect(line, 0);
+			word(MachineCode.of(line.op, false) << 8);
+			break;
+		case POP:
+			expect(line, 1);
+			word(MachineCode.POP << 8 | register(line, operands[0]) << 4);
+			break;
+		case JMI:
+		case JNZ:
+		case JZE:
+		case JUMP:
+		case JPL:
+		case JOV:
+		case PUSH:
+		case CALL:
+		case SVC:
+			if (operands.length < 1 || operands.length > 2) {
+				error(line.number, "invalid operand");
+			}
+			word(MachineCode.of(line.op, false) << 8 | index(line, 1));
+			word(address(line, operands[0]));
+			break;
+		case START:
+		case END:
+			break;
+		default:
+			if (isRegisterForm(line.op, operands)) {
+				word(MachineCode.of(line.op, true) << 8 | register(line, operands[0]) << 4 | register(line, operands[1]));
+				break;
+			}
+			if (operands.length < 2 || operands.length > 3) {
+				error(line.number, "invalid operand");
+			}
+			word(MachineCode.of(line.op, false) << 8 | register(line, operands[0]) << 4 | index(line, 2));
+			word(address(line, operands[1]));
+		}
+	}
+
+	private void emitConstant(final Unit unit, final String constant, final int number) {
+		if (constant.startsWith("'")) {
+			final String s = string(constant, number);
+			int i;
+			for (i = 0; i < s.length(); i++)
+				word(s.charAt(i));
+		} else {
+			word(value(unit, constant, number));
+		}
+	}
+
+	private void word(final int w) {
+		memory[location++] = (char) w;
+	}
+
+	private void expect(final Line line, final int count) {
+		if (line.operands.length != count) {
+			error(line.number, "invalid operand");
+		}
+	}
+
+	private int address(final Line line, final String operand) {
+		if (operand.startsWith("=")) {
+			return line.unit.literals.get(operand);
+		}
+		return value(line.unit, operand, line.number);
+	}
+
+	// 10進定数，16進定数，ラベル
+	private int value(final Unit unit, final String operand, final int number) {
+		if (operand.matches("-?\\d+")) {
+			final int value = Integer.parseInt(operand);
+			if (value < -32768 || value > 65535) {
+				error(number, "constant out of range " + operand);
+			}
+			return value & 0xFFFF;
+		}
+		if (operand.matches("#[0-9A-Fa-f]{1,4}")) {
+			return Integer.parseInt(operand.substring(1), 16);
+		}
+		if (isLabel(operand)) {
+			Integer address = unit.labels.get(operand);
+			if (address == null) {
+				address = globals.get(operand);
+			}
+			if (address == null) {
+				error(number, "undefined label " + operand);
+			}
+			return address;
+		}
+		error(number, "invalid operand " + operand);
+		return 0;
+	}
+
+	private int register(final Line line, final String operand) {
+		if (!isRegister(operand)) {
+			error(line.number, "register expected");
+		}
+		return operand.charAt(2) - '0';
+	}
+
+	// i番目のオペランドの指標レジスタ (なければ0)
+	private int index(final Line line, final int i) {
+		if (line.operands.length <= i) {
+			return 0;
+		}
+		final int x = register(line, line.operands[i]);
+		if (x == 0) {
+			error(line.number, "GR0 cannot be an index register");
+		}
+		return x;
+	}
+
+	private static boolean isRegisterForm(final Opcode op, final String[] operands) {
+		switch (op) {
+		case LD:
+		case ADDA:
+		case ADDL:
+		case SUBA:
+		case SUBL:
+		case AND:
+		case OR:
+		case XOR:
+		case CPA:
+		case CPL:
+			return operands.length == 2 && isRegister(operands[1]);
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isRegister(final String s) {
+		return s.length() == 3 && s.startsWith("GR") && s.charAt(2) >= '0' && s.charAt(2) <= '8';
+	}
+
+	private static boolean isLabel(final String s) {
+		return s.matches("[A-Za-z][A-Za-z0-9]*") && !isRegister(s);
+	}
+
+	private static Opcode opcode(final String name, final int number) {
+		try {
+			return Opcode.valueOf(name);
+		} catch (final IllegalArgumentException e) {
+			error(number, "unknown instruction " + name);
+			return null;
+		}
+	}
+
+	// 'で囲んだ文字定数の中身 ('' は ' 1文字)
+	private static String string(final String constant, final int number) {
+		if (constant.length() < 3 || !constant.endsWith("'")) {
+			error(number, "invalid string " + constant);
+		}
+		return constant.substring(1, constant.length() - 1).replace("''", "'");
+	}
+
+	// ラベル，命令，オペランド (注釈を除く)．注釈だけの行と空行は命令が空文字列
+	private static String[] fields(final String line) {
+		final String[] fields = { "", "", "" };
+		int i = 0;
+		while (i < line.length() && !isBlank(line.charAt(i)) && line.charAt(i) != ';')
+			i++;
+		fields[0] = line.substring(0, i);
+		while (i < line.length() && isBlank(line.charAt(i)))
+			i++;
+		if (i == line.length() || line.charAt(i) == ';') {
+			return fields;
+		}
+		final int op = i;
+		while (i < line.length() && !isBlank(line.charAt(i)) && line.charAt(i) != ';')
+			i++;
+		fields[1] = line.substring(op, i);
+
+		final int operand = i;
+		boolean quoted = false;
+		while (i < line.length() && (quoted || line.charAt(i) != ';')) {
+			if (line.charAt(i) == '\'') {
+				quoted = !quoted;
+			}
+			i++;
+		}
+		fields[2] = line.substring(operand, i).trim();
+		return fields;
+	}
+
+	private static String[] operands(final String text) {
+		final List<String> operands = new ArrayList<String>();
+		if (text.isEmpty()) {
+			return new String[0];
+		}
+		boolean quoted = false;
+		int start = 0;
+		int i;
+		for (i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (c == ',' && !quoted) {
+				operands.add(text.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		operands.add(text.substring(start).trim());
+		return operands.toArray(new String[0]);
+	}
+
+	private static boolean isBlank(final char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static void error(final int number, final String message) {
+		throw new CaslException("Assemble error: line " + number + " (" + message + ")");
+	}
+}
@@ -0,0 +1,7 @@
+package compiler.casl;
+
+public class CaslException extends RuntimeException {
+	public CaslException(String msg) {
+		super(msg);
+	}
+}
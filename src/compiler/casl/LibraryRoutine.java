@@ -0,0 +1,59 @@
+package compiler.casl;
+
+public enum LibraryRoutine {
+
+	/**
+	 * 仕様:
+	 * lib.casの副プログラム．プログラムがlib.casをリンクせずにこれらをCALLしていると，
+	 * Assemblerは "SVC 番号; RET" だけの副プログラムを置き，Machineがその番号のSVCで同じ働きをする．
+	 * レジスタの使い方はlib.casと同じ．
+	 *   MULT   GR1 × GR2 → GR2
+	 *   DIV    GR1 ÷ GR2 → 商をGR2，余りをGR1
+	 *   RDINT  整数を読み，GR2の番地に格納する
+	 *   RDCH   文字を1つ読み，GR2の番地に格納する
+	 *   RDSTR  GR1文字を読み，GR2の番地から格納する
+	 *   RDLN   入力の行の残りを読み飛ばす
+	 *   WRTINT GR2の整数を出力の行に書く
+	 *   WRTCH  GR2の文字を出力の行に書く
+	 *   WRTSTR GR2の番地からGR1文字を出力の行に書く
+	 *   WRTLN  出力の行を書き出して改行する
+	 */
+
+	MULT,
+	DIV,
+	RDINT,
+	RDCH,
+	RDSTR,
+	RDLN,
+	WRTINT,
+	WRTCH,
+	WRTSTR,
+	WRTLN;
+
+	private static final int FIRST_SVC = 16;
+	private static final LibraryRoutine[] values = values();
+
+	public int getSvc() {
+		return FIRST_SVC + ordinal();
+	}
+
+	/**
+	 * SVCの番号に対応する副プログラム．なければnull．
+	 */
+	public static LibraryRoutine ofSvc(final int svc) {
+		final int i = svc - FIRST_SVC;
+		return i >= 0 && i < values.length ? values[i] : null;
+	}
+
+	/**
+	 * 名前に対応する副プログラム．なければnull．
+	 */
+	public static LibraryRoutine of(final String name) {
+		for (final LibraryRoutine routine : values) {
+			if (routine.name().equals(name)) {
+				return routine;
+			}
+		}
+		return null;
+	}
+}
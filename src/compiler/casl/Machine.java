@@ -0,0 +1,575 @@
+package compiler.casl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import compiler.compiler.cas.CycleCost;
+
+public class Machine {
+
+	/**
+	 * 仕様:
+	 * COMET IIの計算機．主記憶は16ビット65536語，汎用レジスタはGR0〜GR7とSP (GR8)，
+	 * フラグレジスタはOF, SF, ZFの3ビット．Programの内容を主記憶に置き，入口の番地から実行する．
+	 * SPは0から始め (最初のPUSHは#FFFF番地)，SPが0のときのRETで実行を終える．
+	 * SVCは次のとおり．
+	 *   SVC 1  入力 (IN)  1行を読み，GR1の番地から格納してGR2の番地に文字数を置く (入力の終わりなら-1)
+	 *   SVC 2  出力 (OUT) GR1の番地からGR2の番地の語の文字数を書き，改行する
+	 *   SVC 16〜  lib.casの副プログラム (LibraryRoutine) の働き．入出力はlib.casと同じく行単位で，
+	 *             WRTLNまで出力の行を溜め，RDINT/RDCH/RDSTRは行の残りから読む (行が尽きれば次の行を読む)
+	 * 実行した命令の数とサイクル数 (MachineCode.cycles，CycleCostと同じ見積もり) を数える．
+	 * SVCで置き換えたMULT/DIVには，CALL・SVC・RETと合わせてCycleCost.mult/divになるサイクル数を足す．
+	 * 入出力の副プログラムにはSVCの分しか数えない．
+	 * Profilerを設定すると，実行した命令ごとにその番地とサイクル数を知らせる．
+	 * setTranslationを指定すると，実行の前に基本ブロックをJVMのバイトコードに変換し (Translator)，変換した
+	 * ブロックはそれで実行する．変換していない番地 (間接の飛び先など) では解釈実行し，次のブロックの先頭に来たら戻る．
+	 * 変換した命令の語に書き込んだら (自己書き換え) 変換をやめ，以後は解釈実行する．Profilerがあれば変換しない．
+	 * 変換には時間がかかるので，はじめはTRANSLATION_THRESHOLD命令まで解釈実行し，終わらなければ変換する．
+	 * 命令の数がlimitを超えたとき，未定義の命令や0による除算では "Runtime error" で始まるメッセージのCaslExceptionを投げる．
+	 */
+
+	private static final int SP = 8;
+	private static final int LINE_SIZE = 256;
+	private static final long TRANSLATION_THRESHOLD = 1000000;
+
+	private final char[] memory;
+	private final int[] gr;
+	private final int entry;
+	// 以下の4つは変換したコードも読み書きする
+	int pr;
+	long instructions;
+	long cycles;
+	long limit;
+	private boolean of;
+	private boolean sf;
+	private boolean zf;
+	private Profiler profiler;
+	private boolean translate;
+	// この命令の数まで解釈実行してから変換する
+	long translationThreshold;
+	// 解釈実行を止める命令の数 (limitか，変換する前ならtranslationThreshold)
+	private long stop;
+	private Translation translation;
+	// 変換した命令の語なら1 (変換したコードと共有)
+	private byte[] code;
+	// 番地 → 基本ブロックを含む変換の単位の番号 (ブロックの先頭でなければ-1)
+	private int[] chunks;
+	// 変換した命令の語に書き込んだ
+	boolean invalidated;
+
+	private final BufferedReader in;
+	private final PrintStream out;
+	private final StringBuilder output;
+	private String input;
+	private int inputPos;
+
+	public Machine(final Program program, final BufferedReader in, final PrintStream out) {
+		this.memory = program.getMemory().clone();
+		this.gr = new int[9];
+		this.entry = program.getEntry();
+		this.pr = entry;
+		this.limit = Long.MAX_VALUE;
+		this.translationThreshold = TRANSLATION_THRESHOLD;
+		this.in = in;
+		this.out = out;
+		this.output = new StringBuilder();
+		this.input = null;
+		this.inputPos = 0;
+	}
+
+	/**
+	 * 実行する命令の数の上限．
+	 */
+	public void setLimit(final long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * 実行した命令を数えるProfiler (nullなら数えない)．
+	 */
+	public void setProfiler(final Profiler profiler) {
+		this.profiler = profiler;
+	}
+
+	/**
+	 * 基本ブロックをJVMのバイトコードに変換して実行する．
+	 */
+	public void setTranslation(final boolean translate) {
+		this.translate = translate;
+	}
+
+	/**
+	 * 主記憶の内容 (実行のあとの比較に使う)．
+	 */
+	public char[] getMemory() {
+		return memory;
+	}
+
+	public long getInstructions() {
+		return instructions;
+	}
+
+	public long getCycles() {
+		return cycles;
+	}
+
+	public void run() {
+		if (!translate || profiler != null) {
+			stop = limit;
+			interpret(null);
+			return;
+		}
+		stop = Math.min(limit, instructions + translationThreshold);
+		if (interpret(null)) {
+			return;
+		}
+		stop = limit;
+		final Translator.Result result = Translator.translate(memory, entry, pr);
+		translation = result.getTranslation();
+		code = result.getCode();
+		chunks = result.getChunks();
+		while (true) {
+			if (invalidated) {
+				interpret(null);
+				return;
+			}
+			final int chunk = chunks[pr];
+			if (chunk >= 0) {
+				// 変換したコードは次の番地を返す．Translator.STEPを含めば，解釈実行で1命令以上進めてから戻る
+				final int next = translation.run(chunk, this, memory, gr, code, pr);
+				if (next == Translator.HALT) {
+					return;
+				}
+				pr = next & 0xFFFF;
+				if ((next & Translator.STEP) == 0) {
+					continue;
+				}
+			}
+			if (interpret(chunks)) {
+				return;
+			}
+		}
+	}
+
+	// 解釈実行する．stopsがnullでなければ，1命令以上実行したあと変換したブロックの先頭に来たら止めてfalseを返す．
+	// 命令の数がstopになったら，limitなら上限のエラーにし，そうでなければ止めてfalseを返す．実行を終えたらtrueを返す
+	private boolean interpret(final int[] stops) {
+		final char[] mem = memory;
+		final int[] gr = this.gr;
+		while (true) {
+			if (instructions == stop) {
+				if (stop == limit) {
+					error("instruction limit exceeded");
+				}
+				return false;
+			}
+			final int w = mem[pr];
+			final int code = w >>> 8;
+			final int r = (w >>> 4) & 0xF;
+			final int x = w & 0xF;
+			final long start = cycles;
+			instructions++;
+			cycles += MachineCode.cycles(code);
+
+			int next = (pr + MachineCode.length(code)) & 0xFFFF;
+			int ea = 0;
+			if (MachineCode.length(code) == 2) {
+				ea = mem[(pr + 1) & 0xFFFF];
+				if (x != 0) {
+					ea = (ea + gr[x]) & 0xFFFF;
+				}
+			}
+
+			switch (code) {
+			case MachineCode.NOP:
+				break;
+			case MachineCode.LD:
+				gr[r] = logical(mem[ea]);
+				break;
+			case MachineCode.ST:
+				store(ea, gr[r]);
+				break;
+			case MachineCode.LAD:
+				gr[r] = ea;
+				break;
+			case MachineCode.LD_R:
+				gr[r] = logical(gr[x]);
+				break;
+			case MachineCode.ADDA:
+				gr[r] = addArithmetic(gr[r], mem[ea]);
+				break;
+			case MachineCode.ADDA_R:
+				gr[r] = addArithmetic(gr[r], gr[x]);
+				break;
+			case MachineCode.SUBA:
+				gr[r] = subtractArithmetic(gr[r], mem[ea]);
+				break;
+			case MachineCode.SUBA_R:
+				gr[r] = subtractArithmetic(gr[r], gr[x]);
+				break;
+			case MachineCode.ADDL:
+				gr[r] = addLogical(gr[r], mem[ea]);
+				break;
+			case MachineCode.ADDL_R:
+				gr[r] = addLogical(gr[r], gr[x]);
+				break;
+			case MachineCode.SUBL:
+				gr[r] = subtractLogical(gr[r], mem[ea]);
+				break;
+			case MachineCode.SUBL_R:
+				gr[r] = subtractLogical(gr[r], gr[x]);
+				break;
+			case MachineCode.AND:
+				gr[r] = logical(gr[r] & mem[ea]);
+				break;
+			case MachineCode.AND_R:
+				gr[r] = logical(gr[r] & gr[x]);
+				break;
+			case MachineCode.OR:
+				gr[r] = logical(gr[r] | mem[ea]);
+				break;
+			case MachineCode.OR_R:
+				gr[r] = logical(gr[r] | gr[x]);
+				break;
+			case MachineCode.XOR:
+				gr[r] = logical(gr[r] ^ mem[ea]);
+				break;
+			case MachineCode.XOR_R:
+				gr[r] = logical(gr[r] ^ gr[x]);
+				break;
+			case MachineCode.CPA:
+				compare((short) gr[r], (short) mem[ea]);
+				break;
+			case MachineCode.CPA_R:
+				compare((short) gr[r], (short) gr[x]);
+				break;
+			case MachineCode.CPL:
+				compare(gr[r], mem[ea]);
+				break;
+			case MachineCode.CPL_R:
+				compare(gr[r], gr[x]);
+				break;
+			case MachineCode.SLA:
+				gr[r] = shifted(shiftLeftArithmetic(gr[r], ea));
+				break;
+			case MachineCode.SRA:
+				gr[r] = shifted(shiftRightArithmetic(gr[r], ea));
+				break;
+			case MachineCode.SLL:
+				gr[r] = shifted(shiftLeftLogical(gr[r], ea));
+				break;
+			case MachineCode.SRL:
+				gr[r] = shifted(shiftRightLogical(gr[r], ea));
+				break;
+			case MachineCode.JMI:
+				if (sf) {
+					next = ea;
+				}
+				break;
+			case MachineCode.JNZ:
+				if (!zf) {
+					next = ea;
+				}
+				break;
+			case MachineCode.JZE:
+				if (zf) {
+					next = ea;
+				}
+				break;
+			case MachineCode.JUMP:
+				next = ea;
+				break;
+			case MachineCode.JPL:
+				if (!sf && !zf) {
+					next = ea;
+				}
+				break;
+			case MachineCode.JOV:
+				if (of) {
+					next = ea;
+				}
+				break;
+			case MachineCode.PUSH:
+				push(ea);
+				break;
+			case MachineCode.POP:
+				gr[r] = pop();
+				break;
+			case MachineCode.CALL:
+				push(next);
+				next = ea;
+				break;
+			case MachineCode.RET:
+				if (gr[SP] == 0) {
+					if (profiler != null) {
+						profiler.count(pr, code, next, cycles - start);
+					}
+					return true;
+				}
+				next = pop();
+				break;
+			case MachineCode.SVC:
+				svc(ea);
+				break;
+			default:
+				error("illegal instruction #" + hex(w));
+			}
+			if (profiler != null) {
+				profiler.count(pr, code, next, cycles - start);
+			}
+			pr = next;
+			if (stops != null && (stops[pr] >= 0 || invalidated)) {
+				return false;
+			}
+		}
+	}
+
+	private void push(final int value) {
+		gr[SP] = (gr[SP] - 1) & 0xFFFF;
+		store(gr[SP], value);
+	}
+
+	private void store(final int address, final int value) {
+		memory[address] = (char) value;
+		if (code != null && code[address] != 0) {
+			invalidated = true;
+		}
+	}
+
+	private int pop() {
+		final int value = memory[gr[SP]];
+		gr[SP] = (gr[SP] + 1) & 0xFFFF;
+		return value;
+	}
+
+	// 演算とフラグ
+
+	private int logical(final int value) {
+		of = false;
+		return flags(value);
+	}
+
+	private int flags(final int value) {
+		final int v = value & 0xFFFF;
+		sf = (v & 0x8000) != 0;
+		zf = v == 0;
+		return v;
+	}
+
+	private int addArithmetic(final int a, final int b) {
+		final int s = (short) a + (short) b;
+		of = s < -32768 || s > 32767;
+		return flags(s);
+	}
+
+	private int subtractArithmetic(final int a, final int b) {
+		final int s = (short) a - (short) b;
+		of = s < -32768 || s > 32767;
+		return flags(s);
+	}
+
+	private int addLogical(final int a, final int b) {
+		final int s = a + b;
+		of = s > 0xFFFF;
+		return flags(s);
+	}
+
+	private int subtractLogical(final int a, final int b) {
+		final int s = a - b;
+		of = s < 0;
+		return flags(s);
+	}
+
+	private void compare(final int a, final int b) {
+		of = false;
+		sf = a < b;
+		zf = a == b;
+	}
+
+	// シフトの結果 (下位16ビット) とOF (ビット16) から，レジスタの値とフラグにする
+	private int shifted(final int result) {
+		of = (result & 0x10000) != 0;
+		return flags(result);
+	}
+
+	// シフトは結果とOFを一つのintで返す (変換したコードも使う)
+
+	// 符号ビットはそのままで，ビット14から送り出す
+	static int shiftLeftArithmetic(final int a, final int n) {
+		final int of = n >= 1 && n <= 15 ? (a >>> (15 - n)) & 1 : 0;
+		final int body = n >= 15 ? 0 : (a << n) & 0x7FFF;
+		return of << 16 | (a & 0x8000) | body;
+	}
+
+	static int shiftRightArithmetic(final int a, final int n) {
+		final int s = (short) a;
+		final int of = n >= 1 ? (s >> (Math.min(n, 16) - 1)) & 1 : 0;
+		return of << 16 | (s >> Math.min(n, 15)) & 0xFFFF;
+	}
+
+	static int shiftLeftLogical(final int a, final int n) {
+		final int of = n >= 1 && n <= 16 ? (a >>> (16 - n)) & 1 : 0;
+		return of << 16 | (n >= 16 ? 0 : (a << n) & 0xFFFF);
+	}
+
+	static int shiftRightLogical(final int a, final int n) {
+		final int of = n >= 1 && n <= 16 ? (a >>> (n - 1)) & 1 : 0;
+		return of << 16 | (n >= 16 ? 0 : a >>> n);
+	}
+
+	// 変換したコードとのフラグの受け渡し．OFとSFは立っていれば0以外，ZFは立っていれば0の値で表す
+
+	int of() {
+		return of ? 1 : 0;
+	}
+
+	int sf() {
+		return sf ? 1 : 0;
+	}
+
+	int zf() {
+		return zf ? 0 : 1;
+	}
+
+	void flags(final int of, final int sf, final int zf) {
+		this.of = of != 0;
+		this.sf = sf != 0;
+		this.zf = zf == 0;
+	}
+
+	// SVC
+
+	void svc(final int number) {
+		switch (number) {
+		case Assembler.SVC_IN:
+			final String line = readLine();
+			if (line == null) {
+				store(gr[2], 0xFFFF);
+			} else {
+				final int length = Math.min(line.length(), LINE_SIZE);
+				int i;
+				for (i = 0; i < length; i++)
+					store((gr[1] + i) & 0xFFFF, line.charAt(i));
+				store(gr[2], length);
+			}
+			return;
+		case Assembler.SVC_OUT:
+			final StringBuilder sb = new StringBuilder();
+			appendChars(sb, gr[1], memory[gr[2]]);
+			out.println(sb);
+			return;
+		default:
+		}
+
+		final LibraryRoutine routine = LibraryRoutine.ofSvc(number);
+		if (routine == null) {
+			error("unknown SVC " + number);
+		}
+		switch (routine) {
+		case MULT:
+			cycles += CycleCost.MULT_BASE + bits(gr[2]) * CycleCost.MULT_PER_BIT - 2;
+			gr[2] = ((short) gr[1] * (short) gr[2]) & 0xFFFF;
+			break;
+		case DIV:
+			cycles += CycleCost.DIV_BASE + 16 * CycleCost.DIV_PER_BIT - 2;
+			if (gr[2] == 0) {
+				error("division by zero");
+			}
+			final int dividend = (short) gr[1];
+			final int divisor = (short) gr[2];
+			gr[2] = (dividend / divisor) & 0xFFFF;
+			gr[1] = (dividend % divisor) & 0xFFFF;
+			break;
+		case RDINT:
+			store(gr[2], readInt());
+			break;
+		case RDCH:
+			store(gr[2], readChar());
+			break;
+		case RDSTR:
+			int i;
+			for (i = 0; i < gr[1]; i++)
+				store((gr[2] + i) & 0xFFFF, readChar());
+			break;
+		case RDLN:
+			input = null;
+			break;
+		case WRTINT:
+			output.append((short) gr[2]);
+			break;
+		case WRTCH:
+			output.append((char) gr[2]);
+			break;
+		case WRTSTR:
+			appendChars(output, gr[2], gr[1]);
+			break;
+		case WRTLN:
+			out.println(output);
+			output.setLength(0);
+			break;
+		default:
+		}
+	}
+
+	private static int bits(final int multiplier) {
+		return 32 - Integer.numberOfLeadingZeros(Math.abs((short) multiplier));
+	}
+
+	private void appendChars(final StringBuilder sb, final int address, final int length) {
+		int i;
+		for (i = 0; i < length; i++)
+			sb.append(memory[(address + i) & 0xFFFF]);
+	}
+
+	// 入力の行の残りから読む．行が尽きていれば次の行を読む (入力の終わりなら空)
+	private boolean fill() {
+		while (input == null || inputPos >= input.length()) {
+			input = readLine();
+			inputPos = 0;
+			if (input == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int readChar() {
+		return fill() ? input.charAt(inputPos++) : 0;
+	}
+
+	private int readInt() {
+		while (fill() && Character.isWhitespace(input.charAt(inputPos)))
+			inputPos++;
+		if (input == null) {
+			return 0;
+		}
+		int sign = 1;
+		if (input.charAt(inputPos) == '-' || input.charAt(inputPos) == '+') {
+			sign = input.charAt(inputPos) == '-' ? -1 : 1;
+			inputPos++;
+		}
+		int value = 0;
+		while (inputPos < input.length() && Character.isDigit(input.charAt(inputPos))) {
+			value = value * 10 + input.charAt(inputPos) - '0';
+			inputPos++;
+		}
+		return (sign * value) & 0xFFFF;
+	}
+
+	private String readLine() {
+		try {
+			return in.readLine();
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	private void error(final String message) {
+		throw new CaslException("Runtime error: #" + hex(pr) + " (" + message + ")");
+	}
+
+	private static String hex(final int value) {
+		return String.format("%04X", value & 0xFFFF);
+	}
+}
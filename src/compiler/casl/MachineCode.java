@@ -0,0 +1,140 @@
+package compiler.casl;
+
+import compiler.compiler.cas.CycleCost;
+import compiler.compiler.cas.Opcode;
+
+public class MachineCode {
+
+	/**
+	 * 仕様:
+	 * COMET IIの機械語命令の第1語の上位8ビット (命令コード)．
+	 * 第1語は 命令コード(8) r1(4) r2またはx(4)，2語の命令は第2語がadr．
+	 * 名前の後ろの_Rはr1,r2形式 (1語) の命令を表す．
+	 * サイクル数はCycleCostの見積もりと同じ規則 (語数と主記憶・スタックを読み書きする回数の和) とする．
+	 */
+
+	public static final int NOP = 0x00;
+	public static final int LD = 0x10;
+	public static final int ST = 0x11;
+	public static final int LAD = 0x12;
+	public static final int LD_R = 0x14;
+	public static final int ADDA = 0x20;
+	public static final int SUBA = 0x21;
+	public static final int ADDL = 0x22;
+	public static final int SUBL = 0x23;
+	public static final int ADDA_R = 0x24;
+	public static final int SUBA_R = 0x25;
+	public static final int ADDL_R = 0x26;
+	public static final int SUBL_R = 0x27;
+	public static final int AND = 0x30;
+	public static final int OR = 0x31;
+	public static final int XOR = 0x32;
+	public static final int AND_R = 0x34;
+	public static final int OR_R = 0x35;
+	public static final int XOR_R = 0x36;
+	public static final int CPA = 0x40;
+	public static final int CPL = 0x41;
+	public static final int CPA_R = 0x44;
+	public static final int CPL_R = 0x45;
+	public static final int SLA = 0x50;
+	public static final int SRA = 0x51;
+	public static final int SLL = 0x52;
+	public static final int SRL = 0x53;
+	public static final int JMI = 0x61;
+	public static final int JNZ = 0x62;
+	public static final int JZE = 0x63;
+	public static final int JUMP = 0x64;
+	public static final int JPL = 0x65;
+	public static final int JOV = 0x66;
+	public static final int PUSH = 0x70;
+	public static final int POP = 0x71;
+	public static final int CALL = 0x80;
+	public static final int RET = 0x81;
+	public static final int SVC = 0xF0;
+
+	private static final Opcode[] opcodes = new Opcode[256];
+	private static final boolean[] oneWord = new boolean[256];
+	private static final int[] cycles = new int[256];
+
+	static {
+		define(NOP, Opcode.NOP, true);
+		define(LD, Opcode.LD, false);
+		define(ST, Opcode.ST, false);
+		define(LAD, Opcode.LAD, false);
+		define(LD_R, Opcode.LD, true);
+		define(ADDA, Opcode.ADDA, false);
+		define(SUBA, Opcode.SUBA, false);
+		define(ADDL, Opcode.ADDL, false);
+		define(SUBL, Opcode.SUBL, false);
+		define(ADDA_R, Opcode.ADDA, true);
+		define(SUBA_R, Opcode.SUBA, true);
+		define(ADDL_R, Opcode.ADDL, true);
+		define(SUBL_R, Opcode.SUBL, true);
+		define(AND, Opcode.AND, false);
+		define(OR, Opcode.OR, false);
+		define(XOR, Opcode.XOR, false);
+		define(AND_R, Opcode.AND, true);
+		define(OR_R, Opcode.OR, true);
+		define(XOR_R, Opcode.XOR, true);
+		define(CPA, Opcode.CPA, false);
+		define(CPL, Opcode.CPL, false);
+		define(CPA_R, Opcode.CPA, true);
+		define(CPL_R, Opcode.CPL, true);
+		define(SLA, Opcode.SLA, false);
+		define(SRA, Opcode.SRA, false);
+		define(SLL, Opcode.SLL, false);
+		define(SRL, Opcode.SRL, false);
+		define(JMI, Opcode.JMI, false);
+		define(JNZ, Opcode.JNZ, false);
+		define(JZE, Opcode.JZE, false);
+		define(JUMP, Opcode.JUMP, false);
+		define(JPL, Opcode.JPL, false);
+		define(JOV, Opcode.JOV, false);
+		define(PUSH, Opcode.PUSH, false);
+		define(POP, Opcode.POP, true);
+		define(CALL, Opcode.CALL, false);
+		define(RET, Opcode.RET, true);
+		define(SVC, Opcode.SVC, false);
+	}
+
+	private MachineCode() {
+	}
+
+	private static void define(final int code, final Opcode op, final boolean isOneWord) {
+		opcodes[code] = op;
+		oneWord[code] = isOneWord;
+		cycles[code] = CycleCost.of(op, isOneWord);
+	}
+
+	/**
+	 * 命令opの命令コード．registerFormならr1,r2形式．その形式の命令がなければ-1．
+	 */
+	public static int of(final Opcode op, final boolean registerForm) {
+		int code;
+		for (code = 0; code < opcodes.length; code++) {
+			if (opcodes[code] == op && (registerForm == (oneWord[code] && isRegisterForm(code)))) {
+				return code;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 命令コードの命令．機械語命令でなければnull．
+	 */
+	public static Opcode opcode(final int code) {
+		return opcodes[code];
+	}
+
+	public static boolean isRegisterForm(final int code) {
+		return oneWord[code] && code != NOP && code != POP && code != RET;
+	}
+
+	public static int length(final int code) {
+		return oneWord[code] ? 1 : 2;
+	}
+
+	public static int cycles(final int code) {
+		return cycles[code];
+	}
+}
@@ -0,0 +1,267 @@
+package compiler.casl;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import compiler.compiler.cas.SourceMap;
+
+public class Profiler {
+
+	/**
+	 * 仕様:
+	 * Machineが実行した命令の数とサイクル数を，副プログラムごとと行ごとに数える．
+	 * 副プログラムはアセンブルした単位 (主プログラム，lib.casの副プログラムとその置き換え) と，
+	 * 手続きの入口のラベル (SourceMapにある名前，なければPROCn) で区切る．
+	 * SourceMapがあれば手続きのラベルと主プログラムをpasファイルでの名前にし，命令をpasファイルの行に対応付ける．
+	 * なければcasファイルの行に対応付ける．
+	 * CALLで呼び出し先の副プログラムに入り，RETで呼び出し元に戻るとして呼び出しの木を作り，経路ごとに数える．
+	 * 再帰呼び出しの中のサイクル数は，呼び出し先を含めたサイクル数に一度だけ数える．
+	 *   writeFlatProfile      副プログラムごとの自身のサイクル数，呼び出し先を含めたサイクル数，呼び出された回数，命令数と，
+	 *                         行ごとのサイクル数，命令数をサイクル数の多い順に書く
+	 *   writeCollapsedStacks  呼び出しの経路の名前を ; でつないだものとその経路で使ったサイクル数の行 ("main;fib;MULT 120") を書く．
+	 *                         flamegraph.pl などのフレームグラフの道具で描ける形式
+	 */
+
+	private static final int MEMORY_SIZE = 0x10000;
+
+	private static final class Frame {
+		final int routine;
+		final Frame parent;
+		final boolean outermost;
+		final Map<Integer, Frame> children;
+		long instructions;
+		long cycles;
+		long calls;
+
+		Frame(int routine, Frame parent, boolean outermost) {
+			this.routine = routine;
+			this.parent = parent;
+			this.outermost = outermost;
+			this.children = new LinkedHashMap<Integer, Frame>();
+		}
+	}
+
+	private final Program program;
+	private final SourceMap map;
+	private final List<String> names;
+	private final int[] routineOf;
+	private final int[] active;
+	private final long[] instructions;
+	private final long[] cycles;
+	private final Frame root;
+	private Frame current;
+
+	public Profiler(final Program program, final SourceMap map) {
+		this.program = program;
+		this.map = map;
+		this.names = new ArrayList<String>();
+		this.routineOf = new int[MEMORY_SIZE];
+		this.instructions = new long[MEMORY_SIZE];
+		this.cycles = new long[MEMORY_SIZE];
+		defineRoutines();
+		this.active = new int[names.size()];
+		this.root = new Frame(routineOf[program.getEntry()], null, true);
+		this.root.calls = 1;
+		this.active[root.routine] = 1;
+		this.current = root;
+	}
+
+	// 副プログラムの先頭番地からその次の副プログラムの前までを，その副プログラムの番地とする
+	private void defineRoutines() {
+		final TreeMap<Integer, String> starts = new TreeMap<Integer, String>(program.getRoutines());
+		for (final Map.Entry<Integer, String> label : program.getLabels().entrySet()) {
+			if (isProcedure(label.getValue())) {
+				starts.put(label.getKey(), label.getValue());
+			}
+		}
+		int routine = -1;
+		int address;
+		for (address = 0; address < MEMORY_SIZE; address++) {
+			final String label = starts.get(address);
+			if (label != null || routine < 0) {
+				routine = names.size();
+				names.add(label == null ? "?" : name(label));
+			}
+			routineOf[address] = routine;
+		}
+	}
+
+	private boolean isProcedure(final String label) {
+		if (map != null) {
+			return map.getName(label) != null;
+		}
+		return label.matches("PROC\\d+");
+	}
+
+	private String name(final String label) {
+		if (map != null && map.getName(label) != null) {
+			return map.getName(label);
+		}
+		return label;
+	}
+
+	/**
+	 * addressの命令 (機械語code) を実行してサイクル数cyclesを使い，nextへ進んだ．
+	 */
+	void count(final int address, final int code, final int next, final long cycles) {
+		instructions[address]++;
+		this.cycles[address] += cycles;
+		current.instructions++;
+		current.cycles += cycles;
+		if (code == MachineCode.CALL) {
+			final int routine = routineOf[next];
+			Frame child = current.children.get(routine);
+			if (child == null) {
+				child = new Frame(routine, current, active[routine] == 0);
+				current.children.put(routine, child);
+			}
+			active[routine]++;
+			child.calls++;
+			current = child;
+		} else if (code == MachineCode.RET && current != root) {
+			active[current.routine]--;
+			current = current.parent;
+		}
+	}
+
+	public void writeFlatProfile(final String fileName) throws IOException {
+		final int n = names.size();
+		final long[] self = new long[n];
+		final long[] total = new long[n];
+		final long[] calls = new long[n];
+		final long[] count = new long[n];
+		final List<Frame> frames = frames();
+		final Map<Frame, Long> subtree = new HashMap<Frame, Long>();
+		int i;
+		for (i = frames.size() - 1; i >= 0; i--) {
+			final Frame frame = frames.get(i);
+			long sum = frame.cycles;
+			for (final Frame child : frame.children.values()) {
+				sum += subtree.get(child);
+			}
+			subtree.put(frame, sum);
+			self[frame.routine] += frame.cycles;
+			calls[frame.routine] += frame.calls;
+			count[frame.routine] += frame.instructions;
+			if (frame.outermost) {
+				total[frame.routine] += sum;
+			}
+		}
+		final long all = subtree.get(root);
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(fileName)))) {
+			out.println("instructions " + sum(count) + ", cycles " + all);
+			out.println();
+			out.println(String.format("%14s %7s %14s %7s %10s %14s  %s", "self cycles", "%", "total cycles", "%", "calls",
+					"instructions", "routine"));
+			for (final int r : byCycles(self)) {
+				if (count[r] == 0) {
+					continue;
+				}
+				out.println(String.format("%14d %7s %14d %7s %10d %14d  %s", self[r], percent(self[r], all), total[r],
+						percent(total[r], all), calls[r], count[r], names.get(r)));
+			}
+
+			out.println();
+			out.println(String.format("%14s %7s %14s  %s", "cycles", "%", "instructions",
+					map != null ? "line (routine)" : "cas line (routine)"));
+			final Map<Long, long[]> lines = lines();
+			final List<Long> keys = new ArrayList<Long>(lines.keySet());
+			keys.sort((a, b) -> Long.compare(lines.get(b)[1], lines.get(a)[1]));
+			for (final long key : keys) {
+				final int line = (int) (key >>> 32);
+				final int routine = (int) key;
+				out.println(String.format("%14d %7s %14d  %s (%s)", lines.get(key)[1], percent(lines.get(key)[1], all),
+						lines.get(key)[0], line == 0 ? "-" : Integer.toString(line), names.get(routine)));
+			}
+		}
+	}
+
+	private static long sum(final long[] count) {
+		long sum = 0;
+		for (final long c : count) {
+			sum += c;
+		}
+		return sum;
+	}
+
+	// (行番号, 副プログラム) → {命令数, サイクル数}
+	private Map<Long, long[]> lines() {
+		final Map<Long, long[]> lines = new HashMap<Long, long[]>();
+		int address;
+		for (address = 0; address < MEMORY_SIZE; address++) {
+			if (instructions[address] == 0) {
+				continue;
+			}
+			int line = program.getLine(address);
+			if (map != null) {
+				line = map.getLine(line);
+			}
+			final long key = (long) line << 32 | routineOf[address];
+			final long[] sum = lines.computeIfAbsent(key, k -> new long[2]);
+			sum[0] += instructions[address];
+			sum[1] += cycles[address];
+		}
+		return lines;
+	}
+
+	private List<Integer> byCycles(final long[] cycles) {
+		final List<Integer> order = new ArrayList<Integer>();
+		int i;
+		for (i = 0; i < cycles.length; i++)
+			order.add(i);
+		order.sort((a, b) -> Long.compare(cycles[b], cycles[a]));
+		return order;
+	}
+
+	private static String percent(final long part, final long all) {
+		return String.format("%.2f%%", all == 0 ? 0.0 : 100.0 * part / all);
+	}
+
+	public void writeCollapsedStacks(final String fileName) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(fileName)))) {
+			final StringBuilder sb = new StringBuilder();
+			for (final Frame frame : frames()) {
+				if (frame.cycles == 0) {
+					continue;
+				}
+				sb.setLength(0);
+				appendPath(frame, sb);
+				out.println(sb.append(' ').append(frame.cycles));
+			}
+		}
+	}
+
+	private void appendPath(final Frame frame, final StringBuilder sb) {
+		final Deque<String> path = new ArrayDeque<String>();
+		Frame f;
+		for (f = frame; f != null; f = f.parent)
+			path.push(names.get(f.routine));
+		sb.append(String.join(";", path));
+	}
+
+	// 呼び出しの木の節点を行きがけ順に並べる (深い再帰でもJavaのスタックを使わない)
+	private List<Frame> frames() {
+		final List<Frame> frames = new ArrayList<Frame>();
+		final Deque<Frame> work = new ArrayDeque<Frame>();
+		work.push(root);
+		while (!work.isEmpty()) {
+			final Frame frame = work.pop();
+			frames.add(frame);
+			for (final Frame child : frame.children.values()) {
+				work.push(child);
+			}
+		}
+		return frames;
+	}
+}
@@ -0,0 +1,55 @@
+package compiler.casl;
+
+import java.util.TreeMap;
+
+public class Program {
+
+	/**
+	 * 仕様:
+	 * Assemblerが作った主記憶の内容 (65536語，0番地から) と実行を始める番地．
+	 * sizeはプログラムが使う語数で，それより後ろの番地はスタックに使う．
+	 * 番地ごとの行番号 (その語を置いた行，なければ0)，単位 (START〜END) と副プログラムの置き換えの先頭番地と名前，
+	 * 単位の中で定義したラベルの番地と名前 (同じ番地なら先に定義したもの) も持つ．
+	 */
+
+	private final char[] memory;
+	private final int entry;
+	private final int size;
+	private final int[] lines;
+	private final TreeMap<Integer, String> routines;
+	private final TreeMap<Integer, String> labels;
+
+	public Program(char[] memory, int entry, int size, int[] lines, TreeMap<Integer, String> routines,
+			TreeMap<Integer, String> labels) {
+		this.memory = memory;
+		this.entry = entry;
+		this.size = size;
+		this.lines = lines;
+		this.routines = routines;
+		this.labels = labels;
+	}
+
+	public char[] getMemory() {
+		return memory;
+	}
+
+	public int getEntry() {
+		return entry;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getLine(int address) {
+		return lines[address];
+	}
+
+	public TreeMap<Integer, String> getRoutines() {
+		return routines;
+	}
+
+	public TreeMap<Integer, String> getLabels() {
+		return labels;
+	}
+}
@@ -0,0 +1,108 @@
+package compiler.casl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import compiler.compiler.cas.SourceMap;
+
+public class Simulator {
+	private long limit = Long.MAX_VALUE;
+	private boolean profile = false;
+	private boolean translate = true;
+
+	/**
+	 * 仕様: 実行する命令の数の上限を指定する．
+	 */
+	public void setLimit(final long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * 仕様: 実行した命令とサイクル数を副プログラムごと・行ごとに数え (Profiler)，casファイルと並べて書き出す．
+	 *   .prof   副プログラムごと・行ごとの表
+	 *   .folded 呼び出しの経路ごとのサイクル数 (フレームグラフの道具に渡す形式)
+	 * casファイルと並べたmapファイル (SourceMap) があれば，手続きの名前とpasファイルの行で数える．
+	 * エラーで実行を止めた場合もそれまでに数えた分を書き出す．
+	 */
+	public void setProfile(final boolean profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * 仕様: 基本ブロックをJVMのバイトコードに変換して実行する (既定)．falseなら解釈実行だけで実行する．
+	 * プロファイルをとるときは変換しない．
+	 */
+	public void setTranslation(final boolean translate) {
+		this.translate = translate;
+	}
+
+	/**
+	 * 仕様: 第一引数で指定されたcasファイルをアセンブルし，COMET IIの計算機で実行する．
+	 * 入力は標準入力から読み，出力は標準出力に書く．
+	 * 実行を終えたら実行した命令の数とサイクル数を "instructions=N cycles=M" の形で標準エラーに出力する．
+	 * アセンブルや実行でエラーを見つけた場合はそのメッセージを標準エラーに出力する．
+	 * 入力ファイルが見つからない場合は標準エラーに"File not found"と出力して終了する．
+	 *
+	 * @param inputFileName 入力casファイル名
+	 * ex: new Simulator().run("tmp/out.cas");
+	 */
+	public void run(final String inputFileName) {
+		final List<String> source;
+		try {
+			source = Files.readAllLines(Paths.get(inputFileName));
+		} catch (final IOException e) {
+			System.err.println("File not found");
+			return;
+		}
+
+		final Program program;
+		try {
+			program = Assembler.assemble(source);
+		} catch (final CaslException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		final Machine machine = new Machine(program, new BufferedReader(new InputStreamReader(System.in)), System.out);
+		machine.setLimit(limit);
+		machine.setTranslation(translate);
+		Profiler profiler = null;
+		if (profile) {
+			try {
+				profiler = new Profiler(program, SourceMap.read(SourceMap.fileName(inputFileName)));
+			} catch (final IOException e) {
+				System.err.println(e);
+				return;
+			}
+			machine.setProfiler(profiler);
+		}
+
+		try {
+			machine.run();
+			System.out.flush();
+			System.err.println("instructions=" + machine.getInstructions() + " cycles=" + machine.getCycles());
+		} catch (final CaslException e) {
+			System.out.flush();
+			System.err.println(e.getMessage());
+		}
+		if (profiler != null) {
+			writeProfile(profiler, inputFileName);
+		}
+	}
+
+	private static void writeProfile(final Profiler profiler, final String inputFileName) {
+		String base = inputFileName;
+		if (base.endsWith(".cas")) {
+			base = base.substring(0, base.length() - ".cas".length());
+		}
+		try {
+			profiler.writeFlatProfile(base + ".prof");
+			profiler.writeCollapsedStacks(base + ".folded");
+		} catch (final IOException e) {
+			System.err.println(e);
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package compiler.casl;
+
+interface Translation {
+
+	/**
+	 * 仕様:
+	 * Translatorが作るクラスが実装する．変換の単位chunkのpc番地のブロックから実行し，次に実行する番地を返す．
+	 * 実行を終えたらTranslator.HALT，解釈実行で1命令以上進めてほしければTranslator.STEPを含めた値を返す．
+	 * レジスタ (gr) ，フラグ，命令の数とサイクル数は戻る前にmachineに書き戻す．
+	 */
+	int run(int chunk, Machine machine, char[] memory, int[] gr, byte[] code, int pc);
+}
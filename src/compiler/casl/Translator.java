@@ -0,0 +1,879 @@
+package compiler.casl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.classfile.Bytecode;
+import compiler.classfile.ClassFile;
+
+class Translator {
+
+	/**
+	 * 仕様:
+	 * 主記憶のCOMET IIのプログラムをJVMのバイトコードに変換し，隠しクラス (Translation) として読み込む．
+	 * 入口の番地 (と変換を始めたときの番地) から，定数の飛び先 (JUMP, 分岐, CALL) とCALL・分岐・SVCの次の番地をたどって命令を集め，基本ブロックに分ける．
+	 * 間接の飛び先 (指標レジスタ付きのJUMP/CALL，RET) は実行時に番地で引き，変換していなければ解釈実行に任せる．
+	 * 未定義の命令の手前でブロックを終え，その命令は解釈実行でエラーにする．
+	 * ブロックを番地の順に，バイトコードの大きさの見積もりがCHUNK_SIZEを超えない変換の単位 (chunk) にまとめ (収まるループは分けない)，
+	 * 単位ごとに一つのstaticメソッドにする (HotSpotが大きすぎるメソッドをコンパイルしないため)．
+	 * メソッドの中ではレジスタとフラグ，命令の数とサイクル数をローカル変数に置き，ブロックの間は直接gotoで移る．
+	 * 単位の外へ移るときはMachineに書き戻して次の番地を返す．
+	 * 命令の数とサイクル数はブロックの入口でまとめて足す．足すと上限 (Machine.limit) を超えるブロックは実行せず，
+	 * 解釈実行に任せる (上限のエラーは解釈実行で出す)．SVCはブロックの最後に置き，Machine.svcを呼ぶ．
+	 * 変換した命令の語 (code) に書き込んだら，書き込んだ命令までを数えて戻る (以後はMachineが解釈実行する)．
+	 */
+
+	/**
+	 * 実行を終えた (SPが0のときのRET)．Machine.prはそのRETの番地になっている．
+	 */
+	static final int HALT = -1;
+
+	/**
+	 * 次の番地にこのビットを立てて返したら，解釈実行で1命令以上進める．
+	 */
+	static final int STEP = 0x10000;
+
+	private static final int MEMORY_SIZE = 0x10000;
+	private static final int SP = 8;
+	// ブロックの命令の数の上限と，変換の単位のバイトコードの大きさの見積もりの上限
+	private static final int BLOCK_SIZE = 64;
+	private static final int CHUNK_SIZE = 7000;
+	private static final int BLOCK_COST = 40;
+	private static final int INSTRUCTION_COST = 34;
+	private static final int SVC_COST = 140;
+
+	private static final String CLASS_NAME = "compiler/casl/TranslatedProgram";
+	private static final String MACHINE = "compiler/casl/Machine";
+	private static final String CHUNK_DESCRIPTOR = "(L" + MACHINE + ";[C[I[BI)I";
+
+	// 変換したメソッドのローカル変数
+	private static final int M = 0;
+	private static final int MEM = 1;
+	private static final int GR = 2;
+	private static final int CODE = 3;
+	private static final int PC = 4;
+	private static final int R = 5;
+	private static final int OF = 14;
+	private static final int SF = 15;
+	private static final int ZF = 16;
+	private static final int INS = 17;
+	private static final int CYC = 19;
+	private static final int LIMIT = 21;
+	private static final int T = 23;
+	private static final int TARGET = 24;
+	private static final int MAX_LOCALS = 25;
+	private static final int MAX_STACK = 10;
+
+	static final class Result {
+		private final Translation translation;
+		private final byte[] code;
+		private final int[] chunks;
+
+		Result(Translation translation, byte[] code, int[] chunks) {
+			this.translation = translation;
+			this.code = code;
+			this.chunks = chunks;
+		}
+
+		Translation getTranslation() {
+			return translation;
+		}
+
+		/**
+		 * 番地 → 変換した命令の語なら1．
+		 */
+		byte[] getCode() {
+			return code;
+		}
+
+		/**
+		 * 番地 → その番地から始まるブロックを含む変換の単位の番号 (ブロックの先頭でなければ-1)．
+		 */
+		int[] getChunks() {
+			return chunks;
+		}
+	}
+
+	// 基本ブロック: 先頭の番地，命令の番地の列，最後の命令の次の番地
+	private static final class Block {
+		final int start;
+		final int[] addresses;
+		final int end;
+
+		Block(int start, int[] addresses, int end) {
+			this.start = start;
+			this.addresses = addresses;
+			this.end = end;
+		}
+	}
+
+	private final char[] memory;
+	private final byte[] code;
+	private final boolean[] leader;
+	private final int[] chunks;
+	private Bytecode b;
+	// 変換中の単位のブロックの先頭の番地 → ラベル
+	private Map<Integer, Integer> labels;
+	private int exit;
+	private int dispatch;
+
+	private Translator(final char[] memory) {
+		this.memory = memory;
+		this.code = new byte[MEMORY_SIZE];
+		this.leader = new boolean[MEMORY_SIZE];
+		this.chunks = new int[MEMORY_SIZE];
+		Arrays.fill(chunks, -1);
+	}
+
+	/**
+	 * memoryのentry番地から実行するプログラムを，いま実行しているpc番地からたどれる命令も含めて変換する．
+	 */
+	static Result translate(final char[] memory, final int entry, final int pc) {
+		final Translator translator = new Translator(memory);
+		final List<Block> blocks = translator.blocks(entry, pc);
+		final Translation translation = translator.define(translator.generate(blocks));
+		return new Result(translation, translator.code, translator.chunks);
+	}
+
+	// 命令の解析
+
+	private int op(final int address) {
+		return memory[address] >>> 8;
+	}
+
+	private boolean isValid(final int address) {
+		return MachineCode.opcode(op(address)) != null;
+	}
+
+	private int next(final int address) {
+		return (address + MachineCode.length(op(address))) & 0xFFFF;
+	}
+
+	private int adr(final int address) {
+		return memory[(address + 1) & 0xFFFF];
+	}
+
+	private int r(final int address) {
+		return (memory[address] >>> 4) & 0xF;
+	}
+
+	private int x(final int address) {
+		return memory[address] & 0xF;
+	}
+
+	private static boolean isBranch(final int op) {
+		return op >= MachineCode.JMI && op <= MachineCode.JOV && op != MachineCode.JUMP;
+	}
+
+	// 次の命令へ進まない，またはここでブロックを終える命令
+	private static boolean endsBlock(final int op) {
+		return op == MachineCode.JUMP || op == MachineCode.RET || op == MachineCode.CALL || op == MachineCode.SVC
+				|| isBranch(op);
+	}
+
+	private static boolean fallsThrough(final int op) {
+		return op != MachineCode.JUMP && op != MachineCode.RET;
+	}
+
+	// 入口とpcからたどれる命令を集め，ブロックの先頭を決めてブロックに分ける
+	private List<Block> blocks(final int entry, final int pc) {
+		final boolean[] visited = new boolean[MEMORY_SIZE];
+		final Deque<Integer> work = new ArrayDeque<Integer>();
+		addLeader(entry, work);
+		addLeader(pc, work);
+		while (!work.isEmpty()) {
+			int address = work.pop();
+			while (isValid(address)) {
+				if (visited[address]) {
+					leader[address] = true;
+					break;
+				}
+				visited[address] = true;
+				final int op = op(address);
+				code[address] = 1;
+				if (MachineCode.length(op) == 2) {
+					code[(address + 1) & 0xFFFF] = 1;
+				}
+				if ((op == MachineCode.JUMP || op == MachineCode.CALL || isBranch(op)) && x(address) == 0) {
+					addLeader(adr(address), work);
+				}
+				if (!endsBlock(op)) {
+					address = next(address);
+					continue;
+				}
+				if (fallsThrough(op)) {
+					addLeader(next(address), work);
+				}
+				break;
+			}
+		}
+
+		final List<Block> blocks = new ArrayList<Block>();
+		final Deque<Integer> starts = new ArrayDeque<Integer>();
+		int address;
+		for (address = 0; address < MEMORY_SIZE; address++) {
+			if (leader[address] && isValid(address)) {
+				starts.add(address);
+			}
+		}
+		while (!starts.isEmpty()) {
+			final int start = starts.poll();
+			final int[] addresses = new int[BLOCK_SIZE];
+			int count = 0;
+			address = start;
+			while (true) {
+				addresses[count++] = address;
+				final int op = op(address);
+				final int next = next(address);
+				if (endsBlock(op) || !isValid(next) || leader[next]) {
+					address = next;
+					break;
+				}
+				if (count == BLOCK_SIZE) {
+					leader[next] = true;
+					starts.add(next);
+					address = next;
+					break;
+				}
+				address = next;
+			}
+			blocks.add(new Block(start, Arrays.copyOf(addresses, count), address));
+		}
+		blocks.sort((p, q) -> Integer.compare(p.start, q.start));
+		return blocks;
+	}
+
+	private void addLeader(final int address, final Deque<Integer> work) {
+		if (!leader[address]) {
+			leader[address] = true;
+			work.push(address);
+		}
+	}
+
+	// クラスの生成
+
+	private byte[] generate(final List<Block> blocks) {
+		final ClassFile cf = new ClassFile(ClassFile.ACC_FINAL, CLASS_NAME, "java/lang/Object",
+				"compiler/casl/Translation");
+
+		final Bytecode init = cf.newBytecode();
+		init.aload(0);
+		init.invoke(Bytecode.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		init.op(Bytecode.RETURN);
+		cf.addMethod(0, "<init>", "()V", init, 1, 1);
+
+		final boolean[] inLoop = loops(blocks);
+		int chunkCount = 0;
+		int first = 0;
+		while (first < blocks.size()) {
+			int end = first + 1;
+			int size = cost(blocks.get(first));
+			while (end < blocks.size() && size + cost(blocks.get(end)) <= CHUNK_SIZE) {
+				size += cost(blocks.get(end));
+				end++;
+			}
+			// 収まらなければ，ループの途中で切らないように戻す
+			int cut = end;
+			if (end < blocks.size()) {
+				while (cut > first + 1 && inLoop[cut])
+					cut--;
+				if (cut == first + 1) {
+					cut = end;
+				}
+			}
+			b = cf.newBytecode();
+			chunk(blocks.subList(first, cut), chunkCount);
+			cf.addMethod(ClassFile.ACC_STATIC, "c" + chunkCount, CHUNK_DESCRIPTOR, b, MAX_STACK, MAX_LOCALS);
+			chunkCount++;
+			first = cut;
+		}
+
+		// run(chunk, machine, memory, gr, code, pc) は番号の単位のメソッドを呼ぶ
+		final Bytecode run = cf.newBytecode();
+		final int otherwise = run.newLabel();
+		if (chunkCount > 0) {
+			final int[] targets = new int[chunkCount];
+			int i;
+			for (i = 0; i < chunkCount; i++)
+				targets[i] = run.newLabel();
+			run.iload(1);
+			run.tableswitch(0, chunkCount - 1, otherwise, targets);
+			for (i = 0; i < chunkCount; i++) {
+				run.mark(targets[i]);
+				run.aload(2);
+				run.aload(3);
+				run.aload(4);
+				run.aload(5);
+				run.iload(6);
+				run.invoke(Bytecode.INVOKESTATIC, CLASS_NAME, "c" + i, CHUNK_DESCRIPTOR);
+				run.op(Bytecode.IRETURN);
+			}
+		}
+		run.mark(otherwise);
+		run.iload(6);
+		run.iconst(STEP);
+		run.op(Bytecode.IOR);
+		run.op(Bytecode.IRETURN);
+		cf.addMethod(ClassFile.ACC_PUBLIC, "run", "(IL" + MACHINE + ";[C[I[BI)I", run, 6, 7);
+		return cf.toByteArray();
+	}
+
+	// i番目のブロックの前で切ると，一つの単位に収まるループ (後ろへの定数の飛び先からそこまで) が分かれるならtrue
+	private boolean[] loops(final List<Block> blocks) {
+		final boolean[] inLoop = new boolean[blocks.size() + 1];
+		final Map<Integer, Integer> index = new HashMap<Integer, Integer>();
+		int i;
+		for (i = 0; i < blocks.size(); i++)
+			index.put(blocks.get(i).start, i);
+		for (i = 0; i < blocks.size(); i++) {
+			final int[] addresses = blocks.get(i).addresses;
+			final int last = addresses[addresses.length - 1];
+			final int op = op(last);
+			final Integer head = index.get(adr(last));
+			if ((op != MachineCode.JUMP && !isBranch(op)) || x(last) != 0 || head == null || head > i) {
+				continue;
+			}
+			int size = 0;
+			int j;
+			for (j = head; j <= i; j++)
+				size += cost(blocks.get(j));
+			if (size <= CHUNK_SIZE) {
+				for (j = head + 1; j <= i; j++)
+					inLoop[j] = true;
+			}
+		}
+		return inLoop;
+	}
+
+	private int cost(final Block block) {
+		int cost = BLOCK_COST;
+		for (final int address : block.addresses) {
+			cost += op(address) == MachineCode.SVC ? SVC_COST : INSTRUCTION_COST;
+		}
+		return cost;
+	}
+
+	private Translation define(final byte[] bytes) {
+		try {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			return (Translation) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+					.invoke();
+		} catch (final Throwable e) {
+			throw new IllegalStateException("cannot load the translated program", e);
+		}
+	}
+
+	// 変換の単位 (メソッド) を生成する
+	private void chunk(final List<Block> blocks, final int number) {
+		labels = new HashMap<Integer, Integer>();
+		for (final Block block : blocks) {
+			labels.put(block.start, b.newLabel());
+			chunks[block.start] = number;
+		}
+		exit = b.newLabel();
+		dispatch = b.newLabel();
+
+		int i;
+		for (i = 0; i <= SP; i++) {
+			b.aload(GR);
+			b.iconst(i);
+			b.op(Bytecode.IALOAD);
+			b.istore(R + i);
+		}
+		b.aload(M);
+		b.invoke(Bytecode.INVOKEVIRTUAL, MACHINE, "of", "()I");
+		b.istore(OF);
+		b.aload(M);
+		b.invoke(Bytecode.INVOKEVIRTUAL, MACHINE, "sf", "()I");
+		b.istore(SF);
+		b.aload(M);
+		b.invoke(Bytecode.INVOKEVIRTUAL, MACHINE, "zf", "()I");
+		b.istore(ZF);
+		b.aload(M);
+		b.field(Bytecode.GETFIELD, MACHINE, "instructions", "J");
+		b.lstore(INS);
+		b.aload(M);
+		b.field(Bytecode.GETFIELD, MACHINE, "cycles", "J");
+		b.lstore(CYC);
+		b.aload(M);
+		b.field(Bytecode.GETFIELD, MACHINE, "limit", "J");
+		b.lstore(LIMIT);
+		b.iconst(0);
+		b.istore(T);
+		b.iconst(0);
+		b.istore(TARGET);
+
+		// 番地でブロックを引く
+		b.mark(dispatch);
+		final int[] keys = new int[blocks.size()];
+		final int[] targets = new int[blocks.size()];
+		for (i = 0; i < blocks.size(); i++) {
+			keys[i] = blocks.get(i).start;
+			targets[i] = labels.get(keys[i]);
+		}
+		b.iload(PC);
+		b.lookupswitch(exit, keys, targets, keys.length);
+
+		for (final Block block : blocks) {
+			block(block);
+		}
+
+		// レジスタ，フラグ，数を書き戻して次の番地を返す
+		b.mark(exit);
+		for (i = 0; i <= SP; i++) {
+			b.aload(GR);
+			b.iconst(i);
+			b.iload(R + i);
+			b.op(Bytecode.IASTORE);
+		}
+		b.aload(M);
+		b.iload(OF);
+		b.iload(SF);
+		b.iload(ZF);
+		b.invoke(Bytecode.INVOKEVIRTUAL, MACHINE, "flags", "(III)V");
+		syncCounts();
+		b.iload(PC);
+		b.op(Bytecode.IRETURN);
+	}
+
+	private void syncCounts() {
+		b.aload(M);
+		b.lload(INS);
+		b.field(Bytecode.PUTFIELD, MACHINE, "instructions", "J");
+		b.aload(M);
+		b.lload(CYC);
+		b.field(Bytecode.PUTFIELD, MACHINE, "cycles", "J");
+	}
+
+	private void block(final Block block) {
+		b.mark(labels.get(block.start));
+		final int n = block.addresses.length;
+		long cycles = 0;
+		for (final int address : block.addresses) {
+			cycles += MachineCode.cycles(op(address));
+		}
+
+		// 上限を超えるなら解釈実行に任せる
+		final int ok = b.newLabel();
+		b.lload(INS);
+		b.lconst(n);
+		b.op(Bytecode.LADD);
+		b.lload(LIMIT);
+		b.op(Bytecode.LCMP);
+		b.jump(Bytecode.IFLE, ok);
+		b.iconst(block.start | STEP);
+		b.istore(PC);
+		b.jump(Bytecode.GOTO, exit);
+		b.mark(ok);
+		addCounts(n, cycles);
+
+		long rest = cycles;
+		int i;
+		for (i = 0; i < n; i++) {
+			final int address = block.addresses[i];
+			rest -= MachineCode.cycles(op(address));
+			instruction(address, n - 1 - i, rest);
+		}
+		final int last = op(block.addresses[n - 1]);
+		if (fallsThrough(last) && last != MachineCode.CALL) {
+			transfer(block.end);
+		}
+	}
+
+	private void addCounts(final long n, final long cycles) {
+		b.lload(INS);
+		b.lconst(n);
+		b.op(Bytecode.LADD);
+		b.lstore(INS);
+		b.lload(CYC);
+		b.lconst(cycles);
+		b.op(Bytecode.LADD);
+		b.lstore(CYC);
+	}
+
+	// addressの命令．restInstructions, restCyclesはブロックの残りの命令の数とサイクル数
+	private void instruction(final int address, final int restInstructions, final long restCycles) {
+		final int op = op(address);
+		final int r = r(address);
+		final int x = x(address);
+		final int next = next(address);
+		switch (op) {
+		case MachineCode.NOP:
+			break;
+		case MachineCode.LD:
+			operand(address);
+			logical(r);
+			break;
+		case MachineCode.ST:
+			ea(address);
+			b.op(Bytecode.DUP);
+			b.istore(T);
+			b.aload(MEM);
+			b.op(Bytecode.SWAP);
+			b.iload(R + r);
+			b.op(Bytecode.CASTORE);
+			checkStore(x == 0 ? adr(address) : -1, T, restInstructions, restCycles, next);
+			break;
+		case MachineCode.LAD:
+			ea(address);
+			b.istore(R + r);
+			break;
+		case MachineCode.LD_R:
+			b.iload(R + x);
+			logical(r);
+			break;
+		case MachineCode.ADDA:
+		case MachineCode.ADDA_R:
+		case MachineCode.SUBA:
+		case MachineCode.SUBA_R:
+			b.iload(R + r);
+			b.op(Bytecode.I2S);
+			operand(address);
+			b.op(Bytecode.I2S);
+			b.op(op == MachineCode.ADDA || op == MachineCode.ADDA_R ? Bytecode.IADD : Bytecode.ISUB);
+			// -32768〜32767を外れたらOF
+			b.op(Bytecode.DUP);
+			b.iconst(0x8000);
+			b.op(Bytecode.IADD);
+			b.iconst(16);
+			b.op(Bytecode.IUSHR);
+			b.istore(OF);
+			value(r);
+			break;
+		case MachineCode.ADDL:
+		case MachineCode.ADDL_R:
+			b.iload(R + r);
+			operand(address);
+			b.op(Bytecode.IADD);
+			b.op(Bytecode.DUP);
+			b.iconst(16);
+			b.op(Bytecode.IUSHR);
+			b.istore(OF);
+			value(r);
+			break;
+		case MachineCode.SUBL:
+		case MachineCode.SUBL_R:
+			b.iload(R + r);
+			operand(address);
+			b.op(Bytecode.ISUB);
+			b.op(Bytecode.DUP);
+			b.iconst(31);
+			b.op(Bytecode.IUSHR);
+			b.istore(OF);
+			value(r);
+			break;
+		case MachineCode.AND:
+		case MachineCode.AND_R:
+		case MachineCode.OR:
+		case MachineCode.OR_R:
+		case MachineCode.XOR:
+		case MachineCode.XOR_R:
+			b.iload(R + r);
+			operand(address);
+			b.op(op == MachineCode.AND || op == MachineCode.AND_R ? Bytecode.IAND
+					: op == MachineCode.OR || op == MachineCode.OR_R ? Bytecode.IOR : Bytecode.IXOR);
+			logical(r);
+			break;
+		case MachineCode.CPA:
+		case MachineCode.CPA_R:
+		case MachineCode.CPL:
+		case MachineCode.CPL_R:
+			final boolean arithmetic = op == MachineCode.CPA || op == MachineCode.CPA_R;
+			b.iload(R + r);
+			if (arithmetic) {
+				b.op(Bytecode.I2S);
+			}
+			operand(address);
+			if (arithmetic) {
+				b.op(Bytecode.I2S);
+			}
+			b.op(Bytecode.ISUB);
+			b.op(Bytecode.DUP);
+			b.istore(ZF);
+			b.iconst(31);
+			b.op(Bytecode.IUSHR);
+			b.istore(SF);
+			b.iconst(0);
+			b.istore(OF);
+			break;
+		case MachineCode.SLA:
+		case MachineCode.SRA:
+		case MachineCode.SLL:
+		case MachineCode.SRL:
+			b.iload(R + r);
+			ea(address);
+			b.invoke(Bytecode.INVOKESTATIC, MACHINE, op == MachineCode.SLA ? "shiftLeftArithmetic"
+					: op == MachineCode.SRA ? "shiftRightArithmetic"
+							: op == MachineCode.SLL ? "shiftLeftLogical" : "shiftRightLogical",
+					"(II)I");
+			b.op(Bytecode.DUP);
+			b.iconst(16);
+			b.op(Bytecode.IUSHR);
+			b.istore(OF);
+			value(r);
+			break;
+		case MachineCode.JMI:
+		case MachineCode.JNZ:
+		case MachineCode.JZE:
+		case MachineCode.JPL:
+		case MachineCode.JOV:
+			branch(address, op, next);
+			break;
+		case MachineCode.JUMP:
+			jump(address);
+			break;
+		case MachineCode.PUSH:
+			ea(address);
+			push(restInstructions, restCycles, next);
+			break;
+		case MachineCode.POP:
+			b.aload(MEM);
+			b.iload(R + SP);
+			b.op(Bytecode.CALOAD);
+			b.istore(T);
+			incrementSp();
+			b.iload(T);
+			b.istore(R + r);
+			break;
+		case MachineCode.CALL:
+			// 飛び先は戻り番地を積む前のレジスタで決まる
+			if (x != 0) {
+				ea(address);
+				b.istore(TARGET);
+			}
+			b.iconst(next);
+			push(restInstructions, restCycles, x == 0 ? adr(address) : -1);
+			jump(address);
+			break;
+		case MachineCode.RET:
+			ret(address);
+			break;
+		case MachineCode.SVC:
+			svc(address, next);
+			break;
+		default:
+			throw new IllegalStateException("illegal instruction");
+		}
+	}
+
+	// 実効番地 adr + [x]
+	private void ea(final int address) {
+		b.iconst(adr(address));
+		if (x(address) != 0) {
+			b.iload(R + x(address));
+			b.op(Bytecode.IADD);
+			b.iconst(0xFFFF);
+			b.op(Bytecode.IAND);
+		}
+	}
+
+	// 第2オペランド: r1,r2形式ならレジスタ，そうでなければ実効番地の語
+	private void operand(final int address) {
+		if (MachineCode.isRegisterForm(op(address))) {
+			b.iload(R + x(address));
+		} else {
+			b.aload(MEM);
+			ea(address);
+			b.op(Bytecode.CALOAD);
+		}
+	}
+
+	// スタックの値をレジスタrに置き，OFを0にしてSFとZFを立てる
+	private void logical(final int r) {
+		b.iconst(0);
+		b.istore(OF);
+		flagged(r);
+	}
+
+	// スタックの値の下位16ビットをレジスタrに置き，SFとZFを立てる
+	private void value(final int r) {
+		b.iconst(0xFFFF);
+		b.op(Bytecode.IAND);
+		flagged(r);
+	}
+
+	private void flagged(final int r) {
+		b.op(Bytecode.DUP);
+		b.istore(R + r);
+		b.op(Bytecode.DUP);
+		b.istore(ZF);
+		b.iconst(15);
+		b.op(Bytecode.IUSHR);
+		b.istore(SF);
+	}
+
+	// スタックの値を積む．resumeは書き込みで変換をやめたときに進む番地 (-1ならTARGET)
+	private void push(final int restInstructions, final long restCycles, final int resume) {
+		b.iload(R + SP);
+		b.iconst(1);
+		b.op(Bytecode.ISUB);
+		b.iconst(0xFFFF);
+		b.op(Bytecode.IAND);
+		b.istore(R + SP);
+		b.istore(T);
+		b.aload(MEM);
+		b.iload(R + SP);
+		b.iload(T);
+		b.op(Bytecode.CASTORE);
+		checkStore(-1, R + SP, restInstructions, restCycles, resume);
+	}
+
+	private void incrementSp() {
+		b.iload(R + SP);
+		b.iconst(1);
+		b.op(Bytecode.IADD);
+		b.iconst(0xFFFF);
+		b.op(Bytecode.IAND);
+		b.istore(R + SP);
+	}
+
+	// 変換した命令の語に書き込んだら，ブロックの残りを数えずにresumeへ戻る．
+	// constantが0以上なら書き込む番地はそれと決まっている．そうでなければローカル変数localの番地
+	private void checkStore(final int constant, final int local, final int restInstructions, final long restCycles,
+			final int resume) {
+		final int ok = b.newLabel();
+		if (constant >= 0) {
+			if (code[constant] == 0) {
+				return;
+			}
+		} else {
+			b.aload(CODE);
+			b.iload(local);
+			b.op(Bytecode.BALOAD);
+			b.jump(Bytecode.IFEQ, ok);
+		}
+		b.aload(M);
+		b.iconst(1);
+		b.field(Bytecode.PUTFIELD, MACHINE, "invalidated", "Z");
+		addCounts(-restInstructions, -restCycles);
+		if (resume >= 0) {
+			b.iconst(resume);
+		} else {
+			b.iload(TARGET);
+		}
+		b.istore(PC);
+		b.jump(Bytecode.GOTO, exit);
+		b.mark(ok);
+	}
+
+	private void branch(final int address, final int op, final int next) {
+		final int skip = b.newLabel();
+		switch (op) {
+		case MachineCode.JMI:
+			b.iload(SF);
+			b.jump(Bytecode.IFEQ, skip);
+			break;
+		case MachineCode.JNZ:
+			b.iload(ZF);
+			b.jump(Bytecode.IFEQ, skip);
+			break;
+		case MachineCode.JZE:
+			b.iload(ZF);
+			b.jump(Bytecode.IFNE, skip);
+			break;
+		case MachineCode.JPL:
+			b.iload(SF);
+			b.jump(Bytecode.IFNE, skip);
+			b.iload(ZF);
+			b.jump(Bytecode.IFEQ, skip);
+			break;
+		default:
+			b.iload(OF);
+			b.jump(Bytecode.IFEQ, skip);
+		}
+		if (x(address) != 0) {
+			ea(address);
+			b.istore(TARGET);
+		}
+		jump(address);
+		b.mark(skip);
+	}
+
+	// 飛び先へ移る．指標レジスタ付きならTARGETに実効番地を置いてある (CALL, 分岐) か，ここで求める (JUMP)
+	private void jump(final int address) {
+		if (x(address) == 0) {
+			transfer(adr(address));
+			return;
+		}
+		if (op(address) == MachineCode.JUMP) {
+			ea(address);
+		} else {
+			b.iload(TARGET);
+		}
+		b.istore(PC);
+		b.jump(Bytecode.GOTO, dispatch);
+	}
+
+	private void transfer(final int target) {
+		final Integer label = labels.get(target);
+		if (label != null) {
+			b.jump(Bytecode.GOTO, label);
+			return;
+		}
+		b.iconst(target);
+		b.istore(PC);
+		b.jump(Bytecode.GOTO, exit);
+	}
+
+	// SPが0なら，解釈実行と同じくprをRETの番地にして終える
+	private void ret(final int address) {
+		final int pop = b.newLabel();
+		b.iload(R + SP);
+		b.jump(Bytecode.IFNE, pop);
+		b.aload(M);
+		b.iconst(address);
+		b.field(Bytecode.PUTFIELD, MACHINE, "pr", "I");
+		b.iconst(HALT);
+		b.istore(PC);
+		b.jump(Bytecode.GOTO, exit);
+		b.mark(pop);
+		b.aload(MEM);
+		b.iload(R + SP);
+		b.op(Bytecode.CALOAD);
+		b.istore(PC);
+		incrementSp();
+		b.jump(Bytecode.GOTO, dispatch);
+	}
+
+	// Machine.svcを呼ぶ．レジスタと数を書き戻し，GR1, GR2とサイクル数を読み直す
+	private void svc(final int address, final int next) {
+		int i;
+		for (i = 0; i <= SP; i++) {
+			b.aload(GR);
+			b.iconst(i);
+			b.iload(R + i);
+			b.op(Bytecode.IASTORE);
+		}
+		syncCounts();
+		b.aload(M);
+		b.iconst(address);
+		b.field(Bytecode.PUTFIELD, MACHINE, "pr", "I");
+		b.aload(M);
+		ea(address);
+		b.invoke(Bytecode.INVOKEVIRTUAL, MACHINE, "svc", "(I)V");
+		for (i = 1; i <= 2; i++) {
+			b.aload(GR);
+			b.iconst(i);
+			b.op(Bytecode.IALOAD);
+			b.istore(R + i);
+		}
+		b.aload(M);
+		b.field(Bytecode.GETFIELD, MACHINE, "cycles", "J");
+		b.lstore(CYC);
+		final int ok = b.newLabel();
+		b.aload(M);
+		b.field(Bytecode.GETFIELD, MACHINE, "invalidated", "Z");
+		b.jump(Bytecode.IFEQ, ok);
+		b.iconst(next);
+		b.istore(PC);
+		b.jump(Bytecode.GOTO, exit);
+		b.mark(ok);
+	}
+}
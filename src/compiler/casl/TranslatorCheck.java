@@ -0,0 +1,151 @@
+package compiler.casl;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class TranslatorCheck {
+
+	/**
+	 * 仕様:
+	 * 解釈実行とJVMのバイトコードへの変換 (Translator) を比べる差分テスト．
+	 * 引数のcasファイル (ディレクトリなら中のcasファイルすべて) を解釈実行だけで実行した結果を基準とし，
+	 * translationThresholdを0といくつかの小さな値にして変換を早く始めた実行と比べる．
+	 * 比べるのは出力，エラーのメッセージ，実行した命令の数，サイクル数，終わったときのprと主記憶の内容．
+	 * 入力はcasファイルと同じ名前の.inファイルから読む (なければ空)．
+	 * 違いを見つけたらファイル名と閾値，違った項目を標準出力に書き，終了コード1で終わる．
+	 *
+	 * ex: $ java -cp bin compiler.casl.TranslatorCheck tmp/ --limit=10000000
+	 */
+
+	private static final long[] THRESHOLDS = { 0, 1, 2, 3, 5, 17, 100 };
+	private static final long DEFAULT_LIMIT = 10000000;
+
+	public static void main(final String[] args) throws IOException {
+		long limit = DEFAULT_LIMIT;
+		final List<Path> files = new ArrayList<Path>();
+		for (final String arg : args) {
+			if (arg.startsWith("--limit=")) {
+				limit = Long.parseLong(arg.substring("--limit=".length()));
+			} else {
+				files.addAll(casFiles(Paths.get(arg)));
+			}
+		}
+		if (files.isEmpty()) {
+			System.out.println("Usage: java compiler.casl.TranslatorCheck file.cas|dir ... [--limit=N]");
+			return;
+		}
+
+		int mismatches = 0;
+		for (final Path file : files) {
+			mismatches += check(file, limit);
+		}
+		System.out.println("checked " + files.size() + " programs, " + mismatches + " mismatches");
+		if (mismatches > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static List<Path> casFiles(final Path path) throws IOException {
+		if (!Files.isDirectory(path)) {
+			return Arrays.asList(path);
+		}
+		try (Stream<Path> stream = Files.walk(path)) {
+			return stream.filter(p -> p.toString().endsWith(".cas")).sorted().collect(Collectors.toList());
+		}
+	}
+
+	// 閾値ごとに基準と比べ，違った実行の数を返す
+	private static int check(final Path file, final long limit) throws IOException {
+		final Program program;
+		try {
+			program = Assembler.assemble(Files.readAllLines(file));
+		} catch (final CaslException e) {
+			System.out.println(file + ": " + e.getMessage());
+			return 1;
+		}
+		final String base = file.toString().substring(0, file.toString().length() - ".cas".length());
+		final Path inputFile = Paths.get(base + ".in");
+		final String input = Files.exists(inputFile) ? new String(Files.readAllBytes(inputFile), StandardCharsets.UTF_8) : "";
+
+		final Run expected = new Run(program, input, limit, -1);
+		int mismatches = 0;
+		for (final long threshold : THRESHOLDS) {
+			final String diff = expected.diff(new Run(program, input, limit, threshold));
+			if (!diff.isEmpty()) {
+				System.out.println(file + " threshold=" + threshold + ":" + diff);
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	// 一回の実行の結果．thresholdが負なら解釈実行だけで実行する
+	private static final class Run {
+		private final String output;
+		private final String error;
+		private final long instructions;
+		private final long cycles;
+		private final int pr;
+		private final char[] memory;
+
+		Run(final Program program, final String input, final long limit, final long threshold) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final PrintStream out = new PrintStream(bytes, true);
+			final Machine machine = new Machine(program, new BufferedReader(new StringReader(input)), out);
+			machine.setLimit(limit);
+			machine.setTranslation(threshold >= 0);
+			if (threshold >= 0) {
+				machine.translationThreshold = threshold;
+			}
+			String message = null;
+			try {
+				machine.run();
+			} catch (final CaslException e) {
+				message = e.getMessage();
+			}
+			out.flush();
+			this.output = bytes.toString();
+			this.error = message;
+			this.instructions = machine.getInstructions();
+			this.cycles = machine.getCycles();
+			this.pr = machine.pr;
+			this.memory = machine.getMemory();
+		}
+
+		String diff(final Run other) {
+			final StringBuilder sb = new StringBuilder();
+			if (!output.equals(other.output)) {
+				sb.append(" output");
+			}
+			if (error == null ? other.error != null : !error.equals(other.error)) {
+				sb.append(" error (" + error + " / " + other.error + ")");
+			}
+			if (instructions != other.instructions) {
+				sb.append(" instructions (" + instructions + " / " + other.instructions + ")");
+			}
+			if (cycles != other.cycles) {
+				sb.append(" cycles (" + cycles + " / " + other.cycles + ")");
+			}
+			if (pr != other.pr) {
+				sb.append(" pr (" + pr + " / " + other.pr + ")");
+			}
+			final int address = Arrays.mismatch(memory, other.memory);
+			if (address >= 0) {
+				sb.append(String.format(" memory (#%04X)", address));
+			}
+			return sb.toString();
+		}
+	}
+}
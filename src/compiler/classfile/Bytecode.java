@@ -0,0 +1,428 @@
+package compiler.classfile;
+
+import java.util.Arrays;
+
+public class Bytecode {
+
+	/**
+	 * 仕様:
+	 * メソッドの本体 (JVMの命令列) を組み立てる．
+	 * 分岐先はnewLabelで作ったラベルの番号で指定し，markで位置を決める．分岐の変位はtoByteArrayで埋める．
+	 * 分岐の変位は16ビット (goto_wは使わない) で，収まらなければIllegalStateExceptionを投げる．
+	 * 定数やローカル変数の命令は値や番号に応じて短い形 (iconst_0, iload_1など) を選ぶ．
+	 * lineで次の命令からのソースの行番号を指定すると，LineNumberTableに書く．
+	 */
+
+	// 使う命令
+	public static final int ACONST_NULL = 0x01;
+	public static final int ICONST_0 = 0x03;
+	public static final int LCONST_0 = 0x09;
+	public static final int BIPUSH = 0x10;
+	public static final int SIPUSH = 0x11;
+	public static final int LDC = 0x12;
+	public static final int LDC_W = 0x13;
+	public static final int LDC2_W = 0x14;
+	public static final int ILOAD = 0x15;
+	public static final int LLOAD = 0x16;
+	public static final int ALOAD = 0x19;
+	public static final int IALOAD = 0x2E;
+	public static final int BALOAD = 0x33;
+	public static final int CALOAD = 0x34;
+	public static final int SALOAD = 0x35;
+	public static final int ISTORE = 0x36;
+	public static final int LSTORE = 0x37;
+	public static final int ASTORE = 0x3A;
+	public static final int IASTORE = 0x4F;
+	public static final int BASTORE = 0x54;
+	public static final int CASTORE = 0x55;
+	public static final int SASTORE = 0x56;
+	public static final int POP = 0x57;
+	public static final int DUP = 0x59;
+	public static final int DUP_X1 = 0x5A;
+	public static final int DUP2 = 0x5C;
+	public static final int SWAP = 0x5F;
+	public static final int IADD = 0x60;
+	public static final int LADD = 0x61;
+	public static final int ISUB = 0x64;
+	public static final int LSUB = 0x65;
+	public static final int IMUL = 0x68;
+	public static final int IDIV = 0x6C;
+	public static final int IREM = 0x70;
+	public static final int INEG = 0x74;
+	public static final int ISHL = 0x78;
+	public static final int ISHR = 0x7A;
+	public static final int IUSHR = 0x7C;
+	public static final int IAND = 0x7E;
+	public static final int IOR = 0x80;
+	public static final int IXOR = 0x82;
+	public static final int IINC = 0x84;
+	public static final int I2L = 0x85;
+	public static final int L2I = 0x88;
+	public static final int I2B = 0x91;
+	public static final int I2C = 0x92;
+	public static final int I2S = 0x93;
+	public static final int LCMP = 0x94;
+	public static final int IFEQ = 0x99;
+	public static final int IFNE = 0x9A;
+	public static final int IFLT = 0x9B;
+	public static final int IFGE = 0x9C;
+	public static final int IFGT = 0x9D;
+	public static final int IFLE = 0x9E;
+	public static final int IF_ICMPEQ = 0x9F;
+	public static final int IF_ICMPNE = 0xA0;
+	public static final int IF_ICMPLT = 0xA1;
+	public static final int IF_ICMPGE = 0xA2;
+	public static final int IF_ICMPGT = 0xA3;
+	public static final int IF_ICMPLE = 0xA4;
+	public static final int GOTO = 0xA7;
+	public static final int TABLESWITCH = 0xAA;
+	public static final int LOOKUPSWITCH = 0xAB;
+	public static final int IRETURN = 0xAC;
+	public static final int ARETURN = 0xB0;
+	public static final int RETURN = 0xB1;
+	public static final int GETSTATIC = 0xB2;
+	public static final int PUTSTATIC = 0xB3;
+	public static final int GETFIELD = 0xB4;
+	public static final int PUTFIELD = 0xB5;
+	public static final int INVOKEVIRTUAL = 0xB6;
+	public static final int INVOKESPECIAL = 0xB7;
+	public static final int INVOKESTATIC = 0xB8;
+	public static final int INVOKEINTERFACE = 0xB9;
+	public static final int NEW = 0xBB;
+	public static final int NEWARRAY = 0xBC;
+	public static final int ATHROW = 0xBF;
+	public static final int CHECKCAST = 0xC0;
+
+	// newarrayの型
+	public static final int T_CHAR = 5;
+	public static final int T_SHORT = 9;
+	public static final int T_INT = 10;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final ClassFile classFile;
+	private byte[] code;
+	private int size;
+	private int[] labels;
+	private int labelCount;
+	// 分岐の変位を埋める場所: 命令の位置，変位の位置，ラベル，変位の幅 (2か4)
+	private int[] fixups;
+	private int fixupCount;
+	// 行番号の表: 命令の位置と行番号の組
+	private int[] lines;
+	private int lineCount;
+
+	Bytecode(final ClassFile classFile) {
+		this.classFile = classFile;
+		this.code = new byte[INITIAL_CAPACITY];
+		this.size = 0;
+		this.labels = new int[16];
+		this.labelCount = 0;
+		this.fixups = new int[64];
+		this.fixupCount = 0;
+		this.lines = new int[16];
+		this.lineCount = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// ラベル
+
+	public int newLabel() {
+		if (labelCount == labels.length) {
+			labels = Arrays.copyOf(labels, labelCount * 2);
+		}
+		labels[labelCount] = -1;
+		return labelCount++;
+	}
+
+	public void mark(final int label) {
+		labels[label] = size;
+	}
+
+	/**
+	 * 次の命令からのソースの行番号．0なら何もしない．
+	 */
+	public void line(final int line) {
+		if (line == 0 || lineCount > 0 && lines[lineCount - 1] == line) {
+			return;
+		}
+		// 同じ位置に続けて指定したら後のものにする
+		if (lineCount > 0 && lines[lineCount - 2] == size) {
+			lines[lineCount - 1] = line;
+			return;
+		}
+		if (lineCount == lines.length) {
+			lines = Arrays.copyOf(lines, lineCount * 2);
+		}
+		lines[lineCount++] = size;
+		lines[lineCount++] = line;
+	}
+
+	// 命令
+
+	public void op(final int opcode) {
+		u1(opcode);
+	}
+
+	public void iconst(final int value) {
+		if (value >= -1 && value <= 5) {
+			u1(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			u1(BIPUSH);
+			u1(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			u1(SIPUSH);
+			u2(value);
+		} else {
+			ldc(classFile.integer(value));
+		}
+	}
+
+	public void lconst(final long value) {
+		if (value == 0 || value == 1) {
+			u1(LCONST_0 + (int) value);
+		} else {
+			u1(LDC2_W);
+			u2(classFile.longConstant(value));
+		}
+	}
+
+	public void sconst(final String value) {
+		ldc(classFile.string(value));
+	}
+
+	private void ldc(final int index) {
+		if (index <= 0xFF) {
+			u1(LDC);
+			u1(index);
+		} else {
+			u1(LDC_W);
+			u2(index);
+		}
+	}
+
+	public void iload(final int local) {
+		local(ILOAD, 0x1A, local);
+	}
+
+	public void lload(final int local) {
+		local(LLOAD, 0x1E, local);
+	}
+
+	public void aload(final int local) {
+		local(ALOAD, 0x2A, local);
+	}
+
+	public void istore(final int local) {
+		local(ISTORE, 0x3B, local);
+	}
+
+	public void lstore(final int local) {
+		local(LSTORE, 0x3F, local);
+	}
+
+	public void astore(final int local) {
+		local(ASTORE, 0x4B, local);
+	}
+
+	// 番号が0〜3なら短い形 (shortForm + 番号)
+	private void local(final int opcode, final int shortForm, final int local) {
+		if (local <= 3) {
+			u1(shortForm + local);
+		} else if (local <= 0xFF) {
+			u1(opcode);
+			u1(local);
+		} else {
+			u1(0xC4);
+			u1(opcode);
+			u2(local);
+		}
+	}
+
+	public void iinc(final int local, final int amount) {
+		if (local <= 0xFF && amount >= Byte.MIN_VALUE && amount <= Byte.MAX_VALUE) {
+			u1(IINC);
+			u1(local);
+			u1(amount);
+		} else {
+			u1(0xC4);
+			u1(IINC);
+			u2(local);
+			u2(amount);
+		}
+	}
+
+	public void newarray(final int type) {
+		u1(NEWARRAY);
+		u1(type);
+	}
+
+	/**
+	 * NEW, CHECKCASTなどクラスを指す命令．
+	 */
+	public void typeOp(final int opcode, final String className) {
+		u1(opcode);
+		u2(classFile.classRef(className));
+	}
+
+	public void field(final int opcode, final String owner, final String name, final String descriptor) {
+		u1(opcode);
+		u2(classFile.fieldRef(owner, name, descriptor));
+	}
+
+	public void invoke(final int opcode, final String owner, final String name, final String descriptor) {
+		if (opcode == INVOKEINTERFACE) {
+			u1(opcode);
+			u2(classFile.interfaceMethodRef(owner, name, descriptor));
+			u1(argumentSlots(descriptor) + 1);
+			u1(0);
+		} else {
+			u1(opcode);
+			u2(classFile.methodRef(owner, name, descriptor));
+		}
+	}
+
+	// 記述子の引数が占めるスロット数
+	private static int argumentSlots(final String descriptor) {
+		int slots = 0;
+		int i = 1;
+		while (descriptor.charAt(i) != ')') {
+			final char c = descriptor.charAt(i);
+			if (c == 'J' || c == 'D') {
+				slots += 2;
+				i++;
+			} else {
+				slots++;
+				while (descriptor.charAt(i) == '[')
+					i++;
+				if (descriptor.charAt(i) == 'L') {
+					i = descriptor.indexOf(';', i);
+				}
+				i++;
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * 条件分岐 (IFEQ〜IF_ICMPLE) とGOTO．
+	 */
+	public void jump(final int opcode, final int label) {
+		final int at = size;
+		u1(opcode);
+		fixup(at, size, label, 2);
+		u2(0);
+	}
+
+	public void tableswitch(final int low, final int high, final int defaultLabel, final int[] targets) {
+		final int at = size;
+		u1(TABLESWITCH);
+		while (size % 4 != 0)
+			u1(0);
+		fixup(at, size, defaultLabel, 4);
+		u4(0);
+		u4(low);
+		u4(high);
+		int i;
+		for (i = 0; i <= high - low; i++) {
+			fixup(at, size, targets[i], 4);
+			u4(0);
+		}
+	}
+
+	/**
+	 * keysは昇順であること．
+	 */
+	public void lookupswitch(final int defaultLabel, final int[] keys, final int[] targets, final int count) {
+		final int at = size;
+		u1(LOOKUPSWITCH);
+		while (size % 4 != 0)
+			u1(0);
+		fixup(at, size, defaultLabel, 4);
+		u4(0);
+		u4(count);
+		int i;
+		for (i = 0; i < count; i++) {
+			u4(keys[i]);
+			fixup(at, size, targets[i], 4);
+			u4(0);
+		}
+	}
+
+	private void fixup(final int at, final int offset, final int label, final int width) {
+		if (fixupCount + 4 > fixups.length) {
+			fixups = Arrays.copyOf(fixups, fixups.length * 2);
+		}
+		fixups[fixupCount++] = at;
+		fixups[fixupCount++] = offset;
+		fixups[fixupCount++] = label;
+		fixups[fixupCount++] = width;
+	}
+
+	byte[] toByteArray() {
+		int i;
+		for (i = 0; i < fixupCount; i += 4) {
+			final int at = fixups[i];
+			final int offset = fixups[i + 1];
+			final int target = labels[fixups[i + 2]];
+			if (target < 0) {
+				throw new IllegalStateException("unmarked label");
+			}
+			final int delta = target - at;
+			if (fixups[i + 3] == 2) {
+				if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) {
+					throw new IllegalStateException("branch too far");
+				}
+				code[offset] = (byte) (delta >> 8);
+				code[offset + 1] = (byte) delta;
+			} else {
+				code[offset] = (byte) (delta >> 24);
+				code[offset + 1] = (byte) (delta >> 16);
+				code[offset + 2] = (byte) (delta >> 8);
+				code[offset + 3] = (byte) delta;
+			}
+		}
+		if (size > 0xFFFF) {
+			throw new IllegalStateException("method too large");
+		}
+		return Arrays.copyOf(code, size);
+	}
+
+	/**
+	 * 行番号の表の項目数．
+	 */
+	int lineNumberCount() {
+		return lineCount / 2;
+	}
+
+	/**
+	 * i番目の項目の命令の位置と行番号．
+	 */
+	int lineNumberPc(final int i) {
+		return lines[2 * i];
+	}
+
+	int lineNumber(final int i) {
+		return lines[2 * i + 1];
+	}
+
+	private void u1(final int b) {
+		if (size == code.length) {
+			code = Arrays.copyOf(code, size * 2);
+		}
+		code[size++] = (byte) b;
+	}
+
+	private void u2(final int v) {
+		u1(v >> 8);
+		u1(v);
+	}
+
+	private void u4(final int v) {
+		u2(v >> 16);
+		u2(v);
+	}
+}
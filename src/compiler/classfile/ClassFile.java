@@ -0,0 +1,305 @@
+package compiler.classfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ClassFile {
+
+	/**
+	 * 仕様:
+	 * JVMのクラスファイルを組み立ててバイト列にする．
+	 * 版は49 (Java 5) とし，StackMapTableを書かない (読み込むJVMは型推論で検証する)．
+	 * 定数プールの項目は同じものを一度だけ置く．メソッドの本体はBytecodeで組み立てる．
+	 * maxStackとmaxLocalsは呼び出し側が与える (多めでよい)．
+	 * Bytecodeに行番号を指定したメソッドにはLineNumberTableを付ける．
+	 */
+
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_PRIVATE = 0x0002;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int VERSION = 49;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private static final class Member {
+		final int access;
+		final int name;
+		final int descriptor;
+		final Bytecode code;
+		final int maxStack;
+		final int maxLocals;
+
+		Member(int access, int name, int descriptor, Bytecode code, int maxStack, int maxLocals) {
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.code = code;
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+	}
+
+	private final String name;
+	private final ByteArrayOutputStream poolBytes;
+	private final DataOutputStream pool;
+	private final Map<String, Integer> constants;
+	private int poolCount;
+	private final int access;
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+	private final List<Member> fields;
+	private final List<Member> methods;
+
+	/**
+	 * nameなどのクラス名は内部形式 ("compiler/casl/Machine")．
+	 */
+	public ClassFile(final int access, final String name, final String superName, final String... interfaceNames) {
+		this.name = name;
+		this.poolBytes = new ByteArrayOutputStream();
+		this.pool = new DataOutputStream(poolBytes);
+		this.constants = new HashMap<String, Integer>();
+		this.poolCount = 1;
+		this.access = access | ACC_SUPER;
+		this.thisClass = classRef(name);
+		this.superClass = classRef(superName);
+		this.interfaces = new int[interfaceNames.length];
+		int i;
+		for (i = 0; i < interfaceNames.length; i++)
+			this.interfaces[i] = classRef(interfaceNames[i]);
+		this.fields = new ArrayList<Member>();
+		this.methods = new ArrayList<Member>();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	// 定数プール
+
+	public int utf8(final String s) {
+		final Integer index = constants.get("U" + s);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(CONSTANT_UTF8);
+			pool.writeUTF(s);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return define("U" + s, 1);
+	}
+
+	public int classRef(final String className) {
+		return reference("C" + className, CONSTANT_CLASS, utf8(className));
+	}
+
+	public int string(final String s) {
+		return reference("S" + s, CONSTANT_STRING, utf8(s));
+	}
+
+	public int integer(final int value) {
+		final Integer index = constants.get("I" + value);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(CONSTANT_INTEGER);
+			pool.writeInt(value);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return define("I" + value, 1);
+	}
+
+	public int longConstant(final long value) {
+		final Integer index = constants.get("J" + value);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(CONSTANT_LONG);
+			pool.writeLong(value);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return define("J" + value, 2);
+	}
+
+	public int fieldRef(final String owner, final String fieldName, final String descriptor) {
+		return member("F", CONSTANT_FIELDREF, owner, fieldName, descriptor);
+	}
+
+	public int methodRef(final String owner, final String methodName, final String descriptor) {
+		return member("M", CONSTANT_METHODREF, owner, methodName, descriptor);
+	}
+
+	public int interfaceMethodRef(final String owner, final String methodName, final String descriptor) {
+		return member("N", CONSTANT_INTERFACE_METHODREF, owner, methodName, descriptor);
+	}
+
+	private int member(final String kind, final int tag, final String owner, final String memberName,
+			final String descriptor) {
+		final String key = kind + owner + "." + memberName + ":" + descriptor;
+		final Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		final int c = classRef(owner);
+		final int nt = nameAndType(memberName, descriptor);
+		try {
+			pool.writeByte(tag);
+			pool.writeShort(c);
+			pool.writeShort(nt);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return define(key, 1);
+	}
+
+	private int nameAndType(final String memberName, final String descriptor) {
+		final String key = "T" + memberName + ":" + descriptor;
+		final Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		final int n = utf8(memberName);
+		final int d = utf8(descriptor);
+		try {
+			pool.writeByte(CONSTANT_NAME_AND_TYPE);
+			pool.writeShort(n);
+			pool.writeShort(d);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return define(key, 1);
+	}
+
+	private int reference(final String key, final int tag, final int target) {
+		final Integer index = constants.get(key);
+		if (index != null) {
+			return index;
+		}
+		try {
+			pool.writeByte(tag);
+			pool.writeShort(target);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return define(key, 1);
+	}
+
+	private int define(final String key, final int slots) {
+		final int index = poolCount;
+		poolCount += slots;
+		if (poolCount > 0xFFFF) {
+			throw new IllegalStateException("constant pool overflow");
+		}
+		constants.put(key, index);
+		return index;
+	}
+
+	// フィールドとメソッド
+
+	public void addField(final int fieldAccess, final String fieldName, final String descriptor) {
+		fields.add(new Member(fieldAccess, utf8(fieldName), utf8(descriptor), null, 0, 0));
+	}
+
+	/**
+	 * メソッドを加える．本体のBytecodeはこのClassFileで作ったもの．
+	 */
+	public void addMethod(final int methodAccess, final String methodName, final String descriptor,
+			final Bytecode code, final int maxStack, final int maxLocals) {
+		methods.add(new Member(methodAccess, utf8(methodName), utf8(descriptor), code, maxStack, maxLocals));
+	}
+
+	public Bytecode newBytecode() {
+		return new Bytecode(this);
+	}
+
+	public byte[] toByteArray() {
+		final int codeName = utf8("Code");
+		int lineNumberName = 0;
+		for (final Member method : methods) {
+			if (method.code.lineNumberCount() > 0) {
+				lineNumberName = utf8("LineNumberTable");
+			}
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(0);
+			out.writeShort(VERSION);
+			out.writeShort(poolCount);
+			pool.flush();
+			poolBytes.writeTo(out);
+			out.writeShort(access);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.length);
+			for (final int i : interfaces) {
+				out.writeShort(i);
+			}
+			out.writeShort(fields.size());
+			for (final Member field : fields) {
+				out.writeShort(field.access);
+				out.writeShort(field.name);
+				out.writeShort(field.descriptor);
+				out.writeShort(0);
+			}
+			out.writeShort(methods.size());
+			for (final Member method : methods) {
+				out.writeShort(method.access);
+				out.writeShort(method.name);
+				out.writeShort(method.descriptor);
+				out.writeShort(1);
+				final byte[] code = method.code.toByteArray();
+				final int lineCount = method.code.lineNumberCount();
+				final int lineTableLength = lineCount > 0 ? 6 + 2 + 4 * lineCount : 0;
+				out.writeShort(codeName);
+				out.writeInt(12 + code.length + lineTableLength);
+				out.writeShort(method.maxStack);
+				out.writeShort(method.maxLocals);
+				out.writeInt(code.length);
+				out.write(code);
+				out.writeShort(0);
+				if (lineCount > 0) {
+					out.writeShort(1);
+					out.writeShort(lineNumberName);
+					out.writeInt(2 + 4 * lineCount);
+					out.writeShort(lineCount);
+					int i;
+					for (i = 0; i < lineCount; i++) {
+						out.writeShort(method.code.lineNumberPc(i));
+						out.writeShort(method.code.lineNumber(i));
+					}
+				} else {
+					out.writeShort(0);
+				}
+			}
+			out.writeShort(0);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -1,22 +1,104 @@
 package compiler.compiler;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
 
 import compiler.compiler.ast.AST;
 import compiler.compiler.cas.CaslSubroutine;
+import compiler.compiler.cas.ChannelSink;
+import compiler.compiler.cas.CodeSink;
+import compiler.compiler.cas.PeepholeOptimizer;
+import compiler.compiler.cas.SourceMap;
 import compiler.compiler.exception.SemanticException;
 import compiler.compiler.exception.SyntaxException;
+import compiler.compiler.jvm.JvmLauncher;
+import compiler.compiler.visitor.ConstantFoldingVisitor;
+import compiler.compiler.visitor.DeadCodeEliminationVisitor;
 import compiler.compiler.visitor.GenerateCsal2CodeVisitor;
+import compiler.compiler.visitor.GenerateJvmCodeVisitor;
 import compiler.compiler.visitor.SemanticErrorCheckVisitor;
+import compiler.lexer.BinaryTokenFile;
+import compiler.lexer.TokenScanner;
 
 public class Compiler {
-	
+	private Set<PeepholeOptimizer.Rule> peephole = EnumSet.noneOf(PeepholeOptimizer.Rule.class);
+	private boolean registerAllocation = false;
+	private boolean branchFusion = false;
+	private boolean strengthReduction = false;
+	private boolean constantFolding = false;
+	private boolean deadCodeElimination = false;
+	private boolean shortCircuit = false;
+	private boolean sourceMap = false;
+	private boolean lineComments = false;
+	private String tokenFileName = null;
+
+	/**
+	 * 仕様: 最適化の段階を指定する．覗き穴最適化の規則はこのあとsetPeepholeで指定し直せる．
+	 *   0 式を実行時スタックで評価し，覗き穴最適化をしない (既定)
+	 *   1 式を実行時スタックで評価し，if/whileの条件の比較は分岐に融合する．定数による乗除算はシフトと加減算にする．
+	 *     コード生成の前にASTの定数を畳み込み，使われない手続き・変数と到達しない文を取り除く．覗き穴最適化の全規則をかける
+	 *   2 1に加えて式を汎用レジスタで評価する
+	 */
+	public void setOptimizationLevel(final int level) {
+		if (level >= 1) {
+			this.peephole = EnumSet.allOf(PeepholeOptimizer.Rule.class);
+		} else {
+			this.peephole = EnumSet.noneOf(PeepholeOptimizer.Rule.class);
+		}
+		this.branchFusion = level >= 1;
+		this.strengthReduction = level >= 1;
+		this.constantFolding = level >= 1;
+		this.deadCodeElimination = level >= 1;
+		this.registerAllocation = level >= 2;
+	}
+
+	/**
+	 * 仕様: if/whileの条件式のand/or/notを短絡評価する．
+	 * 左の被演算子で結果が決まれば右の被演算子は評価しない．and/orの結果は値として評価する場合 (真#0000/偽#FFFFのAND/OR) と同じ．
+	 */
+	public void setShortCircuit(final boolean shortCircuit) {
+		this.shortCircuit = shortCircuit;
+	}
+
+	/**
+	 * 仕様: casファイルと並べて，casの行とpasファイルの行・手続きの対応をmapファイル (SourceMap) に書き出す．
+	 */
+	public void setSourceMap(final boolean sourceMap) {
+		this.sourceMap = sourceMap;
+	}
+
+	/**
+	 * 仕様: casファイルの命令の行の末尾に，その命令を生成したpasファイルの行番号を注釈 ("; line 12") として書く．
+	 */
+	public void setLineComments(final boolean lineComments) {
+		this.lineComments = lineComments;
+	}
+
+	/**
+	 * 仕様: runFromSourceで，字句解析したトークン列をデバッグ用にtsファイルにも書き出す (nullなら書き出さない)．
+	 */
+	public void setTokenFile(final String tokenFileName) {
+		this.tokenFileName = tokenFileName;
+	}
+
+	/**
+	 * 仕様: 生成したCASL IIプログラムに適用する覗き穴最適化の規則を指定する．空集合なら最適化しない．
+	 */
+	public void setPeephole(final Set<PeepholeOptimizer.Rule> rules) {
+		this.peephole = EnumSet.noneOf(PeepholeOptimizer.Rule.class);
+		this.peephole.addAll(rules);
+	}
+
 	/**
 	 * 仕様: 第一引数で指定されたtsファイルを読み込み，CASL IIプログラムにコンパイルする．
+	 * 入力ファイルがtsb形式(BinaryTokenFile)の場合はそのまま読み込む．
 	 * コンパイル結果のCASLIIプログラムは第二引数で指定されたcasファイルに書き出す．
 	 * 構文的・意味的に正しい場合は標準出力に"OK"を出力する．
 	 * 構文的もしくは意味的なエラーを発見した場合は標準エラーにエラーメッセージを出力する．
@@ -30,38 +112,139 @@ public class Compiler {
 	 * ex: new Compiler().run("data/ts/in.ts", "tmp/out.cas");
 	 */
 	public void run(final String inputFileName, final String outputFileName) {
-		List<String> textList = null;
+		Tokens tokens;
 		try {
-			textList = Files.readAllLines(Paths.get(inputFileName));
+			final Path inputPath = Paths.get(inputFileName);
+			if (BinaryTokenFile.isBinaryFile(inputPath)) {
+				tokens = new Tokens(BinaryTokenFile.read(inputPath));
+			} else {
+				tokens = new Tokens(Files.readAllLines(inputPath));
+			}
 		} catch (final IOException e) {
 			fileError();
 			return;
 		}
 
-		Tokens tokens = new Tokens(textList);
+		compile(tokens, outputFileName);
+	}
+
+	/**
+	 * 仕様: 第一引数で指定されたpasファイルを字句解析しながら構文解析し，CASL IIプログラムにコンパイルする．
+	 * トークン列はLexerTokenSourceからParserが直接読み込み，tsファイルはsetTokenFileを指定した場合だけ書き出す．
+	 * 字句的に正しい場合は標準出力に"OK"を出力し，字句エラーを発見した場合はLexerと同じメッセージを標準エラーに出力する．
+	 * この出力は構文・意味のエラーのメッセージより先に行う (LexerのあとにCompilerを実行した場合と同じ順)．
+	 * 字句エラーがあればその手前までのトークン列を解析する．それ以外の出力はrunと同じ．
+	 *
+	 * @param inputFileName  入力pasファイル名
+	 * @param outputFileName 出力casファイル名
+	 * ex: new Compiler().runFromSource("data/pas/in.pas", "tmp/out.cas");
+	 */
+	public void runFromSource(final String inputFileName, final String outputFileName) {
+		final MappedByteBuffer text = mapSource(inputFileName);
+		if (text == null) {
+			return;
+		}
+
+		final LexerTokenSource tokens = new LexerTokenSource(new TokenScanner(text));
+		tokens.setPrintOk(true);
+		if (tokenFileName != null) {
+			tokens.setTokenFile(tokenFileName);
+		}
+		compile(tokens, outputFileName);
+		tokens.finish();
+	}
+
+	/**
+	 * 仕様: 第一引数で指定されたpasファイルをrunFromSourceと同じく解析し，CASL IIプログラムの代わりにJVMのクラス
+	 * (GenerateJvmCodeVisitor) にコンパイルして，このプロセスで実行する (JvmLauncher)．
+	 * 入力は標準入力から読み，出力は標準出力に書く．エラーのメッセージはrunFromSourceと同じだが，"OK"は出力しない．
+	 * 最適化の段階のうちASTの定数の畳み込みと不要なコードの除去だけを行い，ほかはJVMの実行時コンパイラに任せる．
+	 *
+	 * @param inputFileName 入力pasファイル名
+	 * ex: new Compiler().runOnJvm("data/pas/in.pas");
+	 */
+	public void runOnJvm(final String inputFileName) {
+		final MappedByteBuffer text = mapSource(inputFileName);
+		if (text == null) {
+			return;
+		}
+
+		final LexerTokenSource tokens = new LexerTokenSource(new TokenScanner(text));
+		final AST ast = analyze(tokens);
+		if (!tokens.finish() || ast == null) {
+			return;
+		}
+
+		final GenerateJvmCodeVisitor generator = new GenerateJvmCodeVisitor();
+		generator.setShortCircuit(shortCircuit);
+		ast.accept(generator);
+		JvmLauncher.run(generator.getClassName(), generator.toByteArray());
+	}
+
+	private MappedByteBuffer mapSource(final String inputFileName) {
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFileName), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (final IOException e) {
+			fileError();
+			return null;
+		}
+	}
 
+	// 構文解析・意味解析とASTの最適化．エラーならメッセージを出力してnullを返す
+	private AST analyze(final TokenSource tokens) {
 		AST ast;
 		try {
-			ast = new AST(new Parser(tokens).run());
+			ast = new Parser(tokens).run();
 		} catch (SyntaxException e) {
+			tokens.finish();
 			System.err.println(e.getMessage());
-			return;
+			return null;
 		}
 
 		// Parser
 		try {
-			ast.getRoot().accept(new SemanticErrorCheckVisitor());
+			ast.accept(new SemanticErrorCheckVisitor());
 		} catch (SemanticException e) {
+			tokens.finish();
 			System.err.println(e.getMessage());
+			return null;
+		}
+
+		if (constantFolding) {
+			ast.accept(new ConstantFoldingVisitor());
+		}
+		if (deadCodeElimination) {
+			ast.accept(new DeadCodeEliminationVisitor());
+		}
+		return ast;
+	}
+
+	private void compile(final TokenSource tokens, final String outputFileName) {
+		final AST ast = analyze(tokens);
+		if (ast == null) {
 			return;
 		}
 
 		// Compiler
 		try {
-			PrintWriter pw = new PrintWriter(outputFileName);
-			ast.getRoot().accept(new GenerateCsal2CodeVisitor(pw));
-			pw.close();
-			CaslSubroutine.appendLibcas(outputFileName);
+			GenerateCsal2CodeVisitor generator;
+			try (CodeSink sink = ChannelSink.open(Paths.get(outputFileName))) {
+				generator = new GenerateCsal2CodeVisitor(sink);
+				generator.setRegisterAllocation(registerAllocation);
+				generator.setBranchFusion(branchFusion);
+				generator.setStrengthReduction(strengthReduction);
+				generator.setShortCircuit(shortCircuit);
+				generator.setLineComments(lineComments);
+				if (!peephole.isEmpty()) {
+					generator.setOptimizer(new PeepholeOptimizer(peephole));
+				}
+				ast.accept(generator);
+			}
+			CaslSubroutine.appendLibcas(outputFileName, generator.getCode());
+			if (sourceMap) {
+				SourceMap.of(generator.getCode(), generator.getProgramName(), generator.getProcedureNames())
+						.write(Paths.get(SourceMap.fileName(outputFileName)));
+			}
 		} catch (final IOException e) {
 			System.out.println(e);
 			return;
@@ -0,0 +1,67 @@
+package compiler.compiler;
+
+import java.util.Arrays;
+
+class LexemePool {
+
+	/**
+	 * 仕様:
+	 * トークンの字面を重複なく保持し，添字で参照できるようにする．
+	 * 文字範囲をキーとするオープンアドレス法のハッシュ表で，既出の字面はStringを生成しない．
+	 */
+
+	private String[] pool;
+	private int size;
+	private int[] table;
+
+	LexemePool() {
+		this.pool = new String[64];
+		this.size = 0;
+		this.table = new int[256];
+	}
+
+	int intern(final String text, final int beginPoint, final int endPoint) {
+		final int length = endPoint - beginPoint;
+		int mask = table.length - 1;
+		int slot = hash(text, beginPoint, endPoint) & mask;
+		while (table[slot] != 0) {
+			final String s = pool[table[slot] - 1];
+			if (s.length() == length && s.regionMatches(0, text, beginPoint, length)) {
+				return table[slot] - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == pool.length) {
+			pool = Arrays.copyOf(pool, size * 2);
+		}
+		pool[size] = text.substring(beginPoint, endPoint);
+		size++;
+		table[slot] = size;
+
+		if (size * 2 > table.length) {
+			table = new int[table.length * 2];
+			mask = table.length - 1;
+			int i;
+			for (i = 0; i < size; i++) {
+				int s = hash(pool[i], 0, pool[i].length()) & mask;
+				while (table[s] != 0)
+					s = (s + 1) & mask;
+				table[s] = i + 1;
+			}
+		}
+		return size - 1;
+	}
+
+	String[] toArray() {
+		return Arrays.copyOf(pool, size);
+	}
+
+	private static int hash(final String text, final int beginPoint, final int endPoint) {
+		int h = 0;
+		int i;
+		for (i = beginPoint; i < endPoint; i++)
+			h = 31 * h + text.charAt(i);
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,177 @@
+package compiler.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import compiler.lexer.BinaryTokenFile;
+import compiler.lexer.LexicalException;
+import compiler.lexer.TokenBuffer;
+import compiler.lexer.TokenKind;
+import compiler.lexer.TokenScanner;
+
+public class LexerTokenSource implements TokenSource {
+
+	/**
+	 * 仕様:
+	 * TokenScannerからParserの要求に応じてトークンを切り出す．
+	 * 現在のトークンと先読みの二トークンだけを環状バッファに保持し，tsファイルは介さない．
+	 * 字句エラーを見つけたらそこでトークン列を終える (Lexerが途中まで書いたtsファイルを読んだ場合と同じ)．
+	 * 字句解析の結果 (字句エラーのメッセージか"OK") はfinishで出力する．
+	 * setTokenFileを指定した場合だけ，切り出したトークンをTokenBufferにも記録し，finishでtsファイルに書き出す．
+	 */
+
+	private static final int RING = 4;
+
+	private final TokenScanner scanner;
+	private final int[] offset;
+	private final int[] length;
+	private final int[] kind;
+	private final int[] line;
+	private int ip;
+	private int scanned;
+	private boolean eof;
+	private LexicalException error;
+	private boolean printOk;
+	private String tokenFileName;
+	private TokenBuffer tokens;
+	private boolean finished;
+
+	public LexerTokenSource(TokenScanner scanner) {
+		this.scanner = scanner;
+		this.offset = new int[RING];
+		this.length = new int[RING];
+		this.kind = new int[RING];
+		this.line = new int[RING];
+		this.ip = -1;
+		this.scanned = 0;
+		this.eof = false;
+		this.error = null;
+		this.printOk = false;
+		this.tokenFileName = null;
+		this.tokens = null;
+		this.finished = false;
+	}
+
+	/**
+	 * 字句的に正しい場合にfinishで標準出力に"OK"を出力する．
+	 */
+	public void setPrintOk(boolean printOk) {
+		this.printOk = printOk;
+	}
+
+	/**
+	 * 切り出したトークンをfinishでLexerと同じ形式のtsファイルに書き出す (拡張子が.tsbならBinaryTokenFile)．
+	 */
+	public void setTokenFile(String fileName) {
+		this.tokenFileName = fileName;
+		this.tokens = new TokenBuffer(scanner.getSource());
+	}
+
+	private boolean fill(int i) {
+		while (scanned <= i && !eof) {
+			boolean next;
+			try {
+				next = scanner.next();
+			} catch (LexicalException e) {
+				error = e;
+				next = false;
+			}
+			if (next) {
+				int slot = scanned & (RING - 1);
+				offset[slot] = scanner.getOffset();
+				length[slot] = scanner.getLength();
+				kind[slot] = scanner.getKind();
+				line[slot] = scanner.getLine();
+				if (tokens != null) {
+					tokens.add(offset[slot], length[slot], kind[slot], line[slot]);
+				}
+				scanned++;
+			} else {
+				eof = true;
+			}
+		}
+		return i < scanned;
+	}
+
+	private TokenKind kindAt(int i) {
+		if (!fill(i)) {
+			return TokenKind.EOF;
+		}
+		return TokenKind.of(kind[i & (RING - 1)]);
+	}
+
+	// トークン列の末尾を越えた位置では最後のトークンの字面と行番号を返す
+	private int current() {
+		return (ip < scanned ? ip : scanned - 1) & (RING - 1);
+	}
+
+	public TokenKind getNextKind() {
+		ip++;
+		return kindAt(ip);
+	}
+
+	public TokenKind lookAheadOneKind() {
+		return kindAt(ip + 1);
+	}
+
+	public TokenKind lookAheadTwoKind() {
+		return kindAt(ip + 2);
+	}
+
+	public String getSourceName() {
+		if (scanned == 0) {
+			return "";
+		}
+		int slot = current();
+		byte[] bytes = new byte[length[slot]];
+		scanner.getSource().get(offset[slot], bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public int getLine() {
+		if (scanned == 0) {
+			return 0;
+		}
+		return line[current()];
+	}
+
+	/**
+	 * 残りのソースを最後まで走査し，字句エラーがあればLexerと同じメッセージを標準エラーに，
+	 * なければ (setPrintOkを指定した場合) "OK"を標準出力に出力する．出力は最初の呼び出しでだけ行う．
+	 * 字句的に正しければtrueを返す．
+	 */
+	public boolean finish() {
+		while (!eof) {
+			fill(scanned);
+		}
+		if (!finished) {
+			finished = true;
+			if (tokens != null && !writeTokens()) {
+				return error == null;
+			}
+			if (error != null) {
+				System.err.println(error.getMessage());
+			} else if (printOk) {
+				System.out.println("OK");
+			}
+		}
+		return error == null;
+	}
+
+	private boolean writeTokens() {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tokenFileName), 1 << 16)) {
+			if (tokenFileName.endsWith(".tsb")) {
+				BinaryTokenFile.write(tokens, out);
+			} else {
+				tokens.writeText(out);
+			}
+		} catch (IOException e) {
+			System.err.println("File not found");
+			return false;
+		}
+		return true;
+	}
+}
@@ -1,297 +1,311 @@
 package compiler.compiler;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.Set;
 
-import compiler.compiler.ast.ASTNode;
+import compiler.compiler.ast.AST;
+import compiler.compiler.ast.NodeKind;
 import compiler.compiler.exception.SyntaxException;
+import compiler.lexer.TokenKind;
 
 public class Parser {
-	private Tokens tokens;
-	static final List<String> firstOfStatement = Arrays.asList("SIF", "SWHILE", "SIDENTIFIER", "SREADLN", "SWRITELN",
-			"SBEGIN");
-	public static final List<String> firstOfRelationalOperator = Arrays.asList("SEQUAL", "SNOTEQUAL", "SLESS",
-			"SLESSEQUAL", "SGREAT", "SGREATEQUAL");
-	public static final List<String> firstOfPlusOrMinusSign = Arrays.asList("SPLUS", "SMINUS");
-	public static final List<String> firstOfBasicStatement = Arrays.asList("SIDENTIFIER", "SREADLN", "SWRITELN",
-			"SBEGIN");
-	public static final List<String> firstOfAdditiveOperator = Arrays.asList("SPLUS", "SMINUS", "SOR");
-	public static final List<String> firstOfMultiplicativeOperator = Arrays.asList("SSTAR", "SDIVD", "SMOD", "SAND");
-	public static final List<String> firstOfConstant = Arrays.asList("SCONSTANT", "SSTRING", "SFALSE", "STRUE");
-
-	public Parser(Tokens tokens) {
+	private TokenSource tokens;
+	private AST ast;
+	static final Set<TokenKind> firstOfStatement = EnumSet.of(TokenKind.SIF, TokenKind.SWHILE,
+			TokenKind.SIDENTIFIER, TokenKind.SREADLN, TokenKind.SWRITELN, TokenKind.SBEGIN);
+	public static final Set<TokenKind> firstOfRelationalOperator = EnumSet.of(TokenKind.SEQUAL,
+			TokenKind.SNOTEQUAL, TokenKind.SLESS, TokenKind.SLESSEQUAL, TokenKind.SGREAT, TokenKind.SGREATEQUAL);
+	public static final Set<TokenKind> firstOfPlusOrMinusSign = EnumSet.of(TokenKind.SPLUS, TokenKind.SMINUS);
+	public static final Set<TokenKind> firstOfBasicStatement = EnumSet.of(TokenKind.SIDENTIFIER,
+			TokenKind.SREADLN, TokenKind.SWRITELN, TokenKind.SBEGIN);
+	public static final Set<TokenKind> firstOfAdditiveOperator = EnumSet.of(TokenKind.SPLUS, TokenKind.SMINUS,
+			TokenKind.SOR);
+	public static final Set<TokenKind> firstOfMultiplicativeOperator = EnumSet.of(TokenKind.SSTAR,
+			TokenKind.SDIVD, TokenKind.SMOD, TokenKind.SAND);
+	public static final Set<TokenKind> firstOfConstant = EnumSet.of(TokenKind.SCONSTANT, TokenKind.SSTRING,
+			TokenKind.SFALSE, TokenKind.STRUE);
+
+	public Parser(TokenSource tokens) {
 		this.tokens = tokens;
+		this.ast = new AST();
 	}
 
 	private void syntaxError() {
 		throw new SyntaxException("Syntax error: line " + tokens.getLineNumber());
 	}
 
-	public ASTNode run() {
-		return program();
+	public AST run() {
+		ast.setRoot(program());
+		return ast;
 	}
 
-	private ASTNode program() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	// markより上に積んだ子が0個ならNONE，1個ならその子，2個以上ならkの節点にまとめる
+	private int group(int mark, NodeKind k) {
+		int n;
+		if (ast.count(mark) == 0) {
+			n = AST.NONE;
+		} else if (ast.count(mark) == 1) {
+			n = ast.get(mark, 0);
+			ast.reset(mark);
+		} else {
+			n = ast.add(k);
+			ast.setChildren(n, mark);
+		}
+		return n;
+	}
+
+	private void setChild(int n, int child) {
+		int mark = ast.mark();
+		ast.push(child);
+		ast.setChildren(n, mark);
+	}
+
+	private int node(NodeKind k, int child) {
+		int n = ast.add(k);
+		setChild(n, child);
+		return n;
+	}
+
+	private int newNode(NodeKind k) {
+		return ast.add(k, tokens.getSourceName(), tokens.getLine());
+	}
+
+	// 名前の並び(groupKindの節点または名前一つ)をそれぞれdeclKindの節点にしてtypeを子とし，スタックに積む
+	// 型の部分木は名前ごとに複製する
+	private void declare(int names, NodeKind groupKind, NodeKind declKind, int type) {
+		if (ast.getKind(names) == groupKind) {
+			boolean shared = false;
+			int t = ast.getFirstChild(names);
+			while (t != AST.NONE) {
+				int next = ast.getNextSibling(t);
+				ast.setKind(t, declKind);
+				setChild(t, shared ? ast.copy(type) : type);
+				ast.push(t);
+				shared = true;
+				t = next;
+			}
+		} else {
+			ast.setKind(names, declKind);
+			setChild(names, type);
+			ast.push(names);
+		}
+	}
+
+	private int program() {
+		int mark = ast.mark();
 
-		if (!tokens.getNext().equals("SPROGRAM")) {
+		if (tokens.getNextKind() != TokenKind.SPROGRAM) {
 			syntaxError();
 		}
 
-		ASTNode n1 = programName();
-		children.add(n1);
+		int n1 = programName();
+		ast.push(n1);
 
-		if (!tokens.getNext().equals("SSEMICOLON")) {
+		if (tokens.getNextKind() != TokenKind.SSEMICOLON) {
 			syntaxError();
 		}
 
-		ASTNode n2 = block();
-		if (n2 != null)
-			children.add(n2);
+		int n2 = block();
+		if (n2 != AST.NONE)
+			ast.push(n2);
 
-		ASTNode n3 = complexStatement();
-		children.add(n3);
+		int n3 = complexStatement();
+		ast.push(n3);
 
-		if (!tokens.getNext().equals("SDOT")) {
+		if (tokens.getNextKind() != TokenKind.SDOT) {
 			syntaxError();
 		}
 
-		ASTNode n = new ASTNode("Program", children);
+		int n = ast.add(NodeKind.PROGRAM);
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	public ASTNode programName() {
-		ASTNode n = name();
-		n.setLabel("ProgramName");
+	public int programName() {
+		int n = name();
+		ast.setKind(n, NodeKind.PROGRAM_NAME);
 		return n;
 	}
 
-	public ASTNode block() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int block() {
+		int mark = ast.mark();
 
-		ASTNode n1 = variableDeclaration();
-		if (n1 != null) {
-			children.add(n1);
+		int n1 = variableDeclaration();
+		if (n1 != AST.NONE) {
+			ast.push(n1);
 		}
 
-		ASTNode n2 = subprogramDeclarationGroup();
-		if (n2 != null)
-			children.add(n2);
+		int n2 = subprogramDeclarationGroup();
+		if (n2 != AST.NONE)
+			ast.push(n2);
 
-		ASTNode n;
-		if (children.size() == 0) {
-			n = null;
-		} else if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("Block", children);
-		}
-		return n;
+		return group(mark, NodeKind.BLOCK);
 	}
 
-	public ASTNode variableDeclaration() {
-		ASTNode n;
-		if (tokens.lookAheadOne().equals("SVAR")) {
-			if (!tokens.getNext().equals("SVAR")) {
+	public int variableDeclaration() {
+		int n;
+		if (tokens.lookAheadOneKind() == TokenKind.SVAR) {
+			if (tokens.getNextKind() != TokenKind.SVAR) {
 				syntaxError();
 			}
 
 			n = rowOfVariableDeclaration();
 
 		} else {
-			n = null;
+			n = AST.NONE;
 		}
 
 		return n;
 	}
 
-	public ASTNode rowOfVariableDeclaration() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int rowOfVariableDeclaration() {
+		int mark = ast.mark();
 		do {
-			List<ASTNode> children1 = new ArrayList<ASTNode>();
+			int n1 = rowOfVariableName();
 
-			ASTNode n1 = rowOfVariableName();
-
-			if (!tokens.getNext().equals("SCOLON")) {
+			if (tokens.getNextKind() != TokenKind.SCOLON) {
 				syntaxError();
 			}
 
-			ASTNode n2 = type();
-			children1.add(n2);
+			int n2 = type();
 
-			if (!tokens.getNext().equals("SSEMICOLON")) {
+			if (tokens.getNextKind() != TokenKind.SSEMICOLON) {
 				syntaxError();
 			}
 
-			ASTNode n3;
-			if (n1.getLabel().equals("VariableNames")) {
-				int i;
-				for (i = 0; i < n1.getChildren().size(); i++) {
-					ASTNode t = n1.getChildren().get(i);
-					t.setLabel("VariableDeclarator");
-					t.setChildren(children1);
-					children.add(t);
-				}
-			} else {
-				n3 = n1;
-				n3.setLabel("VariableDeclarator");
-				n3.setChildren(children1);
-				children.add(n3);
-			}
-		} while (tokens.lookAheadOne().equals("SIDENTIFIER"));
+			declare(n1, NodeKind.VARIABLE_NAMES, NodeKind.VARIABLE_DECLARATOR, n2);
+		} while (tokens.lookAheadOneKind() == TokenKind.SIDENTIFIER);
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("VariableDeclaration", children);
-		}
-		return n;
+		return group(mark, NodeKind.VARIABLE_DECLARATION);
 	}
 
-	public ASTNode rowOfVariableName() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int rowOfVariableName() {
+		int mark = ast.mark();
 
-		ASTNode n1 = variableName();
-		children.add(n1);
+		int n1 = variableName();
+		ast.push(n1);
 
-		while (tokens.lookAheadOne().equals("SCOMMA")) {
-			if (!tokens.getNext().equals("SCOMMA")) {
+		while (tokens.lookAheadOneKind() == TokenKind.SCOMMA) {
+			if (tokens.getNextKind() != TokenKind.SCOMMA) {
 				syntaxError();
 			}
 
-			ASTNode n2 = variableName();
-			children.add(n2);
+			int n2 = variableName();
+			ast.push(n2);
 		}
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("VariableNames", children);
-		}
-		return n;
+		return group(mark, NodeKind.VARIABLE_NAMES);
 	}
 
-	public ASTNode variableName() {
-		ASTNode n = name();
-		n.setLabel("VariableName");
+	public int variableName() {
+		int n = name();
+		ast.setKind(n, NodeKind.VARIABLE_NAME);
 		return n;
 
 	}
 
-	public ASTNode type() {
-		ASTNode n;
-		switch (tokens.lookAheadOne()) {
-		case "SINTEGER":
-		case "SCHAR":
-		case "SBOOLEAN":
+	public int type() {
+		int n;
+		switch (tokens.lookAheadOneKind()) {
+		case SINTEGER:
+		case SCHAR:
+		case SBOOLEAN:
 			n = standardType();
 			break;
-		case "SARRAY":
+		case SARRAY:
 			n = arrayType();
 			break;
 		default:
-			n = null;
+			n = AST.NONE;
 			syntaxError();
 		}
 		return n;
 	}
 
-	public ASTNode standardType() {
-		ASTNode n;
-		switch (tokens.getNext()) {
-		case "SINTEGER":
-			n = new ASTNode("StandardType", tokens.getSourceName(), tokens.getLineNumber(), null);
-			break;
-		case "SCHAR":
-			n = new ASTNode("StandardType", tokens.getSourceName(), tokens.getLineNumber(), null);
-			break;
-		case "SBOOLEAN":
-			n = new ASTNode("StandardType", tokens.getSourceName(), tokens.getLineNumber(), null);
+	public int standardType() {
+		int n;
+		switch (tokens.getNextKind()) {
+		case SINTEGER:
+		case SCHAR:
+		case SBOOLEAN:
+			n = newNode(NodeKind.STANDARD_TYPE);
 			break;
 		default:
-			n = null;
+			n = AST.NONE;
 			syntaxError();
 		}
 		return n;
 	}
 
-	public ASTNode arrayType() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int arrayType() {
+		int mark = ast.mark();
 
-		if (!tokens.getNext().equals("SARRAY")) {
+		if (tokens.getNextKind() != TokenKind.SARRAY) {
 			syntaxError();
 		}
-		ASTNode n = new ASTNode("ArrayType", tokens.getSourceName(), tokens.getLineNumber(), null);
+		int n = newNode(NodeKind.ARRAY_TYPE);
 
-		if (!tokens.getNext().equals("SLBRACKET")) {
+		if (tokens.getNextKind() != TokenKind.SLBRACKET) {
 			syntaxError();
 		}
 
-		ASTNode n1 = minimumValueOfIndex();
-		children.add(n1);
+		int n1 = minimumValueOfIndex();
+		ast.push(n1);
 
-		if (!tokens.getNext().equals("SRANGE")) {
+		if (tokens.getNextKind() != TokenKind.SRANGE) {
 			syntaxError();
 		}
 
-		ASTNode n2 = maxValueOfIndex();
-		children.add(n2);
+		int n2 = maxValueOfIndex();
+		ast.push(n2);
 
-		if (!tokens.getNext().equals("SRBRACKET")) {
+		if (tokens.getNextKind() != TokenKind.SRBRACKET) {
 			syntaxError();
 		}
 
-		if (!tokens.getNext().equals("SOF")) {
+		if (tokens.getNextKind() != TokenKind.SOF) {
 			syntaxError();
 		}
 
-		ASTNode n3 = standardType();
-		children.add(n3);
+		int n3 = standardType();
+		ast.push(n3);
 
-		n.setChildren(children);
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	private ASTNode minimumValueOfIndex() {
-		ASTNode n = integer();
+	private int minimumValueOfIndex() {
+		int n = integer();
 		return n;
 	}
 
-	private ASTNode maxValueOfIndex() {
-		ASTNode n = integer();
+	private int maxValueOfIndex() {
+		int n = integer();
 		return n;
 	}
 
-	private ASTNode integer() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
-
-		ASTNode n = null;
-		if (firstOfPlusOrMinusSign.contains(tokens.lookAheadOne())) {
+	private int integer() {
+		int n = AST.NONE;
+		if (firstOfPlusOrMinusSign.contains(tokens.lookAheadOneKind())) {
 			n = plusOrMinusSign();
 		}
 
-		ASTNode n1 = constant();
-		children.add(n1);
+		int n1 = constant();
 
-		if (n == null) {
-			n = children.get(0);
+		if (n == AST.NONE) {
+			n = n1;
 		} else {
-			n.setChildren(children);
+			setChild(n, n1);
 		}
 		return n;
 	}
 
-	private ASTNode plusOrMinusSign() {
-		ASTNode n = null;
-		switch (tokens.getNext()) {
-		case "SPLUS":
-			n = new ASTNode("UnaryOperator", tokens.getSourceName(), tokens.getLineNumber(), null);
-			break;
-		case "SMINUS":
-			n = new ASTNode("UnaryOperator", tokens.getSourceName(), tokens.getLineNumber(), null);
+	private int plusOrMinusSign() {
+		int n = AST.NONE;
+		switch (tokens.getNextKind()) {
+		case SPLUS:
+		case SMINUS:
+			n = newNode(NodeKind.UNARY_OPERATOR);
 			break;
 		default:
 			syntaxError();
@@ -299,316 +313,247 @@ public class Parser {
 		return n;
 	}
 
-	public ASTNode subprogramDeclarationGroup() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int subprogramDeclarationGroup() {
+		int mark = ast.mark();
 
-		while (tokens.lookAheadOne().equals("SPROCEDURE")) {
-			ASTNode n1 = subprogramDeclaration();
-			children.add(n1);
+		while (tokens.lookAheadOneKind() == TokenKind.SPROCEDURE) {
+			int n1 = subprogramDeclaration();
+			ast.push(n1);
 
-			if (!tokens.getNext().equals("SSEMICOLON")) {
+			if (tokens.getNextKind() != TokenKind.SSEMICOLON) {
 				syntaxError();
 			}
 		}
 
-		ASTNode n;
-		if (children.size() == 0) {
-			n = null;
-		} else if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("Subprograms", children);
-		}
-		return n;
+		return group(mark, NodeKind.SUBPROGRAMS);
 	}
 
-	private ASTNode subprogramDeclaration() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int subprogramDeclaration() {
+		int mark = ast.mark();
 
-		ASTNode n1 = headOfSubprogram();
-		children.add(n1);
+		int n1 = headOfSubprogram();
+		ast.push(n1);
 
-		ASTNode n2 = variableDeclaration();
-		if (n2 != null) {
-			children.add(n2);
+		int n2 = variableDeclaration();
+		if (n2 != AST.NONE) {
+			ast.push(n2);
 
 		}
 
-		ASTNode n3 = complexStatement();
-		children.add(n3);
+		int n3 = complexStatement();
+		ast.push(n3);
 
-		ASTNode n = new ASTNode("Subprogram", children);
+		int n = ast.add(NodeKind.SUBPROGRAM);
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	private ASTNode headOfSubprogram() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int headOfSubprogram() {
+		int mark = ast.mark();
 
-		if (!tokens.getNext().equals("SPROCEDURE")) {
+		if (tokens.getNextKind() != TokenKind.SPROCEDURE) {
 			syntaxError();
 		}
 
-		ASTNode n = procedureName();
-		n.setLabel("ProcedureDeclarator");
+		int n = procedureName();
+		ast.setKind(n, NodeKind.PROCEDURE_DECLARATOR);
 
-		ASTNode n2 = formalParameter();
-		if (n2 != null) {
-			if (n2.getLabel().equals("FormalParameters")) {
-				int i;
-				for (i = 0; i < n2.getChildren().size(); i++) {
-					ASTNode t = n2.getChildren().get(i);
-					children.add(t);
-				}
+		int n2 = formalParameter();
+		if (n2 != AST.NONE) {
+			if (ast.getKind(n2) == NodeKind.FORMAL_PARAMETERS) {
+				ast.pushChildren(n2);
 			} else {
-				children.add(n2);
+				ast.push(n2);
 			}
 		}
 
-		if (!tokens.getNext().equals("SSEMICOLON")) {
+		if (tokens.getNextKind() != TokenKind.SSEMICOLON) {
 			syntaxError();
 		}
 
-		if (children.size() > 0) {
-			n.setChildren(children);
-		}
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	private ASTNode procedureName() {
-		ASTNode n = name();
-		n.setLabel("ProcedureName");
+	private int procedureName() {
+		int n = name();
+		ast.setKind(n, NodeKind.PROCEDURE_NAME);
 		return n;
 	}
 
-	private ASTNode formalParameter() {
-		ASTNode n;
+	private int formalParameter() {
+		int n;
 
-		if (tokens.lookAheadOne().equals("SLPAREN")) {
-			if (!tokens.getNext().equals("SLPAREN")) {
+		if (tokens.lookAheadOneKind() == TokenKind.SLPAREN) {
+			if (tokens.getNextKind() != TokenKind.SLPAREN) {
 				syntaxError();
 			}
 
 			n = rowOfFormalParameter();
 
-			if (!tokens.getNext().equals("SRPAREN")) {
+			if (tokens.getNextKind() != TokenKind.SRPAREN) {
 				syntaxError();
 			}
 		} else {
-			n = null;
+			n = AST.NONE;
 		}
 
 		return n;
 	}
 
-	private ASTNode rowOfFormalParameter() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
-		List<ASTNode> children1 = new ArrayList<ASTNode>();
+	private int rowOfFormalParameter() {
+		int mark = ast.mark();
 
-		ASTNode n1 = rowOfFormalParameterName();
+		int n1 = rowOfFormalParameterName();
 
-		if (!tokens.getNext().equals("SCOLON")) {
+		if (tokens.getNextKind() != TokenKind.SCOLON) {
 			syntaxError();
 		}
 
-		ASTNode n2 = standardType();
-		children1.add(n2);
-
-		ASTNode n3;
-		if (n1.getLabel().equals("FormalParameterNames")) {
-			int i;
-			for (i = 0; i < n1.getChildren().size(); i++) {
-				ASTNode t = n1.getChildren().get(i);
-				t.setLabel("FormalParameterDeclarator");
-				t.setChildren(children1);
-				children.add(t);
-			}
-		} else {
-			n3 = n1;
-			n3.setLabel("FormalParameterDeclarator");
-			n3.setChildren(children1);
-			children.add(n3);
-		}
+		int n2 = standardType();
 
-		while (tokens.lookAheadOne().equals("SSEMICOLON")) {
-			List<ASTNode> children2 = new ArrayList<ASTNode>();
+		declare(n1, NodeKind.FORMAL_PARAMETER_NAMES, NodeKind.FORMAL_PARAMETER_DECLARATOR, n2);
 
-			if (!tokens.getNext().equals("SSEMICOLON")) {
+		while (tokens.lookAheadOneKind() == TokenKind.SSEMICOLON) {
+			if (tokens.getNextKind() != TokenKind.SSEMICOLON) {
 				syntaxError();
 			}
 
-			ASTNode n4 = rowOfFormalParameterName();
+			int n4 = rowOfFormalParameterName();
 
-			if (!tokens.getNext().equals("SCOLON")) {
+			if (tokens.getNextKind() != TokenKind.SCOLON) {
 				syntaxError();
 			}
 
-			ASTNode n5 = standardType();
-			children2.add(n5);
-
-			ASTNode n6;
-			if (n4.getLabel().equals("FormalParameterNames")) {
-				int i;
-				for (i = 0; i < n4.getChildren().size(); i++) {
-					ASTNode t = n4.getChildren().get(i);
-					t.setLabel("FormalParameterDeclarator");
-					t.setChildren(children2);
-					children.add(t);
-				}
-			} else {
-				n6 = n1;
-				n6.setLabel("FormalParameterDeclarator");
-				n6.setChildren(children2);
-				children.add(n6);
-			}
-		}
+			int n5 = standardType();
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("FormalParameters", children);
+			declare(n4, NodeKind.FORMAL_PARAMETER_NAMES, NodeKind.FORMAL_PARAMETER_DECLARATOR, n5);
 		}
-		return n;
+
+		return group(mark, NodeKind.FORMAL_PARAMETERS);
 	}
 
-	private ASTNode rowOfFormalParameterName() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int rowOfFormalParameterName() {
+		int mark = ast.mark();
 
-		ASTNode n1 = formalParameterName();
-		children.add(n1);
+		int n1 = formalParameterName();
+		ast.push(n1);
 
-		while (tokens.lookAheadOne().equals("SCOMMA")) {
-			if (!tokens.getNext().equals("SCOMMA")) {
+		while (tokens.lookAheadOneKind() == TokenKind.SCOMMA) {
+			if (tokens.getNextKind() != TokenKind.SCOMMA) {
 				syntaxError();
 			}
 
-			ASTNode n2 = formalParameterName();
-			children.add(n2);
+			int n2 = formalParameterName();
+			ast.push(n2);
 		}
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("FormalParameterNames", children);
-		}
-		return n;
+		return group(mark, NodeKind.FORMAL_PARAMETER_NAMES);
 	}
 
-	private ASTNode formalParameterName() {
-		ASTNode n = name();
+	private int formalParameterName() {
+		int n = name();
 		return n;
 	}
 
-	public ASTNode complexStatement() {
-		if (!tokens.getNext().equals("SBEGIN")) {
+	public int complexStatement() {
+		if (tokens.getNextKind() != TokenKind.SBEGIN) {
 			syntaxError();
 		}
 
-		ASTNode n = rowOfStatement();
+		int n = rowOfStatement();
 
-		if (!tokens.getNext().equals("SEND")) {
+		if (tokens.getNextKind() != TokenKind.SEND) {
 			syntaxError();
 		}
 
 		return n;
 	}
 
-	private ASTNode rowOfStatement() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int rowOfStatement() {
+		int mark = ast.mark();
 
 		do {
-			ASTNode n1 = statement();
-			children.add(n1);
+			int n1 = statement();
+			ast.push(n1);
 
-			if (!tokens.getNext().equals("SSEMICOLON")) {
+			if (tokens.getNextKind() != TokenKind.SSEMICOLON) {
 				syntaxError();
 			}
-		} while (firstOfStatement.contains(tokens.lookAheadOne()));
+		} while (firstOfStatement.contains(tokens.lookAheadOneKind()));
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("Statements", children);
-		}
-		return n;
+		return group(mark, NodeKind.STATEMENTS);
 	}
 
-	private ASTNode statement() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
-		List<ASTNode> children1 = new ArrayList<ASTNode>();
-		ASTNode n;
+	private int statement() {
+		int mark = ast.mark();
+		int n;
 
 		// 変更
-		switch (tokens.lookAheadOne()) {
-		case "SIF":
+		switch (tokens.lookAheadOneKind()) {
+		case SIF:
 
-			if (!tokens.getNext().equals("SIF")) {
+			if (tokens.getNextKind() != TokenKind.SIF) {
 				syntaxError();
 			}
-			String linenumber1 = tokens.getLineNumber();
+			int linenumber1 = tokens.getLine();
 
-			ASTNode n1 = expression();
-			children1.add(n1);
-			ASTNode n4 = new ASTNode("IfExp", children1);
-			children.add(n4);
+			int n1 = expression();
+			int n4 = node(NodeKind.IF_EXP, n1);
+			ast.push(n4);
 
-			if (!tokens.getNext().equals("STHEN")) {
+			if (tokens.getNextKind() != TokenKind.STHEN) {
 				syntaxError();
 			}
 
-			List<ASTNode> children3 = new ArrayList<ASTNode>();
-			ASTNode n2 = complexStatement();
-			children3.add(n2);
-			ASTNode n6 = new ASTNode("ThenStatement", children3);
-			children.add(n6);
+			int n2 = complexStatement();
+			int n6 = node(NodeKind.THEN_STATEMENT, n2);
+			ast.push(n6);
 
-			ASTNode n5 = new ASTNode("ElseStatement", new ArrayList<ASTNode>());
-			children.add(n5);
-			if (tokens.lookAheadOne().equals("SELSE")) {
-				if (!tokens.getNext().equals("SELSE")) {
+			int n5 = ast.add(NodeKind.ELSE_STATEMENT);
+			ast.push(n5);
+			if (tokens.lookAheadOneKind() == TokenKind.SELSE) {
+				if (tokens.getNextKind() != TokenKind.SELSE) {
 					syntaxError();
 				}
-				List<ASTNode> children2 = new ArrayList<ASTNode>();
-				ASTNode n3 = complexStatement();
-				children2.add(n3);
-				n5.setChildren(children2);
+				int n3 = complexStatement();
+				setChild(n5, n3);
 			}
 
-			n = new ASTNode("IfStatement", children);
-			n.setLinenumber(linenumber1);
+			n = ast.add(NodeKind.IF_STATEMENT);
+			ast.setChildren(n, mark);
+			ast.setLine(n, linenumber1);
 
 			break;
 
-		case "SWHILE":
-			if (!tokens.getNext().equals("SWHILE")) {
+		case SWHILE:
+			if (tokens.getNextKind() != TokenKind.SWHILE) {
 				syntaxError();
 			}
-			String linenumber2 = tokens.getLineNumber();
+			int linenumber2 = tokens.getLine();
 
-			ASTNode m1 = expression();
-			children1.add(m1);
-			ASTNode m4 = new ASTNode("WhileExp", children1);
-			children.add(m4);
+			int m1 = expression();
+			int m4 = node(NodeKind.WHILE_EXP, m1);
+			ast.push(m4);
 
-			if (!tokens.getNext().equals("SDO")) {
+			if (tokens.getNextKind() != TokenKind.SDO) {
 				syntaxError();
 			}
 
-			ASTNode m2 = complexStatement();
-			children.add(m2);
+			int m2 = complexStatement();
+			ast.push(m2);
 
-			n = new ASTNode("WhileStatement", children);
-			n.setLinenumber(linenumber2);
+			n = ast.add(NodeKind.WHILE_STATEMENT);
+			ast.setChildren(n, mark);
+			ast.setLine(n, linenumber2);
 
 			break;
 
 		default:
-			if (firstOfBasicStatement.contains(tokens.lookAheadOne())) {
+			if (firstOfBasicStatement.contains(tokens.lookAheadOneKind())) {
 				n = basicStatement();
 			} else {
-				n = null;
+				n = AST.NONE;
 				syntaxError();
 			}
 		}
@@ -616,36 +561,36 @@ public class Parser {
 		return n;
 	}
 
-	public ASTNode basicStatement() {
-		ASTNode n;
+	public int basicStatement() {
+		int n;
 
-		switch (tokens.lookAheadOne()) {
-		case "SIDENTIFIER":
+		switch (tokens.lookAheadOneKind()) {
+		case SIDENTIFIER:
 			n = assignmentOrProcedureCallStatement();
 			break;
 
-		case "SREADLN":
-		case "SWRITELN":
+		case SREADLN:
+		case SWRITELN:
 			n = inputOutputStatement();
 			break;
 
-		case "SBEGIN":
+		case SBEGIN:
 			n = complexStatement();
 			break;
 
 		default:
-			n = null;
+			n = AST.NONE;
 			syntaxError();
 		}
 
 		return n;
 	}
 
-	private ASTNode assignmentOrProcedureCallStatement() {
-		ASTNode n;
-		switch (tokens.lookAheadTwo()) {
-		case "SLBRACKET":
-		case "SASSIGN":
+	private int assignmentOrProcedureCallStatement() {
+		int n;
+		switch (tokens.lookAheadTwoKind()) {
+		case SLBRACKET:
+		case SASSIGN:
 			n = assignmentStatement();
 			break;
 
@@ -655,67 +600,60 @@ public class Parser {
 		return n;
 	}
 
-	private ASTNode assignmentStatement() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int assignmentStatement() {
+		int mark = ast.mark();
 
-		ASTNode n1 = leftSide();
-		children.add(n1);
+		int n1 = leftSide();
+		ast.push(n1);
 
-		if (!tokens.getNext().equals("SASSIGN")) {
+		if (tokens.getNextKind() != TokenKind.SASSIGN) {
 			syntaxError();
 		}
-		ASTNode n = new ASTNode("Assignment", tokens.getSourceName(), tokens.getLineNumber(), null);
+		int n = newNode(NodeKind.ASSIGNMENT);
 
-		ASTNode n2 = expression();
-		children.add(n2);
+		int n2 = expression();
+		ast.push(n2);
 
-		n.setChildren(children);
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	public ASTNode leftSide() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
-		ASTNode n1 = variable();
-		children.add(n1);
-		ASTNode n = new ASTNode("LeftValue", children);
+	public int leftSide() {
+		int n1 = variable();
+		int n = node(NodeKind.LEFT_VALUE, n1);
 		return n;
 	}
 
-	public ASTNode procedureCallStatement() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int procedureCallStatement() {
+		int mark = ast.mark();
 
-		ASTNode n = procedureName();
-		n.setLabel("ProcedureCall");
+		int n = procedureName();
+		ast.setKind(n, NodeKind.PROCEDURE_CALL);
 
-		if (tokens.lookAheadOne().equals("SLPAREN")) {
-			if (!tokens.getNext().equals("SLPAREN")) {
+		if (tokens.lookAheadOneKind() == TokenKind.SLPAREN) {
+			if (tokens.getNextKind() != TokenKind.SLPAREN) {
 				syntaxError();
 			}
 
-			ASTNode n1 = rowOfExpression();
-			if (n1.getLabel().equals("Expressions")) {
-				int i;
-				for (i = 0; i < n1.getChildren().size(); i++) {
-					children.add(n1.getChildren().get(i));
-				}
+			int n1 = rowOfExpression();
+			if (ast.getKind(n1) == NodeKind.EXPRESSIONS) {
+				ast.pushChildren(n1);
 			} else {
-				children.add(n1);
+				ast.push(n1);
 			}
 
-			if (!tokens.getNext().equals("SRPAREN")) {
+			if (tokens.getNextKind() != TokenKind.SRPAREN) {
 				syntaxError();
 			}
 		}
 
-		if (children.size() > 0) {
-			n.setChildren(children);
-		}
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	public ASTNode variable() {
-		ASTNode n;
-		if (tokens.lookAheadTwo().equals("SLBRACKET")) {
+	public int variable() {
+		int n;
+		if (tokens.lookAheadTwoKind() == TokenKind.SLBRACKET) {
 			n = indexedVariable();
 		} else {
 			n = simpleVariable();
@@ -723,110 +661,80 @@ public class Parser {
 		return n;
 	}
 
-	public ASTNode simpleVariable() {
-		ASTNode n = variableName();
-		n.setLabel("SimpleVariable");
+	public int simpleVariable() {
+		int n = variableName();
+		ast.setKind(n, NodeKind.SIMPLE_VARIABLE);
 		return n;
 	}
 
-	public ASTNode indexedVariable() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	public int indexedVariable() {
+		int mark = ast.mark();
 
-		ASTNode n = variableName();
-		n.setLabel("IndexedVariable");
+		int n = variableName();
+		ast.setKind(n, NodeKind.INDEXED_VARIABLE);
 
-		if (!tokens.getNext().equals("SLBRACKET")) {
+		if (tokens.getNextKind() != TokenKind.SLBRACKET) {
 			syntaxError();
 		}
 
-		ASTNode n2 = index();
-		children.add(n2);
+		int n2 = index();
+		ast.push(n2);
 
-		if (!tokens.getNext().equals("SRBRACKET")) {
+		if (tokens.getNextKind() != TokenKind.SRBRACKET) {
 			syntaxError();
 		}
 
-		n.setChildren(children);
+		ast.setChildren(n, mark);
 		return n;
 	}
 
-	private ASTNode index() {
-		ASTNode n = expression();
+	private int index() {
+		int n = expression();
 		return n;
 	}
 
-	private ASTNode inputOutputStatement() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
-		ASTNode n1, n = null;
+	private int inputOutputStatement() {
+		int mark = ast.mark();
+		int n1, n = AST.NONE;
 
-		switch (tokens.getNext()) {
-		case "SREADLN":
-			n = new ASTNode("InputStatement", tokens.getSourceName(), tokens.getLineNumber(), null);
+		switch (tokens.getNextKind()) {
+		case SREADLN:
+			n = newNode(NodeKind.INPUT_STATEMENT);
 
-			if (tokens.lookAheadOne().equals("SLPAREN")) {
-				if (!tokens.getNext().equals("SLPAREN")) {
+			if (tokens.lookAheadOneKind() == TokenKind.SLPAREN) {
+				if (tokens.getNextKind() != TokenKind.SLPAREN) {
 					syntaxError();
 				}
 
 				n1 = rowOfVariable();
-				if (n1.getLabel().equals("Variables")) {
-					int i;
-					for (i = 0; i < n1.getChildren().size(); i++) {
-						List<ASTNode> children1 = new ArrayList<ASTNode>();
-						children1.add(n1.getChildren().get(i));
-						ASTNode n3 = new ASTNode("InputStatementComponent", children1);
-						children.add(n3);
-					}
-				} else {
-					List<ASTNode> children1 = new ArrayList<ASTNode>();
-					children1.add(n1);
-					ASTNode n3 = new ASTNode("InputStatementComponent", children1);
-					children.add(n3);
-				}
+				pushComponents(n1, NodeKind.VARIABLES, NodeKind.INPUT_STATEMENT_COMPONENT);
 
-				if (!tokens.getNext().equals("SRPAREN")) {
+				if (tokens.getNextKind() != TokenKind.SRPAREN) {
 					syntaxError();
 				}
 			}
 
-			if (children.size() > 0) {
-				n.setChildren(children);
-			}
+			ast.setChildren(n, mark);
 
 			break;
 
-		case "SWRITELN":
-			n = new ASTNode("OutputStatement", tokens.getSourceName(), tokens.getLineNumber(), null);
+		case SWRITELN:
+			n = newNode(NodeKind.OUTPUT_STATEMENT);
 
-			if (tokens.lookAheadOne().equals("SLPAREN")) {
-				if (!tokens.getNext().equals("SLPAREN")) {
+			if (tokens.lookAheadOneKind() == TokenKind.SLPAREN) {
+				if (tokens.getNextKind() != TokenKind.SLPAREN) {
 					syntaxError();
 				}
 
 				n1 = rowOfExpression();
-				if (n1.getLabel().equals("Expressions")) {
-					int i;
-					for (i = 0; i < n1.getChildren().size(); i++) {
-						List<ASTNode> children1 = new ArrayList<ASTNode>();
-						children1.add(n1.getChildren().get(i));
-						ASTNode n3 = new ASTNode("OutputStatementComponent", children1);
-						children.add(n3);
-					}
-				} else {
-					List<ASTNode> children1 = new ArrayList<ASTNode>();
-					children1.add(n1);
-					ASTNode n3 = new ASTNode("OutputStatementComponent", children1);
-					children.add(n3);
-				}
+				pushComponents(n1, NodeKind.EXPRESSIONS, NodeKind.OUTPUT_STATEMENT_COMPONENT);
 
-				if (!tokens.getNext().equals("SRPAREN")) {
+				if (tokens.getNextKind() != TokenKind.SRPAREN) {
 					syntaxError();
 				}
 			}
 
-			if (children.size() > 0) {
-				n.setChildren(children);
-			}
+			ast.setChildren(n, mark);
 
 			break;
 
@@ -837,138 +745,139 @@ public class Parser {
 		return n;
 	}
 
-	private ASTNode rowOfExpression() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	// 並び(groupKindの節点または要素一つ)の各要素をcomponentKindの節点で包んでスタックに積む
+	private void pushComponents(int n1, NodeKind groupKind, NodeKind componentKind) {
+		if (ast.getKind(n1) == groupKind) {
+			int t = ast.getFirstChild(n1);
+			while (t != AST.NONE) {
+				int next = ast.getNextSibling(t);
+				ast.push(node(componentKind, t));
+				t = next;
+			}
+		} else {
+			ast.push(node(componentKind, n1));
+		}
+	}
+
+	private int rowOfExpression() {
+		int mark = ast.mark();
 
-		ASTNode n1 = expression();
-		children.add(n1);
+		int n1 = expression();
+		ast.push(n1);
 
-		while (tokens.lookAheadOne().equals("SCOMMA")) {
-			if (!tokens.getNext().equals("SCOMMA")) {
+		while (tokens.lookAheadOneKind() == TokenKind.SCOMMA) {
+			if (tokens.getNextKind() != TokenKind.SCOMMA) {
 				syntaxError();
 			}
 
-			ASTNode n2 = expression();
-			children.add(n2);
+			int n2 = expression();
+			ast.push(n2);
 		}
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("Expressions", children);
-		}
-		return n;
+		return group(mark, NodeKind.EXPRESSIONS);
 	}
 
-	private ASTNode expression() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int expression() {
+		int n1 = simpleExpression();
 
-		ASTNode n1 = simpleExpression();
-		children.add(n1);
-
-		ASTNode n = null;
-		if (firstOfRelationalOperator.contains(tokens.lookAheadOne())) {
+		int n = AST.NONE;
+		if (firstOfRelationalOperator.contains(tokens.lookAheadOneKind())) {
 			n = relationalOperator();
 
-			ASTNode n2 = simpleExpression();
-			children.add(n2);
+			int n2 = simpleExpression();
+
+			int mark = ast.mark();
+			ast.push(n1);
+			ast.push(n2);
+			ast.setChildren(n, mark);
 		}
 
-		if (n == null) {
-			n = children.get(0);
-		} else {
-			n.setChildren(children);
+		if (n == AST.NONE) {
+			n = n1;
 		}
 		return n;
 	}
 
-	private ASTNode simpleExpression() {
-		List<ASTNode> children1 = new ArrayList<ASTNode>();
-
-		ASTNode n = null;
-		if (firstOfPlusOrMinusSign.contains(tokens.lookAheadOne())) {
+	private int simpleExpression() {
+		int n = AST.NONE;
+		if (firstOfPlusOrMinusSign.contains(tokens.lookAheadOneKind())) {
 			n = plusOrMinusSign();
 		}
 
-		ASTNode n1 = term();
-		children1.add(n1);
+		int n1 = term();
 
-		if (n == null) {
-			n = children1.get(0);
+		if (n == AST.NONE) {
+			n = n1;
 		} else {
-			n.setChildren(children1);
+			setChild(n, n1);
 		}
 
-		while (firstOfAdditiveOperator.contains(tokens.lookAheadOne())) {
-			List<ASTNode> children2 = new ArrayList<ASTNode>();
-			ASTNode n2 = n.clone();
-			children2.add(n2);
+		while (firstOfAdditiveOperator.contains(tokens.lookAheadOneKind())) {
+			int n2 = n;
 
 			n = additiveOperator();
 
-			ASTNode n4 = term();
-			children2.add(n4);
+			int n4 = term();
 
-			n.setChildren(children2);
+			int mark = ast.mark();
+			ast.push(n2);
+			ast.push(n4);
+			ast.setChildren(n, mark);
 		}
 
 		return n;
 	}
 
-	private ASTNode term() {
-		ASTNode n = factor();
-		while (firstOfMultiplicativeOperator.contains(tokens.lookAheadOne())) {
-			List<ASTNode> children = new ArrayList<ASTNode>();
-			ASTNode n1 = n.clone();
-			children.add(n1);
+	private int term() {
+		int n = factor();
+		while (firstOfMultiplicativeOperator.contains(tokens.lookAheadOneKind())) {
+			int n1 = n;
 
 			n = multiplicativeOperator();
 
-			ASTNode n2 = factor();
-			children.add(n2);
+			int n2 = factor();
 
-			n.setChildren(children);
+			int mark = ast.mark();
+			ast.push(n1);
+			ast.push(n2);
+			ast.setChildren(n, mark);
 		}
 
 		return n;
 	}
 
-	private ASTNode factor() {
-		ASTNode n = null;
-		switch (tokens.lookAheadOne()) {
-		case "SIDENTIFIER":
+	private int factor() {
+		int n = AST.NONE;
+		switch (tokens.lookAheadOneKind()) {
+		case SIDENTIFIER:
 			n = variable();
 			break;
-		case "SLPAREN":
-			if (!tokens.getNext().equals("SLPAREN")) {
+		case SLPAREN:
+			if (tokens.getNextKind() != TokenKind.SLPAREN) {
 				syntaxError();
 			}
 
 			n = expression();
 
-			if (!tokens.getNext().equals("SRPAREN")) {
+			if (tokens.getNextKind() != TokenKind.SRPAREN) {
 				syntaxError();
 			}
 
 			break;
 
-		case "SNOT":
-			List<ASTNode> children = new ArrayList<ASTNode>();
-			if (!tokens.getNext().equals("SNOT")) {
+		case SNOT:
+			if (tokens.getNextKind() != TokenKind.SNOT) {
 				syntaxError();
 			}
-			n = new ASTNode("UnaryOperator", tokens.getSourceName(), tokens.getLineNumber(), null);
-
-			ASTNode n1 = factor();
-			children.add(n1);
+			n = newNode(NodeKind.UNARY_OPERATOR);
 
-			n.setChildren(children);
+			int n1 = factor();
+			setChild(n, n1);
 
 			break;
 
 		default:
-			if (firstOfConstant.contains(tokens.lookAheadOne())) {
+			if (firstOfConstant.contains(tokens.lookAheadOneKind())) {
 				n = constant();
 			} else {
 				syntaxError();
@@ -977,71 +886,63 @@ public class Parser {
 		return n;
 	}
 
-	private ASTNode relationalOperator() {
-		if (!firstOfRelationalOperator.contains(tokens.getNext())) {
+	private int relationalOperator() {
+		if (!firstOfRelationalOperator.contains(tokens.getNextKind())) {
 			syntaxError();
 		}
 
-		ASTNode n = new ASTNode("BinaryOperator", tokens.getSourceName(), tokens.getLineNumber(), null);
+		int n = newNode(NodeKind.BINARY_OPERATOR);
 		return n;
 	}
 
-	private ASTNode additiveOperator() {
-		if (!firstOfAdditiveOperator.contains(tokens.getNext())) {
+	private int additiveOperator() {
+		if (!firstOfAdditiveOperator.contains(tokens.getNextKind())) {
 			syntaxError();
 		}
 
-		ASTNode n = new ASTNode("BinaryOperator", tokens.getSourceName(), tokens.getLineNumber(), null);
+		int n = newNode(NodeKind.BINARY_OPERATOR);
 		return n;
 	}
 
-	private ASTNode multiplicativeOperator() {
-		if (!firstOfMultiplicativeOperator.contains(tokens.getNext())) {
+	private int multiplicativeOperator() {
+		if (!firstOfMultiplicativeOperator.contains(tokens.getNextKind())) {
 			syntaxError();
 		}
 
-		ASTNode n = new ASTNode("BinaryOperator", tokens.getSourceName(), tokens.getLineNumber(), null);
+		int n = newNode(NodeKind.BINARY_OPERATOR);
 		return n;
 	}
 
-	private ASTNode rowOfVariable() {
-		List<ASTNode> children = new ArrayList<ASTNode>();
+	private int rowOfVariable() {
+		int mark = ast.mark();
 
-		ASTNode n1 = variable();
-		children.add(n1);
+		int n1 = variable();
+		ast.push(n1);
 
-		while (tokens.lookAheadOne().equals("SCOMMA")) {
-			if (!tokens.getNext().equals("SCOMMA")) {
+		while (tokens.lookAheadOneKind() == TokenKind.SCOMMA) {
+			if (tokens.getNextKind() != TokenKind.SCOMMA) {
 				syntaxError();
 			}
 
-			ASTNode n2 = variable();
-			children.add(n2);
+			int n2 = variable();
+			ast.push(n2);
 		}
 
-		ASTNode n;
-		if (children.size() == 1) {
-			n = children.get(0);
-		} else {
-			n = new ASTNode("Variables", children);
-		}
-		return n;
+		return group(mark, NodeKind.VARIABLES);
 	}
 
-	private ASTNode constant() {
-		ASTNode n = null;
-		switch (tokens.getNext()) {
-		case "SCONSTANT":
-			n = new ASTNode("NumberLiteral", tokens.getSourceName(), tokens.getLineNumber(), null);
-			break;
-		case "SSTRING":
-			n = new ASTNode("StringLiteral", tokens.getSourceName(), tokens.getLineNumber(), null);
+	private int constant() {
+		int n = AST.NONE;
+		switch (tokens.getNextKind()) {
+		case SCONSTANT:
+			n = newNode(NodeKind.NUMBER_LITERAL);
 			break;
-		case "SFALSE":
-			n = new ASTNode("BooleanLiteral", tokens.getSourceName(), tokens.getLineNumber(), null);
+		case SSTRING:
+			n = newNode(NodeKind.STRING_LITERAL);
 			break;
-		case "STRUE":
-			n = new ASTNode("BooleanLiteral", tokens.getSourceName(), tokens.getLineNumber(), null);
+		case SFALSE:
+		case STRUE:
+			n = newNode(NodeKind.BOOLEAN_LITERAL);
 			break;
 
 		default:
@@ -1050,11 +951,11 @@ public class Parser {
 		return n;
 	}
 
-	public ASTNode name() {
-		if (!tokens.getNext().equals("SIDENTIFIER")) {
+	public int name() {
+		if (tokens.getNextKind() != TokenKind.SIDENTIFIER) {
 			syntaxError();
 		}
-		ASTNode n = new ASTNode("Identifire", tokens.getSourceName(), tokens.getLineNumber(), null);
+		int n = newNode(NodeKind.IDENTIFIER);
 		return n;
 	}
 }
@@ -0,0 +1,34 @@
+package compiler.compiler;
+
+import compiler.lexer.TokenKind;
+
+public interface TokenSource {
+
+	/**
+	 * 仕様:
+	 * Parserが読み込むトークン列．Parserは必要になった時点で一トークンずつ取り出す．
+	 * トークン列の末尾を越えて読んだ場合，種類はTokenKind.EOFを返す．
+	 */
+
+	TokenKind getNextKind();
+
+	TokenKind lookAheadOneKind();
+
+	TokenKind lookAheadTwoKind();
+
+	String getSourceName();
+
+	int getLine();
+
+	default String getLineNumber() {
+		return Integer.toString(getLine());
+	}
+
+	/**
+	 * トークン列を読み終える．Compilerは構文・意味のエラーを出力する前と解析を終えたあとに呼ぶ．
+	 * 字句的に正しければtrueを返す．
+	 */
+	default boolean finish() {
+		return true;
+	}
+}
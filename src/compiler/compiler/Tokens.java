@@ -2,59 +2,121 @@ package compiler.compiler;
 
 import java.util.List;
 
-public class Tokens {
-	private List<String> tokenList;
+import compiler.lexer.BinaryTokenFile;
+import compiler.lexer.TokenKind;
+
+public class Tokens implements TokenSource {
+
+	/**
+	 * 仕様:
+	 * トークン列を列ごとの配列(kind, line, 字面プールの添字)として保持する．
+	 * tsファイルの各行は読み込み時に一度だけ解析し，以降のアクセスでは文字列の分割を行わない．
+	 */
+
+	private final int[] kind;
+	private final int[] line;
+	private final int[] lexeme;
+	private final String[] pool;
+	private final int size;
 	private int ip;
-	private String token;
 
 	Tokens(List<String> tokenList) {
-		this.tokenList = tokenList;
+		final int n = tokenList.size();
+		final int[] kind = new int[n];
+		final int[] line = new int[n];
+		final int[] lexeme = new int[n];
+		final LexemePool pool = new LexemePool();
+
+		int size = 0;
+		int i;
+		for (i = 0; i < n; i++) {
+			// 字面\tトークン名\tID\t行番号 : 字面にタブを含んでもよいよう後ろから区切る
+			final String text = tokenList.get(i);
+			final int tab3 = text.lastIndexOf('\t');
+			final int tab2 = tab3 > 0 ? text.lastIndexOf('\t', tab3 - 1) : -1;
+			final int tab1 = tab2 > 0 ? text.lastIndexOf('\t', tab2 - 1) : -1;
+			if (tab1 < 0) {
+				continue;
+			}
+			kind[size] = parseInt(text, tab2 + 1, tab3);
+			line[size] = parseInt(text, tab3 + 1, text.length());
+			lexeme[size] = pool.intern(text, 0, tab1);
+			size++;
+		}
+
+		this.kind = kind;
+		this.line = line;
+		this.lexeme = lexeme;
+		this.pool = pool.toArray();
+		this.size = size;
 		this.ip = -1;
-		this.tokenList.add("\0");
-		this.token = null;
 	}
 
-	public String getSourceName() {
-		String[] tokenInfo = token.split("\t");
-		return tokenInfo[0];
+	Tokens(BinaryTokenFile binary) {
+		this.kind = binary.getKind();
+		this.line = binary.getLine();
+		this.lexeme = binary.getLexeme();
+		this.pool = binary.getPool();
+		this.size = binary.size();
+		this.ip = -1;
 	}
 
-	public String getLineNumber() {
-		String[] tokenInfo = token.split("\t");
-		return tokenInfo[3];
+	private static int parseInt(final String text, final int beginPoint, final int endPoint) {
+		int value = 0;
+		int i;
+		for (i = beginPoint; i < endPoint; i++) {
+			final char c = text.charAt(i);
+			if (c >= '0' && c <= '9')
+				value = value * 10 + (c - '0');
+		}
+		return value;
 	}
 
-	public String getToken() {
-		return token;
+	public int size() {
+		return size;
 	}
 
-	public String getTokenSrc() {
-		String[] tokenInfo = token.split("\t");
-		return tokenInfo[0];
+	public TokenKind getKind(int i) {
+		return i < size ? TokenKind.of(kind[i]) : TokenKind.EOF;
 	}
 
-	public String lookAheadOne() {
-		ip++;
-		String aheadToken = tokenList.get(ip);
-		String[] tokenInfo = aheadToken.split("\t");
-		ip--;
-		return tokenInfo[1];
+	public int getLine(int i) {
+		return line[i];
 	}
 
-	public String lookAheadTwo() {
-		ip++;
-		ip++;
-		String aheadToken = tokenList.get(ip);
-		String[] tokenInfo = aheadToken.split("\t");
-		ip--;
-		ip--;
-		return tokenInfo[1];
+	public String getSourceName(int i) {
+		return pool[lexeme[i]];
 	}
 
-	public String getNext() {
+	public TokenKind getNextKind() {
 		ip++;
-		token = tokenList.get(ip);
-		String[] tokenInfo = token.split("\t");
-		return tokenInfo[1];
+		return getKind(ip);
+	}
+
+	public TokenKind lookAheadOneKind() {
+		return getKind(ip + 1);
+	}
+
+	public TokenKind lookAheadTwoKind() {
+		return getKind(ip + 2);
+	}
+
+	// トークン列の末尾を越えた位置では最後のトークンの字面と行番号を返す
+	private int current() {
+		return Math.min(ip, size - 1);
+	}
+
+	public String getSourceName() {
+		if (size == 0) {
+			return "";
+		}
+		return getSourceName(current());
+	}
+
+	public int getLine() {
+		if (size == 0) {
+			return 0;
+		}
+		return getLine(current());
 	}
 }
@@ -1,13 +1,413 @@
 package compiler.compiler.ast;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.compiler.visitor.ID;
+
 public class AST {
-	private ASTNode root;
 
+	/**
+	 * 仕様:
+	 * ASTを節点ごとのオブジェクトではなく，節点番号で引く列ごとの配列として保持する．
+	 *   kind        節点の種類
+	 *   lexeme      字面プールの添字 (字面がなければ-1)
+	 *   line        行番号 (なければ0)
+	 *   firstChild  最初の子の節点番号 (なければ-1)
+	 *   nextSibling 次の兄弟の節点番号 (なければ-1)
+	 * 節点は節点番号(int)で参照し，各値はgetKind(node)などで読む．
+	 * ASTNodeとは相互に変換でき，PrintVisitorはtoASTNodeで得た木をたどる．
+	 * accept(Visitor, node)は節点の種類で振り分け，Visitorの種類ごとのメソッドを呼ぶ．
+	 *
+	 * symbolは意味解析が名前の節点(宣言と参照)に付ける解決済みのIDで，最初にsetSymbolしたときに確保する．
+	 *
+	 * Parserはmark/pushで子を一時的なスタックに積み，setChildrenでまとめて親につなぐ．
+	 */
+
+	public static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 256;
+
+	private NodeKind[] kind;
+	private int[] lexeme;
+	private int[] line;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private ID[] symbol;
+	private int size;
+	private int root;
+
+	private final List<String> pool;
+	private final Map<String, Integer> poolIndex;
+
+	private int[] stack;
+	private int top;
+
+	public AST() {
+		this.kind = new NodeKind[INITIAL_CAPACITY];
+		this.lexeme = new int[INITIAL_CAPACITY];
+		this.line = new int[INITIAL_CAPACITY];
+		this.firstChild = new int[INITIAL_CAPACITY];
+		this.nextSibling = new int[INITIAL_CAPACITY];
+		this.size = 0;
+		this.root = NONE;
+		this.pool = new ArrayList<String>();
+		this.poolIndex = new HashMap<String, Integer>();
+		this.stack = new int[64];
+		this.top = 0;
+	}
+
+	/**
+	 * ASTNodeの木から変換する．子のリストを共有する節点はそれぞれ複製する．
+	 */
 	public AST(ASTNode root) {
+		this();
+		this.root = fromASTNode(root);
+	}
+
+	private int fromASTNode(ASTNode node) {
+		int line = node.getLinenumber() == null ? 0 : Integer.parseInt(node.getLinenumber());
+		int n = add(node.getKind(), node.getSourceName(), line);
+		List<ASTNode> children = node.getChildren();
+		if (children != null) {
+			int prev = NONE;
+			int i;
+			for (i = 0; i < children.size(); i++) {
+				int child = fromASTNode(children.get(i));
+				if (prev == NONE) {
+					firstChild[n] = child;
+				} else {
+					nextSibling[prev] = child;
+				}
+				prev = child;
+			}
+		}
+		return n;
+	}
+
+	public int getRoot() {
+		return root;
+	}
+
+	public void setRoot(int root) {
 		this.root = root;
 	}
 
-	public ASTNode getRoot() {
-		return this.root;
+	public int size() {
+		return size;
+	}
+
+	// 節点の生成と変更
+
+	public int add(NodeKind k) {
+		return add(k, null, 0);
+	}
+
+	public int add(NodeKind k, String sourceName, int linenumber) {
+		if (size == kind.length) {
+			grow();
+		}
+		int n = size;
+		kind[n] = k;
+		lexeme[n] = sourceName == null ? NONE : lexemeOf(sourceName);
+		line[n] = linenumber;
+		firstChild[n] = NONE;
+		nextSibling[n] = NONE;
+		size++;
+		return n;
+	}
+
+	private void grow() {
+		int capacity = kind.length * 2;
+		kind = Arrays.copyOf(kind, capacity);
+		lexeme = Arrays.copyOf(lexeme, capacity);
+		line = Arrays.copyOf(line, capacity);
+		firstChild = Arrays.copyOf(firstChild, capacity);
+		nextSibling = Arrays.copyOf(nextSibling, capacity);
+		if (symbol != null) {
+			symbol = Arrays.copyOf(symbol, capacity);
+		}
+	}
+
+	private int lexemeOf(String sourceName) {
+		Integer i = poolIndex.get(sourceName);
+		if (i == null) {
+			i = pool.size();
+			pool.add(sourceName);
+			poolIndex.put(sourceName, i);
+		}
+		return i;
+	}
+
+	public void setKind(int node, NodeKind k) {
+		kind[node] = k;
+	}
+
+	public void setLine(int node, int linenumber) {
+		line[node] = linenumber;
+	}
+
+	public void setSymbol(int node, ID id) {
+		if (symbol == null) {
+			symbol = new ID[kind.length];
+		}
+		symbol[node] = id;
+	}
+
+	/**
+	 * nodeの部分木を複製し，複製の節点番号を返す．
+	 */
+	public int copy(int node) {
+		int n = size;
+		if (size == kind.length) {
+			grow();
+		}
+		kind[n] = kind[node];
+		lexeme[n] = lexeme[node];
+		line[n] = line[node];
+		if (symbol != null) {
+			symbol[n] = symbol[node];
+		}
+		firstChild[n] = NONE;
+		nextSibling[n] = NONE;
+		size++;
+
+		int prev = NONE;
+		int child;
+		for (child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+			int c = copy(child);
+			if (prev == NONE) {
+				firstChild[n] = c;
+			} else {
+				nextSibling[prev] = c;
+			}
+			prev = c;
+		}
+		return n;
+	}
+
+	// 子の一時スタック
+
+	public int mark() {
+		return top;
+	}
+
+	public void push(int node) {
+		if (top == stack.length) {
+			stack = Arrays.copyOf(stack, top * 2);
+		}
+		stack[top++] = node;
+	}
+
+	/**
+	 * nodeの子をすべてスタックに積む．
+	 */
+	public void pushChildren(int node) {
+		int child = firstChild[node];
+		while (child != NONE) {
+			int next = nextSibling[child];
+			push(child);
+			child = next;
+		}
+	}
+
+	public int count(int mark) {
+		return top - mark;
+	}
+
+	public int get(int mark, int i) {
+		return stack[mark + i];
+	}
+
+	public void reset(int mark) {
+		top = mark;
+	}
+
+	/**
+	 * markより上に積まれた節点を順にnodeの子としてつなぎ，スタックをmarkまで戻す．
+	 */
+	public void setChildren(int node, int mark) {
+		int prev = NONE;
+		int i;
+		for (i = mark; i < top; i++) {
+			int child = stack[i];
+			nextSibling[child] = NONE;
+			if (prev == NONE) {
+				firstChild[node] = child;
+			} else {
+				nextSibling[prev] = child;
+			}
+			prev = child;
+		}
+		if (prev == NONE) {
+			firstChild[node] = NONE;
+		}
+		top = mark;
+	}
+
+	// 節点の参照
+
+	public NodeKind getKind(int node) {
+		return kind[node];
+	}
+
+	public String getLabel(int node) {
+		return kind[node].getLabel();
+	}
+
+	public String getSourceName(int node) {
+		return lexeme[node] == NONE ? null : pool.get(lexeme[node]);
+	}
+
+	public int getLine(int node) {
+		return line[node];
+	}
+
+	public String getLinenumber(int node) {
+		return line[node] == 0 ? null : Integer.toString(line[node]);
+	}
+
+	public ID getSymbol(int node) {
+		return symbol == null ? null : symbol[node];
+	}
+
+	public int getFirstChild(int node) {
+		return firstChild[node];
+	}
+
+	public int getNextSibling(int node) {
+		return nextSibling[node];
+	}
+
+	public boolean hasChildren(int node) {
+		return firstChild[node] != NONE;
+	}
+
+	public int getChildCount(int node) {
+		int count = 0;
+		int child;
+		for (child = firstChild[node]; child != NONE; child = nextSibling[child])
+			count++;
+		return count;
+	}
+
+	public int getChild(int node, int i) {
+		int child = firstChild[node];
+		while (i > 0 && child != NONE) {
+			child = nextSibling[child];
+			i--;
+		}
+		return child;
+	}
+
+	/**
+	 * nodeを根とする部分木をASTNodeの木に変換する．
+	 */
+	public ASTNode toASTNode(int node) {
+		List<ASTNode> children = null;
+		if (firstChild[node] != NONE) {
+			children = new ArrayList<ASTNode>();
+			int child;
+			for (child = firstChild[node]; child != NONE; child = nextSibling[child])
+				children.add(toASTNode(child));
+		}
+		return new ASTNode(kind[node], getSourceName(node), getLinenumber(node), children);
+	}
+
+	public ASTNode toASTNode() {
+		return toASTNode(root);
+	}
+
+	public <R> R accept(Visitor<R> v) {
+		return accept(v, root);
+	}
+
+	public <R> R accept(Visitor<R> v, int node) {
+		switch (kind[node]) {
+		case PROGRAM:
+			return v.visitProgram(this, node);
+		case PROGRAM_NAME:
+			return v.visitProgramName(this, node);
+		case BLOCK:
+			return v.visitBlock(this, node);
+		case VARIABLE_DECLARATION:
+			return v.visitVariableDeclaration(this, node);
+		case VARIABLE_DECLARATOR:
+			return v.visitVariableDeclarator(this, node);
+		case VARIABLE_NAMES:
+			return v.visitVariableNames(this, node);
+		case VARIABLE_NAME:
+			return v.visitVariableName(this, node);
+		case STANDARD_TYPE:
+			return v.visitStandardType(this, node);
+		case ARRAY_TYPE:
+			return v.visitArrayType(this, node);
+		case SUBPROGRAMS:
+			return v.visitSubprograms(this, node);
+		case SUBPROGRAM:
+			return v.visitSubprogram(this, node);
+		case PROCEDURE_DECLARATOR:
+			return v.visitProcedureDeclarator(this, node);
+		case PROCEDURE_NAME:
+			return v.visitProcedureName(this, node);
+		case FORMAL_PARAMETERS:
+			return v.visitFormalParameters(this, node);
+		case FORMAL_PARAMETER_DECLARATOR:
+			return v.visitFormalParameterDeclarator(this, node);
+		case FORMAL_PARAMETER_NAMES:
+			return v.visitFormalParameterNames(this, node);
+		case IDENTIFIER:
+			return v.visitIdentifier(this, node);
+		case STATEMENTS:
+			return v.visitStatements(this, node);
+		case IF_STATEMENT:
+			return v.visitIfStatement(this, node);
+		case IF_EXP:
+			return v.visitIfExp(this, node);
+		case THEN_STATEMENT:
+			return v.visitThenStatement(this, node);
+		case ELSE_STATEMENT:
+			return v.visitElseStatement(this, node);
+		case WHILE_STATEMENT:
+			return v.visitWhileStatement(this, node);
+		case WHILE_EXP:
+			return v.visitWhileExp(this, node);
+		case ASSIGNMENT:
+			return v.visitAssignment(this, node);
+		case LEFT_VALUE:
+			return v.visitLeftValue(this, node);
+		case PROCEDURE_CALL:
+			return v.visitProcedureCall(this, node);
+		case SIMPLE_VARIABLE:
+			return v.visitSimpleVariable(this, node);
+		case INDEXED_VARIABLE:
+			return v.visitIndexedVariable(this, node);
+		case INPUT_STATEMENT:
+			return v.visitInputStatement(this, node);
+		case INPUT_STATEMENT_COMPONENT:
+			return v.visitInputStatementComponent(this, node);
+		case OUTPUT_STATEMENT:
+			return v.visitOutputStatement(this, node);
+		case OUTPUT_STATEMENT_COMPONENT:
+			return v.visitOutputStatementComponent(this, node);
+		case VARIABLES:
+			return v.visitVariables(this, node);
+		case EXPRESSIONS:
+			return v.visitExpressions(this, node);
+		case BINARY_OPERATOR:
+			return v.visitBinaryOperator(this, node);
+		case UNARY_OPERATOR:
+			return v.visitUnaryOperator(this, node);
+		case NUMBER_LITERAL:
+			return v.visitNumberLiteral(this, node);
+		case STRING_LITERAL:
+			return v.visitStringLiteral(this, node);
+		case BOOLEAN_LITERAL:
+			return v.visitBooleanLiteral(this, node);
+		default:
+			return v.visitDefault(this, node);
+		}
 	}
 }
@@ -2,45 +2,46 @@ package compiler.compiler.ast;
 
 import java.util.List;
 
-import compiler.compiler.visitor.GenerateCsal2CodeVisitor;
 import compiler.compiler.visitor.PrintVisitor;
-import compiler.compiler.visitor.SemanticErrorCheckVisitor;
-import compiler.compiler.visitor.Type;
 
 public class ASTNode {
-	private String label;
+	private NodeKind kind;
 	private String sourceName;
 	private String linenumber;
 	private List<ASTNode> children;
 
-	public ASTNode(String label, List<ASTNode> children) {
-		this.label = label;
+	public ASTNode(NodeKind kind, List<ASTNode> children) {
+		this.kind = kind;
 		this.sourceName = null;
 		this.linenumber = null;
 		this.children = children;
 	}
 
 	public ASTNode(ASTNode node, List<ASTNode> children) {
-		this.label = node.getLabel();
+		this.kind = node.getKind();
 		this.sourceName = node.getSourceName();
 		this.linenumber = node.getLinenumber();
 		this.children = children;
 	}
 
-	public ASTNode(String label, String sourceName, String linenumber, List<ASTNode> children) {
-		this.label = label;
+	public ASTNode(NodeKind kind, String sourceName, String linenumber, List<ASTNode> children) {
+		this.kind = kind;
 		this.sourceName = sourceName;
 		this.linenumber = linenumber;
 		this.children = children;
 	}
 
 	public ASTNode clone() {
-		ASTNode n = new ASTNode(this.getLabel(), this.getSourceName(), this.getLinenumber(), this.getChildren());
+		ASTNode n = new ASTNode(this.getKind(), this.getSourceName(), this.getLinenumber(), this.getChildren());
 		return n;
 	}
 
+	public NodeKind getKind() {
+		return kind;
+	}
+
 	public String getLabel() {
-		return label;
+		return kind.getLabel();
 	}
 
 	public String getSourceName() {
@@ -59,22 +60,14 @@ public class ASTNode {
 		this.children = children;
 	}
 
-	public void setLabel(String label) {
-		this.label = label;
+	public void setKind(NodeKind kind) {
+		this.kind = kind;
 	}
 
 	public void setLinenumber(String linenumber) {
 		this.linenumber = linenumber;
 	}
 
-	public Type accept(SemanticErrorCheckVisitor v) {
-		return v.visit(this);
-	}
-
-	public void accept(GenerateCsal2CodeVisitor v) {
-		v.visit(this);
-	}
-
 	public void accept(PrintVisitor v, int t) {
 		v.visit(this, t);
 	}
@@ -0,0 +1,61 @@
+package compiler.compiler.ast;
+
+public enum NodeKind {
+
+	/**
+	 * 仕様:
+	 * ASTの節点の種類．labelは従来の節点ラベル(PrintVisitorの表示)を表す．
+	 * Identifireは名前の節点が宣言・参照のどれになるか決まる前の仮の種類である．
+	 */
+
+	PROGRAM("Program"),
+	PROGRAM_NAME("ProgramName"),
+	BLOCK("Block"),
+	VARIABLE_DECLARATION("VariableDeclaration"),
+	VARIABLE_DECLARATOR("VariableDeclarator"),
+	VARIABLE_NAMES("VariableNames"),
+	VARIABLE_NAME("VariableName"),
+	STANDARD_TYPE("StandardType"),
+	ARRAY_TYPE("ArrayType"),
+	SUBPROGRAMS("Subprograms"),
+	SUBPROGRAM("Subprogram"),
+	PROCEDURE_DECLARATOR("ProcedureDeclarator"),
+	PROCEDURE_NAME("ProcedureName"),
+	FORMAL_PARAMETERS("FormalParameters"),
+	FORMAL_PARAMETER_DECLARATOR("FormalParameterDeclarator"),
+	FORMAL_PARAMETER_NAMES("FormalParameterNames"),
+	IDENTIFIER("Identifire"),
+	STATEMENTS("Statements"),
+	IF_STATEMENT("IfStatement"),
+	IF_EXP("IfExp"),
+	THEN_STATEMENT("ThenStatement"),
+	ELSE_STATEMENT("ElseStatement"),
+	WHILE_STATEMENT("WhileStatement"),
+	WHILE_EXP("WhileExp"),
+	ASSIGNMENT("Assignment"),
+	LEFT_VALUE("LeftValue"),
+	PROCEDURE_CALL("ProcedureCall"),
+	SIMPLE_VARIABLE("SimpleVariable"),
+	INDEXED_VARIABLE("IndexedVariable"),
+	INPUT_STATEMENT("InputStatement"),
+	INPUT_STATEMENT_COMPONENT("InputStatementComponent"),
+	OUTPUT_STATEMENT("OutputStatement"),
+	OUTPUT_STATEMENT_COMPONENT("OutputStatementComponent"),
+	VARIABLES("Variables"),
+	EXPRESSIONS("Expressions"),
+	BINARY_OPERATOR("BinaryOperator"),
+	UNARY_OPERATOR("UnaryOperator"),
+	NUMBER_LITERAL("NumberLiteral"),
+	STRING_LITERAL("StringLiteral"),
+	BOOLEAN_LITERAL("BooleanLiteral");
+
+	private final String label;
+
+	private NodeKind(final String label) {
+		this.label = label;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,172 @@
+package compiler.compiler.ast;
+
+public interface Visitor<R> {
+
+	/**
+	 * 仕様:
+	 * 節点の種類ごとのvisitメソッドを持つ．AST.acceptが節点の種類で一度だけ振り分けて呼び出す．
+	 * 実装しなかった種類の節点はvisitDefaultで処理する．
+	 */
+
+	R visitDefault(AST ast, int node);
+
+	default R visitProgram(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitProgramName(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitBlock(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitVariableDeclaration(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitVariableDeclarator(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitVariableNames(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitVariableName(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitStandardType(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitArrayType(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitSubprograms(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitSubprogram(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitProcedureDeclarator(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitProcedureName(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitFormalParameters(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitFormalParameterDeclarator(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitFormalParameterNames(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitIdentifier(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitStatements(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitIfStatement(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitIfExp(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitThenStatement(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitElseStatement(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitWhileStatement(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitWhileExp(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitAssignment(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitLeftValue(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitProcedureCall(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitSimpleVariable(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitIndexedVariable(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitInputStatement(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitInputStatementComponent(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitOutputStatement(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitOutputStatementComponent(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitVariables(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitExpressions(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitBinaryOperator(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitUnaryOperator(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitNumberLiteral(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitStringLiteral(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+
+	default R visitBooleanLiteral(AST ast, int node) {
+		return visitDefault(ast, node);
+	}
+}
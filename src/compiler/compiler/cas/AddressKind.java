@@ -0,0 +1,34 @@
+package compiler.compiler.cas;
+
+public enum AddressKind {
+
+	/**
+	 * 仕様:
+	 * Codeの命令が持つadr部の種類と，CASL IIでの書き方．valueはCodeのvalue列の値．
+	 *   NONE          adrなし
+	 *   DECIMAL       10進定数 (value)
+	 *   HEX           16進定数 (#value)
+	 *   LABEL         ラベル (valueはLabelsの番号)
+	 *   LITERAL       10進リテラル (=value)
+	 *   HEX_LITERAL   16進リテラル (=#value)
+	 *   CHAR_LITERAL  文字リテラル (='c'，valueは文字コード)
+	 *   STRING        DCの文字定数 (valueはCodeの文字列プールの添字)
+	 */
+
+	NONE,
+	DECIMAL,
+	HEX,
+	LABEL,
+	LITERAL,
+	HEX_LITERAL,
+	CHAR_LITERAL,
+	STRING;
+
+	public boolean isLiteral() {
+		return this == LITERAL || this == HEX_LITERAL || this == CHAR_LITERAL;
+	}
+
+	public boolean isConstant() {
+		return this == DECIMAL || this == HEX;
+	}
+}
@@ -0,0 +1,101 @@
+package compiler.compiler.cas;
+
+public class CaslPrinter {
+
+	/**
+	 * 仕様:
+	 * Codeの命令列をCASL IIの行 ("ラベル\t命令\tオペランド") としてCodeSinkに書き出す．
+	 * 行は一つのStringBuilderを使い回して組み立て，行ごとのStringは作らない．
+	 * オペランドは r, adr, x の順にあるものだけを ", " でつなぐ．
+	 * lineCommentsなら，行番号 (Code.getLine) のある命令の行の末尾に "\t; line 行番号" を付ける．
+	 */
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	public static void print(final Code code, final CodeSink sink) {
+		print(code, sink, false);
+	}
+
+	public static void print(final Code code, final CodeSink sink, final boolean lineComments) {
+		final Labels labels = code.getLabels();
+		final StringBuilder sb = new StringBuilder(64);
+		int i;
+		for (i = 0; i < code.size(); i++) {
+			if (code.getOp(i) == null) {
+				continue;
+			}
+			sb.setLength(0);
+			appendLine(code, labels, i, sb);
+			if (lineComments && code.getLine(i) != 0) {
+				sb.append("\t; line ").append(code.getLine(i));
+			}
+			sink.writeLine(sb);
+		}
+	}
+
+	private static void appendLine(final Code code, final Labels labels, final int i, final StringBuilder sb) {
+		if (code.hasLabel(i)) {
+			labels.appendName(code.getLabel(i), sb);
+		}
+		sb.append('\t').append(code.getOp(i).name()).append('\t');
+
+		boolean first = true;
+		if (code.getR(i) != Code.NONE) {
+			sb.append("GR").append(code.getR(i));
+			first = false;
+		}
+		if (code.getAdr(i) != AddressKind.NONE) {
+			if (!first) {
+				sb.append(", ");
+			}
+			appendAdr(code, labels, i, sb);
+			first = false;
+		}
+		if (code.getX(i) != Code.NONE) {
+			if (!first) {
+				sb.append(", ");
+			}
+			sb.append("GR").append(code.getX(i));
+		}
+	}
+
+	private static void appendAdr(final Code code, final Labels labels, final int i, final StringBuilder sb) {
+		final int value = code.getValue(i);
+		switch (code.getAdr(i)) {
+		case DECIMAL:
+			sb.append(value);
+			break;
+		case HEX:
+			appendHex(value, sb);
+			break;
+		case LABEL:
+			labels.appendName(value, sb);
+			break;
+		case LITERAL:
+			sb.append('=').append(value);
+			break;
+		case HEX_LITERAL:
+			sb.append('=');
+			appendHex(value, sb);
+			break;
+		case CHAR_LITERAL:
+			sb.append("='");
+			if (value == '\'') {
+				sb.append('\'');
+			}
+			sb.append((char) value).append('\'');
+			break;
+		case STRING:
+			sb.append(code.getString(i));
+			break;
+		default:
+		}
+	}
+
+	private static void appendHex(final int value, final StringBuilder sb) {
+		sb.append('#');
+		int shift;
+		for (shift = 12; shift >= 0; shift -= 4)
+			sb.append(HEX_DIGITS[(value >> shift) & 0xF]);
+	}
+}
@@ -4,21 +4,199 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class CaslSubroutine {
+
+	/**
+	 * 仕様:
+	 * lib.casの実行時ライブラリを出力ファイルにリンクする．
+	 * lib.casは "名前 START" から "END" までの副プログラム (MULT, DIV, RDINT, RDCH, RDSTR, RDLN,
+	 * WRTINT, WRTCH, WRTSTR, WRTLN とそれらが内部で呼ぶもの) の並びとして読み，副プログラムごとに
+	 * その行と，オペランドで参照するほかの副プログラムの名前を索引にする．STARTの前の注釈行はその副プログラムに含める．
+	 * 読んだ結果はJVMごとに一度だけ作り，以後のコンパイルで使い回す．
+	 * 生成したプログラムがCALLする副プログラムから参照をたどった閉包だけを，lib.casでの順に追記する．
+	 * START/ENDで区切られていない命令があるlib.casは分けられないので，全体を追記する．
+	 */
+
 	private static final String LIBCAS = "data/cas/lib.cas";
 
-	public static void appendLibcas(final String fileName) {
+	private static Library cache;
+
+	private static final class Routine {
+		final String name;
+		final List<String> lines;
+		final List<String> operands;
+		final Set<String> references;
+
+		Routine(String name) {
+			this.name = name;
+			this.lines = new ArrayList<String>();
+			this.operands = new ArrayList<String>();
+			this.references = new HashSet<String>();
+		}
+	}
+
+	private static final class Library {
+		// 副プログラムの名前 → 副プログラム (lib.casでの順)．分けられなければnull
+		final Map<String, Routine> routines;
+		final List<String> lines;
+
+		Library(Map<String, Routine> routines, List<String> lines) {
+			this.routines = routines;
+			this.lines = lines;
+		}
+	}
+
+	public static void appendLibcas(final String fileName, final Code code) {
 		if (Files.notExists(Paths.get(fileName))) {
 			System.err.println("[CaslSimulator] input file \"" + fileName + "\" does not exist.");
 			return;
 		}
 		try {
-			final List<String> libcas = Files.readAllLines(Paths.get(LIBCAS));
+			final List<String> libcas = link(load(), calledRoutines(code));
 			Files.write(Paths.get(fileName), libcas, StandardOpenOption.APPEND);
 		} catch (final IOException e) {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * codeの中で定義されていないラベルへのCALLの名前．
+	 */
+	public static Set<String> calledRoutines(final Code code) {
+		final Labels labels = code.getLabels();
+		final boolean[] defined = new boolean[labels.size()];
+		int i;
+		for (i = 0; i < code.size(); i++) {
+			if (code.hasLabel(i)) {
+				defined[code.getLabel(i)] = true;
+			}
+		}
+		final Set<String> names = new HashSet<String>();
+		for (i = 0; i < code.size(); i++) {
+			if (code.getOp(i) == Opcode.CALL && code.getAdr(i) == AddressKind.LABEL && !defined[code.getValue(i)]) {
+				names.add(labels.getName(code.getValue(i)));
+			}
+		}
+		return names;
+	}
+
+	private static synchronized Library load() throws IOException {
+		if (cache == null) {
+			cache = parse(Files.readAllLines(Paths.get(LIBCAS)));
+		}
+		return cache;
+	}
+
+	private static List<String> link(final Library library, final Set<String> called) {
+		if (library.routines == null) {
+			return library.lines;
+		}
+		final Set<String> linked = new HashSet<String>();
+		final Deque<String> work = new ArrayDeque<String>();
+		for (final String name : called) {
+			if (library.routines.containsKey(name) && linked.add(name)) {
+				work.push(name);
+			}
+		}
+		while (!work.isEmpty()) {
+			for (final String name : library.routines.get(work.pop()).references) {
+				if (linked.add(name)) {
+					work.push(name);
+				}
+			}
+		}
+
+		final List<String> lines = new ArrayList<String>();
+		for (final Routine routine : library.routines.values()) {
+			if (linked.contains(routine.name)) {
+				lines.addAll(routine.lines);
+			}
+		}
+		return lines;
+	}
+
+	private static Library parse(final List<String> lines) {
+		final Map<String, Routine> routines = new LinkedHashMap<String, Routine>();
+		final List<String> pending = new ArrayList<String>();
+		Routine current = null;
+		for (final String line : lines) {
+			final String[] fields = fields(line);
+			if (current == null) {
+				if ("START".equals(fields[1]) && !fields[0].isEmpty()) {
+					current = new Routine(fields[0]);
+					current.lines.addAll(pending);
+					current.lines.add(line);
+					pending.clear();
+				} else if (fields[1].isEmpty()) {
+					pending.add(line);
+				} else {
+					return new Library(null, lines);
+				}
+			} else {
+				current.lines.add(line);
+				current.operands.add(fields[2]);
+				if ("END".equals(fields[1])) {
+					routines.put(current.name, current);
+					current = null;
+				}
+			}
+		}
+		if (current != null || routines.isEmpty()) {
+			return new Library(null, lines);
+		}
+
+		for (final Routine routine : routines.values()) {
+			for (final String operand : routine.operands) {
+				for (final String token : operand.split(",")) {
+					final String name = token.trim();
+					if (!name.equals(routine.name) && routines.containsKey(name)) {
+						routine.references.add(name);
+					}
+				}
+			}
+		}
+		return new Library(routines, lines);
+	}
+
+	// ラベル，命令，オペランド (注釈を除く)．注釈だけの行と空行は命令が空文字列
+	private static String[] fields(final String line) {
+		final String[] fields = { "", "", "" };
+		int i = 0;
+		while (i < line.length() && !isBlank(line.charAt(i)) && line.charAt(i) != ';')
+			i++;
+		fields[0] = line.substring(0, i);
+		while (i < line.length() && isBlank(line.charAt(i)))
+			i++;
+		if (i == line.length() || line.charAt(i) == ';') {
+			return fields;
+		}
+		final int op = i;
+		while (i < line.length() && !isBlank(line.charAt(i)) && line.charAt(i) != ';')
+			i++;
+		fields[1] = line.substring(op, i);
+
+		final int operand = i;
+		boolean quoted = false;
+		while (i < line.length() && (quoted || line.charAt(i) != ';')) {
+			if (line.charAt(i) == '\'') {
+				quoted = !quoted;
+			}
+			i++;
+		}
+		fields[2] = line.substring(operand, i).trim();
+		return fields;
+	}
+
+	private static boolean isBlank(final char c) {
+		return c == ' ' || c == '\t';
+	}
 }
@@ -0,0 +1,93 @@
+package compiler.compiler.cas;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ChannelSink implements CodeSink {
+
+	/**
+	 * 仕様:
+	 * 行をUTF-8で大きなダイレクトByteBufferに溜め，FileChannelに書き出す．
+	 * チャネルに書くのはバッファが一杯になったときとcloseのときだけである．
+	 */
+
+	private static final int DEFAULT_CAPACITY = 1 << 22;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	public ChannelSink(final FileChannel channel, final int capacity) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * 仕様: pathのファイルを作り直して開く．
+	 */
+	public static ChannelSink open(final Path path) throws IOException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		return new ChannelSink(channel, DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public void writeLine(final CharSequence line) {
+		put(line);
+		put(LINE_SEPARATOR);
+	}
+
+	private void put(final CharSequence s) {
+		final int n = s.length();
+		int i;
+		for (i = 0; i < n; i++) {
+			if (buffer.remaining() < 4) {
+				drain();
+			}
+			final char c = s.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | c >> 6));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+				final int cp = Character.toCodePoint(c, s.charAt(i + 1));
+				buffer.put((byte) (0xF0 | cp >> 18));
+				buffer.put((byte) (0x80 | cp >> 12 & 0x3F));
+				buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+				buffer.put((byte) (0x80 | cp & 0x3F));
+				i++;
+			} else {
+				buffer.put((byte) (0xE0 | c >> 12));
+				buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+	}
+
+	private void drain() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} catch (final UncheckedIOException e) {
+			channel.close();
+			throw e.getCause();
+		}
+		channel.close();
+	}
+}
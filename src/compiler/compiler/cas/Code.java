@@ -0,0 +1,217 @@
+package compiler.compiler.cas;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Code {
+
+	/**
+	 * 仕様:
+	 * CASL IIの命令列を，行ごとのオブジェクトや文字列ではなく，命令番号で引く列ごとの配列として保持する．
+	 *   op     命令 (取り除いた命令はREMOVED)
+	 *   label  ラベルの番号 (なければNONE)
+	 *   r      第1オペランドのレジスタ番号 (なければNONE)
+	 *   adr    adr部の種類 (AddressKind)
+	 *   value  adr部の値
+	 *   x      指標レジスタの番号 (なければNONE)
+	 *   line   命令を生成したpasファイルの行番号 (なければ0)
+	 * "r1, r2" 形式の命令はadrをNONE，xをr2とする．GR8はSPを表す．
+	 * ラベルはLabelsで番号にしたものを持ち，DCの文字定数は文字列プールに置く．
+	 * 文字列にするのはCaslPrinterだけである．
+	 * opとadrは列挙型の序数を1バイトで持ち，1命令あたり16バイトに収める．
+	 */
+
+	public static final int NONE = -1;
+	public static final int SP = 8;
+	private static final int INITIAL_CAPACITY = 256;
+	private static final Opcode[] OPCODES = Opcode.values();
+	private static final AddressKind[] ADDRESS_KINDS = AddressKind.values();
+	private static final byte REMOVED = -1;
+
+	private final Labels labels;
+	private byte[] op;
+	private int[] label;
+	private byte[] r;
+	private byte[] adr;
+	private int[] value;
+	private byte[] x;
+	private int[] line;
+	private int size;
+	private final List<String> strings;
+
+	public Code(Labels labels) {
+		this.labels = labels;
+		this.op = new byte[INITIAL_CAPACITY];
+		this.label = new int[INITIAL_CAPACITY];
+		this.r = new byte[INITIAL_CAPACITY];
+		this.adr = new byte[INITIAL_CAPACITY];
+		this.value = new int[INITIAL_CAPACITY];
+		this.x = new byte[INITIAL_CAPACITY];
+		this.line = new int[INITIAL_CAPACITY];
+		this.size = 0;
+		this.strings = new ArrayList<String>();
+	}
+
+	public Labels getLabels() {
+		return labels;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// 命令の追加と変更
+
+	public int add(int label, Opcode op, int r, AddressKind adr, int value, int x) {
+		if (size == this.op.length) {
+			grow(size * 2);
+		}
+		int i = size;
+		size++;
+		set(i, label, op, r, adr, value, x);
+		this.line[i] = 0;
+		return i;
+	}
+
+	/**
+	 * DCの文字定数 ('...'の形のまま) を追加する．
+	 */
+	public int addString(int label, String text) {
+		strings.add(text);
+		return add(label, Opcode.DC, NONE, AddressKind.STRING, strings.size() - 1, NONE);
+	}
+
+	public void set(int i, int label, Opcode op, int r, AddressKind adr, int value, int x) {
+		this.op[i] = (byte) op.ordinal();
+		this.label[i] = label;
+		this.r[i] = (byte) r;
+		this.adr[i] = (byte) adr.ordinal();
+		this.value[i] = value;
+		this.x[i] = (byte) x;
+	}
+
+	public void setLabel(int i, int label) {
+		this.label[i] = label;
+	}
+
+	public void setValue(int i, int value) {
+		this.value[i] = value;
+	}
+
+	public void setLine(int i, int line) {
+		this.line[i] = line;
+	}
+
+	public void remove(int i) {
+		op[i] = REMOVED;
+	}
+
+	private void grow(int capacity) {
+		op = Arrays.copyOf(op, capacity);
+		label = Arrays.copyOf(label, capacity);
+		r = Arrays.copyOf(r, capacity);
+		adr = Arrays.copyOf(adr, capacity);
+		value = Arrays.copyOf(value, capacity);
+		x = Arrays.copyOf(x, capacity);
+		line = Arrays.copyOf(line, capacity);
+	}
+
+	/**
+	 * 取り除いた命令を詰める．
+	 */
+	public void compact() {
+		int n = 0;
+		int i;
+		for (i = 0; i < size; i++) {
+			if (op[i] != REMOVED) {
+				op[n] = op[i];
+				label[n] = label[i];
+				r[n] = r[i];
+				adr[n] = adr[i];
+				value[n] = value[i];
+				x[n] = x[i];
+				line[n] = line[i];
+				n++;
+			}
+		}
+		size = n;
+	}
+
+	/**
+	 * otherの命令列を末尾に加える．ラベルの表は共有していること．
+	 */
+	public void append(Code other) {
+		if (size + other.size > op.length) {
+			grow(size + other.size);
+		}
+		int i;
+		for (i = 0; i < other.size; i++) {
+			if (other.op[i] == REMOVED) {
+				continue;
+			}
+			int n;
+			if (other.getAdr(i) == AddressKind.STRING) {
+				n = addString(other.label[i], other.getString(i));
+			} else {
+				n = add(other.label[i], other.getOp(i), other.r[i], other.getAdr(i), other.value[i], other.x[i]);
+			}
+			line[n] = other.line[i];
+		}
+	}
+
+	// 命令の読み出し
+
+	/**
+	 * i番目の命令を返す．取り除いた命令ならnull．
+	 */
+	public Opcode getOp(int i) {
+		return op[i] == REMOVED ? null : OPCODES[op[i]];
+	}
+
+	public int getLabel(int i) {
+		return label[i];
+	}
+
+	public boolean hasLabel(int i) {
+		return label[i] != NONE;
+	}
+
+	public int getR(int i) {
+		return r[i];
+	}
+
+	public AddressKind getAdr(int i) {
+		return ADDRESS_KINDS[adr[i]];
+	}
+
+	public int getValue(int i) {
+		return value[i];
+	}
+
+	public int getX(int i) {
+		return x[i];
+	}
+
+	public int getLine(int i) {
+		return line[i];
+	}
+
+	public String getString(int i) {
+		return strings.get(value[i]);
+	}
+
+	/**
+	 * "r1, r2" 形式の命令か．
+	 */
+	public boolean isRegisterForm(int i) {
+		return r[i] != NONE && getAdr(i) == AddressKind.NONE && x[i] != NONE;
+	}
+
+	/**
+	 * i番目とj番目のadr部と指標レジスタが同じか．
+	 */
+	public boolean sameAddress(int i, int j) {
+		return adr[i] == adr[j] && value[i] == value[j] && x[i] == x[j] && getAdr(i) != AddressKind.STRING;
+	}
+}
@@ -0,0 +1,19 @@
+package compiler.compiler.cas;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface CodeSink extends Closeable {
+
+	/**
+	 * 仕様:
+	 * CaslPrinterが書き出すCASL IIプログラムの行を受け取る書き出し先．
+	 * writeLineには改行を含まない一行を渡し，書き出し先が行末に改行を付ける．
+	 * 行ごとにはフラッシュせず，closeでまとめて書き出す．
+	 */
+
+	void writeLine(CharSequence line);
+
+	@Override
+	void close() throws IOException;
+}
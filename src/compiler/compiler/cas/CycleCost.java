@@ -0,0 +1,81 @@
+package compiler.compiler.cas;
+
+public class CycleCost {
+
+	/**
+	 * 仕様:
+	 * COMET IIの実行サイクル数の見積もり．命令1つのサイクル数は命令語の語数 (r1,r2形式とオペランドのない命令は1，
+	 * それ以外は2) に，主記憶のオペランドやスタックを読み書きする回数 (LD/ST/演算/比較のadr部，PUSH/POP/CALL/RET) を足したものとする．
+	 * lib.casのMULTとDIVはシフトと加減算のループなので，次のように見積もる．
+	 *   MULT  MULT_BASE + 乗数(GR2)の絶対値のビット数 × MULT_PER_BIT
+	 *   DIV   DIV_BASE + 16 × DIV_PER_BIT
+	 */
+
+	public static final int MULT_BASE = 24;
+	public static final int MULT_PER_BIT = 12;
+	public static final int DIV_BASE = 24;
+	public static final int DIV_PER_BIT = 16;
+
+	public static int of(final Code code, final int i) {
+		final Opcode op = code.getOp(i);
+		if (op == null || !op.isInstruction()) {
+			return 0;
+		}
+		return of(op, code.getAdr(i) == AddressKind.NONE);
+	}
+
+	/**
+	 * 命令opのサイクル数．oneWordはadr部のない1語の命令 (r1,r2形式とオペランドのない命令) のときtrue．
+	 */
+	public static int of(final Opcode op, final boolean oneWord) {
+		int cycles = oneWord ? 1 : 2;
+		switch (op) {
+		case LD:
+		case ST:
+		case ADDA:
+		case ADDL:
+		case SUBA:
+		case SUBL:
+		case AND:
+		case OR:
+		case XOR:
+		case CPA:
+		case CPL:
+			if (!oneWord) {
+				cycles++;
+			}
+			break;
+		case PUSH:
+		case POP:
+		case CALL:
+		case RET:
+			cycles++;
+			break;
+		default:
+		}
+		return cycles;
+	}
+
+	public static int of(final Code code) {
+		int cycles = 0;
+		int i;
+		for (i = 0; i < code.size(); i++)
+			cycles += of(code, i);
+		return cycles;
+	}
+
+	/**
+	 * lib.casのMULTの見積もり (CALLとRETを含む)．
+	 */
+	public static int mult(final int multiplier) {
+		final int bits = 32 - Integer.numberOfLeadingZeros(Math.abs((short) multiplier));
+		return 3 + 2 + MULT_BASE + bits * MULT_PER_BIT;
+	}
+
+	/**
+	 * lib.casのDIVの見積もり (CALLとRETを含む)．
+	 */
+	public static int div() {
+		return 3 + 2 + DIV_BASE + 16 * DIV_PER_BIT;
+	}
+}
@@ -0,0 +1,81 @@
+package compiler.compiler.cas;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Labels {
+
+	/**
+	 * 仕様:
+	 * ラベル名を番号で引くための表．同じ名前には常に同じ番号を返す．
+	 * Codeはラベルやラベルを参照するオペランドを名前ではなくこの番号で持つ．
+	 * "LOOP3" のような接頭辞と通し番号からなるラベルはintern(prefix, number)で引き，
+	 * 名前の文字列は作らずに接頭辞と番号だけを持つ．
+	 */
+
+	private String[] prefix;
+	private int[] number;
+	private int size;
+	private final Map<String, Integer> index;
+	private final Map<String, int[]> numbered;
+
+	public Labels() {
+		this.prefix = new String[64];
+		this.number = new int[64];
+		this.size = 0;
+		this.index = new HashMap<String, Integer>();
+		this.numbered = new HashMap<String, int[]>();
+	}
+
+	public int intern(String name) {
+		Integer i = index.get(name);
+		if (i == null) {
+			i = add(name, -1);
+			index.put(name, i);
+		}
+		return i;
+	}
+
+	public int intern(String prefix, int number) {
+		int[] ids = numbered.get(prefix);
+		if (ids == null || number >= ids.length) {
+			int[] grown = new int[Math.max(number + 1, ids == null ? 16 : ids.length * 2)];
+			Arrays.fill(grown, -1);
+			if (ids != null) {
+				System.arraycopy(ids, 0, grown, 0, ids.length);
+			}
+			ids = grown;
+			numbered.put(prefix, ids);
+		}
+		if (ids[number] < 0) {
+			ids[number] = add(prefix, number);
+		}
+		return ids[number];
+	}
+
+	private int add(String prefix, int number) {
+		if (size == this.prefix.length) {
+			this.prefix = Arrays.copyOf(this.prefix, size * 2);
+			this.number = Arrays.copyOf(this.number, size * 2);
+		}
+		this.prefix[size] = prefix;
+		this.number[size] = number;
+		return size++;
+	}
+
+	public String getName(int label) {
+		return number[label] < 0 ? prefix[label] : prefix[label] + number[label];
+	}
+
+	public void appendName(int label, StringBuilder sb) {
+		sb.append(prefix[label]);
+		if (number[label] >= 0) {
+			sb.append(number[label]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,30 @@
+package compiler.compiler.cas;
+
+public class NullSink implements CodeSink {
+
+	/**
+	 * 仕様:
+	 * 行を捨て，行数と文字数だけを数える．ベンチマーク用．
+	 */
+
+	private long lines;
+	private long chars;
+
+	@Override
+	public void writeLine(final CharSequence line) {
+		lines++;
+		chars += line.length();
+	}
+
+	public long getLineCount() {
+		return lines;
+	}
+
+	public long getCharCount() {
+		return chars;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,65 @@
+package compiler.compiler.cas;
+
+public enum Opcode {
+
+	/**
+	 * 仕様:
+	 * CASL IIの命令・擬似命令・マクロ命令．名前がそのままニーモニックになる．
+	 *   instruction COMET IIの機械語命令ならtrue (擬似命令・マクロ命令はfalse)
+	 *   setsFlags   FRを設定する命令ならtrue
+	 */
+
+	START(false, false),
+	END(false, false),
+	DS(false, false),
+	DC(false, false),
+	IN(false, false),
+	OUT(false, false),
+	RPUSH(false, false),
+	RPOP(false, false),
+
+	NOP(true, false),
+	LD(true, true),
+	ST(true, false),
+	LAD(true, false),
+	ADDA(true, true),
+	ADDL(true, true),
+	SUBA(true, true),
+	SUBL(true, true),
+	AND(true, true),
+	OR(true, true),
+	XOR(true, true),
+	CPA(true, true),
+	CPL(true, true),
+	SLA(true, true),
+	SRA(true, true),
+	SLL(true, true),
+	SRL(true, true),
+	JMI(true, false),
+	JNZ(true, false),
+	JZE(true, false),
+	JUMP(true, false),
+	JPL(true, false),
+	JOV(true, false),
+	PUSH(true, false),
+	POP(true, false),
+	CALL(true, false),
+	RET(true, false),
+	SVC(true, false);
+
+	private final boolean instruction;
+	private final boolean setsFlags;
+
+	private Opcode(boolean instruction, boolean setsFlags) {
+		this.instruction = instruction;
+		this.setsFlags = setsFlags;
+	}
+
+	public boolean isInstruction() {
+		return instruction;
+	}
+
+	public boolean setsFlags() {
+		return setsFlags;
+	}
+}
@@ -0,0 +1,399 @@
+package compiler.compiler.cas;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class PeepholeOptimizer {
+
+	/**
+	 * 仕様:
+	 * GenerateCsal2CodeVisitorが生成したCASL IIの命令列 (Code) を書き出す前にその場で書き換える．
+	 * 適用する規則はコンストラクタで選ぶ．変化がなくなるまで規則を繰り返し適用する．
+	 *   PUSH_POP       PUSH adr,x から(スタックもそのレジスタも触らない命令をはさんで) POP r までを
+	 *                  LAD r,adr,x (adrが0でFRがすぐ上書きされる場合は LD r,x) 一命令にする
+	 *   REDUNDANT_LOAD 同じ値を持つことが分かっているレジスタへの LD/LAD や，ST直後の同じ番地からのLDを消す．
+	 *                  LD r,=n / PUSH 0,r でrがその後使われない場合は PUSH n にする
+	 *   NOP_LABEL      "ラベル NOP" のラベルを次の命令に付け替える．次の命令に既にラベルがある場合は
+	 *                  そのラベルを参照するようにオペランドを書き換える
+	 * 飛び越し先になりうるラベル付きの行をまたいで命令を動かすことはない．
+	 * LD は FR を変えるので，LDを消す・LADに替えるのは FR がその後で読まれずに上書きされる場合に限る．
+	 */
+
+	public enum Rule {
+		PUSH_POP, REDUNDANT_LOAD, NOP_LABEL
+	}
+
+	private static final int NONE = Code.NONE;
+	private static final int SP = Code.SP;
+	private static final int UNKNOWN = -1;
+	private static final int WINDOW = 6;
+	private static final int MAX_PASSES = 8;
+
+	private final Set<Rule> rules;
+
+	public PeepholeOptimizer(final Set<Rule> rules) {
+		this.rules = EnumSet.noneOf(Rule.class);
+		this.rules.addAll(rules);
+	}
+
+	public PeepholeOptimizer() {
+		this(EnumSet.allOf(Rule.class));
+	}
+
+	public void run(final Code code) {
+		int pass;
+		for (pass = 0; pass < MAX_PASSES; pass++) {
+			boolean changed = false;
+			if (rules.contains(Rule.PUSH_POP))
+				changed |= pushPop(code);
+			if (rules.contains(Rule.REDUNDANT_LOAD))
+				changed |= redundantLoad(code);
+			if (rules.contains(Rule.NOP_LABEL))
+				changed |= nopLabel(code);
+			code.compact();
+			if (!changed)
+				break;
+		}
+	}
+
+	// PUSH adr,x ... POP r
+	private boolean pushPop(final Code code) {
+		boolean changed = false;
+		int i;
+		for (i = 0; i < code.size(); i++) {
+			if (code.getOp(i) != Opcode.PUSH) {
+				continue;
+			}
+			final int x = code.getX(i);
+			if (x == SP) {
+				continue;
+			}
+			final boolean zero = code.getAdr(i).isConstant() && code.getValue(i) == 0;
+
+			int read = 0;
+			int write = 0;
+			int j;
+			for (j = i + 1; j < code.size() && j <= i + WINDOW; j++) {
+				final Opcode op = code.getOp(j);
+				if (op == null) {
+					continue;
+				}
+				if (code.hasLabel(j)) {
+					break;
+				}
+				if (op == Opcode.POP) {
+					final int r = code.getR(j);
+					// LADはPUSHの位置に置くのでxを読む時点は変わらない．間の命令がrを使っていなければよい
+					if ((read & bit(r)) != 0 || (write & bit(r)) != 0) {
+						break;
+					}
+					if (r == x && zero) {
+						// PUSH 0,r ... POP r は何もしない (PUSH/POPはFRを変えない)
+						remove(code, i);
+					} else if (zero && x != NONE && flagsDeadAfter(code, i, j)) {
+						code.set(i, code.getLabel(i), Opcode.LD, r, AddressKind.NONE, 0, x);
+					} else {
+						code.set(i, code.getLabel(i), Opcode.LAD, r, code.getAdr(i), code.getValue(i), x);
+					}
+					code.remove(j);
+					changed = true;
+					break;
+				}
+				final int rw = readWrite(code, j);
+				if (rw == NONE) {
+					break;
+				}
+				read |= rw & 0xFFFF;
+				write |= rw >>> 16;
+			}
+		}
+		return changed;
+	}
+
+	private boolean redundantLoad(final Code code) {
+		boolean changed = false;
+		final int[] known = new int[SP + 1];
+		Arrays.fill(known, UNKNOWN);
+		int i;
+		for (i = 0; i < code.size(); i++) {
+			final Opcode op = code.getOp(i);
+			if (op == null) {
+				continue;
+			}
+			if (code.hasLabel(i)) {
+				Arrays.fill(known, UNKNOWN);
+			}
+
+			switch (op) {
+			case LD:
+			case LAD: {
+				final int r = code.getR(i);
+				if (r == SP || readWrite(code, i) == NONE) {
+					Arrays.fill(known, UNKNOWN);
+					break;
+				}
+				if (code.isRegisterForm(i)) {
+					// LD r1,r2
+					known[r] = known[code.getX(i)];
+					break;
+				}
+				final int value = constant(code, i);
+				final boolean flagsFree = op == Opcode.LAD || flagsDeadAfter(code, i, NONE);
+				if (value != UNKNOWN && value == known[r] && flagsFree) {
+					remove(code, i);
+					changed = true;
+					break;
+				}
+				if (op == Opcode.LD && flagsFree && storedBefore(code, i)) {
+					remove(code, i);
+					changed = true;
+					break;
+				}
+				if (op == Opcode.LD && code.getAdr(i).isLiteral() && pushAfter(code, i, r)
+						&& flagsDeadAfter(code, i, NONE)) {
+					final int p = next(code, i);
+					if (registerDeadAfter(code, p, r)) {
+						final AddressKind adr = code.getAdr(i) == AddressKind.HEX_LITERAL ? AddressKind.HEX
+								: AddressKind.DECIMAL;
+						code.set(p, code.getLabel(p), Opcode.PUSH, NONE, adr, code.getValue(i), NONE);
+						remove(code, i);
+						changed = true;
+						break;
+					}
+				}
+				known[r] = value;
+				break;
+			}
+
+			case POP:
+				known[code.getR(i)] = UNKNOWN;
+				break;
+
+			case ST:
+			case CPA:
+			case CPL:
+			case PUSH:
+			case NOP:
+			case JPL:
+			case JMI:
+			case JNZ:
+			case JZE:
+			case JOV:
+				break;
+
+			default: {
+				final int rw = readWrite(code, i);
+				if (rw == NONE) {
+					Arrays.fill(known, UNKNOWN);
+				} else {
+					int r;
+					for (r = 0; r < SP; r++) {
+						if (((rw >>> 16) & bit(r)) != 0)
+							known[r] = UNKNOWN;
+					}
+				}
+			}
+			}
+		}
+		return changed;
+	}
+
+	private boolean nopLabel(final Code code) {
+		boolean changed = false;
+		final int[] alias = new int[code.getLabels().size()];
+		Arrays.fill(alias, NONE);
+		boolean aliased = false;
+		int i;
+		for (i = 0; i < code.size(); i++) {
+			if (code.getOp(i) != Opcode.NOP) {
+				continue;
+			}
+			final int n = next(code, i);
+			if (n < 0 || !code.getOp(n).isInstruction()) {
+				continue;
+			}
+			if (!code.hasLabel(i)) {
+				// ラベルのないNOP
+			} else if (!code.hasLabel(n)) {
+				code.setLabel(n, code.getLabel(i));
+			} else {
+				alias[code.getLabel(i)] = code.getLabel(n);
+				aliased = true;
+			}
+			code.remove(i);
+			changed = true;
+		}
+
+		if (aliased) {
+			for (i = 0; i < code.size(); i++) {
+				if (code.getOp(i) == null || code.getAdr(i) != AddressKind.LABEL) {
+					continue;
+				}
+				int label = code.getValue(i);
+				while (alias[label] != NONE)
+					label = alias[label];
+				code.setValue(i, label);
+			}
+		}
+		return changed;
+	}
+
+	// 補助
+
+	private static int bit(final int r) {
+		return r < 0 ? 0 : 1 << r;
+	}
+
+	/**
+	 * レジスタだけを読み書きし，スタック・制御の流れに関わらない命令について
+	 * 読むレジスタを下位16ビット，書くレジスタを上位16ビットに置いた値を返す．
+	 * それ以外の命令(SPを読み書きする命令を含む)にはNONEを返す．
+	 */
+	private static int readWrite(final Code code, final int i) {
+		final int r = code.getR(i);
+		final int x = code.getX(i);
+		if (r == SP || x == SP) {
+			return NONE;
+		}
+		switch (code.getOp(i)) {
+		case LD:
+		case LAD:
+			return bit(x) | bit(r) << 16;
+		case ST:
+		case CPA:
+		case CPL:
+			return bit(r) | bit(x);
+		case ADDA:
+		case ADDL:
+		case SUBA:
+		case SUBL:
+		case AND:
+		case OR:
+		case XOR:
+		case SLA:
+		case SRA:
+		case SLL:
+		case SRL:
+			return bit(r) | bit(x) | bit(r) << 16;
+		case NOP:
+			return 0;
+		default:
+			return NONE;
+		}
+	}
+
+	/**
+	 * i番目の命令のあと(skip番目は除く)でFRが読まれる前に上書きされるか．
+	 */
+	private static boolean flagsDeadAfter(final Code code, final int i, final int skip) {
+		int j;
+		for (j = i + 1; j < code.size(); j++) {
+			final Opcode op = code.getOp(j);
+			if (op == null || j == skip) {
+				continue;
+			}
+			if (code.hasLabel(j)) {
+				return false;
+			}
+			if (op.setsFlags()) {
+				return true;
+			}
+			if (readWrite(code, j) == NONE && op != Opcode.PUSH && op != Opcode.POP) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * p番目の命令のあとでレジスタrが読まれる前に上書きされるか．
+	 */
+	private static boolean registerDeadAfter(final Code code, final int p, final int r) {
+		int j;
+		for (j = p + 1; j < code.size(); j++) {
+			final Opcode op = code.getOp(j);
+			if (op == null) {
+				continue;
+			}
+			if (code.hasLabel(j)) {
+				return false;
+			}
+			if (op == Opcode.POP) {
+				if (code.getR(j) == r)
+					return true;
+				continue;
+			}
+			if (op == Opcode.PUSH) {
+				if (code.getX(j) == r)
+					return false;
+				continue;
+			}
+			final int rw = readWrite(code, j);
+			if (rw == NONE) {
+				return false;
+			}
+			if ((rw & bit(r)) != 0) {
+				return false;
+			}
+			if (((rw >>> 16) & bit(r)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// LD r,=n の次の命令が PUSH 0,r か
+	private static boolean pushAfter(final Code code, final int i, final int r) {
+		final int p = next(code, i);
+		if (p < 0) {
+			return false;
+		}
+		return !code.hasLabel(p) && code.getOp(p) == Opcode.PUSH && code.getAdr(p).isConstant()
+				&& code.getValue(p) == 0 && code.getX(p) == r;
+	}
+
+	// 直前の命令が同じレジスタ・同じ番地への ST か
+	private static boolean storedBefore(final Code code, final int i) {
+		if (code.hasLabel(i) || code.getAdr(i) == AddressKind.NONE) {
+			return false;
+		}
+		int j = i - 1;
+		while (j >= 0 && code.getOp(j) == null)
+			j--;
+		if (j < 0) {
+			return false;
+		}
+		return code.getOp(j) == Opcode.ST && code.getR(j) == code.getR(i) && code.sameAddress(i, j);
+	}
+
+	private static int next(final Code code, final int i) {
+		int j;
+		for (j = i + 1; j < code.size(); j++) {
+			if (code.getOp(j) != null)
+				return j;
+		}
+		return -1;
+	}
+
+	// ラベル付きの命令は飛び越し先として残すためNOPにする
+	private static void remove(final Code code, final int i) {
+		if (code.hasLabel(i)) {
+			code.set(i, code.getLabel(i), Opcode.NOP, NONE, AddressKind.NONE, 0, NONE);
+		} else {
+			code.remove(i);
+		}
+	}
+
+	// LD r,=n / LAD r,n が与える値 (それ以外はUNKNOWN)
+	private static int constant(final Code code, final int i) {
+		final AddressKind adr = code.getAdr(i);
+		if (code.getOp(i) == Opcode.LD && adr.isLiteral()) {
+			return code.getValue(i) & 0xFFFF;
+		}
+		if (code.getOp(i) == Opcode.LAD && adr.isConstant() && code.getX(i) == NONE) {
+			return code.getValue(i) & 0xFFFF;
+		}
+		return UNKNOWN;
+	}
+}
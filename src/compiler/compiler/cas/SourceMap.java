@@ -0,0 +1,182 @@
+package compiler.compiler.cas;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SourceMap {
+
+	/**
+	 * 仕様:
+	 * 生成したCASL IIプログラムの行とpasファイルの行・手続きの対応表．コード生成で命令に付けた行番号 (Code.getLine) から作り，
+	 * casファイルと並べたmapファイルに書き出して読み戻す．
+	 * 表はcasの行番号の昇順に並べた区間の列で，区間はpasの行番号と手続きが同じ命令の連続した行をまとめたもの．
+	 * 区間はその先頭のcasの行番号から次の区間の前まで続く．引くときは先頭の行番号を二分探索する (O(log n))．
+	 * mapファイルの行はタブ区切りで次の2種類．
+	 *   proc  ラベル  名前                      副プログラムの入口のラベル (主プログラムはCASL) とpasファイルでの名前
+	 *   line  先頭のcasの行番号  pasの行番号  ラベル   区間 (pasの行番号がなければ0，手続きの外ならラベルは -)
+	 * casの行番号はCaslPrinterが書き出す行の順 (1から) で，最後の区間は命令の後ろ (追記したlib.cas) を0とする．
+	 */
+
+	private static final String MAIN = "CASL";
+	private static final String NONE = "-";
+
+	// 手続きのラベルの番号 → ラベル (0は主プログラム)，ラベル → 番号，ラベル → pasファイルでの名前
+	private final List<String> labels;
+	private final Map<String, Integer> numbers;
+	private final Map<String, String> names;
+	private int[] starts;
+	private int[] lines;
+	private int[] procs;
+	private int size;
+
+	private SourceMap() {
+		this.labels = new ArrayList<String>();
+		this.numbers = new HashMap<String, Integer>();
+		this.names = new HashMap<String, String>();
+		this.starts = new int[16];
+		this.lines = new int[16];
+		this.procs = new int[16];
+		this.size = 0;
+	}
+
+	/**
+	 * casファイルに対応するmapファイルの名前 (拡張子.casを.mapにする)．
+	 */
+	public static String fileName(final String casFileName) {
+		if (casFileName.endsWith(".cas")) {
+			return casFileName.substring(0, casFileName.length() - ".cas".length()) + ".map";
+		}
+		return casFileName + ".map";
+	}
+
+	/**
+	 * codeの命令の行番号から表を作る．procedureNamesのi番目はPROCiの名前．
+	 */
+	public static SourceMap of(final Code code, final String programName, final List<String> procedureNames) {
+		final SourceMap map = new SourceMap();
+		map.define(MAIN, programName);
+		int i;
+		for (i = 0; i < procedureNames.size(); i++) {
+			map.define("PROC" + i, procedureNames.get(i));
+		}
+
+		final Labels labels = code.getLabels();
+		int proc = 0;
+		int casLine = 0;
+		for (i = 0; i < code.size(); i++) {
+			if (code.getOp(i) == null) {
+				continue;
+			}
+			casLine++;
+			if (code.hasLabel(i)) {
+				proc = map.number(labels.getName(code.getLabel(i)), proc);
+			}
+			map.add(casLine, code.getLine(i), proc);
+		}
+		map.add(casLine + 1, 0, -1);
+		return map;
+	}
+
+	private void define(final String label, final String name) {
+		numbers.put(label, labels.size());
+		labels.add(label);
+		names.put(label, name);
+	}
+
+	// 手続きのラベルの番号．手続きのラベルでなければotherwise
+	private int number(final String label, final int otherwise) {
+		final Integer number = numbers.get(label);
+		return number == null ? otherwise : number;
+	}
+
+	// 直前の区間と同じなら伸ばし，違えば新しい区間を始める
+	private void add(final int casLine, final int line, final int proc) {
+		if (size > 0 && lines[size - 1] == line && procs[size - 1] == proc) {
+			return;
+		}
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			lines = Arrays.copyOf(lines, size * 2);
+			procs = Arrays.copyOf(procs, size * 2);
+		}
+		starts[size] = casLine;
+		lines[size] = line;
+		procs[size] = proc;
+		size++;
+	}
+
+	public void write(final Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			for (final String label : labels) {
+				out.write("proc\t" + label + "\t" + names.get(label));
+				out.newLine();
+			}
+			int i;
+			for (i = 0; i < size; i++) {
+				out.write("line\t" + starts[i] + "\t" + lines[i] + "\t" + (procs[i] < 0 ? NONE : labels.get(procs[i])));
+				out.newLine();
+			}
+		}
+	}
+
+	/**
+	 * mapファイルを読む．なければnull．
+	 */
+	public static SourceMap read(final String fileName) throws IOException {
+		final Path path = Paths.get(fileName);
+		if (Files.notExists(path)) {
+			return null;
+		}
+		final SourceMap map = new SourceMap();
+		for (final String line : Files.readAllLines(path)) {
+			final String[] fields = line.split("\t");
+			if (fields.length == 3 && "proc".equals(fields[0])) {
+				map.define(fields[1], fields[2]);
+			} else if (fields.length == 4 && "line".equals(fields[0])) {
+				final int start = Integer.parseInt(fields[1]);
+				if (map.size > 0 && start <= map.starts[map.size - 1]) {
+					throw new IOException(fileName + ": line table is not sorted");
+				}
+				map.add(start, Integer.parseInt(fields[2]), map.number(fields[3], -1));
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * ラベルのpasファイルでの名前．手続きの入口のラベルでなければnull．
+	 */
+	public String getName(final String label) {
+		return names.get(label);
+	}
+
+	/**
+	 * casの行番号に対応するpasの行番号．なければ0．
+	 */
+	public int getLine(final int casLine) {
+		final int i = find(casLine);
+		return i < 0 ? 0 : lines[i];
+	}
+
+	/**
+	 * casの行番号の命令がある手続き (主プログラムならプログラム) のpasファイルでの名前．なければnull．
+	 */
+	public String getProcedure(final int casLine) {
+		final int i = find(casLine);
+		return i < 0 || procs[i] < 0 ? null : names.get(labels.get(procs[i]));
+	}
+
+	// casLineを含む区間 (なければ-1)
+	private int find(final int casLine) {
+		final int i = Arrays.binarySearch(starts, 0, size, casLine);
+		return i >= 0 ? i : -i - 2;
+	}
+}
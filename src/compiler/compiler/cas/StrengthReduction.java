@@ -0,0 +1,138 @@
+package compiler.compiler.cas;
+
+public class StrengthReduction {
+
+	/**
+	 * 仕様:
+	 * 定数による乗算・除算・剰余を，lib.casのMULT/DIVを呼ぶ代わりにシフトと加減算の命令列にする．
+	 * 命令列はレジスタrの値をその場で書き換え，tを作業用に使う．結果は1語(16ビット)で切り捨てた値で，MULT/DIVと同じになる．
+	 *   乗算 c         0ならLAD r,0，2のべきならSLL．それ以外はcの2進表現と符号付き2進表現(NAF)の
+	 *                  それぞれからシフトと加減算の列を作り，CycleCostで安い方を使う
+	 *   除算 2^k       0に向かって切り捨てるよう，被除数が負のときだけ 2^k-1 を足してからSRAする
+	 *   剰余 2^k       同じく 2^k-1 を足してから下位kビットを取り出し，足した分を引く (符号は被除数に従う)
+	 * 除数が2のべきでない除算・剰余は置き換えない．
+	 */
+
+	private static final int NONE = Code.NONE;
+
+	private StrengthReduction() {
+	}
+
+	/**
+	 * 除数cの除算・剰余を置き換えられるか (cは1から16384までの2のべき)．
+	 */
+	public static boolean canDivide(final int c) {
+		return c > 0 && c <= 0x4000 && Integer.bitCount(c) == 1;
+	}
+
+	public static boolean multiplyNeedsTemp(final int c) {
+		return Integer.bitCount(c & 0xFFFF) > 1;
+	}
+
+	public static boolean divideNeedsTemp(final int c) {
+		return c > 1;
+	}
+
+	public static Code multiply(final Labels labels, final int r, final int t, final int c) {
+		final int m = c & 0xFFFF;
+		final Code code = new Code(labels);
+		if (m == 0) {
+			code.add(NONE, Opcode.LAD, r, AddressKind.DECIMAL, 0, NONE);
+			return code;
+		}
+		if (Integer.bitCount(m) == 1) {
+			shift(code, Opcode.SLL, r, Integer.numberOfTrailingZeros(m));
+			return code;
+		}
+
+		final Code binary = horner(labels, r, t, binaryDigits(m));
+		final int[] naf = nafDigits(m);
+		if (naf.length > 16) {
+			return binary;
+		}
+		final Code signed = horner(labels, r, t, naf);
+		return CycleCost.of(signed) < CycleCost.of(binary) ? signed : binary;
+	}
+
+	public static Code divide(final Labels labels, final int r, final int t, final int c) {
+		final Code code = new Code(labels);
+		if (c > 1) {
+			final int k = Integer.numberOfTrailingZeros(c);
+			bias(code, r, t, k);
+			shift(code, Opcode.SRA, r, k);
+		}
+		return code;
+	}
+
+	public static Code remainder(final Labels labels, final int r, final int t, final int c) {
+		final Code code = new Code(labels);
+		if (c == 1) {
+			code.add(NONE, Opcode.LAD, r, AddressKind.DECIMAL, 0, NONE);
+			return code;
+		}
+		bias(code, r, t, Integer.numberOfTrailingZeros(c));
+		code.add(NONE, Opcode.AND, r, AddressKind.LITERAL, c - 1, NONE);
+		code.add(NONE, Opcode.SUBA, r, AddressKind.NONE, 0, t);
+		return code;
+	}
+
+	// t = (r < 0 ? 2^k-1 : 0), r += t
+	private static void bias(final Code code, final int r, final int t, final int k) {
+		code.add(NONE, Opcode.LD, t, AddressKind.NONE, 0, r);
+		shift(code, Opcode.SRA, t, 15);
+		shift(code, Opcode.SRL, t, 16 - k);
+		code.add(NONE, Opcode.ADDA, r, AddressKind.NONE, 0, t);
+	}
+
+	private static void shift(final Code code, final Opcode op, final int r, final int n) {
+		if (n > 0) {
+			code.add(NONE, op, r, AddressKind.DECIMAL, n, NONE);
+		}
+	}
+
+	/**
+	 * 最上位の桁が1である桁の列 (digits[i]は2^iの係数) を，r = r×c となるシフトと加減算の列にする．
+	 */
+	private static Code horner(final Labels labels, final int r, final int t, final int[] digits) {
+		final Code code = new Code(labels);
+		code.add(NONE, Opcode.LD, t, AddressKind.NONE, 0, r);
+		int pending = 0;
+		int i;
+		for (i = digits.length - 2; i >= 0; i--) {
+			pending++;
+			if (digits[i] != 0) {
+				shift(code, Opcode.SLL, r, pending);
+				code.add(NONE, digits[i] > 0 ? Opcode.ADDA : Opcode.SUBA, r, AddressKind.NONE, 0, t);
+				pending = 0;
+			}
+		}
+		shift(code, Opcode.SLL, r, pending);
+		return code;
+	}
+
+	private static int[] binaryDigits(final int m) {
+		final int[] digits = new int[32 - Integer.numberOfLeadingZeros(m)];
+		int i;
+		for (i = 0; i < digits.length; i++)
+			digits[i] = (m >> i) & 1;
+		return digits;
+	}
+
+	// 隣り合う桁がともに0でない符号付き2進表現
+	private static int[] nafDigits(final int m) {
+		final int[] digits = new int[18];
+		int n = m;
+		int length = 0;
+		while (n > 0) {
+			if ((n & 1) != 0) {
+				digits[length] = (n & 3) == 1 ? 1 : -1;
+				n -= digits[length];
+			}
+			n >>= 1;
+			length++;
+		}
+		final int[] result = new int[length];
+		System.arraycopy(digits, 0, result, 0, length);
+		return result;
+	}
+}
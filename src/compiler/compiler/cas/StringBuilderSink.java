@@ -0,0 +1,33 @@
+package compiler.compiler.cas;
+
+public class StringBuilderSink implements CodeSink {
+
+	/**
+	 * 仕様:
+	 * 行をメモリ上のStringBuilderに溜める．
+	 */
+
+	private final StringBuilder text;
+
+	public StringBuilderSink() {
+		this.text = new StringBuilder();
+	}
+
+	@Override
+	public void writeLine(final CharSequence line) {
+		text.append(line).append(System.lineSeparator());
+	}
+
+	public StringBuilder getText() {
+		return text;
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+
+	@Override
+	public void close() {
+	}
+}
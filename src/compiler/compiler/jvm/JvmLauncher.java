@@ -0,0 +1,77 @@
+package compiler.compiler.jvm;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+public class JvmLauncher {
+
+	/**
+	 * 仕様:
+	 * GenerateJvmCodeVisitorが生成したクラスをこのプロセスに読み込み，そのmainを実行する．
+	 * 実行時のエラー (0による除算，配列の添字の範囲外，再帰が深すぎる場合) では，それまでの出力を書き出してから
+	 * "Runtime error: line N (理由)" を標準エラーに出力する．Nはエラーを起こした文のpasファイルの行番号 (分からなければ0)．
+	 */
+
+	private static final class Loader extends ClassLoader {
+		Loader() {
+			super(JvmLauncher.class.getClassLoader());
+		}
+
+		Class<?> define(final String name, final byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+	private JvmLauncher() {
+	}
+
+	/**
+	 * classNameは内部形式のクラス名，classFileはそのクラスファイルのバイト列．
+	 */
+	public static void run(final String className, final byte[] classFile) {
+		final String name = className.replace('/', '.');
+		final Method main;
+		try {
+			main = new Loader().define(name, classFile).getMethod("main", String[].class);
+		} catch (final NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+
+		try {
+			main.invoke(null, (Object) new String[0]);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (final InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			final String reason = reason(cause);
+			if (reason == null) {
+				throw new IllegalStateException(cause);
+			}
+			JvmRuntime.flush();
+			System.err.println("Runtime error: line " + line(cause, name) + " (" + reason + ")");
+		}
+	}
+
+	private static String reason(final Throwable e) {
+		if (e instanceof ArithmeticException) {
+			return "division by zero";
+		}
+		if (e instanceof ArrayIndexOutOfBoundsException) {
+			return "index out of range";
+		}
+		if (e instanceof StackOverflowError) {
+			return "stack overflow";
+		}
+		return null;
+	}
+
+	// 生成したクラスの中で最も内側のフレームの行番号
+	private static int line(final Throwable e, final String name) {
+		for (final StackTraceElement frame : e.getStackTrace()) {
+			if (name.equals(frame.getClassName())) {
+				return Math.max(frame.getLineNumber(), 0);
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,141 @@
+package compiler.compiler.jvm;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+
+public final class JvmRuntime {
+
+	/**
+	 * 仕様:
+	 * GenerateJvmCodeVisitorが生成したクラスから呼ぶ入出力．値はCASLの1語と同じ16ビットの符号付き整数 (文字は文字コード)．
+	 * 働きはlib.casのRDINT〜WRTLN (MachineのSVC) と同じで，入力は行単位に読み，
+	 * RDINT/RDCH/RDSTRは行の残りから読む (行が尽きれば次の行を読む)．入力の終わりではRDINTとRDCHは0を返す．
+	 * 標準入力・標準出力はバッファを通して読み書きし，出力はflushか入力を待つ前に書き出す．
+	 */
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final BufferedReader in = new BufferedReader(new InputStreamReader(System.in), BUFFER_SIZE);
+	private static final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE);
+	private static String input = null;
+	private static int inputPos = 0;
+
+	private JvmRuntime() {
+	}
+
+	// 入力
+
+	public static int readInt() {
+		while (fill() && Character.isWhitespace(input.charAt(inputPos)))
+			inputPos++;
+		if (input == null) {
+			return 0;
+		}
+		int sign = 1;
+		if (input.charAt(inputPos) == '-' || input.charAt(inputPos) == '+') {
+			sign = input.charAt(inputPos) == '-' ? -1 : 1;
+			inputPos++;
+		}
+		int value = 0;
+		while (inputPos < input.length() && Character.isDigit(input.charAt(inputPos))) {
+			value = value * 10 + input.charAt(inputPos) - '0';
+			inputPos++;
+		}
+		return (short) (sign * value);
+	}
+
+	public static int readChar() {
+		return fill() ? (short) input.charAt(inputPos++) : 0;
+	}
+
+	/**
+	 * 配列の長さだけ文字を読む (RDSTR)．
+	 */
+	public static void readChars(final int[] chars) {
+		int i;
+		for (i = 0; i < chars.length; i++)
+			chars[i] = readChar();
+	}
+
+	/**
+	 * 行の残りを捨てる (RDLN)．
+	 */
+	public static void readLine() {
+		input = null;
+	}
+
+	// 行の残りから読む．行が尽きていれば次の行を読む (入力の終わりなら空)
+	private static boolean fill() {
+		while (input == null || inputPos >= input.length()) {
+			input = nextLine();
+			inputPos = 0;
+			if (input == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String nextLine() {
+		try {
+			if (!in.ready()) {
+				out.flush();
+			}
+			return in.readLine();
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	// 出力
+
+	public static void writeInt(final int value) {
+		write(Integer.toString((short) value));
+	}
+
+	public static void writeChar(final int value) {
+		try {
+			out.write((char) value);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void writeString(final String s) {
+		write(s);
+	}
+
+	public static void writeChars(final int[] chars) {
+		int i;
+		for (i = 0; i < chars.length; i++)
+			writeChar(chars[i]);
+	}
+
+	public static void writeLine() {
+		try {
+			out.newLine();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void flush() {
+		try {
+			out.flush();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void write(final String s) {
+		try {
+			out.write(s);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package compiler.compiler.visitor;
+
+import compiler.compiler.ast.AST;
+import compiler.compiler.ast.NodeKind;
+import compiler.compiler.ast.Visitor;
+
+public class ConstantFoldingVisitor implements Visitor<Integer> {
+
+	/**
+	 * 仕様:
+	 * 意味解析のあと，コード生成の前にASTを書き換える．各visitは節点の代わりに置く節点 (取り除くならAST.NONE) を返す．
+	 *   定数だけの部分木をCOMET IIと同じ1語(16ビット)の演算で計算し，定数の節点にする．負の整数は "-5" のような字面の整数定数にする．
+	 *   x+0, 0+x, x-0, x*1, 1*x, x div 1 は x に，x*0, 0*x, x mod 1 は 0 にする．
+	 *   if の条件が定数なら then か else の文だけを残し，while の条件が偽の定数なら文ごと取り除く．
+	 * 真偽値は生成するコードと同じく真を#0000，偽を#FFFFとして扱い，比較もその値の符号付き比較とする．
+	 * and/or も生成するコードと同じく，その値のビットごとのAND/ORとする (短絡評価のモードでも同じ)．
+	 * 0による除算は実行時に任せ，畳み込まない．
+	 */
+
+	private static final int TRUE = 0;
+	private static final int FALSE = -1;
+
+	// 子をそれぞれ置き換え，取り除いた子を詰めてつなぎ直す
+	private void foldChildren(AST ast, int node) {
+		int mark = ast.mark();
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			int next = ast.getNextSibling(child);
+			int folded = ast.accept(this, child);
+			if (folded != AST.NONE) {
+				ast.push(folded);
+			}
+			child = next;
+		}
+		ast.setChildren(node, mark);
+	}
+
+	public Integer visitDefault(AST ast, int node) {
+		foldChildren(ast, node);
+		return node;
+	}
+
+	// 宣言の型 (配列の添字の範囲) は書き換えない
+	public Integer visitVariableDeclaration(AST ast, int node) {
+		return node;
+	}
+
+	public Integer visitFormalParameters(AST ast, int node) {
+		return node;
+	}
+
+	public Integer visitIfStatement(AST ast, int node) {
+		foldChildren(ast, node);
+		int exp = ast.getFirstChild(node);
+		int condition = ast.getFirstChild(exp);
+		if (!isConstant(ast, condition)) {
+			return node;
+		}
+		int thenStatement = ast.getNextSibling(exp);
+		int elseStatement = ast.getNextSibling(thenStatement);
+		return ast.getFirstChild(valueOf(ast, condition) == TRUE ? thenStatement : elseStatement);
+	}
+
+	public Integer visitWhileStatement(AST ast, int node) {
+		foldChildren(ast, node);
+		int condition = ast.getFirstChild(ast.getFirstChild(node));
+		if (isConstant(ast, condition) && valueOf(ast, condition) == FALSE) {
+			return AST.NONE;
+		}
+		return node;
+	}
+
+	public Integer visitUnaryOperator(AST ast, int node) {
+		String op = ast.getSourceName(node);
+		foldChildren(ast, node);
+
+		int child = ast.getFirstChild(node);
+		if (!isConstant(ast, child)) {
+			return node;
+		}
+		int value = valueOf(ast, child);
+		switch (op) {
+		case "-":
+			return number(ast, -value, node);
+		case "not":
+			return bool(ast, ~value, node);
+		default:
+			return child;
+		}
+	}
+
+	public Integer visitBinaryOperator(AST ast, int node) {
+		String op = ast.getSourceName(node);
+		boolean andOr = "and".equals(op) || "or".equals(op);
+		foldChildren(ast, node);
+
+		int left = ast.getFirstChild(node);
+		int right = ast.getNextSibling(left);
+		boolean leftConstant = isConstant(ast, left);
+		boolean rightConstant = isConstant(ast, right);
+		if (andOr) {
+			return foldBits(ast, node, "and".equals(op), left, right, leftConstant, rightConstant);
+		}
+		if (leftConstant && rightConstant) {
+			return foldConstants(ast, node, op, valueOf(ast, left), valueOf(ast, right));
+		}
+		return simplify(ast, node, op, left, right, leftConstant, rightConstant);
+	}
+
+	private int foldBits(AST ast, int node, boolean bitAnd, int left, int right, boolean leftConstant,
+			boolean rightConstant) {
+		if (leftConstant && rightConstant) {
+			int l = valueOf(ast, left);
+			int r = valueOf(ast, right);
+			return bool(ast, bitAnd ? l & r : l | r, node);
+		}
+		if (!leftConstant && !rightConstant) {
+			return node;
+		}
+		int value = valueOf(ast, leftConstant ? left : right);
+		int other = leftConstant ? right : left;
+		// x AND #FFFF, x OR #0000 は x．x AND #0000, x OR #FFFF は定数
+		if (value == (bitAnd ? FALSE : TRUE)) {
+			return other;
+		}
+		return bool(ast, value, node);
+	}
+
+	private int foldConstants(AST ast, int node, String op, int l, int r) {
+		switch (op) {
+		case "+":
+			return number(ast, l + r, node);
+		case "-":
+			return number(ast, l - r, node);
+		case "*":
+			return number(ast, l * r, node);
+		case "/":
+		case "div":
+			return r == 0 ? node : number(ast, l / r, node);
+		case "mod":
+			return r == 0 ? node : number(ast, l % r, node);
+		case "=":
+			return compare(ast, l == r, node);
+		case "<>":
+			return compare(ast, l != r, node);
+		case "<":
+			return compare(ast, l < r, node);
+		case "<=":
+			return compare(ast, l <= r, node);
+		case ">":
+			return compare(ast, l > r, node);
+		case ">=":
+			return compare(ast, l >= r, node);
+		default:
+			return node;
+		}
+	}
+
+	// 片方だけが定数の場合の恒等式
+	private int simplify(AST ast, int node, String op, int left, int right, boolean leftConstant,
+			boolean rightConstant) {
+		int l = leftConstant ? valueOf(ast, left) : 1 << 16;
+		int r = rightConstant ? valueOf(ast, right) : 1 << 16;
+		switch (op) {
+		case "+":
+			if (l == 0) {
+				return right;
+			}
+			return r == 0 ? left : node;
+		case "-":
+			return r == 0 ? left : node;
+		case "*":
+			if (l == 0 || r == 0) {
+				return number(ast, 0, node);
+			}
+			if (l == 1) {
+				return right;
+			}
+			return r == 1 ? left : node;
+		case "/":
+		case "div":
+			return r == 1 ? left : node;
+		case "mod":
+			return r == 1 ? number(ast, 0, node) : node;
+		default:
+			return node;
+		}
+	}
+
+	// 定数の節点
+
+	private static boolean isConstant(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case NUMBER_LITERAL:
+		case BOOLEAN_LITERAL:
+			return true;
+		case STRING_LITERAL:
+			return ast.getSourceName(node).length() == 3;
+		default:
+			return false;
+		}
+	}
+
+	// 整数は符号付きの値，真偽値は#0000/#FFFF，文字は文字コード
+	private static int valueOf(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case BOOLEAN_LITERAL:
+			return "true".equals(ast.getSourceName(node)) ? TRUE : FALSE;
+		case STRING_LITERAL:
+			return ast.getSourceName(node).charAt(1);
+		default:
+			return (short) Integer.parseInt(ast.getSourceName(node));
+		}
+	}
+
+	private static int number(AST ast, int value, int node) {
+		return ast.add(NodeKind.NUMBER_LITERAL, Integer.toString((short) value), ast.getLine(node));
+	}
+
+	private static int bool(AST ast, int value, int node) {
+		return ast.add(NodeKind.BOOLEAN_LITERAL, value == TRUE ? "true" : "false", ast.getLine(node));
+	}
+
+	private static int compare(AST ast, boolean result, int node) {
+		return bool(ast, result ? TRUE : FALSE, node);
+	}
+}
@@ -0,0 +1,281 @@
+package compiler.compiler.visitor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import compiler.compiler.ast.AST;
+import compiler.compiler.ast.NodeKind;
+import compiler.compiler.ast.Visitor;
+
+public class DeadCodeEliminationVisitor implements Visitor<Integer> {
+
+	/**
+	 * 仕様:
+	 * 意味解析 (と定数の畳み込み) のあと，コード生成の前にプログラム全体から使われない部分を取り除く．
+	 * 各visitは節点の代わりに置く節点 (取り除くならAST.NONE) を返す．
+	 *   到達しない文  条件が定数trueのwhile (と，then/elseがともにそうなるif) のあとに続く文
+	 *   手続き        主プログラムの複合文から呼び出しをたどって到達しない手続きの宣言
+	 *   変数          値を読まれない変数の宣言と，その変数への代入文 (式に副作用はない)．
+	 *                 readlnで読む変数は入力を消費するので残す．仮引数は呼び出しの実引数と対応するので残す
+	 * 代入文を取り除くと右辺で読んでいた変数も使われなくなりうるので，読まれる変数は不動点まで求める．
+	 * 残った手続きには宣言順に番号を，残った変数には宣言順に番地 (VARからの相対番地) を振り直し，
+	 * 名前の節点のIDを付け替える．
+	 */
+
+	// 手続きのID → Subprogramの節点
+	private final Map<ID, Integer> subprograms;
+	private final Set<ID> reachable;
+	private final Set<ID> live;
+	private final Map<ID, ID> renamed;
+	private int memCnt;
+	private int procCnt;
+
+	public DeadCodeEliminationVisitor() {
+		this.subprograms = new IdentityHashMap<ID, Integer>();
+		this.reachable = Collections.newSetFromMap(new IdentityHashMap<ID, Boolean>());
+		this.live = Collections.newSetFromMap(new IdentityHashMap<ID, Boolean>());
+		this.renamed = new IdentityHashMap<ID, ID>();
+		this.memCnt = 0;
+		this.procCnt = 0;
+	}
+
+	public Integer visitProgram(AST ast, int node) {
+		collectSubprograms(ast, node);
+		markReachable(ast, node);
+		markLive(ast, node);
+		foldChildren(ast, node);
+		renumber(ast, node);
+		return node;
+	}
+
+	// 子をそれぞれ置き換え，取り除いた子を詰めてつなぎ直す
+	private void foldChildren(AST ast, int node) {
+		int mark = ast.mark();
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			int next = ast.getNextSibling(child);
+			int folded = ast.accept(this, child);
+			if (folded != AST.NONE) {
+				ast.push(folded);
+			}
+			child = next;
+		}
+		ast.setChildren(node, mark);
+	}
+
+	public Integer visitDefault(AST ast, int node) {
+		foldChildren(ast, node);
+		return node;
+	}
+
+	public Integer visitSubprogram(AST ast, int node) {
+		if (!reachable.contains(ast.getSymbol(ast.getFirstChild(node)))) {
+			return AST.NONE;
+		}
+		foldChildren(ast, node);
+		return node;
+	}
+
+	public Integer visitVariableDeclarator(AST ast, int node) {
+		return live.contains(ast.getSymbol(node)) ? node : AST.NONE;
+	}
+
+	public Integer visitFormalParameterDeclarator(AST ast, int node) {
+		return node;
+	}
+
+	// 終わらない文より後ろの文は取り除く
+	public Integer visitStatements(AST ast, int node) {
+		int mark = ast.mark();
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			int next = ast.getNextSibling(child);
+			int folded = ast.accept(this, child);
+			if (folded != AST.NONE) {
+				ast.push(folded);
+			}
+			if (!completes(ast, child)) {
+				break;
+			}
+			child = next;
+		}
+		ast.setChildren(node, mark);
+		return node;
+	}
+
+	public Integer visitAssignment(AST ast, int node) {
+		return live.contains(target(ast, node)) ? node : AST.NONE;
+	}
+
+	// 到達する手続き
+
+	private void collectSubprograms(AST ast, int node) {
+		int child;
+		for (child = ast.getFirstChild(node); child != AST.NONE; child = ast.getNextSibling(child)) {
+			switch (ast.getKind(child)) {
+			case SUBPROGRAM:
+				subprograms.put(ast.getSymbol(ast.getFirstChild(child)), child);
+				break;
+			case BLOCK:
+			case SUBPROGRAMS:
+				collectSubprograms(ast, child);
+				break;
+			default:
+			}
+		}
+	}
+
+	private void markReachable(AST ast, int program) {
+		Deque<Integer> work = new ArrayDeque<Integer>();
+		work.push(program);
+		while (!work.isEmpty()) {
+			List<ID> callees = new ArrayList<ID>();
+			collectCalls(ast, work.pop(), callees);
+			for (ID callee : callees) {
+				if (reachable.add(callee)) {
+					work.push(subprograms.get(callee));
+				}
+			}
+		}
+	}
+
+	private void collectCalls(AST ast, int node, List<ID> callees) {
+		int child;
+		for (child = ast.getFirstChild(node); child != AST.NONE; child = ast.getNextSibling(child)) {
+			switch (ast.getKind(child)) {
+			case PROCEDURE_CALL:
+				callees.add(ast.getSymbol(child));
+				break;
+			case BLOCK:
+			case SUBPROGRAMS:
+			case SUBPROGRAM:
+			case VARIABLE_DECLARATION:
+			case VARIABLE_DECLARATOR:
+			case PROCEDURE_DECLARATOR:
+				break;
+			default:
+				collectCalls(ast, child, callees);
+			}
+			if (ast.getKind(node) == NodeKind.STATEMENTS && !completes(ast, child)) {
+				break;
+			}
+		}
+	}
+
+	// 読まれる変数
+
+	private void markLive(AST ast, int program) {
+		List<Integer> assignments = new ArrayList<Integer>();
+		collectReads(ast, program, assignments);
+		for (ID id : reachable) {
+			collectReads(ast, subprograms.get(id), assignments);
+		}
+
+		// 読まれる変数への代入文の右辺と添字を読まれる側に加える
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			int i;
+			for (i = 0; i < assignments.size(); i++) {
+				int assignment = assignments.get(i);
+				if (assignment != AST.NONE && live.contains(target(ast, assignment))) {
+					collectReads(ast, assignment, assignments);
+					assignments.set(i, AST.NONE);
+					changed = true;
+				}
+			}
+		}
+	}
+
+	private void collectReads(AST ast, int node, List<Integer> assignments) {
+		int child;
+		for (child = ast.getFirstChild(node); child != AST.NONE; child = ast.getNextSibling(child)) {
+			switch (ast.getKind(child)) {
+			case ASSIGNMENT:
+				assignments.add(child);
+				break;
+			case SIMPLE_VARIABLE:
+			case INDEXED_VARIABLE:
+				if (ast.getKind(node) != NodeKind.LEFT_VALUE) {
+					live.add(ast.getSymbol(child));
+				}
+				collectReads(ast, child, assignments);
+				break;
+			case BLOCK:
+			case SUBPROGRAMS:
+			case SUBPROGRAM:
+			case VARIABLE_DECLARATION:
+			case VARIABLE_DECLARATOR:
+			case PROCEDURE_DECLARATOR:
+				break;
+			default:
+				collectReads(ast, child, assignments);
+			}
+			if (ast.getKind(node) == NodeKind.STATEMENTS && !completes(ast, child)) {
+				break;
+			}
+		}
+	}
+
+	private static ID target(AST ast, int assignment) {
+		return ast.getSymbol(ast.getFirstChild(ast.getFirstChild(assignment)));
+	}
+
+	// 文が終わって次の文に進むことがあるか (条件が定数trueのwhileは終わらない)
+	private static boolean completes(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case WHILE_STATEMENT:
+			int condition = ast.getFirstChild(ast.getFirstChild(node));
+			return ast.getKind(condition) != NodeKind.BOOLEAN_LITERAL || !"true".equals(ast.getSourceName(condition));
+		case IF_STATEMENT:
+			int thenStatement = ast.getNextSibling(ast.getFirstChild(node));
+			int elseStatement = ast.getNextSibling(thenStatement);
+			return completesAll(ast, thenStatement) || completesAll(ast, elseStatement);
+		case STATEMENTS:
+			return completesAll(ast, node);
+		default:
+			return true;
+		}
+	}
+
+	private static boolean completesAll(AST ast, int node) {
+		int child;
+		for (child = ast.getFirstChild(node); child != AST.NONE; child = ast.getNextSibling(child)) {
+			if (!completes(ast, child)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// 番号と番地の振り直し (宣言は参照より前にある)
+
+	private void renumber(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		if (id != null) {
+			switch (ast.getKind(node)) {
+			case PROCEDURE_DECLARATOR:
+				renamed.put(id, new ID(id.getName(), id.getType(), id.getFParamType(), id.getScope(), procCnt, memCnt));
+				procCnt++;
+				break;
+			case VARIABLE_DECLARATOR:
+			case FORMAL_PARAMETER_DECLARATOR:
+				renamed.put(id, new ID(id.getName(), id.getType(), id.getScope(), memCnt));
+				memCnt += id.getType().getSize();
+				break;
+			default:
+			}
+			ast.setSymbol(node, renamed.get(id));
+		}
+
+		int child;
+		for (child = ast.getFirstChild(node); child != AST.NONE; child = ast.getNextSibling(child))
+			renumber(ast, child);
+	}
+}
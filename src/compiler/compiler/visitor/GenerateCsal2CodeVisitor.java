@@ -1,22 +1,43 @@
 package compiler.compiler.visitor;
 
-import java.io.PrintWriter;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 
-import compiler.compiler.ast.ASTNode;
-
-public class GenerateCsal2CodeVisitor {
-	private PrintWriter pw;
+import compiler.compiler.ast.AST;
+import compiler.compiler.ast.NodeKind;
+import compiler.compiler.ast.Visitor;
+import compiler.compiler.cas.AddressKind;
+import compiler.compiler.cas.CaslPrinter;
+import compiler.compiler.cas.Code;
+import compiler.compiler.cas.CodeSink;
+import compiler.compiler.cas.CycleCost;
+import compiler.compiler.cas.Labels;
+import compiler.compiler.cas.Opcode;
+import compiler.compiler.cas.PeepholeOptimizer;
+import compiler.compiler.cas.StrengthReduction;
+
+public class GenerateCsal2CodeVisitor implements Visitor<Void> {
+	private static final int GR1 = 1;
+	private static final int GR2 = 2;
+	private static final int GR3 = 3;
+	private static final int GR6 = 6;
+	private static final int GR7 = 7;
+	private static final int TRUE = 0x0000;
+	private static final int FALSE = 0xFFFF;
+
+	private CodeSink sink;
+	private PeepholeOptimizer optimizer;
+	private Labels labels;
+	private Code code;
+	private Code procCode;
+	private int varLabel;
 	private int leftValue;
 	private boolean isLocal;
-	private boolean isArray;
 	private boolean isCurrent;
 	private boolean isOutput;
 	private boolean isInput;
-	private List<Integer> arrayRange;
 	private int inoutMode; // 0:int, 1:char, 2:string
 	private int trueCnt;
 	private int bothCnt;
@@ -26,22 +47,32 @@ public class GenerateCsal2CodeVisitor {
 	private int endifCnt;
 	private int procCnt;
 	private int fparamCnt;
-	private int varType; // 0:int 1:char 2:boolean 3:array
-	private int varSubType; // 0:int 1:char 2:boolean
 	private int varArraySize;
 	private List<String> charList;
 	private List<ProcListComponent> procList;
-	private List<VarListComponent> globalVarList;
-	private List<VarListComponent> localVarList;
 	private Deque<Integer> elseStack;
 	private Deque<Integer> endIfStack;
 	private Deque<Integer> loopStack;
-
-	public GenerateCsal2CodeVisitor(PrintWriter pw) {
-		this.pw = pw;
+	private boolean registerMode;
+	private boolean branchFusion;
+	private boolean shortCircuit;
+	private boolean strengthReduction;
+	private int skipCnt;
+	private Registers registers;
+	private int[] need;
+	private int pairLeft;
+	private int pairRight;
+	private int line;
+	private String programName;
+	private boolean lineComments;
+
+	public GenerateCsal2CodeVisitor(CodeSink sink) {
+		this.sink = sink;
+		this.labels = new Labels();
+		this.code = new Code(labels);
+		this.procCode = new Code(labels);
+		this.varLabel = labels.intern("VAR");
 		this.inoutMode = -1;
-		this.varType = -1;
-		this.varSubType = -1;
 		this.leftValue = 0;
 		this.charList = new ArrayList<String>();
 		this.bothCnt = 0;
@@ -53,636 +84,514 @@ public class GenerateCsal2CodeVisitor {
 		this.procCnt = 0;
 		this.fparamCnt = 0;
 		this.varArraySize = -1;
-		this.globalVarList = new ArrayList<VarListComponent>();
-		this.localVarList = new ArrayList<VarListComponent>();
 		this.procList = new ArrayList<ProcListComponent>();
-		this.arrayRange = new ArrayList<Integer>();
 		this.elseStack = new ArrayDeque<Integer>();
 		this.endIfStack = new ArrayDeque<Integer>();
 		this.loopStack = new ArrayDeque<Integer>();
 		this.isCurrent = false;
 		this.isOutput = false;
 		this.isInput = false;
+		this.registerMode = false;
+		this.branchFusion = false;
+		this.shortCircuit = false;
+		this.strengthReduction = false;
+		this.skipCnt = 0;
+		this.registers = new Registers();
+		this.line = 0;
+		this.lineComments = false;
+	}
+
+	private void traceChildren(AST ast, int node) {
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			accept(ast, child);
+			child = ast.getNextSibling(child);
+		}
 	}
 
-	public void visit(ASTNode node) {
-		preGenCode(node);
-
-		traceChildren(node);
-
-		postGenCode(node);
+	// 兄弟の並びを末尾から順にたどる (実引数は後ろから積む)
+	private void traceReverse(AST ast, int child) {
+		if (child != AST.NONE) {
+			traceReverse(ast, ast.getNextSibling(child));
+			accept(ast, child);
+		}
 	}
 
-	private void traceChildren(ASTNode node) {
-		List<ASTNode> children = node.getChildren();
-		if (children != null) {
-			if (node.getLabel().equals("ProcedureCall")) {
-				int i = children.size() - 1;
-				while (i >= 0) {
-					children.get(i).accept(this);
-					i--;
-				}
-			} else {
-				int i = 0;
-				while (i < children.size()) {
-					children.get(i).accept(this);
-					i++;
-				}
-			}
+	// 行番号のある節点なら，その部分木から生成する命令にその行番号を付ける
+	private void accept(AST ast, int node) {
+		int saved = line;
+		if (ast.getLine(node) != 0) {
+			line = ast.getLine(node);
 		}
+		ast.accept(this, node);
+		line = saved;
 	}
 
-	private void preGenCode(ASTNode node) {
-		switch (node.getLabel()) {
-
-		case "Program":
-			preGenCodeAtProgram();
-			break;
+	public Void visitDefault(AST ast, int node) {
+		traceChildren(ast, node);
+		return null;
+	}
 
-		case "LeftValue":
-			leftValue = 1;
-			break;
+	// 主プログラムの入口と出口の命令はプログラム名の行とする
+	public Void visitProgram(AST ast, int node) {
+		programName = ast.getSourceName(ast.getFirstChild(node));
+		line = ast.getLine(ast.getFirstChild(node));
+		preGenCodeAtProgram();
+		traceChildren(ast, node);
+		postGenCodeAtProgram();
+		return null;
+	}
 
-		case "Subprogram":
-			localVarList = new ArrayList<VarListComponent>();
-			isLocal = true;
-			break;
+	public Void visitLeftValue(AST ast, int node) {
+		leftValue = 1;
+		traceChildren(ast, node);
+		leftValue = 0;
+		return null;
+	}
 
-		case "ProcedureDeclarator":
-			procList.add(new ProcListComponent(node.getSourceName(), procCnt, memCnt));
-			genCode("PROC" + procCnt, "NOP", "");
-			procCnt++;
-			fparamCnt = 0;
-			break;
+	// 手続きの入口と出口の命令は手続き名の行とする
+	public Void visitSubprogram(AST ast, int node) {
+		int saved = line;
+		line = ast.getLine(ast.getFirstChild(node));
+		isLocal = true;
+		traceChildren(ast, node);
+		postGenCodeAtSubprogram();
+		isLocal = false;
+		line = saved;
+		return null;
+	}
 
-		case "ArrayType":
-			isArray = true;
-			break;
+	public Void visitProcedureDeclarator(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		procList.add(new ProcListComponent(id.getName(), id.getNumber(), id.getMemRelAddr()));
+		genLabel("PROC", procCnt);
+		procCnt++;
+		fparamCnt = 0;
+		traceChildren(ast, node);
+		if (fparamCnt > 0) {
+			postGenCodeAtProcedureDeclarator();
+		}
+		return null;
+	}
 
-		case "WhileStatement":
-			preGenCodeAtWhileStatement();
-			break;
+	// 型の部分木はたどらず，意味解析で付けたIDから領域を割り当てる
+	public Void visitVariableDeclarator(AST ast, int node) {
+		addVarToList(ast, node);
+		if (isLocal) {
+			int fparamMemAddr = procList.get(procList.size() - 1).getFparamMemAddr();
+			procList.get(procList.size() - 1).setFpramCnt(memCnt - fparamMemAddr);
+		}
+		return null;
+	}
 
-		case "IndexedVariable":
-			if (leftValue > 0) {
-				leftValue++;
-			}
-			break;
+	public Void visitFormalParameterDeclarator(AST ast, int node) {
+		addVarToList(ast, node);
+		procList.get(procList.size() - 1).incFpramCnt();
+		postGenCodeAtFormalParameterDeclarator(ast, node);
+		return null;
+	}
 
-		case "ElseStatement":
-			preGenCodeAtElseStatement(node);
-			break;
+	public Void visitWhileStatement(AST ast, int node) {
+		preGenCodeAtWhileStatement();
+		traceChildren(ast, node);
+		postGenCodeAtWhileStatement();
+		return null;
+	}
 
-		case "ProcedureCall":
-			if (procList.size() > 0 && procList.get(procList.size() - 1).getName().equals(node.getSourceName())) {
-				isCurrent = true;
-				preGenCodeAtProcedureCall(node);
-			}
-			break;
+	public Void visitWhileExp(AST ast, int node) {
+		genCondition(ast, node, Opcode.CPL, "ENDLP", loopStack.peek());
+		return null;
+	}
 
-		case "OutputStatement":
-			isOutput = true;
-			break;
+	public Void visitIfExp(AST ast, int node) {
+		genCondition(ast, node, Opcode.CPA, "ELSE", elseCnt);
+		postGenCodeAtIfExp();
+		return null;
+	}
 
-		case "InputStatement":
-			isInput = true;
-			break;
+	// 条件式が偽ならprefix+numberへ飛ぶ．testは条件式の値を#FFFFと比べる命令
+	private void genCondition(AST ast, int node, Opcode test, String prefix, int number) {
+		int expr = ast.getFirstChild(node);
+		if (shortCircuit && isLogical(ast, expr)) {
+			genJumpIfFalse(ast, expr, labels.intern(prefix, number));
+			return;
+		}
+		if (branchFusion && isComparison(ast, expr)) {
+			genCompareOperands(ast, expr);
+			genJumpUnless(ast.getSourceName(expr), labels.intern(prefix, number));
+			return;
 		}
 
+		int r;
+		if (registerMode) {
+			r = genExpression(ast, expr);
+			registers.free(r);
+		} else {
+			traceChildren(ast, node);
+			r = GR1;
+			genCode(Opcode.POP, r);
+		}
+		genHexLiteral(test, r, FALSE);
+		genJump(Opcode.JZE, prefix, number);
 	}
 
-	private void preGenCodeAtProcedureCall(ASTNode node) {
-		int fparamMemAddr = procList.get(procList.size() - 1).getFparamMemAddr();
-		int fparamCnt = procList.get(procList.size() - 1).getFparamCnt();
-		int i;
-		for (i = 0; i < fparamCnt; i++) {
-			genCode("LD", "GR2, =" + (fparamMemAddr + i));
-			genCode("LD", "GR1, VAR, GR2");
-			genCode("PUSH", "0, GR1");
+	public Void visitElseStatement(AST ast, int node) {
+		preGenCodeAtElseStatement(ast, node);
+		traceChildren(ast, node);
+		if (ast.hasChildren(node)) {
+			postGenCodeAtElseStatement();
 		}
+		return null;
 	}
 
-	private void preGenCodeAtElseStatement(ASTNode node) {
-		if (node.getChildren().size() > 0) {
-			genCode("JUMP", "ENDIF" + endifCnt);
-			endIfStack.push(endifCnt);
-			endifCnt++;
+	public Void visitProcedureCall(AST ast, int node) {
+		if (ast.getSymbol(node).getNumber() == procList.size() - 1) {
+			isCurrent = true;
+			preGenCodeAtProcedureCall(ast, node);
+		}
+		if (registerMode) {
+			genArguments(ast, ast.getFirstChild(node));
+		} else {
+			traceReverse(ast, ast.getFirstChild(node));
 		}
-		genCode("ELSE" + elseStack.pop(), "NOP", "");
+		postGenCodeAtProcedureCall(ast, node);
+		return null;
 	}
 
-	private void preGenCodeAtWhileStatement() {
-		genCode("LOOP" + loopCnt, "NOP", "");
-		loopStack.push(loopCnt);
-		loopCnt++;
+	public Void visitOutputStatement(AST ast, int node) {
+		isOutput = true;
+		traceChildren(ast, node);
+		postGenCodeAtOutputStatement();
+		isOutput = false;
+		return null;
 	}
 
-	private void postGenCode(ASTNode node) {
-		switch (node.getLabel()) {
-		case "Program":
-			postGenCodeAtProgram();
-			break;
-
-		case "OutputStatementComponent":
-			postGenCodeAtOutputStatementComponent();
-			break;
-
-		case "OutputStatement":
-			postGenCodeAtOutputStatement();
-			isOutput = false;
-			break;
-
-		case "InputStatementComponent":
-			postGenCodeAtInputStatementComponent();
-			break;
-
-		case "InputStatement":
-			if (node.getChildren() == null) {
-				postGenCodeAtInputStatement();
-			}
-			isInput = false;
-			break;
-
-		case "NumberLiteral":
-			postGenCodeAtNumberLiteral(node);
-			break;
-
-		case "BinaryOperator":
-			postGenCodeAtBinaryOperator(node);
-			break;
-
-		case "StringLiteral":
-			postGenCodeAtStringLiteral(node);
-			break;
+	public Void visitOutputStatementComponent(AST ast, int node) {
+		int child = ast.getFirstChild(node);
+		if (registerMode && isScalar(ast, child)) {
+			genOutput(genExpression(ast, child));
+			return null;
+		}
+		traceChildren(ast, node);
+		postGenCodeAtOutputStatementComponent();
+		return null;
+	}
 
-		case "BooleanLiteral":
-			postGenCodeAtBooleanLiteral(node);
-			break;
+	public Void visitInputStatement(AST ast, int node) {
+		isInput = true;
+		traceChildren(ast, node);
+		if (!ast.hasChildren(node)) {
+			postGenCodeAtInputStatement();
+		}
+		isInput = false;
+		return null;
+	}
 
-		case "UnaryOperator":
-			postGenCodeAtUnaryOperator(node);
-			break;
+	public Void visitInputStatementComponent(AST ast, int node) {
+		traceChildren(ast, node);
+		postGenCodeAtInputStatementComponent();
+		return null;
+	}
 
-		case "LeftValue":
-			leftValue = 0;
-			break;
+	public Void visitNumberLiteral(AST ast, int node) {
+		postGenCodeAtNumberLiteral(ast, node);
+		inoutMode = 0;
+		return null;
+	}
 
-		case "Subprogram":
-			postGenCodeAtSubprogram();
-			localVarList.clear();
-			isLocal = false;
-			break;
+	public Void visitStringLiteral(AST ast, int node) {
+		postGenCodeAtStringLiteral(ast, node);
+		return null;
+	}
 
-		case "VariableDeclarator":
-			addVarToList(node);
-			if (isArray) {
-				arrayIndexCount();
-				isArray = false;
-				arrayRange.clear();
-			}
-			if (isLocal) {
-				int fparamMemAddr = procList.get(procList.size() - 1).getFparamMemAddr();
-				procList.get(procList.size() - 1).setFpramCnt(memCnt - fparamMemAddr);
-			}
-			break;
+	public Void visitBooleanLiteral(AST ast, int node) {
+		postGenCodeAtBooleanLiteral(ast, node);
+		return null;
+	}
 
-		case "FormalParameterDeclarator":
-			addVarToList(node);
-			procList.get(procList.size() - 1).incFpramCnt();
-			postGenCodeAtFormalParameterDeclarator(node);
-			break;
+	public Void visitBinaryOperator(AST ast, int node) {
+		int operand = reducedOperand(ast, node);
+		if (operand != AST.NONE) {
+			ast.accept(this, operand);
+			genCode(Opcode.POP, GR1);
+			genSequence(reduction(ast, node, GR1, GR2));
+			genPush(GR1);
+			inoutMode = 0;
+			return null;
+		}
+		traceChildren(ast, node);
+		postGenCodeAtBinaryOperator(ast, node);
+		return null;
+	}
 
-		case "SimpleVariable":
-			if (leftValue == 1 || isInput) {
-				postGenCodeAtSimpleLeftVariable(node);
-				if (isInput) {
-					inoutMode = getType(node.getSourceName());
-				}
-			} else {
-				postGenCodeAtSimpleVariable(node);
-				inoutMode = getType(node.getSourceName());
-			}
-			break;
+	public Void visitUnaryOperator(AST ast, int node) {
+		traceChildren(ast, node);
+		postGenCodeAtUnaryOperator(ast, node);
+		return null;
+	}
 
-		case "IndexedVariable":
-			if (leftValue > 0) {
-				leftValue--;
-			}
+	public Void visitAssignment(AST ast, int node) {
+		if (registerMode) {
+			int left = ast.getFirstChild(node);
+			genAssignment(ast, ast.getFirstChild(left), ast.getNextSibling(left));
+			return null;
+		}
+		traceChildren(ast, node);
+		postGenCodeAtAssignment();
+		return null;
+	}
 
-			if (leftValue == 1 || isInput) {
-				postGenCodeAtIndexedLeftVariable(node);
-				inoutMode = getSubType(node.getSourceName());
-			} else {
-				postGenCodeAtIndexedVariable(node);
-				inoutMode = getSubType(node.getSourceName());
+	public Void visitSimpleVariable(AST ast, int node) {
+		if (leftValue == 1 || isInput) {
+			postGenCodeAtSimpleLeftVariable(ast, node);
+			if (isInput) {
+				inoutMode = ast.getSymbol(node).getType().getTypeCode();
 			}
-			break;
-
-		case "Assignment":
-			postGenCodeAtAssignment();
-			break;
-
-		case "StandardType":
-			varType = getVarType(node.getSourceName());
-			break;
-
-		case "ArrayType":
-			varSubType = varType;
-			varType = 3;
-			break;
-
-		case "WhileExp":
-			postGenCodeAtWhileExp();
-			break;
-
-		case "WhileStatement":
-			postGenCodeAtWhileStatement();
-			break;
-
-		case "IfExp":
-			postGenCodeAtIfExp();
-			break;
+		} else {
+			postGenCodeAtSimpleVariable(ast, node);
+			inoutMode = ast.getSymbol(node).getType().getTypeCode();
+		}
+		return null;
+	}
 
-		case "ElseStatement":
-			if (node.getChildren().size() > 0) {
-				postGenCodeAtElseStatement();
-			}
-			break;
+	public Void visitIndexedVariable(AST ast, int node) {
+		if (leftValue > 0) {
+			leftValue++;
+		}
+		traceChildren(ast, node);
+		if (leftValue > 0) {
+			leftValue--;
+		}
 
-		case "ProcedureCall":
-			postGenCodeAtProcedureCall(node);
-			break;
+		if (leftValue == 1 || isInput) {
+			postGenCodeAtIndexedLeftVariable(ast, node);
+			inoutMode = ast.getSymbol(node).getType().getSubTypeCode();
+		} else {
+			postGenCodeAtIndexedVariable(ast, node);
+			inoutMode = ast.getSymbol(node).getType().getSubTypeCode();
+		}
+		return null;
+	}
 
-		case "ProcedureDeclarator":
-			if (fparamCnt > 0) {
-				postGenCodeAtProcedureDeclarator();
-			}
-			break;
+	private void preGenCodeAtProcedureCall(AST ast, int node) {
+		int fparamMemAddr = procList.get(procList.size() - 1).getFparamMemAddr();
+		int fparamCnt = procList.get(procList.size() - 1).getFparamCnt();
+		int i;
+		for (i = 0; i < fparamCnt; i++) {
+			genLiteral(Opcode.LD, GR2, fparamMemAddr + i);
+			genVar(Opcode.LD, GR1, GR2);
+			genPush(GR1);
+		}
+	}
 
+	private void preGenCodeAtElseStatement(AST ast, int node) {
+		if (ast.hasChildren(node)) {
+			genJump(Opcode.JUMP, "ENDIF", endifCnt);
+			endIfStack.push(endifCnt);
+			endifCnt++;
 		}
+		genLabel("ELSE", elseStack.pop());
+	}
 
+	private void preGenCodeAtWhileStatement() {
+		genLabel("LOOP", loopCnt);
+		loopStack.push(loopCnt);
+		loopCnt++;
 	}
 
 	private void postGenCodeAtInputStatementComponent() {
 		switch (inoutMode) {
 		case 0:
-			genCode("POP", "GR2");
-			genCode("LAD", "GR1, VAR");
-			genCode("ADDA", "GR2, GR1");
-			genCode("CALL", "RDINT");
+			genCode(Opcode.POP, GR2);
+			genCode(Code.NONE, Opcode.LAD, GR1, AddressKind.LABEL, varLabel, Code.NONE);
+			genRegister(Opcode.ADDA, GR2, GR1);
+			genCall("RDINT");
 			break;
 
 		case 1:
-			genCode("POP", "GR2");
-			genCode("LAD", "GR1, VAR");
-			genCode("ADDA", "GR2, GR1");
-			genCode("CALL", "RDCH");
+			genCode(Opcode.POP, GR2);
+			genCode(Code.NONE, Opcode.LAD, GR1, AddressKind.LABEL, varLabel, Code.NONE);
+			genRegister(Opcode.ADDA, GR2, GR1);
+			genCall("RDCH");
 			break;
 
 		case 3:
-			genCode("POP", "GR2");
-			genCode("LAD", "GR1, " + varArraySize);
-			genCode("CALL", "RDSTR");
+			genCode(Opcode.POP, GR2);
+			genCode(Code.NONE, Opcode.LAD, GR1, AddressKind.DECIMAL, varArraySize, Code.NONE);
+			genCall("RDSTR");
 			break;
 		}
 	}
 
 	private void postGenCodeAtInputStatement() {
-		genCode("CALL", "RDLN");
+		genCall("RDLN");
 	}
 
 	private void postGenCodeAtSubprogram() {
-		genCode("RET", "");
+		genCode(Opcode.RET);
 	}
 
 	private void postGenCodeAtProcedureDeclarator() {
-		genCode("LD", "GR1, 0, GR8");
-		genCode("ADDA", "GR8, =" + fparamCnt);
-		genCode("ST", "GR1, 0, GR8");
+		genCode(Code.NONE, Opcode.LD, GR1, AddressKind.DECIMAL, 0, Code.SP);
+		genLiteral(Opcode.ADDA, Code.SP, fparamCnt);
+		genCode(Code.NONE, Opcode.ST, GR1, AddressKind.DECIMAL, 0, Code.SP);
 	}
 
-	private void postGenCodeAtFormalParameterDeclarator(ASTNode node) {
+	private void postGenCodeAtFormalParameterDeclarator(AST ast, int node) {
 		if (fparamCnt == 0) {
-			genCode("LD", "GR1, GR8");
+			genRegister(Opcode.LD, GR1, Code.SP);
 		}
 		fparamCnt++;
 
-		genCode("ADDA", "GR1, =" + fparamCnt);
-		genCode("LD", "GR2, 0, GR1");
-		int memRelAddr = getMemRelAddr(node.getSourceName());
-		genCode("LD", "GR3, =" + memRelAddr);
-		genCode("ST", "GR2, VAR, GR3");
-		genCode("SUBA", "GR1, =" + fparamCnt);
+		genLiteral(Opcode.ADDA, GR1, fparamCnt);
+		genCode(Code.NONE, Opcode.LD, GR2, AddressKind.DECIMAL, 0, GR1);
+		int memRelAddr = ast.getSymbol(node).getMemRelAddr();
+		genLiteral(Opcode.LD, GR3, memRelAddr);
+		genVar(Opcode.ST, GR2, GR3);
+		genLiteral(Opcode.SUBA, GR1, fparamCnt);
 	}
 
-	private void postGenCodeAtProcedureCall(ASTNode node) {
-		int procNum = getProcNum(node.getSourceName());
-		genCode("CALL", "PROC" + procNum);
+	private void postGenCodeAtProcedureCall(AST ast, int node) {
+		int procNum = ast.getSymbol(node).getNumber();
+		genJump(Opcode.CALL, "PROC", procNum);
 		if (isCurrent) {
 			isCurrent = false;
 			int fparamMemAddr = procList.get(procList.size() - 1).getFparamMemAddr();
 			int fparamCnt = procList.get(procList.size() - 1).getFparamCnt();
 			int i;
 			for (i = fparamCnt - 1; i >= 0; i--) {
-				genCode("POP", "GR1");
-				genCode("LD", "GR2, =" + (fparamMemAddr + i));
-				genCode("ST", "GR1, VAR, GR2");
+				genCode(Opcode.POP, GR1);
+				genLiteral(Opcode.LD, GR2, fparamMemAddr + i);
+				genVar(Opcode.ST, GR1, GR2);
 			}
 		}
 
 	}
 
-	private int getProcNum(String name) {
-		ProcListComponent com = searchProcList(name);
-		if (com != null) {
-			return com.getNumber();
-		} else {
-			return -1;
-		}
-	}
-
-	private ProcListComponent searchProcList(String name) {
-		int i;
-		for (i = 0; i < procList.size(); i++) {
-			if (procList.get(i).getName().equals(name)) {
-				return procList.get(i);
-			}
-		}
-		return null;
-	}
-
 	private void postGenCodeAtElseStatement() {
-		genCode("ENDIF" + endIfStack.pop(), "NOP", "");
+		genLabel("ENDIF", endIfStack.pop());
 	}
 
 	private void postGenCodeAtIfExp() {
-		genCode("POP", "GR1");
-		genCode("CPA", "GR1, =#FFFF");
-		genCode("JZE", "ELSE" + elseCnt);
 		elseStack.push(elseCnt);
 		elseCnt++;
 	}
 
 	private void postGenCodeAtWhileStatement() {
 		int value = loopStack.pop();
-		genCode("JUMP", "LOOP" + value);
-		genCode("ENDLP" + value, "NOP", "");
-	}
-
-	private void postGenCodeAtWhileExp() {
-		int value = loopStack.pop();
-		loopStack.push(value);
-		genCode("POP", "GR1");
-		genCode("CPL", "GR1, =#FFFF");
-		genCode("JZE", "ENDLP" + value);
-	}
-
-	private void postGenCodeAtIndexedLeftVariable(ASTNode node) {
-		genCode("POP", "GR2");
-		int varMem = getMemRelAddr(node.getSourceName());
-		int min = getArrayMin(node.getSourceName());
-		genCode("ADDA", "GR2, =" + (varMem - min));
-		genCode("PUSH", "0, GR2");
-	}
-
-	private int getArrayMin(String name) {
-		int arrayMin;
-		if (isLocal) {
-			VarListComponent com = searchLoccalVarList(name);
-			if (com != null) {
-				arrayMin = com.getArrayMin();
-				return arrayMin;
-			}
-		}
-
-		VarListComponent com = searchGlobalVarList(name);
-		if (com != null) {
-			return com.getArrayMin();
-		} else
-			return -1; // もう少しましな値
-	}
-
-	private void postGenCodeAtIndexedVariable(ASTNode node) {
-		genCode("POP", "GR2");
-		int varMem = getMemRelAddr(node.getSourceName());
-		int min = getArrayMin(node.getSourceName());
-		genCode("ADDA", "GR2, =" + (varMem - min));
-		genCode("LD", "GR1, VAR, GR2");
-		genCode("PUSH", "0, GR1");
-	}
-
-	private int getSubType(String name) {
-		if (isLocal) {
-			VarListComponent com = searchLoccalVarList(name);
-			if (com != null) {
-				return com.getSubType();
-			}
-		}
-
-		VarListComponent com = searchGlobalVarList(name);
-		if (com != null) {
-			return com.getSubType();
-		} else
-			return -1;
+		genJump(Opcode.JUMP, "LOOP", value);
+		genLabel("ENDLP", value);
 	}
 
-	private int getType(String name) {
-		if (isLocal) {
-			VarListComponent com = searchLoccalVarList(name);
-			if (com != null) {
-				return com.getType();
-			}
-		}
-
-		VarListComponent com = searchGlobalVarList(name);
-		if (com != null) {
-			return com.getType();
-		} else
-			return -1;
+	private void postGenCodeAtIndexedLeftVariable(AST ast, int node) {
+		genCode(Opcode.POP, GR2);
+		ID id = ast.getSymbol(node);
+		int varMem = id.getMemRelAddr();
+		int min = id.getType().getIndexMin();
+		genLiteral(Opcode.ADDA, GR2, varMem - min);
+		genPush(GR2);
 	}
 
-	private int getVarType(String name) {
-		switch (name) {
-		case "integer":
-			return 0;
-		case "char":
-			return 1;
-		case "boolean":
-			return 2;
-		default:
-			return -1;
-		}
+	private void postGenCodeAtIndexedVariable(AST ast, int node) {
+		genCode(Opcode.POP, GR2);
+		ID id = ast.getSymbol(node);
+		int varMem = id.getMemRelAddr();
+		int min = id.getType().getIndexMin();
+		genLiteral(Opcode.ADDA, GR2, varMem - min);
+		genVar(Opcode.LD, GR1, GR2);
+		genPush(GR1);
 	}
 
 	private void postGenCodeAtAssignment() {
-		genCode("POP", "GR1");
-		genCode("POP", "GR2");
-		genCode("ST", "GR1, VAR, GR2");
+		genCode(Opcode.POP, GR1);
+		genCode(Opcode.POP, GR2);
+		genVar(Opcode.ST, GR1, GR2);
 	}
 
-	private void postGenCodeAtSimpleLeftVariable(ASTNode node) {
-		VarListComponent com = getVarListComponent(node.getSourceName());
-		if (com.getType() == 3) {
+	private void postGenCodeAtSimpleLeftVariable(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		if (id.getType().getTypeCode() == 3) {
 			if (isInput) {
-				int varMem = com.getMemRelAddr();
-				int arraySize = com.getArraySize();
+				int varMem = id.getMemRelAddr();
+				int arraySize = id.getType().getArraySize();
 				varArraySize = arraySize;
-				genCode("LAD", "GR1, VAR");
-				genCode("ADDA", "GR1, =" + varMem);
-				genCode("PUSH", "0, GR1");
+				genCode(Code.NONE, Opcode.LAD, GR1, AddressKind.LABEL, varLabel, Code.NONE);
+				genLiteral(Opcode.ADDA, GR1, varMem);
+				genPush(GR1);
 			}
 		} else {
-			int varMem = getMemRelAddr(node.getSourceName());
-			genCode("PUSH", "" + varMem);
+			int varMem = id.getMemRelAddr();
+			genCode(Code.NONE, Opcode.PUSH, Code.NONE, AddressKind.DECIMAL, varMem, Code.NONE);
 		}
 	}
 
-	private void postGenCodeAtSimpleVariable(ASTNode node) {
-		VarListComponent com = getVarListComponent(node.getSourceName());
-		if (com.getType() == 3) {
+	private void postGenCodeAtSimpleVariable(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		if (id.getType().getTypeCode() == 3) {
 			if (isOutput) {
-				int varMem = com.getMemRelAddr();
-				int arraySize = com.getArraySize();
+				int varMem = id.getMemRelAddr();
+				int arraySize = id.getType().getArraySize();
 				varArraySize = arraySize;
-				genCode("LAD", "GR1, VAR");
-				genCode("ADDA", "GR1, =" + varMem);
-				genCode("PUSH", "0, GR1");
+				genCode(Code.NONE, Opcode.LAD, GR1, AddressKind.LABEL, varLabel, Code.NONE);
+				genLiteral(Opcode.ADDA, GR1, varMem);
+				genPush(GR1);
 			}
 		} else {
-			int varMem = getMemRelAddr(node.getSourceName());
-			genCode("LD", "GR2, =" + varMem);
-			genCode("LD", "GR1, VAR, GR2");
-			genCode("PUSH", "0, GR1");
-		}
-	}
-
-	private VarListComponent getVarListComponent(String name) {
-		if (isLocal) {
-			VarListComponent com = searchLoccalVarList(name);
-			if (com != null) {
-				return com;
-			}
-		}
-
-		VarListComponent com = searchGlobalVarList(name);
-		if (com != null) {
-			return com;
-		}
-		return null;
-	}
-
-	private int getMemRelAddr(String name) {
-		// local処理
-		int memRelAddr = -1;
-		if (isLocal) {
-			VarListComponent com = searchLoccalVarList(name);
-			if (com != null) {
-				memRelAddr = com.getMemRelAddr();
-				return memRelAddr;
-			}
-		}
-
-		VarListComponent com = searchGlobalVarList(name);
-		if (com != null) {
-			memRelAddr = com.getMemRelAddr();
-		}
-		return memRelAddr;
-
-	}
-
-	private VarListComponent searchLoccalVarList(String name) {
-		int i;
-		for (i = 0; i < localVarList.size(); i++) {
-			if (localVarList.get(i).getName().equals(name)) {
-				return localVarList.get(i);
-			}
-		}
-		return null;
-	}
-
-	private VarListComponent searchGlobalVarList(String name) {
-		int i;
-		for (i = 0; i < globalVarList.size(); i++) {
-			if (globalVarList.get(i).getName().equals(name)) {
-				return globalVarList.get(i);
-			}
+			int varMem = id.getMemRelAddr();
+			genLiteral(Opcode.LD, GR2, varMem);
+			genVar(Opcode.LD, GR1, GR2);
+			genPush(GR1);
 		}
-		return null;
-	}
-
-	private void arrayIndexCount() {
-		int min = arrayRange.get(0);
-		int max = arrayRange.get(1);
-		int range = max - min;
-		memCnt = memCnt + range;
 	}
 
-	private void addVarToList(ASTNode node) {
-		VarListComponent com;
-		if (varType == 3) {
-			com = new VarListComponent(node.getSourceName(), memCnt, varType, varSubType, arrayRange.get(1),
-					arrayRange.get(0));
-		} else {
-			com = new VarListComponent(node.getSourceName(), memCnt, varType);
-		}
-
-		if (isLocal) {
-			localVarList.add(com);
-			memCnt++;
-		} else {
-			globalVarList.add(com);
-			memCnt++;
-		}
+	private void addVarToList(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		memCnt = id.getMemRelAddr() + id.getType().getSize();
 	}
 
-	private void postGenCodeAtUnaryOperator(ASTNode node) {
-		switch (node.getSourceName()) {
+	private void postGenCodeAtUnaryOperator(AST ast, int node) {
+		switch (ast.getSourceName(node)) {
 		case "not":
 			postGenCodeAtNotOp();
 			break;
 
 		case "-":
-			if (isArray) {
-				Integer value = arrayRange.get(arrayRange.size() - 1) * (-1);
-				arrayRange.set(arrayRange.size() - 1, value);
-			} else {
-				postGenCodeAtMinusSignOp();
-			}
+			postGenCodeAtMinusSignOp();
 			inoutMode = 0;
 			break;
 		}
 	}
 
 	private void postGenCodeAtMinusSignOp() {
-		genCode("POP", "GR2");
-		genCode("LD", "GR1, =0");
-		genCode("SUBA", "GR1, GR2");
-		genCode("PUSH", "0, GR1");
+		genCode(Opcode.POP, GR2);
+		genLiteral(Opcode.LD, GR1, 0);
+		genRegister(Opcode.SUBA, GR1, GR2);
+		genPush(GR1);
 	}
 
 	private void postGenCodeAtNotOp() {
-		genCode("POP", "GR1");
-		genCode("XOR", "GR1, =#FFFF");
-		genCode("PUSH", "0, GR1");
+		genCode(Opcode.POP, GR1);
+		genHexLiteral(Opcode.XOR, GR1, FALSE);
+		genPush(GR1);
 	}
 
-	private void postGenCodeAtBooleanLiteral(ASTNode node) {
-		switch (node.getSourceName()) {
+	private void postGenCodeAtBooleanLiteral(AST ast, int node) {
+		switch (ast.getSourceName(node)) {
 		case "true":
-			genCode("PUSH", "#0000");
+			genCode(Code.NONE, Opcode.PUSH, Code.NONE, AddressKind.HEX, TRUE, Code.NONE);
 			break;
 
 		case "false":
-			genCode("PUSH", "#FFFF");
+			genCode(Code.NONE, Opcode.PUSH, Code.NONE, AddressKind.HEX, FALSE, Code.NONE);
 			break;
 		}
 	}
 
-	private void postGenCodeAtBinaryOperator(ASTNode node) {
-		genCode("POP", "GR2");
-		genCode("POP", "GR1");
+	private void postGenCodeAtBinaryOperator(AST ast, int node) {
+		genCode(Opcode.POP, GR2);
+		genCode(Opcode.POP, GR1);
 
-		switch (node.getSourceName()) {
+		switch (ast.getSourceName(node)) {
 		case "+":
 			postGenCodeAtAddOp();
 			inoutMode = 0;
@@ -746,164 +655,139 @@ public class GenerateCsal2CodeVisitor {
 	}
 
 	private void postGenCodeAtNotEqualOp() {
-		genCode("CPA", "GR1, GR2");
-		genCode("JNZ", "TRUE" + trueCnt);
-		genCode("LD", "GR1, =#FFFF");
-		genCode("JUMP", "BOTH" + bothCnt);
-		genCode("TRUE" + trueCnt, "LD", "GR1, =#0000");
-		genCode("BOTH" + bothCnt, "PUSH", "0, GR1");
-		bothCnt++;
-		trueCnt++;
+		genCompare(Opcode.JNZ, FALSE, TRUE);
 	}
 
 	private void postGenCodeAtGreatEqualOp() {
-		genCode("CPA", "GR1, GR2");
-		genCode("JMI", "TRUE" + trueCnt);
-		genCode("LD", "GR1, =#0000");
-		genCode("JUMP", "BOTH" + bothCnt);
-		genCode("TRUE" + trueCnt, "LD", "GR1, =#FFFF");
-		genCode("BOTH" + bothCnt, "PUSH", "0, GR1");
-		bothCnt++;
-		trueCnt++;
+		genCompare(Opcode.JMI, TRUE, FALSE);
 	}
 
 	private void postGenCodeAtGratOp() {
-		genCode("CPA", "GR1, GR2");
-		genCode("JPL", "TRUE" + trueCnt);
-		genCode("LD", "GR1, =#FFFF");
-		genCode("JUMP", "BOTH" + bothCnt);
-		genCode("TRUE" + trueCnt, "LD", "GR1, =#0000");
-		genCode("BOTH" + bothCnt, "PUSH", "0, GR1");
-		bothCnt++;
-		trueCnt++;
+		genCompare(Opcode.JPL, FALSE, TRUE);
 	}
 
 	private void postGenCodeAtEqualOp() {
-		genCode("CPA", "GR1, GR2");
-		genCode("JZE", "TRUE" + trueCnt);
-		genCode("LD", "GR1, =#FFFF");
-		genCode("JUMP", "BOTH" + bothCnt);
-		genCode("TRUE" + trueCnt, "LD", "GR1, =#0000");
-		genCode("BOTH" + bothCnt, "PUSH", "0, GR1");
-		bothCnt++;
-		trueCnt++;
+		genCompare(Opcode.JZE, FALSE, TRUE);
 	}
 
 	private void postGenCodeAtLessEqualOp() {
-		genCode("CPA", "GR1, GR2");
-		genCode("JPL", "TRUE" + trueCnt);
-		genCode("LD", "GR1, =#0000");
-		genCode("JUMP", "BOTH" + bothCnt);
-		genCode("TRUE" + trueCnt, "LD", "GR1, =#FFFF");
-		genCode("BOTH" + bothCnt, "PUSH", "0, GR1");
-		bothCnt++;
-		trueCnt++;
+		genCompare(Opcode.JPL, TRUE, FALSE);
 	}
 
 	private void postGenCodeAtLessOp() {
-		genCode("CPA", "GR1, GR2");
-		genCode("JMI", "TRUE" + trueCnt);
-		genCode("LD", "GR1, =#FFFF");
-		genCode("JUMP", "BOTH" + bothCnt);
-		genCode("TRUE" + trueCnt, "LD", "GR1, =#0000");
-		genCode("BOTH" + bothCnt, "PUSH", "0, GR1");
+		genCompare(Opcode.JMI, FALSE, TRUE);
+	}
+
+	// CPA GR1,GR2 の結果でjumpが飛べばjumpValue，飛ばなければfallValueを積む
+	private void genCompare(Opcode jump, int fallValue, int jumpValue) {
+		genRegister(Opcode.CPA, GR1, GR2);
+		genJump(jump, "TRUE", trueCnt);
+		genHexLiteral(Opcode.LD, GR1, fallValue);
+		genJump(Opcode.JUMP, "BOTH", bothCnt);
+		genCode(labels.intern("TRUE", trueCnt), Opcode.LD, GR1, AddressKind.HEX_LITERAL, jumpValue, Code.NONE);
+		genCode(labels.intern("BOTH", bothCnt), Opcode.PUSH, Code.NONE, AddressKind.DECIMAL, 0, GR1);
 		bothCnt++;
 		trueCnt++;
 	}
 
 	private void postGenCodeAtOrOp() {
-		genCode("OR", "GR1, GR2");
-		genCode("PUSH", "0, GR1");
+		genRegister(Opcode.OR, GR1, GR2);
+		genPush(GR1);
 	}
 
 	private void postGenCodeAtAndOp() {
-		genCode("AND", "GR1, GR2");
-		genCode("PUSH", "0, GR1");
+		genRegister(Opcode.AND, GR1, GR2);
+		genPush(GR1);
 	}
 
 	private void postGenCodeAtModOp() {
-		genCode("CALL", "DIV");
-		genCode("PUSH", "0, GR1");
+		genCall("DIV");
+		genPush(GR1);
 	}
 
 	private void postGenCodeAtDivOp() {
-		genCode("CALL", "DIV");
-		genCode("PUSH", "0, GR2");
+		genCall("DIV");
+		genPush(GR2);
 	}
 
 	private void postGenCodeAtMulOp() {
-		genCode("CALL", "MULT");
-		genCode("PUSH", "0, GR2");
+		genCall("MULT");
+		genPush(GR2);
 	}
 
 	private void postGenCodeAtSubOp() {
-		genCode("SUBA", "GR1, GR2");
-		genCode("PUSH", "0, GR1");
+		genRegister(Opcode.SUBA, GR1, GR2);
+		genPush(GR1);
 	}
 
 	private void postGenCodeAtAddOp() {
-		genCode("ADDA", "GR1, GR2");
-		genCode("PUSH", "0, GR1");
+		genRegister(Opcode.ADDA, GR1, GR2);
+		genPush(GR1);
 	}
 
-	private void postGenCodeAtNumberLiteral(ASTNode node) {
-		if (isArray) {
-			int value = Integer.parseInt(node.getSourceName());
-			arrayRange.add(value);
-		} else {
-			genCode("PUSH", node.getSourceName());
+	private void postGenCodeAtNumberLiteral(AST ast, int node) {
+		genCode(Code.NONE, Opcode.PUSH, Code.NONE, AddressKind.DECIMAL, numberValue(ast.getSourceName(node)),
+				Code.NONE);
+	}
+
+	// 符号なし整数の字面を1語(16ビット)の値にする．定数の畳み込みで作った負の整数 ("-5") はそのまま負の値にする
+	static int numberValue(String sourceName) {
+		if (sourceName.charAt(0) == '-') {
+			return -Integer.parseInt(sourceName.substring(1));
 		}
+		int value = 0;
+		int i;
+		for (i = 0; i < sourceName.length(); i++)
+			value = (value * 10 + sourceName.charAt(i) - '0') & 0xFFFF;
+		return value;
 	}
 
 	private void postGenCodeAtOutputStatement() {
-		genCode("CALL", "WRTLN");
+		genCall("WRTLN");
 	}
 
-	private void postGenCodeAtStringLiteral(ASTNode node) {
-		int length = node.getSourceName().replace("'", "").replace("'", "").length();
+	private void postGenCodeAtStringLiteral(AST ast, int node) {
+		int length = ast.getSourceName(node).replace("'", "").replace("'", "").length();
 		// str とchar の区別
 		if (length == 1) {
-			genCode("LD", "GR1, =" + node.getSourceName());
-			genCode("PUSH", "0, GR1");
+			genCode(Code.NONE, Opcode.LD, GR1, AddressKind.CHAR_LITERAL, ast.getSourceName(node).charAt(1),
+					Code.NONE);
+			genPush(GR1);
 			inoutMode = 1;
 		} else {
-			genCode("LD", "GR1, =" + length);
-			genCode("PUSH", "0, GR1");
-			genCode("LAD", "GR2, CHAR" + charList.size());
-			genCode("PUSH", "0, GR2");
-			charList.add(node.getSourceName());
+			genLiteral(Opcode.LD, GR1, length);
+			genPush(GR1);
+			genCode(Code.NONE, Opcode.LAD, GR2, AddressKind.LABEL, labels.intern("CHAR", charList.size()),
+					Code.NONE);
+			genPush(GR2);
+			charList.add(ast.getSourceName(node));
 			inoutMode = 2;
 		}
 
 	}
 
 	private void postGenCodeAtProgram() {
-		genCode("RET");
+		genCode(Opcode.RET);
 		genCodeForProc();
-		genCode("VAR", "DS", "" + memCnt);
+		genCode(varLabel, Opcode.DS, Code.NONE, AddressKind.DECIMAL, memCnt, Code.NONE);
 		genCodeForCharMem();
-		genCode("LIBBUF", "DS", "256");
-		genCode("END");
+		genCode(labels.intern("LIBBUF"), Opcode.DS, Code.NONE, AddressKind.DECIMAL, 256, Code.NONE);
+		genCode(Opcode.END);
+
+		if (optimizer != null) {
+			optimizer.run(code);
+		}
+		CaslPrinter.print(code, sink, lineComments);
 	}
 
 	private void genCodeForProc() {
-		int i = 0;
-		while (i < procList.size()) {
-			List<String> codeList = procList.get(i).getCodeList();
-			int j = 0;
-			while (j < codeList.size()) {
-				pw.println(codeList.get(j));
-				pw.flush();
-				j++;
-			}
-			i++;
-		}
+		code.append(procCode);
 	}
 
 	private void genCodeForCharMem() {
 		int i = 0;
 		while (i < charList.size()) {
-			genCode("CHAR" + Integer.toString(i), "DC", charList.get(i));
+			code.addString(labels.intern("CHAR", i), charList.get(i));
 			i++;
 		}
 	}
@@ -911,68 +795,854 @@ public class GenerateCsal2CodeVisitor {
 	private void postGenCodeAtOutputStatementComponent() {
 		switch (inoutMode) {
 		case 0:
-			genCode("POP", "GR2");
-			genCode("CALL", "WRTINT");
+			genCode(Opcode.POP, GR2);
+			genCall("WRTINT");
 			break;
 
 		case 1:
-			genCode("POP", "GR2");
-			genCode("CALL", "WRTCH");
+			genCode(Opcode.POP, GR2);
+			genCall("WRTCH");
 			break;
 
 		case 2:
-			genCode("POP", "GR2");
-			genCode("POP", "GR1");
-			genCode("CALL", "WRTSTR");
+			genCode(Opcode.POP, GR2);
+			genCode(Opcode.POP, GR1);
+			genCall("WRTSTR");
 			break;
 
 		case 3:
-			genCode("POP", "GR2");
-			genCode("LAD", "GR1, " + varArraySize);
-			genCode("CALL", "WRTSTR");
+			genCode(Opcode.POP, GR2);
+			genCode(Code.NONE, Opcode.LAD, GR1, AddressKind.DECIMAL, varArraySize, Code.NONE);
+			genCall("WRTSTR");
 			break;
 		}
 	}
 
 	private void preGenCodeAtProgram() {
-		genCode("CASL", "START", "BEGIN");
-		genCode("BEGIN", "LAD", "GR6, 0");
-		genCode("LAD", "GR7, LIBBUF");
+		genCode(labels.intern("CASL"), Opcode.START, Code.NONE, AddressKind.LABEL, labels.intern("BEGIN"), Code.NONE);
+		genCode(labels.intern("BEGIN"), Opcode.LAD, GR6, AddressKind.DECIMAL, 0, Code.NONE);
+		genCode(Code.NONE, Opcode.LAD, GR7, AddressKind.LABEL, labels.intern("LIBBUF"), Code.NONE);
 	}
 
-	private void addProcCode(String code) {
-		ProcListComponent cmp = procList.get(procList.size() - 1);
-		cmp.getCodeList().add(code);
-	}
+	// 定数による乗除算の強さの軽減 (strengthReductionのとき)
+	// MULT/DIVの呼び出しより安い (CycleCostの見積もり) ときだけシフトと加減算の列にする．
 
-	public void genCode(String instrCode) {
-		if (isLocal) {
-			String code = "\t" + instrCode + "\t";
-			addProcCode(code);
-		} else {
-			pw.println("\t" + instrCode + "\t");
-			pw.flush();
+	// 置き換えられるなら定数でない側の被演算子を返す (置き換えないならAST.NONE)
+	private int reducedOperand(AST ast, int node) {
+		if (!strengthReduction || ast.getKind(node) != NodeKind.BINARY_OPERATOR) {
+			return AST.NONE;
+		}
+		int left = ast.getFirstChild(node);
+		int right = ast.getNextSibling(left);
+		switch (ast.getSourceName(node)) {
+		case "*": {
+			int operand = isNumber(ast, right) ? left : isNumber(ast, left) ? right : AST.NONE;
+			if (operand == AST.NONE) {
+				return AST.NONE;
+			}
+			int c = constantOperand(ast, node);
+			return CycleCost.of(StrengthReduction.multiply(labels, GR1, GR2, c)) < CycleCost.mult(c) ? operand
+					: AST.NONE;
 		}
-	}
 
-	public void genCode(String instrCode, String op) {
-		if (isLocal) {
-			String code = "\t" + instrCode + "\t" + op;
-			addProcCode(code);
+		case "/":
+		case "div":
+		case "mod":
+			if (isNumber(ast, right) && StrengthReduction.canDivide(numberValue(ast.getSourceName(right)))) {
+				return left;
+			}
+			return AST.NONE;
+
+		default:
+			return AST.NONE;
+		}
+	}
+
+	private static boolean isNumber(AST ast, int node) {
+		return ast.getKind(node) == NodeKind.NUMBER_LITERAL;
+	}
+
+	private int constantOperand(AST ast, int node) {
+		int left = ast.getFirstChild(node);
+		int right = ast.getNextSibling(left);
+		return numberValue(ast.getSourceName(isNumber(ast, right) ? right : left));
+	}
+
+	private boolean needsTemp(AST ast, int node) {
+		int c = constantOperand(ast, node);
+		if ("*".equals(ast.getSourceName(node))) {
+			return StrengthReduction.multiplyNeedsTemp(c);
+		}
+		return StrengthReduction.divideNeedsTemp(c);
+	}
+
+	// rの値を定数倍・定数で割った商・余りにする命令列 (tは作業用)
+	private Code reduction(AST ast, int node, int r, int t) {
+		int c = constantOperand(ast, node);
+		switch (ast.getSourceName(node)) {
+		case "*":
+			return StrengthReduction.multiply(labels, r, t, c);
+		case "mod":
+			return StrengthReduction.remainder(labels, r, t, c);
+		default:
+			return StrengthReduction.divide(labels, r, t, c);
+		}
+	}
+
+	// 条件式の比較と分岐の融合 (branchFusionのとき)
+	// 条件式が比較演算なら真偽値を作らず，CPA の結果から直接 ELSE/ENDLP へ飛ぶ．
+
+	static boolean isComparison(AST ast, int node) {
+		if (ast.getKind(node) != NodeKind.BINARY_OPERATOR) {
+			return false;
+		}
+		switch (ast.getSourceName(node)) {
+		case "=":
+		case "<>":
+		case "<":
+		case "<=":
+		case ">":
+		case ">=":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	// 比較演算の左右を CPA で比べる
+	private void genCompareOperands(AST ast, int node) {
+		int left = ast.getFirstChild(node);
+		int right = ast.getNextSibling(left);
+		if (!registerMode) {
+			traceChildren(ast, node);
+			genCode(Opcode.POP, GR2);
+			genCode(Opcode.POP, GR1);
+			genRegister(Opcode.CPA, GR1, GR2);
+			return;
+		}
+
+		inoutMode = modeOf(ast, node, inoutMode);
+		if (isLiteral(ast, right)) {
+			int a = evaluate(ast, left);
+			genCode(Code.NONE, Opcode.CPA, a, immediateKind(ast, right), literalValue(ast, right), Code.NONE);
+			registers.free(a);
 		} else {
-			pw.println("\t" + instrCode + "\t" + op);
-			pw.flush();
+			evaluatePair(ast, left, right);
+			genRegister(Opcode.CPA, pairLeft, pairRight);
+			registers.free(pairLeft);
+			registers.free(pairRight);
 		}
 	}
 
-	public void genCode(String label, String instrCode, String op) {
-		if (isLocal) {
-			String code = label + "\t" + instrCode + "\t" + op;
-			addProcCode(code);
+	// CPA の結果で比較opが成り立たなければlabelへ飛ぶ
+	private void genJumpUnless(String op, int label) {
+		switch (op) {
+		case "=":
+			genJump(Opcode.JNZ, label);
+			break;
+		case "<>":
+			genJump(Opcode.JZE, label);
+			break;
+		case "<":
+			genJump(Opcode.JPL, label);
+			genJump(Opcode.JZE, label);
+			break;
+		case "<=":
+			genJump(Opcode.JPL, label);
+			break;
+		case ">":
+			genJump(Opcode.JMI, label);
+			genJump(Opcode.JZE, label);
+			break;
+		case ">=":
+			genJump(Opcode.JMI, label);
+			break;
+		default:
+		}
+	}
+
+	// CPA の結果で比較opが成り立てばlabelへ飛ぶ
+	private void genJumpIf(String op, int label) {
+		switch (op) {
+		case "=":
+			genJump(Opcode.JZE, label);
+			break;
+		case "<>":
+			genJump(Opcode.JNZ, label);
+			break;
+		case "<":
+			genJump(Opcode.JMI, label);
+			break;
+		case "<=":
+			genJump(Opcode.JMI, label);
+			genJump(Opcode.JZE, label);
+			break;
+		case ">":
+			genJump(Opcode.JPL, label);
+			break;
+		case ">=":
+			genJump(Opcode.JPL, label);
+			genJump(Opcode.JZE, label);
+			break;
+		default:
+		}
+	}
+
+	// 条件式の短絡評価 (shortCircuitのとき)
+	// and/or/not を値にせず，左の被演算子の真偽で右を飛ばす分岐の列にする．
+	// and/or は値にするときと同じく真(#0000)/偽(#FFFF)のAND/ORの結果とする．
+	// andは片方が真なら真 (左が真なら右を飛ばす)，orは両方が真のときだけ真 (左が偽なら右を飛ばす)．
+
+	static boolean isLogical(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case BINARY_OPERATOR:
+			return "and".equals(ast.getSourceName(node)) || "or".equals(ast.getSourceName(node));
+		case UNARY_OPERATOR:
+			return "not".equals(ast.getSourceName(node));
+		default:
+			return false;
+		}
+	}
+
+	// 式が偽ならlabelへ飛び，真なら次へ進む
+	private void genJumpIfFalse(AST ast, int node, int label) {
+		if (isLogical(ast, node)) {
+			int left = ast.getFirstChild(node);
+			switch (ast.getSourceName(node)) {
+			case "not":
+				genJumpIfTrue(ast, left, label);
+				return;
+
+			case "or":
+				genJumpIfFalse(ast, left, label);
+				genJumpIfFalse(ast, ast.getNextSibling(left), label);
+				return;
+
+			default: {
+				int skip = labels.intern("SKIP", skipCnt++);
+				genJumpIfTrue(ast, left, skip);
+				genJumpIfFalse(ast, ast.getNextSibling(left), label);
+				genLabel(skip);
+				return;
+			}
+			}
+		}
+		if (isComparison(ast, node)) {
+			genCompareOperands(ast, node);
+			genJumpUnless(ast.getSourceName(node), label);
+			return;
+		}
+		genHexLiteral(Opcode.CPL, genValue(ast, node), FALSE);
+		genJump(Opcode.JZE, label);
+	}
+
+	// 式が真ならlabelへ飛び，偽なら次へ進む
+	private void genJumpIfTrue(AST ast, int node, int label) {
+		if (isLogical(ast, node)) {
+			int left = ast.getFirstChild(node);
+			switch (ast.getSourceName(node)) {
+			case "not":
+				genJumpIfFalse(ast, left, label);
+				return;
+
+			case "and":
+				genJumpIfTrue(ast, left, label);
+				genJumpIfTrue(ast, ast.getNextSibling(left), label);
+				return;
+
+			default: {
+				int skip = labels.intern("SKIP", skipCnt++);
+				genJumpIfFalse(ast, left, skip);
+				genJumpIfTrue(ast, ast.getNextSibling(left), label);
+				genLabel(skip);
+				return;
+			}
+			}
+		}
+		if (isComparison(ast, node)) {
+			genCompareOperands(ast, node);
+			genJumpIf(ast.getSourceName(node), label);
+			return;
+		}
+		genHexLiteral(Opcode.CPL, genValue(ast, node), FALSE);
+		genJump(Opcode.JNZ, label);
+	}
+
+	// 真偽値の式を評価し，値を置いたレジスタを返す (レジスタは解放済み)
+	private int genValue(AST ast, int node) {
+		if (registerMode) {
+			int r = genExpression(ast, node);
+			registers.free(r);
+			return r;
+		}
+		ast.accept(this, node);
+		genCode(Opcode.POP, GR1);
+		return GR1;
+	}
+
+	// レジスタによる式の評価 (registerModeのとき)
+	// 式の木に Sethi-Ullman の番号(評価に要るレジスタ数)を付け，多く要る側の部分木から評価する．
+	// 空きレジスタが足りないときだけ先に求めた値をスタックに退避する．
+
+	// スカラーの値を持つ式か (文字列定数と配列全体はスタックで扱う)
+	private boolean isScalar(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case STRING_LITERAL:
+			return ast.getSourceName(node).length() == 3;
+		case SIMPLE_VARIABLE:
+			return ast.getSymbol(node).getType().getTypeCode() != 3;
+		default:
+			return true;
+		}
+	}
+
+	// 式の値をレジスタに求め，そのレジスタを返す．inoutModeはスタックで評価した場合と同じ値にする
+	private int genExpression(AST ast, int node) {
+		inoutMode = modeOf(ast, node, inoutMode);
+		return evaluate(ast, node);
+	}
+
+	// スタックで評価したときに後置順の各節点が設定するinoutModeをたどった結果
+	private int modeOf(AST ast, int node, int mode) {
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			mode = modeOf(ast, child, mode);
+			child = ast.getNextSibling(child);
+		}
+		switch (ast.getKind(node)) {
+		case NUMBER_LITERAL:
+			return 0;
+		case SIMPLE_VARIABLE:
+			return ast.getSymbol(node).getType().getTypeCode();
+		case INDEXED_VARIABLE:
+			return ast.getSymbol(node).getType().getSubTypeCode();
+		case STRING_LITERAL:
+			return ast.getSourceName(node).length() == 3 ? 1 : 2;
+		case UNARY_OPERATOR:
+			return "-".equals(ast.getSourceName(node)) ? 0 : mode;
+		case BINARY_OPERATOR:
+			return isArithmetic(ast.getSourceName(node)) ? 0 : mode;
+		default:
+			return mode;
+		}
+	}
+
+	private static boolean isArithmetic(String op) {
+		switch (op) {
+		case "+":
+		case "-":
+		case "*":
+		case "/":
+		case "div":
+		case "mod":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	// 右の被演算子が定数なら op r,=定数 の一命令で済む演算か
+	private static boolean takesLiteral(String op) {
+		switch (op) {
+		case "*":
+		case "/":
+		case "div":
+		case "mod":
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	private static boolean isLiteral(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case NUMBER_LITERAL:
+		case BOOLEAN_LITERAL:
+			return true;
+		case STRING_LITERAL:
+			return ast.getSourceName(node).length() == 3;
+		default:
+			return false;
+		}
+	}
+
+	// 節点の値を求めるのに要るレジスタ数 (結果で埋めた表を引く)
+	private int need(AST ast, int node) {
+		if (need == null) {
+			need = new int[ast.size()];
+		}
+		if (need[node] == 0) {
+			need[node] = countNeed(ast, node) + 1;
+		}
+		return need[node] - 1;
+	}
+
+	private int countNeed(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case INDEXED_VARIABLE:
+			return Math.max(1, need(ast, ast.getFirstChild(node)));
+		case UNARY_OPERATOR:
+			return need(ast, ast.getFirstChild(node));
+		case BINARY_OPERATOR: {
+			int left = ast.getFirstChild(node);
+			int right = ast.getNextSibling(left);
+			int operand = reducedOperand(ast, node);
+			if (operand != AST.NONE) {
+				return Math.max(need(ast, operand), needsTemp(ast, node) ? 2 : 1);
+			}
+			int l = need(ast, left);
+			int r = takesLiteral(ast.getSourceName(node)) && isLiteral(ast, right) ? 0 : need(ast, right);
+			return l == r ? l + 1 : Math.max(l, r);
+		}
+		default:
+			return 1;
+		}
+	}
+
+	private int evaluate(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case NUMBER_LITERAL:
+		case BOOLEAN_LITERAL:
+		case STRING_LITERAL: {
+			int r = registers.allocate();
+			genCode(Code.NONE, Opcode.LAD, r, literalKind(ast, node), literalValue(ast, node), Code.NONE);
+			return r;
+		}
+
+		case SIMPLE_VARIABLE: {
+			int r = registers.allocate();
+			genCode(Code.NONE, Opcode.LAD, r, AddressKind.DECIMAL, ast.getSymbol(node).getMemRelAddr(), Code.NONE);
+			genVar(Opcode.LD, r, r);
+			return r;
+		}
+
+		case INDEXED_VARIABLE: {
+			int r = evaluate(ast, ast.getFirstChild(node));
+			genCode(Code.NONE, Opcode.LAD, r, AddressKind.DECIMAL, indexOffset(ast.getSymbol(node)), r);
+			genVar(Opcode.LD, r, r);
+			return r;
+		}
+
+		case UNARY_OPERATOR:
+			return evaluateUnary(ast, node);
+
+		case BINARY_OPERATOR:
+			return evaluateBinary(ast, node);
+
+		default:
+			throw new IllegalStateException(ast.getKind(node).getLabel());
+		}
+	}
+
+	private int evaluateUnary(AST ast, int node) {
+		int r = evaluate(ast, ast.getFirstChild(node));
+		switch (ast.getSourceName(node)) {
+		case "not":
+			genHexLiteral(Opcode.XOR, r, FALSE);
+			return r;
+
+		case "-":
+			if (registers.freeCount() > 0) {
+				int t = registers.allocate();
+				genCode(Code.NONE, Opcode.LAD, t, AddressKind.DECIMAL, 0, Code.NONE);
+				genRegister(Opcode.SUBA, t, r);
+				registers.free(r);
+				return t;
+			}
+			// 空きがなければ2の補数をその場で求める
+			genHexLiteral(Opcode.XOR, r, FALSE);
+			genLiteral(Opcode.ADDA, r, 1);
+			return r;
+
+		default:
+			return r;
+		}
+	}
+
+	private int evaluateBinary(AST ast, int node) {
+		String op = ast.getSourceName(node);
+		int left = ast.getFirstChild(node);
+		int right = ast.getNextSibling(left);
+
+		int operand = reducedOperand(ast, node);
+		if (operand != AST.NONE) {
+			int a = evaluate(ast, operand);
+			int t = needsTemp(ast, node) ? registers.allocate() : Code.NONE;
+			genSequence(reduction(ast, node, a, t));
+			if (t != Code.NONE) {
+				registers.free(t);
+			}
+			return a;
+		}
+
+		if (takesLiteral(op) && isLiteral(ast, right)) {
+			int a = evaluate(ast, left);
+			genCode(Code.NONE, operation(op), a, immediateKind(ast, right), literalValue(ast, right), Code.NONE);
+			genRegisterCompare(op, a);
+			return a;
+		}
+
+		evaluatePair(ast, left, right);
+		int a = pairLeft;
+		int b = pairRight;
+		switch (op) {
+		case "*":
+			genLibraryCall("MULT", GR2, a, b);
+			break;
+
+		case "/":
+		case "div":
+			genLibraryCall("DIV", GR2, a, b);
+			break;
+
+		case "mod":
+			genLibraryCall("DIV", GR1, a, b);
+			break;
+
+		default:
+			genRegister(operation(op), a, b);
+			genRegisterCompare(op, a);
+		}
+		registers.free(b);
+		return a;
+	}
+
+	// 二つの部分木をレジスタの多く要る側から評価し，左右の値のレジスタをpairLeft, pairRightに置く
+	private void evaluatePair(AST ast, int left, int right) {
+		boolean leftFirst = need(ast, left) >= need(ast, right);
+		int first = leftFirst ? left : right;
+		int second = leftFirst ? right : left;
+
+		int a = evaluate(ast, first);
+		int b;
+		if (registers.freeCount() < need(ast, second)) {
+			genPush(a);
+			registers.free(a);
+			b = evaluate(ast, second);
+			a = registers.allocate();
+			genCode(Opcode.POP, a);
 		} else {
-			pw.println(label + "\t" + instrCode + "\t" + op);
-			pw.flush();
+			b = evaluate(ast, second);
+		}
+		pairLeft = leftFirst ? a : b;
+		pairRight = leftFirst ? b : a;
+	}
+
+	private static Opcode operation(String op) {
+		switch (op) {
+		case "+":
+			return Opcode.ADDA;
+		case "-":
+			return Opcode.SUBA;
+		case "and":
+			return Opcode.AND;
+		case "or":
+			return Opcode.OR;
+		default:
+			return Opcode.CPA;
+		}
+	}
+
+	// CPA の結果から比較演算の真偽値をrに求める (genCompareと同じ値)
+	private void genRegisterCompare(String op, int r) {
+		switch (op) {
+		case "=":
+			genBoolean(Opcode.JZE, FALSE, TRUE, r);
+			break;
+		case "<>":
+			genBoolean(Opcode.JNZ, FALSE, TRUE, r);
+			break;
+		case "<":
+			genBoolean(Opcode.JMI, FALSE, TRUE, r);
+			break;
+		case "<=":
+			genBoolean(Opcode.JPL, TRUE, FALSE, r);
+			break;
+		case ">":
+			genBoolean(Opcode.JPL, FALSE, TRUE, r);
+			break;
+		case ">=":
+			genBoolean(Opcode.JMI, TRUE, FALSE, r);
+			break;
+		default:
+		}
+	}
+
+	private void genBoolean(Opcode jump, int fallValue, int jumpValue, int r) {
+		genJump(jump, "TRUE", trueCnt);
+		genCode(Code.NONE, Opcode.LAD, r, AddressKind.HEX, fallValue, Code.NONE);
+		genJump(Opcode.JUMP, "BOTH", bothCnt);
+		genCode(labels.intern("TRUE", trueCnt), Opcode.LAD, r, AddressKind.HEX, jumpValue, Code.NONE);
+		genLabel("BOTH", bothCnt);
+		bothCnt++;
+		trueCnt++;
+	}
+
+	// lib.casのMULT/DIVはGR1,GR2を引数に取り結果もGR1,GR2に返すので，
+	// 使用中のGR1,GR2を退避してから a,b を GR1,GR2 に移し，結果(result)をaに戻す
+	private void genLibraryCall(String routine, int result, int a, int b) {
+		boolean save1 = registers.isUsed(GR1) && a != GR1 && b != GR1;
+		boolean save2 = registers.isUsed(GR2) && a != GR2 && b != GR2;
+		if (save1) {
+			genPush(GR1);
+		}
+		if (save2) {
+			genPush(GR2);
+		}
+
+		if (a == GR2 && b == GR1) {
+			genRegister(Opcode.XOR, GR1, GR2);
+			genRegister(Opcode.XOR, GR2, GR1);
+			genRegister(Opcode.XOR, GR1, GR2);
+		} else if (b == GR1) {
+			genRegister(Opcode.LD, GR2, GR1);
+			genRegister(Opcode.LD, GR1, a);
+		} else {
+			if (a != GR1) {
+				genRegister(Opcode.LD, GR1, a);
+			}
+			if (b != GR2) {
+				genRegister(Opcode.LD, GR2, b);
+			}
+		}
+		genCall(routine);
+		if (a != result) {
+			genRegister(Opcode.LD, a, result);
+		}
+
+		if (save2) {
+			genCode(Opcode.POP, GR2);
+		}
+		if (save1) {
+			genCode(Opcode.POP, GR1);
+		}
+	}
+
+	private AddressKind literalKind(AST ast, int node) {
+		return ast.getKind(node) == NodeKind.BOOLEAN_LITERAL ? AddressKind.HEX : AddressKind.DECIMAL;
+	}
+
+	// op r,=定数 のadr部
+	private AddressKind immediateKind(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case BOOLEAN_LITERAL:
+			return AddressKind.HEX_LITERAL;
+		case STRING_LITERAL:
+			return AddressKind.CHAR_LITERAL;
+		default:
+			return AddressKind.LITERAL;
+		}
+	}
+
+	private static int literalValue(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case BOOLEAN_LITERAL:
+			return "true".equals(ast.getSourceName(node)) ? TRUE : FALSE;
+		case STRING_LITERAL:
+			return ast.getSourceName(node).charAt(1);
+		default:
+			return numberValue(ast.getSourceName(node));
 		}
 	}
 
+	private static int indexOffset(ID id) {
+		return id.getMemRelAddr() - id.getType().getIndexMin();
+	}
+
+	private void genAssignment(AST ast, int variable, int value) {
+		int a;
+		int v;
+		if (ast.getKind(variable) == NodeKind.INDEXED_VARIABLE) {
+			int index = ast.getFirstChild(variable);
+			inoutMode = modeOf(ast, value, ast.getSymbol(variable).getType().getSubTypeCode());
+			evaluatePair(ast, index, value);
+			a = pairLeft;
+			v = pairRight;
+			genCode(Code.NONE, Opcode.LAD, a, AddressKind.DECIMAL, indexOffset(ast.getSymbol(variable)), a);
+		} else {
+			v = genExpression(ast, value);
+			a = registers.allocate();
+			genCode(Code.NONE, Opcode.LAD, a, AddressKind.DECIMAL, ast.getSymbol(variable).getMemRelAddr(),
+					Code.NONE);
+		}
+		genVar(Opcode.ST, v, a);
+		registers.free(a);
+		registers.free(v);
+	}
+
+	// 実引数を後ろから順に積む
+	private void genArguments(AST ast, int child) {
+		if (child == AST.NONE) {
+			return;
+		}
+		genArguments(ast, ast.getNextSibling(child));
+		if (isScalar(ast, child)) {
+			int r = genExpression(ast, child);
+			genPush(r);
+			registers.free(r);
+		} else {
+			ast.accept(this, child);
+		}
+	}
+
+	private void genOutput(int r) {
+		registers.free(r);
+		switch (inoutMode) {
+		case 0:
+		case 1:
+			if (r != GR2) {
+				genRegister(Opcode.LD, GR2, r);
+			}
+			genCall(inoutMode == 0 ? "WRTINT" : "WRTCH");
+			break;
+
+		default:
+			// スタックで評価した場合と同じく直前のモードで書き出す
+			genPush(r);
+			postGenCodeAtOutputStatementComponent();
+		}
+	}
+
+	/**
+	 * 式を実行時スタックではなく汎用レジスタ GR1〜GR5 で評価する．
+	 */
+	public void setRegisterAllocation(boolean enabled) {
+		this.registerMode = enabled;
+	}
+
+	/**
+	 * 条件式の比較演算を真偽値にせず，比較と条件分岐で直接飛ぶ．
+	 */
+	public void setBranchFusion(boolean enabled) {
+		this.branchFusion = enabled;
+	}
+
+	/**
+	 * 定数による乗算・除算・剰余をシフトと加減算の命令列にする．
+	 */
+	public void setStrengthReduction(boolean enabled) {
+		this.strengthReduction = enabled;
+	}
+
+	/**
+	 * if/whileの条件のand/or/notを短絡評価する (結果は値として評価する場合と同じ)．
+	 */
+	public void setShortCircuit(boolean enabled) {
+		this.shortCircuit = enabled;
+	}
+
+	/**
+	 * 命令の行の末尾にpasファイルの行番号の注釈を付けて書き出す．
+	 */
+	public void setLineComments(boolean enabled) {
+		this.lineComments = enabled;
+	}
+
+	/**
+	 * 書き出す前に命令列に覗き穴最適化をかける．
+	 */
+	public void setOptimizer(PeepholeOptimizer optimizer) {
+		this.optimizer = optimizer;
+	}
+
+	/**
+	 * 書き出した命令列 (visitProgramのあと)．
+	 */
+	public Code getCode() {
+		return code;
+	}
+
+	/**
+	 * プログラム名 (visitProgramのあと)．
+	 */
+	public String getProgramName() {
+		return programName;
+	}
+
+	/**
+	 * 手続きの名前をPROCnの番号の順に並べたもの (visitProgramのあと)．
+	 */
+	public List<String> getProcedureNames() {
+		List<String> names = new ArrayList<String>();
+		for (ProcListComponent proc : procList) {
+			names.add(proc.getName());
+		}
+		return names;
+	}
+
+	// 命令の生成．副プログラムの命令はprocCodeに溜め，主プログラムのあとに置く
+	// 命令には生成中の節点の行番号を付ける
+
+	private void genCode(int label, Opcode op, int r, AddressKind adr, int value, int x) {
+		Code target = isLocal ? procCode : code;
+		target.setLine(target.add(label, op, r, adr, value, x), line);
+	}
+
+	private void genSequence(Code sequence) {
+		Code target = isLocal ? procCode : code;
+		int start = target.size();
+		target.append(sequence);
+		int i;
+		for (i = start; i < target.size(); i++) {
+			target.setLine(i, line);
+		}
+	}
+
+	private void genCode(Opcode op) {
+		genCode(Code.NONE, op, Code.NONE, AddressKind.NONE, 0, Code.NONE);
+	}
+
+	// op r
+	private void genCode(Opcode op, int r) {
+		genCode(Code.NONE, op, r, AddressKind.NONE, 0, Code.NONE);
+	}
+
+	// op r1, r2
+	private void genRegister(Opcode op, int r1, int r2) {
+		genCode(Code.NONE, op, r1, AddressKind.NONE, 0, r2);
+	}
+
+	// op r, =value
+	private void genLiteral(Opcode op, int r, int value) {
+		genCode(Code.NONE, op, r, AddressKind.LITERAL, value, Code.NONE);
+	}
+
+	// op r, =#value
+	private void genHexLiteral(Opcode op, int r, int value) {
+		genCode(Code.NONE, op, r, AddressKind.HEX_LITERAL, value, Code.NONE);
+	}
+
+	// op r, VAR, x
+	private void genVar(Opcode op, int r, int x) {
+		genCode(Code.NONE, op, r, AddressKind.LABEL, varLabel, x);
+	}
+
+	// PUSH 0, x
+	private void genPush(int x) {
+		genCode(Code.NONE, Opcode.PUSH, Code.NONE, AddressKind.DECIMAL, 0, x);
+	}
+
+	// op prefix+number (LOOP3など)
+	private void genJump(Opcode op, String prefix, int number) {
+		genCode(Code.NONE, op, Code.NONE, AddressKind.LABEL, labels.intern(prefix, number), Code.NONE);
+	}
+
+	// op label
+	private void genJump(Opcode op, int label) {
+		genCode(Code.NONE, op, Code.NONE, AddressKind.LABEL, label, Code.NONE);
+	}
+
+	private void genCall(String label) {
+		genCode(Code.NONE, Opcode.CALL, Code.NONE, AddressKind.LABEL, labels.intern(label), Code.NONE);
+	}
+
+	// prefix+number NOP
+	private void genLabel(String prefix, int number) {
+		genLabel(labels.intern(prefix, number));
+	}
+
+	private void genLabel(int label) {
+		genCode(label, Opcode.NOP, Code.NONE, AddressKind.NONE, 0, Code.NONE);
+	}
+
 }
\ No newline at end of file
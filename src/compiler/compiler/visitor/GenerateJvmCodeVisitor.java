@@ -0,0 +1,644 @@
+package compiler.compiler.visitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.classfile.Bytecode;
+import compiler.classfile.ClassFile;
+import compiler.compiler.ast.AST;
+import compiler.compiler.ast.NodeKind;
+import compiler.compiler.ast.Visitor;
+
+public class GenerateJvmCodeVisitor implements Visitor<Void> {
+
+	/**
+	 * 仕様:
+	 * 意味解析 (と最適化) を済ませたASTを，GenerateCsal2CodeVisitorの生成するCASL IIプログラムと同じ値を計算する
+	 * JVMのクラス (ClassFile) にする．
+	 *   クラス名はプログラム名で，主プログラムはmain(String[])，手続きは同じ名前のstaticメソッド (仮引数はint) にする．
+	 *   変数はSemanticErrorCheckVisitorが付けたIDごとのstaticフィールド (配列はint[]) にする．
+	 *   手続きの仮引数・局所変数もCASLと同じく呼び出しごとには作らず，最後に宣言した手続きを呼ぶときだけ
+	 *   その領域を呼び出しの前に退避し，戻ってから復元する (自分自身の再帰呼び出し)．
+	 *   整数は1語(16ビット)の符号付きの値で持ち，+ - * と符号反転の結果をi2sで切り詰める．div/modはDIVと同じく0へ切り捨てる．
+	 *   真偽値は真を0，偽を-1 (#0000/#FFFF) とし，and/or/notはその値のビットごとのAND/OR/XORにする．
+	 *   短絡評価のモードではif/whileの条件のand/or/notの並びを，同じ真偽になる分岐にする．
+	 *   readln/writelnはJvmRuntimeの呼び出しにする (lib.casのRDINT〜WRTLNと同じ働きで，入出力はバッファを通す)．
+	 *   命令にはpasファイルの行番号 (LineNumberTable) を付ける．
+	 * 配列の添字が範囲外ならCASLと違って隣の変数に書かず，実行時のエラー (ArrayIndexOutOfBoundsException) にする．
+	 */
+
+	private static final String RUNTIME = "compiler/compiler/jvm/JvmRuntime";
+	private static final String INT_ARRAY = "[I";
+	private static final int TRUE = 0;
+	private static final int FALSE = -1;
+
+	private ClassFile classFile;
+	private String className;
+	private Bytecode code;
+	private int depth;
+	private int maxDepth;
+	private Map<ID, String> fields;
+	private List<ID> arrays;
+	private ID procedure;
+	private List<ID> locals;
+	private ID lastProcedure;
+	private List<ID> lastLocals;
+	private int parameterCnt;
+	private boolean shortCircuit;
+	private int line;
+
+	public GenerateJvmCodeVisitor() {
+		this.fields = new HashMap<ID, String>();
+		this.arrays = new ArrayList<ID>();
+		this.procedure = null;
+		this.locals = new ArrayList<ID>();
+		this.lastProcedure = null;
+		this.lastLocals = locals;
+		this.parameterCnt = 0;
+		this.shortCircuit = false;
+		this.line = 0;
+	}
+
+	/**
+	 * if/whileの条件式のand/or/notを短絡評価する (GenerateCsal2CodeVisitor.setShortCircuitと同じ)．
+	 */
+	public void setShortCircuit(boolean shortCircuit) {
+		this.shortCircuit = shortCircuit;
+	}
+
+	/**
+	 * 生成したクラスの名前 (内部形式)．
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	public byte[] toByteArray() {
+		return classFile.toByteArray();
+	}
+
+	private void traceChildren(AST ast, int node) {
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			accept(ast, child);
+			child = ast.getNextSibling(child);
+		}
+	}
+
+	// 行番号のある節点なら，その部分木から生成する命令にその行番号を付ける
+	private void accept(AST ast, int node) {
+		int saved = line;
+		if (ast.getLine(node) != 0) {
+			line = ast.getLine(node);
+			code.line(line);
+		}
+		ast.accept(this, node);
+		if (line != saved) {
+			line = saved;
+			code.line(line);
+		}
+	}
+
+	public Void visitDefault(AST ast, int node) {
+		traceChildren(ast, node);
+		return null;
+	}
+
+	public Void visitProgram(AST ast, int node) {
+		className = ast.getSourceName(ast.getFirstChild(node));
+		classFile = new ClassFile(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL, className, "java/lang/Object");
+		beginMethod(ast.getLine(ast.getFirstChild(node)));
+		traceChildren(ast, node);
+		code.invoke(Bytecode.INVOKESTATIC, RUNTIME, "flush", "()V");
+		code.op(Bytecode.RETURN);
+		classFile.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, "main", "([Ljava/lang/String;)V", code,
+				maxDepth, 1);
+		genStaticInitializer();
+		return null;
+	}
+
+	// 手続きの入口と出口の命令は手続き名の行とする
+	public Void visitSubprogram(AST ast, int node) {
+		Bytecode savedCode = code;
+		int savedMaxDepth = maxDepth;
+		int savedLine = line;
+		beginMethod(ast.getLine(ast.getFirstChild(node)));
+		traceChildren(ast, node);
+		code.op(Bytecode.RETURN);
+		classFile.addMethod(ClassFile.ACC_PRIVATE | ClassFile.ACC_STATIC, procedure.getName(), descriptor(procedure),
+				code, maxDepth, parameterCnt);
+		procedure = null;
+		code = savedCode;
+		depth = 0;
+		maxDepth = savedMaxDepth;
+		line = savedLine;
+		return null;
+	}
+
+	private void beginMethod(int methodLine) {
+		code = classFile.newBytecode();
+		depth = 0;
+		maxDepth = 0;
+		line = methodLine;
+		code.line(line);
+	}
+
+	public Void visitProcedureDeclarator(AST ast, int node) {
+		procedure = ast.getSymbol(node);
+		locals = new ArrayList<ID>();
+		lastProcedure = procedure;
+		lastLocals = locals;
+		parameterCnt = 0;
+		traceChildren(ast, node);
+		return null;
+	}
+
+	// 型の部分木はたどらず，意味解析で付けたIDからフィールドを作る
+	public Void visitVariableDeclarator(AST ast, int node) {
+		declare(ast.getSymbol(node));
+		return null;
+	}
+
+	// 仮引数の値 (メソッドの引数) をそのフィールドに移す
+	public Void visitFormalParameterDeclarator(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		declare(id);
+		code.iload(parameterCnt++);
+		grow(1);
+		putVariable(id);
+		return null;
+	}
+
+	// 大域変数は名前のまま，手続きの仮引数・局所変数は "手続き名$名前" のフィールドにする
+	private void declare(ID id) {
+		String name = procedure == null ? id.getName() : procedure.getName() + "$" + id.getName();
+		fields.put(id, name);
+		classFile.addField(ClassFile.ACC_PRIVATE | ClassFile.ACC_STATIC, name, descriptor(id.getType()));
+		if (isArray(id)) {
+			arrays.add(id);
+		}
+		if (procedure != null) {
+			locals.add(id);
+		}
+	}
+
+	private void genStaticInitializer() {
+		if (arrays.isEmpty()) {
+			return;
+		}
+		Bytecode init = classFile.newBytecode();
+		for (ID id : arrays) {
+			init.iconst(id.getType().getArraySize());
+			init.newarray(Bytecode.T_INT);
+			init.field(Bytecode.PUTSTATIC, className, fields.get(id), INT_ARRAY);
+		}
+		init.op(Bytecode.RETURN);
+		classFile.addMethod(ClassFile.ACC_STATIC, "<clinit>", "()V", init, 1, 0);
+	}
+
+	private static String descriptor(Type type) {
+		return type.getTypeCode() == 3 ? INT_ARRAY : "I";
+	}
+
+	private static String descriptor(ID proc) {
+		StringBuilder sb = new StringBuilder("(");
+		int i;
+		for (i = 0; i < proc.getFParamType().size(); i++)
+			sb.append('I');
+		return sb.append(")V").toString();
+	}
+
+	private static boolean isArray(ID id) {
+		return id.getType().getTypeCode() == 3;
+	}
+
+	// 文
+
+	public Void visitIfStatement(AST ast, int node) {
+		int exp = ast.getFirstChild(node);
+		int thenStatement = ast.getNextSibling(exp);
+		int elseStatement = ast.getNextSibling(thenStatement);
+		int elseLabel = code.newLabel();
+		genCondition(ast, ast.getFirstChild(exp), elseLabel);
+		accept(ast, thenStatement);
+		if (ast.hasChildren(elseStatement)) {
+			int endLabel = code.newLabel();
+			code.jump(Bytecode.GOTO, endLabel);
+			code.mark(elseLabel);
+			accept(ast, elseStatement);
+			code.mark(endLabel);
+		} else {
+			code.mark(elseLabel);
+		}
+		return null;
+	}
+
+	public Void visitWhileStatement(AST ast, int node) {
+		int exp = ast.getFirstChild(node);
+		int loopLabel = code.newLabel();
+		int endLabel = code.newLabel();
+		code.mark(loopLabel);
+		genCondition(ast, ast.getFirstChild(exp), endLabel);
+		accept(ast, ast.getNextSibling(exp));
+		code.jump(Bytecode.GOTO, loopLabel);
+		code.mark(endLabel);
+		return null;
+	}
+
+	public Void visitAssignment(AST ast, int node) {
+		int left = ast.getFirstChild(node);
+		int variable = ast.getFirstChild(left);
+		int expr = ast.getNextSibling(left);
+		if (ast.getKind(variable) == NodeKind.INDEXED_VARIABLE) {
+			genElement(ast, variable);
+			accept(ast, expr);
+			code.op(Bytecode.IASTORE);
+			grow(-3);
+		} else {
+			accept(ast, expr);
+			putVariable(ast.getSymbol(variable));
+		}
+		return null;
+	}
+
+	// CASLと同じく，最後に宣言した手続きを呼ぶときはその仮引数と局所変数 (配列は複製) を退避しておき，戻ってから書き戻す
+	public Void visitProcedureCall(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		List<ID> saved = id == lastProcedure ? lastLocals : new ArrayList<ID>();
+		for (ID local : saved) {
+			getVariable(local);
+			if (isArray(local)) {
+				code.invoke(Bytecode.INVOKEVIRTUAL, INT_ARRAY, "clone", "()Ljava/lang/Object;");
+				code.typeOp(Bytecode.CHECKCAST, INT_ARRAY);
+			}
+		}
+		traceChildren(ast, node);
+		code.invoke(Bytecode.INVOKESTATIC, className, id.getName(), descriptor(id));
+		grow(-id.getFParamType().size());
+		int i;
+		for (i = saved.size() - 1; i >= 0; i--)
+			putVariable(saved.get(i));
+		return null;
+	}
+
+	public Void visitInputStatement(AST ast, int node) {
+		traceChildren(ast, node);
+		if (!ast.hasChildren(node)) {
+			genRuntime("readLine", "()V", 0);
+		}
+		return null;
+	}
+
+	public Void visitInputStatementComponent(AST ast, int node) {
+		int variable = ast.getFirstChild(node);
+		ID id = ast.getSymbol(variable);
+		if (ast.getKind(variable) == NodeKind.INDEXED_VARIABLE) {
+			genElement(ast, variable);
+			genRead(id.getType().getSubTypeCode());
+			code.op(Bytecode.IASTORE);
+			grow(-3);
+		} else if (isArray(id)) {
+			getVariable(id);
+			genRuntime("readChars", "([I)V", -1);
+		} else {
+			genRead(id.getType().getTypeCode());
+			putVariable(id);
+		}
+		return null;
+	}
+
+	private void genRead(int typeCode) {
+		if (typeCode == 1) {
+			genRuntime("readChar", "()I", 1);
+		} else {
+			genRuntime("readInt", "()I", 1);
+		}
+	}
+
+	public Void visitOutputStatement(AST ast, int node) {
+		traceChildren(ast, node);
+		genRuntime("writeLine", "()V", 0);
+		return null;
+	}
+
+	public Void visitOutputStatementComponent(AST ast, int node) {
+		int expr = ast.getFirstChild(node);
+		switch (typeCodeOf(ast, expr)) {
+		case 1:
+			accept(ast, expr);
+			genRuntime("writeChar", "(I)V", -1);
+			break;
+
+		case 3:
+			if (ast.getKind(expr) == NodeKind.STRING_LITERAL) {
+				code.sconst(stringValue(ast.getSourceName(expr)));
+				grow(1);
+				genRuntime("writeString", "(Ljava/lang/String;)V", -1);
+			} else {
+				getVariable(ast.getSymbol(expr));
+				genRuntime("writeChars", "([I)V", -1);
+			}
+			break;
+
+		default:
+			accept(ast, expr);
+			genRuntime("writeInt", "(I)V", -1);
+		}
+		return null;
+	}
+
+	// 文字列定数の字面から両端の引用符を除く
+	private static String stringValue(String sourceName) {
+		return sourceName.substring(1, sourceName.length() - 1);
+	}
+
+	// 意味解析と同じ式の型の番号 (0:integer, 1:char, 2:boolean, 3:array)
+	private static int typeCodeOf(AST ast, int node) {
+		switch (ast.getKind(node)) {
+		case STRING_LITERAL:
+			return ast.getSourceName(node).replace("'", "").length() == 1 ? 1 : 3;
+		case BOOLEAN_LITERAL:
+			return 2;
+		case SIMPLE_VARIABLE:
+			return ast.getSymbol(node).getType().getTypeCode();
+		case INDEXED_VARIABLE:
+			return ast.getSymbol(node).getType().getSubTypeCode();
+		case UNARY_OPERATOR:
+			return "not".equals(ast.getSourceName(node)) ? 2 : 0;
+		case BINARY_OPERATOR:
+			switch (ast.getSourceName(node)) {
+			case "+":
+			case "-":
+			case "*":
+			case "/":
+			case "div":
+			case "mod":
+				return 0;
+			default:
+				return 2;
+			}
+		default:
+			return 0;
+		}
+	}
+
+	// 式 (値を1つ積む)
+
+	public Void visitNumberLiteral(AST ast, int node) {
+		code.iconst((short) GenerateCsal2CodeVisitor.numberValue(ast.getSourceName(node)));
+		grow(1);
+		return null;
+	}
+
+	// 文字の定数．文字列 (配列全体) の値はCASLと同じく式の中では意味を持たないので0とする
+	public Void visitStringLiteral(AST ast, int node) {
+		if (typeCodeOf(ast, node) == 1) {
+			code.iconst((short) ast.getSourceName(node).charAt(1));
+		} else {
+			code.iconst(0);
+		}
+		grow(1);
+		return null;
+	}
+
+	public Void visitBooleanLiteral(AST ast, int node) {
+		code.iconst("true".equals(ast.getSourceName(node)) ? TRUE : FALSE);
+		grow(1);
+		return null;
+	}
+
+	public Void visitSimpleVariable(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		if (isArray(id)) {
+			code.iconst(0);
+			grow(1);
+		} else {
+			getVariable(id);
+		}
+		return null;
+	}
+
+	public Void visitIndexedVariable(AST ast, int node) {
+		genElement(ast, node);
+		code.op(Bytecode.IALOAD);
+		grow(-1);
+		return null;
+	}
+
+	// 配列と添字 (下限を0とする) を積む
+	private void genElement(AST ast, int node) {
+		ID id = ast.getSymbol(node);
+		getVariable(id);
+		accept(ast, ast.getFirstChild(node));
+		int min = id.getType().getIndexMin();
+		if (min != 0) {
+			code.iconst(min);
+			grow(1);
+			code.op(Bytecode.ISUB);
+			grow(-1);
+		}
+	}
+
+	public Void visitUnaryOperator(AST ast, int node) {
+		traceChildren(ast, node);
+		switch (ast.getSourceName(node)) {
+		case "-":
+			code.op(Bytecode.INEG);
+			code.op(Bytecode.I2S);
+			break;
+
+		case "not":
+			code.iconst(FALSE);
+			grow(1);
+			code.op(Bytecode.IXOR);
+			grow(-1);
+			break;
+
+		default:
+		}
+		return null;
+	}
+
+	public Void visitBinaryOperator(AST ast, int node) {
+		if (GenerateCsal2CodeVisitor.isComparison(ast, node)) {
+			genCompareValue(ast, node);
+			return null;
+		}
+		traceChildren(ast, node);
+		switch (ast.getSourceName(node)) {
+		case "+":
+			genArithmetic(Bytecode.IADD);
+			break;
+
+		case "-":
+			genArithmetic(Bytecode.ISUB);
+			break;
+
+		case "*":
+			genArithmetic(Bytecode.IMUL);
+			break;
+
+		case "/":
+		case "div":
+			genArithmetic(Bytecode.IDIV);
+			break;
+
+		case "mod":
+			code.op(Bytecode.IREM);
+			break;
+
+		case "and":
+			code.op(Bytecode.IAND);
+			break;
+
+		case "or":
+			code.op(Bytecode.IOR);
+			break;
+
+		default:
+		}
+		grow(-1);
+		return null;
+	}
+
+	// 演算の結果を1語に切り詰める (ADDA/SUBA/MULT/DIVと同じ値)
+	private void genArithmetic(int opcode) {
+		code.op(opcode);
+		code.op(Bytecode.I2S);
+	}
+
+	// 比較の結果を真偽値 (#0000/#FFFF) にする
+	private void genCompareValue(AST ast, int node) {
+		int trueLabel = code.newLabel();
+		int endLabel = code.newLabel();
+		traceChildren(ast, node);
+		code.jump(compareJump(ast.getSourceName(node), true), trueLabel);
+		grow(-2);
+		code.iconst(FALSE);
+		code.jump(Bytecode.GOTO, endLabel);
+		code.mark(trueLabel);
+		code.iconst(TRUE);
+		code.mark(endLabel);
+		grow(1);
+	}
+
+	// 条件式が偽ならlabelへ飛ぶ
+	private void genCondition(AST ast, int node, int label) {
+		if (shortCircuit && GenerateCsal2CodeVisitor.isLogical(ast, node)) {
+			genJumpIfFalse(ast, node, label);
+			return;
+		}
+		genJump(ast, node, false, label);
+	}
+
+	// 式が偽ならlabelへ飛び，真なら次へ進む (and/or/notはIAND/IORの値と同じ真偽)
+	private void genJumpIfFalse(AST ast, int node, int label) {
+		if (GenerateCsal2CodeVisitor.isLogical(ast, node)) {
+			int left = ast.getFirstChild(node);
+			switch (ast.getSourceName(node)) {
+			case "not":
+				genJumpIfTrue(ast, left, label);
+				return;
+
+			case "or":
+				genJumpIfFalse(ast, left, label);
+				genJumpIfFalse(ast, ast.getNextSibling(left), label);
+				return;
+
+			default: {
+				int skip = code.newLabel();
+				genJumpIfTrue(ast, left, skip);
+				genJumpIfFalse(ast, ast.getNextSibling(left), label);
+				code.mark(skip);
+				return;
+			}
+			}
+		}
+		genJump(ast, node, false, label);
+	}
+
+	// 式が真ならlabelへ飛び，偽なら次へ進む (and/or/notはIAND/IORの値と同じ真偽)
+	private void genJumpIfTrue(AST ast, int node, int label) {
+		if (GenerateCsal2CodeVisitor.isLogical(ast, node)) {
+			int left = ast.getFirstChild(node);
+			switch (ast.getSourceName(node)) {
+			case "not":
+				genJumpIfFalse(ast, left, label);
+				return;
+
+			case "and":
+				genJumpIfTrue(ast, left, label);
+				genJumpIfTrue(ast, ast.getNextSibling(left), label);
+				return;
+
+			default: {
+				int skip = code.newLabel();
+				genJumpIfFalse(ast, left, skip);
+				genJumpIfTrue(ast, ast.getNextSibling(left), label);
+				code.mark(skip);
+				return;
+			}
+			}
+		}
+		genJump(ast, node, true, label);
+	}
+
+	// 比較ならその結果で，それ以外は真偽値 (偽は#FFFF) で，式の真偽がwhenならlabelへ飛ぶ
+	private void genJump(AST ast, int node, boolean when, int label) {
+		if (GenerateCsal2CodeVisitor.isComparison(ast, node)) {
+			traceChildren(ast, node);
+			code.jump(compareJump(ast.getSourceName(node), when), label);
+			grow(-2);
+			return;
+		}
+		accept(ast, node);
+		code.jump(when ? Bytecode.IFEQ : Bytecode.IFNE, label);
+		grow(-1);
+	}
+
+	// 比較opが成り立つ (holdsがfalseなら成り立たない) ときに飛ぶ命令
+	private static int compareJump(String op, boolean holds) {
+		switch (op) {
+		case "=":
+			return holds ? Bytecode.IF_ICMPEQ : Bytecode.IF_ICMPNE;
+		case "<>":
+			return holds ? Bytecode.IF_ICMPNE : Bytecode.IF_ICMPEQ;
+		case "<":
+			return holds ? Bytecode.IF_ICMPLT : Bytecode.IF_ICMPGE;
+		case "<=":
+			return holds ? Bytecode.IF_ICMPLE : Bytecode.IF_ICMPGT;
+		case ">":
+			return holds ? Bytecode.IF_ICMPGT : Bytecode.IF_ICMPLE;
+		default:
+			return holds ? Bytecode.IF_ICMPGE : Bytecode.IF_ICMPLT;
+		}
+	}
+
+	// 命令
+
+	private void getVariable(ID id) {
+		code.field(Bytecode.GETSTATIC, className, fields.get(id), descriptor(id.getType()));
+		grow(1);
+	}
+
+	private void putVariable(ID id) {
+		code.field(Bytecode.PUTSTATIC, className, fields.get(id), descriptor(id.getType()));
+		grow(-1);
+	}
+
+	// JvmRuntimeの入出力を呼ぶ．deltaはオペランドスタックの深さの増減
+	private void genRuntime(String name, String descriptor, int delta) {
+		code.invoke(Bytecode.INVOKESTATIC, RUNTIME, name, descriptor);
+		grow(delta);
+	}
+
+	// オペランドスタックの深さを数え，メソッドのmaxStackにする
+	private void grow(int delta) {
+		depth += delta;
+		if (depth > maxDepth) {
+			maxDepth = depth;
+		}
+	}
+}
@@ -7,18 +7,23 @@ public class ID {
 	private Type type;
 	private List<Type> fParamType;
 	private int scope; //global:0, local:1
+	private int memRelAddr; // 変数:VAR からの相対番地 手続き:最初の仮引数の相対番地
+	private int number; // 手続きの番号 (PROCn)
 
-	public ID(String name, Type type, int scope) {
+	public ID(String name, Type type, int scope, int memRelAddr) {
 		this.name = name;
 		this.type = type;
 		this.scope = scope;
+		this.memRelAddr = memRelAddr;
 	}
 
-	public ID(String name, Type type, List<Type> fParamType, int scope) {
+	public ID(String name, Type type, List<Type> fParamType, int scope, int number, int memRelAddr) {
 		this.name = name;
 		this.type = type;
 		this.fParamType = fParamType;
 		this.scope = scope;
+		this.number = number;
+		this.memRelAddr = memRelAddr;
 	}
 
 	public String getName() {
@@ -36,4 +41,12 @@ public class ID {
 	public int getScope() {
 		return this.scope;
 	}
+
+	public int getMemRelAddr() {
+		return this.memRelAddr;
+	}
+
+	public int getNumber() {
+		return this.number;
+	}
 }
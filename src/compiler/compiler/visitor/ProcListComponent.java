@@ -1,25 +1,16 @@
 package compiler.compiler.visitor;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class ProcListComponent {
 	private String name;
 	private int number;
 	private int fparamCnt;
 	private int fparamMemAddr;
-	private List<String> codeList;
 
 	public ProcListComponent(String name, int number, int fparamMemAddr) {
 		this.name = name;
 		this.number = number;
 		this.fparamCnt = 0;
 		this.fparamMemAddr = fparamMemAddr;
-		codeList = new ArrayList<String>();
-	}
-
-	public List<String> getCodeList() {
-		return codeList;
 	}
 
 	public String getName() {
@@ -30,10 +21,6 @@ public class ProcListComponent {
 		return number;
 	}
 
-	public void addCode(String code) {
-		codeList.add(code);
-	}
-
 	public void incFpramCnt() {
 		this.fparamCnt++;
 	}
@@ -0,0 +1,39 @@
+package compiler.compiler.visitor;
+
+public class Registers {
+
+	/**
+	 * 仕様:
+	 * 式の評価に使う汎用レジスタ GR1〜GR5 の空き状況．
+	 * GR6,GR7はlib.casが，GR8はSPが使うので割り当てない．
+	 * 空いているレジスタのうち番号の小さいものから割り当てる．
+	 */
+
+	public static final int FIRST = 1;
+	public static final int LAST = 5;
+
+	private int used;
+
+	public int allocate() {
+		int r;
+		for (r = FIRST; r <= LAST; r++) {
+			if ((used & 1 << r) == 0) {
+				used |= 1 << r;
+				return r;
+			}
+		}
+		throw new IllegalStateException("no free register");
+	}
+
+	public void free(final int r) {
+		used &= ~(1 << r);
+	}
+
+	public boolean isUsed(final int r) {
+		return (used & 1 << r) != 0;
+	}
+
+	public int freeCount() {
+		return LAST - FIRST + 1 - Integer.bitCount(used);
+	}
+}
@@ -3,174 +3,161 @@ package compiler.compiler.visitor;
 import java.util.ArrayList;
 import java.util.List;
 
-import compiler.compiler.ast.ASTNode;
+import compiler.compiler.ast.AST;
+import compiler.compiler.ast.NodeKind;
+import compiler.compiler.ast.Visitor;
 import compiler.compiler.exception.SemanticException;
 
-public class SemanticErrorCheckVisitor {
-	private List<ID> globalIDList;
-	private List<ID> procedureIDList;
-	private List<ID> localIDList;
+public class SemanticErrorCheckVisitor implements Visitor<Type> {
+	private SymbolTable variables;
+	private SymbolTable procedures;
 	private boolean isLocal;
 	private String currentProcedure;
 	private boolean minus;
+	private int memCnt;
+	private int procCnt;
 
 	public SemanticErrorCheckVisitor() {
-		this.globalIDList = new ArrayList<ID>();
-		this.localIDList = new ArrayList<ID>();
-		this.procedureIDList = new ArrayList<ID>();
+		this.variables = new SymbolTable();
+		this.procedures = new SymbolTable();
 		this.isLocal = false;
 		this.minus = false;
+		this.memCnt = 0;
+		this.procCnt = 0;
 	}
 
-	public Type visit(ASTNode node) {
-		preTypeCheck(node);
-
-		List<Type> typeList = traceChildren(node);
-
-		Type type = postTypeCheck(node, typeList);
-
-		return type;
-	}
-
-	private void preTypeCheck(ASTNode node) {
-		switch (node.getLabel()) {
-		case "Subprogram":
-			isLocal = true;
-			break;
-
-		case "ProcedureDeclarator":
-			currentProcedure = node.getSourceName();
-			break;
-
-		case "UnaryOperator":
-			setMinus(node);
-			break;
-		}
-	}
-
-	private void setMinus(ASTNode node) {
-		if (node.getSourceName().equals("-")) {
-			minus = true;
-		}
-	}
-
-	private List<Type> traceChildren(ASTNode node) {
+	private List<Type> traceChildren(AST ast, int node) {
 		List<Type> typeList = new ArrayList<Type>();
 
-		List<ASTNode> children = node.getChildren();
-		if (children != null) {
-			int i = 0;
-			while (i < children.size()) {
-				Type t = children.get(i).accept(this);
-				if (t != null)
-					typeList.add(t);
-				i++;
-			}
+		int child = ast.getFirstChild(node);
+		while (child != AST.NONE) {
+			Type t = ast.accept(this, child);
+			if (t != null)
+				typeList.add(t);
+			child = ast.getNextSibling(child);
 		}
 		return typeList;
 	}
 
-	public Type postTypeCheck(ASTNode node, List<Type> typeList) {
-		Type type = null;
-		switch (node.getLabel()) {
-		case "VariableDeclarator":
-			addVar(node, typeList);
-			break;
+	public Type visitDefault(AST ast, int node) {
+		traceChildren(ast, node);
+		return null;
+	}
 
-		case "ProcedureDeclarator":
-			addPro(node, typeList);
-			break;
+	public Type visitVariableDeclarator(AST ast, int node) {
+		addVar(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		case "FormalParameterDeclarator":
-			type = addFPara(node, typeList);
-			break;
+	public Type visitProcedureDeclarator(AST ast, int node) {
+		currentProcedure = ast.getSourceName(node);
+		int fparamMemAddr = memCnt;
+		addPro(ast, node, traceChildren(ast, node), fparamMemAddr);
+		return null;
+	}
 
-		case "StandardType":
-			type = new Type(node.getSourceName());
-			break;
+	public Type visitFormalParameterDeclarator(AST ast, int node) {
+		return addFPara(ast, node, traceChildren(ast, node));
+	}
 
-		case "ArrayType":
-			type = arrayType(node, typeList);
-			break;
+	public Type visitStandardType(AST ast, int node) {
+		return new Type(ast.getSourceName(node));
+	}
 
-		case "Subprogram":
-			localIDList.clear();
-			isLocal = false;
-			break;
+	public Type visitArrayType(AST ast, int node) {
+		return arrayType(ast, node, traceChildren(ast, node));
+	}
 
-		case "NumberLiteral":
-			type = numberLiteral(node);
-			break;
+	public Type visitSubprogram(AST ast, int node) {
+		isLocal = true;
+		variables.pushScope();
+		traceChildren(ast, node);
+		variables.popScope();
+		isLocal = false;
+		return null;
+	}
 
-		case "StringLiteral":
-			type = stringiteral(node);
-			break;
+	public Type visitNumberLiteral(AST ast, int node) {
+		return numberLiteral(ast, node);
+	}
 
-		case "BooleanLiteral":
-			type = new Type("boolean");
-			break;
+	public Type visitStringLiteral(AST ast, int node) {
+		return stringiteral(ast, node);
+	}
 
-		case "UnaryOperator":
-			type = unaryOpCheck(node, typeList);
-			minus = false;
-			break;
+	public Type visitBooleanLiteral(AST ast, int node) {
+		return new Type("boolean");
+	}
 
-		case "BinaryOperator":
-			type = binaryOpCheck(node, typeList);
-			break;
+	public Type visitUnaryOperator(AST ast, int node) {
+		setMinus(ast, node);
+		Type type = unaryOpCheck(ast, node, traceChildren(ast, node));
+		minus = false;
+		return type;
+	}
 
-		case "Assignment":
-			assignment(node, typeList);
-			break;
+	private void setMinus(AST ast, int node) {
+		if (ast.getSourceName(node).equals("-")) {
+			minus = true;
+		}
+	}
 
-		case "SimpleVariable":
-			type = simpleVariable(node);
-			break;
+	public Type visitBinaryOperator(AST ast, int node) {
+		return binaryOpCheck(ast, node, traceChildren(ast, node));
+	}
 
-		case "IndexedVariable":
-			type = indexedVariable(node, typeList);
-			break;
+	public Type visitAssignment(AST ast, int node) {
+		assignment(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		case "ProcedureCall":
-			prosedureCall(node, typeList);
-			break;
+	public Type visitSimpleVariable(AST ast, int node) {
+		return simpleVariable(ast, node);
+	}
 
-		case "IfStatement":
-			isExpBoolean(node, typeList);
-			break;
+	public Type visitIndexedVariable(AST ast, int node) {
+		return indexedVariable(ast, node, traceChildren(ast, node));
+	}
 
-		case "WhileStatement":
-			isExpBoolean(node, typeList);
-			break;
+	public Type visitProcedureCall(AST ast, int node) {
+		prosedureCall(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		// add
-		case "InputStatementComponent":
-			inputOutputCheck(node, typeList);
-			break;
+	public Type visitIfStatement(AST ast, int node) {
+		isExpBoolean(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		case "OutputStatementComponent":
-			inputOutputCheck(node, typeList);
-			break;
+	public Type visitWhileStatement(AST ast, int node) {
+		isExpBoolean(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		case "LeftValue":
-			type = typeList.get(0);
-			break;
+	// add
+	public Type visitInputStatementComponent(AST ast, int node) {
+		inputOutputCheck(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		case "IfExp":
-			type = typeList.get(0);
-			break;
+	public Type visitOutputStatementComponent(AST ast, int node) {
+		inputOutputCheck(ast, node, traceChildren(ast, node));
+		return null;
+	}
 
-		case "WhileExp":
-			type = typeList.get(0);
-			break;
+	public Type visitLeftValue(AST ast, int node) {
+		return traceChildren(ast, node).get(0);
+	}
 
-		default:
-		}
+	public Type visitIfExp(AST ast, int node) {
+		return traceChildren(ast, node).get(0);
+	}
 
-		return type;
+	public Type visitWhileExp(AST ast, int node) {
+		return traceChildren(ast, node).get(0);
 	}
 
-	private void inputOutputCheck(ASTNode node, List<Type> typeList) {
+	private void inputOutputCheck(AST ast, int node, List<Type> typeList) {
 		if (typeList.size() > 0) {
 			int i;
 			for (i = 0; i < typeList.size(); i++) {
@@ -181,17 +168,17 @@ public class SemanticErrorCheckVisitor {
 				else if (n.equals("array")) {
 					String subType = type.getSubType();
 					if (!subType.equals("char")) {
-						semanticError(node);
+						semanticError(ast, node);
 					}
 				} else {
-					semanticError(node);
+					semanticError(ast, node);
 				}
 			}
 		}
 	}
 
-	private Type stringiteral(ASTNode node) {
-		String str = node.getSourceName().replace("'", "").replace("'", "");
+	private Type stringiteral(AST ast, int node) {
+		String str = ast.getSourceName(node).replace("'", "").replace("'", "");
 		Type type;
 		if (str.length() == 1) {
 			type = new Type("char");
@@ -201,46 +188,47 @@ public class SemanticErrorCheckVisitor {
 		return type;
 	}
 
-	private void isExpBoolean(ASTNode node, List<Type> typeList) {
+	private void isExpBoolean(AST ast, int node, List<Type> typeList) {
 		Type exp = typeList.get(0);
 		if (!exp.getType().equals("boolean")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 	}
 
-	private void prosedureCall(ASTNode node, List<Type> typeList) {
-		ID id = searchProcedureID(node);
+	private void prosedureCall(AST ast, int node, List<Type> typeList) {
+		ID id = searchProcedureID(ast, node);
+		ast.setSymbol(node, id);
 		List<Type> fparams = id.getFParamType();
 
 		if (fparams.size() != typeList.size()) {
-			semanticError(node);
+			semanticError(ast, node);
 		} else {
 			int i;
 			for (i = 0; i < fparams.size(); i++) {
 				String t1 = fparams.get(i).getType();
 				String t2 = typeList.get(i).getType();
 				if (!t1.equals(t2)) {
-					semanticError(node);
+					semanticError(ast, node);
 				}
 			}
 		}
 	}
 
-	private Type binaryOpCheck(ASTNode node, List<Type> typeList) {
+	private Type binaryOpCheck(AST ast, int node, List<Type> typeList) {
 		Type type = null;
-		switch (node.getSourceName()) {
+		switch (ast.getSourceName(node)) {
 		case "+":
 		case "-":
 		case "*":
 		case "/":
 		case "div":
 		case "mod":
-			type = arithOpCehck(node, typeList);
+			type = arithOpCehck(ast, node, typeList);
 			break;
 
 		case "and":
 		case "or":
-			type = logOpCheck(node, typeList);
+			type = logOpCheck(ast, node, typeList);
 			break;
 
 		case "=":
@@ -249,7 +237,7 @@ public class SemanticErrorCheckVisitor {
 		case "<=":
 		case ">":
 		case ">=":
-			type = relOpCheck(node, typeList);
+			type = relOpCheck(ast, node, typeList);
 			break;
 
 		default:
@@ -257,129 +245,109 @@ public class SemanticErrorCheckVisitor {
 		return type;
 	}
 
-	private Type relOpCheck(ASTNode node, List<Type> typeList) {
+	private Type relOpCheck(AST ast, int node, List<Type> typeList) {
 		Type type1 = typeList.get(0);
 		Type type2 = typeList.get(1);
 		if (!type1.getType().equals(type2.getType())) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 		return new Type("boolean");
 	}
 
-	private Type logOpCheck(ASTNode node, List<Type> typeList) {
+	private Type logOpCheck(AST ast, int node, List<Type> typeList) {
 		Type type1 = typeList.get(0);
 		Type type2 = typeList.get(1);
 
 		if (!type1.getType().equals("boolean")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 		if (!type2.getType().equals("boolean")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 
 		return new Type("boolean");
 	}
 
-	private Type arithOpCehck(ASTNode node, List<Type> typeList) {
+	private Type arithOpCehck(AST ast, int node, List<Type> typeList) {
 		Type type1 = typeList.get(0);
 		Type type2 = typeList.get(1);
 
 		if (!type1.getType().equals("integer")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 		if (!type2.getType().equals("integer")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 
 		return new Type("integer");
 	}
 
-	private void assignment(ASTNode node, List<Type> typeList) {
+	private void assignment(AST ast, int node, List<Type> typeList) {
 		Type type1 = typeList.get(0);
 		Type type2 = typeList.get(1);
 
 		if (type1.getType().equals("array") || type2.getType().equals("array")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 
 		if (!type1.getType().equals(type2.getType())) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 	}
 
-	private Type indexedVariable(ASTNode node, List<Type> typeList) {
-		ID id = searchVariableID(node);
+	private Type indexedVariable(AST ast, int node, List<Type> typeList) {
+		ID id = searchVariableID(ast, node);
+		ast.setSymbol(node, id);
 		Type idType = id.getType();
 		if (!idType.getType().equals("array")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 
 		Type indexType = typeList.get(0);
 		if (!indexType.getType().equals("integer")) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
 
 		Type type = new Type(idType.getSubType());
 		return type;
 	}
 
-	private Type simpleVariable(ASTNode node) {
-		ID id = searchVariableID(node);
+	private Type simpleVariable(AST ast, int node) {
+		ID id = searchVariableID(ast, node);
+		ast.setSymbol(node, id);
 		return id.getType();
 	}
 
-	public ID searchVariableID(ASTNode node) {
-		String name = node.getSourceName();
-		if (isLocal) {
-			int i;
-			for (i = 0; i < localIDList.size(); i++) {
-				ID id = localIDList.get(i);
-				if (id.getName().equals(name)) {
-					return id;
-				}
-			}
-		}
-
-		int i;
-		for (i = 0; i < globalIDList.size(); i++) {
-			ID id = globalIDList.get(i);
-			if (id.getName().equals(name)) {
-				return id;
-			}
+	public ID searchVariableID(AST ast, int node) {
+		ID id = variables.lookup(ast.getSourceName(node));
+		if (id == null) {
+			semanticError(ast, node);
 		}
-
-		semanticError(node);
-		return null;
+		return id;
 	}
 
-	public ID searchProcedureID(ASTNode node) {
-		String name = node.getSourceName();
-		int i;
-		for (i = 0; i < procedureIDList.size(); i++) {
-			ID id = procedureIDList.get(i);
-			if (id.getName().equals(name)) {
-				return id;
-			}
+	public ID searchProcedureID(AST ast, int node) {
+		ID id = procedures.lookup(ast.getSourceName(node));
+		if (id == null) {
+			semanticError(ast, node);
 		}
-
-		semanticError(node);
-		return null;
+		return id;
 	}
 
-	private Type unaryOpCheck(ASTNode node, List<Type> typeList) {
+	private Type unaryOpCheck(AST ast, int node, List<Type> typeList) {
 		Type type = typeList.get(0);
 		String typeName = type.getType();
 
-		switch (node.getSourceName()) {
+		switch (ast.getSourceName(node)) {
 		case "+":
 		case "-":
 			if (!typeName.equals("integer"))
-				semanticError(node);
+				semanticError(ast, node);
 			break;
 
 		case "not":
 			if (!typeName.equals("boolean"))
-				semanticError(node);
+				semanticError(ast, node);
 			break;
 
 		default:
@@ -387,124 +355,127 @@ public class SemanticErrorCheckVisitor {
 		return type;
 	}
 
-	private Type numberLiteral(ASTNode node) {
-		String intValue = node.getSourceName();
+	private Type numberLiteral(AST ast, int node) {
+		String intValue = ast.getSourceName(node);
 		int value = Integer.parseInt(intValue);
 		Type type = new Type("integer", value);
 		if (minus) {
 			if (32768 < value) {
-				semanticError(node);
+				semanticError(ast, node);
 			}
 		} else {
 			if (32767 < value) {
-				semanticError(node);
+				semanticError(ast, node);
 			}
 		}
 		return type;
 	}
 
-	private Type arrayType(ASTNode node, List<Type> typeList) {
+	private Type arrayType(AST ast, int node, List<Type> typeList) {
 		int min = typeList.get(0).getIntValue();
 		int max = typeList.get(1).getIntValue();
 		String subType = typeList.get(2).getType();
 		if (min > max) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
-		Type type = new Type("array", subType);
+		int first = ast.getFirstChild(node);
+		Type type = new Type("array", subType, indexValue(ast, first), indexValue(ast, ast.getNextSibling(first)));
 		return type;
 	}
 
-	private Type addFPara(ASTNode node, List<Type> typeList) {
+	// 添字の下限・上限の値 (符号付き)
+	private int indexValue(AST ast, int node) {
+		int literal = node;
+		if (ast.getKind(node) == NodeKind.UNARY_OPERATOR) {
+			literal = ast.getFirstChild(node);
+		}
+		if (ast.getKind(literal) != NodeKind.NUMBER_LITERAL) {
+			semanticError(ast, node);
+		}
+		int value = Integer.parseInt(ast.getSourceName(literal));
+		return literal != node && ast.getSourceName(node).equals("-") ? -value : value;
+	}
+
+	private Type addFPara(AST ast, int node, List<Type> typeList) {
 		Type type = typeList.get(0);
-		String name = node.getSourceName();
+		String name = ast.getSourceName(node);
 		int scope = 1;
 
 		if (currentProcedure.equals(name)) {
-			semanticError(node);
+			semanticError(ast, node);
 		}
-		checkLocalIDList(node);
+		checkLocalIDList(ast, node);
 
-		ID id = new ID(name, type, scope);
-		localIDList.add(id);
+		ID id = new ID(name, type, scope, memCnt);
+		memCnt += type.getSize();
+		variables.declare(name, id);
+		ast.setSymbol(node, id);
 
 		return type;
 	}
 
-	private void addPro(ASTNode node, List<Type> typeList) {
-		checkGlobalIDList(node);
-		checkProcedureIDList(node);
+	private void addPro(AST ast, int node, List<Type> typeList, int fparamMemAddr) {
+		checkGlobalIDList(ast, node);
+		checkProcedureIDList(ast, node);
 
 		Type type = null;
-		String name = node.getSourceName();
+		String name = ast.getSourceName(node);
 		List<Type> fParamType = typeList;
 		int scope = 0;
 
-		ID id = new ID(name, type, fParamType, scope);
-		procedureIDList.add(id);
+		ID id = new ID(name, type, fParamType, scope, procCnt, fparamMemAddr);
+		procCnt++;
+		procedures.declare(name, id);
+		ast.setSymbol(node, id);
 	}
 
-	private void addVar(ASTNode node, List<Type> typeList) {
+	private void addVar(AST ast, int node, List<Type> typeList) {
 		int scope;
 		if (isLocal) {
-			checkCurrentProcedure(node);
-			checkLocalIDList(node);
+			checkCurrentProcedure(ast, node);
+			checkLocalIDList(ast, node);
 			scope = 1;
 		} else {
-			checkGlobalIDList(node);
+			checkGlobalIDList(ast, node);
 			scope = 0;
 		}
 
 		Type type = typeList.get(0);
-		String name = node.getSourceName();
+		String name = ast.getSourceName(node);
 
-		ID id = new ID(name, type, scope);
+		ID id = new ID(name, type, scope, memCnt);
+		memCnt += type.getSize();
 
-		if (isLocal)
-			localIDList.add(id);
-		else
-			globalIDList.add(id);
+		variables.declare(name, id);
+		ast.setSymbol(node, id);
 	}
 
-	public void checkLocalIDList(ASTNode node) {
-		String name = node.getSourceName();
-		int i;
-		for (i = 0; i < localIDList.size(); i++) {
-			if (localIDList.get(i).getName().equals(name)) {
-				semanticError(node);
-			}
+	public void checkLocalIDList(AST ast, int node) {
+		if (variables.lookupCurrent(ast.getSourceName(node)) != null) {
+			semanticError(ast, node);
 		}
 	}
 
-	public void checkGlobalIDList(ASTNode node) {
-		String name = node.getSourceName();
-		int i;
-		for (i = 0; i < globalIDList.size(); i++) {
-			if (globalIDList.get(i).getName().equals(name)) {
-				semanticError(node);
-			}
+	public void checkGlobalIDList(AST ast, int node) {
+		if (variables.lookupGlobal(ast.getSourceName(node)) != null) {
+			semanticError(ast, node);
 		}
 	}
 
-	public void checkProcedureIDList(ASTNode node) {
-		checkLocalIDList(node);
-		String name = node.getSourceName();
-		int i;
-		for (i = 0; i < procedureIDList.size(); i++) {
-			if (procedureIDList.get(i).getName().equals(name)) {
-				semanticError(node);
-			}
+	public void checkProcedureIDList(AST ast, int node) {
+		checkLocalIDList(ast, node);
+		if (procedures.lookup(ast.getSourceName(node)) != null) {
+			semanticError(ast, node);
 		}
 	}
 
-	public void checkCurrentProcedure(ASTNode node) {
-		String name = node.getSourceName();
-		ID currentProcedure = procedureIDList.get(procedureIDList.size() - 1);
-		if (currentProcedure.getName().equals(name)) {
-			semanticError(node);
+	public void checkCurrentProcedure(AST ast, int node) {
+		if (currentProcedure.equals(ast.getSourceName(node))) {
+			semanticError(ast, node);
 		}
 	}
 
-	private void semanticError(ASTNode node) {
-		throw new SemanticException("Semantic error: line " + node.getLinenumber());
+	private void semanticError(AST ast, int node) {
+		throw new SemanticException("Semantic error: line " + ast.getLinenumber(node));
 	}
 }
@@ -0,0 +1,149 @@
+package compiler.compiler.visitor;
+
+import java.util.Arrays;
+
+public class SymbolTable {
+
+	/**
+	 * 仕様:
+	 * 名前からIDを引く入れ子のスコープ付き記号表．
+	 * 名前ごとに一つのスロットを持つオープンアドレス法のハッシュ表で，スロットには最も内側の宣言を置き，
+	 * 外側の同名の宣言はその宣言からたどる．
+	 * pushScopeで新しいスコープに入り，popScopeでそのスコープで宣言した名前だけを取り除く．
+	 * スロットの名前は消さないので削除済みの印は要らない．
+	 * 名前はASTの字面プールで共有された文字列を想定し，まず参照の一致で比べる．
+	 */
+
+	private static final class Entry {
+		final ID id;
+		final int depth;
+		final Entry outer;
+
+		Entry(ID id, int depth, Entry outer) {
+			this.id = id;
+			this.depth = depth;
+			this.outer = outer;
+		}
+	}
+
+	private String[] keys;
+	private Entry[] entries;
+	private int used;
+
+	// スコープごとに宣言したスロットの記録
+	private int[] log;
+	private int logTop;
+	private int[] scopeStart;
+	private int depth;
+
+	public SymbolTable() {
+		this.keys = new String[64];
+		this.entries = new Entry[64];
+		this.used = 0;
+		this.log = new int[64];
+		this.logTop = 0;
+		this.scopeStart = new int[8];
+		this.depth = 0;
+	}
+
+	public void pushScope() {
+		depth++;
+		if (depth == scopeStart.length) {
+			scopeStart = Arrays.copyOf(scopeStart, depth * 2);
+		}
+		scopeStart[depth] = logTop;
+	}
+
+	public void popScope() {
+		int i;
+		for (i = logTop - 1; i >= scopeStart[depth]; i--) {
+			int slot = log[i];
+			entries[slot] = entries[slot].outer;
+		}
+		logTop = scopeStart[depth];
+		depth--;
+	}
+
+	/**
+	 * 現在のスコープに宣言する．同じスコープでの重複は呼び出し側で確かめる．
+	 */
+	public void declare(String name, ID id) {
+		int slot = find(name);
+		if (keys[slot] == null) {
+			keys[slot] = name;
+			used++;
+		}
+		entries[slot] = new Entry(id, depth, entries[slot]);
+
+		if (logTop == log.length) {
+			log = Arrays.copyOf(log, logTop * 2);
+		}
+		log[logTop++] = slot;
+
+		if (used * 2 > keys.length) {
+			rehash();
+		}
+	}
+
+	/**
+	 * 最も内側の宣言を返す．なければnull．
+	 */
+	public ID lookup(String name) {
+		Entry e = entries[find(name)];
+		return e == null ? null : e.id;
+	}
+
+	/**
+	 * 現在のスコープでの宣言を返す．なければnull．
+	 */
+	public ID lookupCurrent(String name) {
+		Entry e = entries[find(name)];
+		return e != null && e.depth == depth ? e.id : null;
+	}
+
+	/**
+	 * 最も外側のスコープでの宣言を返す．なければnull．
+	 */
+	public ID lookupGlobal(String name) {
+		Entry e = entries[find(name)];
+		while (e != null && e.depth > 0)
+			e = e.outer;
+		return e == null ? null : e.id;
+	}
+
+	private int find(String name) {
+		int mask = keys.length - 1;
+		int slot = hash(name) & mask;
+		while (true) {
+			String k = keys[slot];
+			if (k == null || k == name || k.equals(name)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private void rehash() {
+		String[] oldKeys = keys;
+		Entry[] oldEntries = entries;
+		int[] moved = new int[oldKeys.length];
+		keys = new String[oldKeys.length * 2];
+		entries = new Entry[oldKeys.length * 2];
+		int i;
+		for (i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				entries[slot] = oldEntries[i];
+				moved[i] = slot;
+			}
+		}
+		for (i = 0; i < logTop; i++)
+			log[i] = moved[log[i]];
+	}
+}
@@ -6,19 +6,49 @@ public class Type {
 	private int indexMin;
 	private int indexMax;
 	private int intValue;
+	private int typeCode; //0:int 1:char 2:boolean 3:array
+	private int subTypeCode; //0:int 1:char 2:boolean
 
 	public Type(String type) {
 		this.type = type;
+		this.typeCode = codeOf(type);
 	}
 
 	public Type(String type, int intValue) {
 		this.type = type;
 		this.intValue = intValue;
+		this.typeCode = codeOf(type);
 	}
 
 	public Type(String type, String subType) {
 		this.type = type;
 		this.subType = subType;
+		this.typeCode = codeOf(type);
+		this.subTypeCode = codeOf(subType);
+	}
+
+	public Type(String type, String subType, int indexMin, int indexMax) {
+		this(type, subType);
+		this.indexMin = indexMin;
+		this.indexMax = indexMax;
+	}
+
+	private static int codeOf(String type) {
+		if (type == null) {
+			return -1;
+		}
+		switch (type) {
+		case "integer":
+			return 0;
+		case "char":
+			return 1;
+		case "boolean":
+			return 2;
+		case "array":
+			return 3;
+		default:
+			return -1;
+		}
 	}
 
 	public String getType() {
@@ -29,6 +59,14 @@ public class Type {
 		return this.subType;
 	}
 
+	public int getTypeCode() {
+		return this.typeCode;
+	}
+
+	public int getSubTypeCode() {
+		return this.subTypeCode;
+	}
+
 	public int getIndexMin() {
 		return this.indexMin;
 	}
@@ -44,4 +82,11 @@ public class Type {
 	public int getArraySize() {
 		return indexMax - indexMin + 1;
 	}
+
+	/**
+	 * 変数に割り当てる語数
+	 */
+	public int getSize() {
+		return typeCode == 3 ? getArraySize() : 1;
+	}
 }
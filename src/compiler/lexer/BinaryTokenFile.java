@@ -0,0 +1,258 @@
+package compiler.lexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class BinaryTokenFile {
+
+	/**
+	 * 仕様:
+	 * tsファイルのバイナリ版(tsbファイル)の書き出しと読み込みを行う．
+	 *
+	 * 形式 (整数はすべて符号なしLEB128の可変長整数):
+	 *   ヘッダ   'T' 'S' 'B' VERSION, トークン数, 字面プールの要素数
+	 *   字面プール 要素ごとに バイト長, UTF-8のバイト列 (同じ字面は一度だけ格納する)
+	 *   kind列   トークンごとの種類 (Lexerの S* 定数)
+	 *   line列   トークンごとの行番号の直前のトークンとの差分
+	 *   字面列   トークンごとの字面プールの添字
+	 *
+	 * 読み込みはファイル全体を一度に読んでから先頭から順に復号する．
+	 */
+
+	public static final byte VERSION = 1;
+	private static final byte[] MAGIC = { 'T', 'S', 'B', VERSION };
+
+	private final String[] pool;
+	private final int[] kind;
+	private final int[] line;
+	private final int[] lexeme;
+
+	private BinaryTokenFile(final String[] pool, final int[] kind, final int[] line, final int[] lexeme) {
+		this.pool = pool;
+		this.kind = kind;
+		this.line = line;
+		this.lexeme = lexeme;
+	}
+
+	public int size() {
+		return kind.length;
+	}
+
+	public String[] getPool() {
+		return pool;
+	}
+
+	public int[] getKind() {
+		return kind;
+	}
+
+	public int[] getLine() {
+		return line;
+	}
+
+	public int[] getLexeme() {
+		return lexeme;
+	}
+
+	public static boolean isBinaryFile(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+			while (head.hasRemaining() && channel.read(head) >= 0)
+				;
+			return !head.hasRemaining() && hasMagic(head.flip());
+		}
+	}
+
+	private static boolean hasMagic(final ByteBuffer buffer) {
+		if (buffer.remaining() < MAGIC.length) {
+			return false;
+		}
+		int i;
+		for (i = 0; i < MAGIC.length; i++) {
+			if (buffer.get(buffer.position() + i) != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static BinaryTokenFile read(final Path path) throws IOException {
+		final ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+		}
+		return decode(buffer.flip());
+	}
+
+	public static BinaryTokenFile decode(final ByteBuffer buffer) throws IOException {
+		if (!hasMagic(buffer)) {
+			throw new IOException("not a tsb file");
+		}
+		buffer.position(buffer.position() + MAGIC.length);
+
+		final int size = readVarint(buffer);
+		final int poolSize = readVarint(buffer);
+
+		final String[] pool = new String[poolSize];
+		int i;
+		for (i = 0; i < poolSize; i++) {
+			final int length = readVarint(buffer);
+			pool[i] = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+					StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		}
+
+		final int[] kind = new int[size];
+		for (i = 0; i < size; i++)
+			kind[i] = readVarint(buffer);
+
+		final int[] line = new int[size];
+		int lineNumber = 0;
+		for (i = 0; i < size; i++) {
+			lineNumber += readVarint(buffer);
+			line[i] = lineNumber;
+		}
+
+		final int[] lexeme = new int[size];
+		for (i = 0; i < size; i++)
+			lexeme[i] = readVarint(buffer);
+
+		return new BinaryTokenFile(pool, kind, line, lexeme);
+	}
+
+	private static int readVarint(final ByteBuffer buffer) throws IOException {
+		int value = 0;
+		int shift = 0;
+		while (shift < 35) {
+			if (!buffer.hasRemaining()) {
+				throw new IOException("truncated tsb file");
+			}
+			final byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+			shift += 7;
+		}
+		throw new IOException("malformed varint in tsb file");
+	}
+
+	/**
+	 * tokensをtsb形式でoutに書き出す．
+	 * 字面はソースのバッファ上のバイト列で重複を除き，トークンごとのStringは作らない．
+	 */
+	public static void write(final TokenBuffer tokens, final OutputStream out) throws IOException {
+		final int size = tokens.size();
+		final ByteBuffer source = tokens.getSource();
+
+		// 字面プール: プールの各要素はsource上の最初の出現位置で表す
+		final int[] lexeme = new int[size];
+		int[] poolOffset = new int[64];
+		int[] poolLength = new int[64];
+		int poolSize = 0;
+		int[] table = new int[256];
+		int mask = table.length - 1;
+		int i;
+		for (i = 0; i < size; i++) {
+			final int offset = tokens.getOffset(i);
+			final int length = tokens.getLength(i);
+			final int h = hash(source, offset, length);
+			int slot = h & mask;
+			while (table[slot] != 0
+					&& !sameBytes(source, poolOffset[table[slot] - 1], poolLength[table[slot] - 1], offset, length))
+				slot = (slot + 1) & mask;
+
+			if (table[slot] == 0) {
+				if (poolSize == poolOffset.length) {
+					poolOffset = Arrays.copyOf(poolOffset, poolSize * 2);
+					poolLength = Arrays.copyOf(poolLength, poolSize * 2);
+				}
+				poolOffset[poolSize] = offset;
+				poolLength[poolSize] = length;
+				poolSize++;
+				table[slot] = poolSize;
+				if (poolSize * 2 > table.length) {
+					table = new int[table.length * 2];
+					mask = table.length - 1;
+					int j;
+					for (j = 0; j < poolSize; j++) {
+						int s = hash(source, poolOffset[j], poolLength[j]) & mask;
+						while (table[s] != 0)
+							s = (s + 1) & mask;
+						table[s] = j + 1;
+					}
+				}
+				lexeme[i] = poolSize - 1;
+			} else {
+				lexeme[i] = table[slot] - 1;
+			}
+		}
+
+		final byte[] varint = new byte[5];
+		out.write(MAGIC);
+		writeVarint(out, varint, size);
+		writeVarint(out, varint, poolSize);
+
+		byte[] text = new byte[64];
+		for (i = 0; i < poolSize; i++) {
+			if (text.length < poolLength[i]) {
+				text = new byte[poolLength[i] * 2];
+			}
+			source.get(poolOffset[i], text, 0, poolLength[i]);
+			writeVarint(out, varint, poolLength[i]);
+			out.write(text, 0, poolLength[i]);
+		}
+
+		for (i = 0; i < size; i++)
+			writeVarint(out, varint, tokens.getKind(i));
+
+		int lineNumber = 0;
+		for (i = 0; i < size; i++) {
+			writeVarint(out, varint, tokens.getLine(i) - lineNumber);
+			lineNumber = tokens.getLine(i);
+		}
+
+		for (i = 0; i < size; i++)
+			writeVarint(out, varint, lexeme[i]);
+	}
+
+	private static void writeVarint(final OutputStream out, final byte[] varint, int value) throws IOException {
+		int n = 0;
+		while ((value & ~0x7F) != 0) {
+			varint[n++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		varint[n++] = (byte) value;
+		out.write(varint, 0, n);
+	}
+
+	private static int hash(final ByteBuffer source, final int offset, final int length) {
+		int h = 0;
+		int i;
+		for (i = 0; i < length; i++)
+			h = 31 * h + source.get(offset + i);
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean sameBytes(final ByteBuffer source, final int offset1, final int length1,
+			final int offset2, final int length2) {
+		if (length1 != length2) {
+			return false;
+		}
+		int i;
+		for (i = 0; i < length1; i++) {
+			if (source.get(offset1 + i) != source.get(offset2 + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
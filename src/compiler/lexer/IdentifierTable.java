@@ -0,0 +1,71 @@
+package compiler.lexer;
+
+class IdentifierTable {
+
+	/**
+	 * 仕様:
+	 * 一度現れた識別子のTokenを文字範囲をキーとして保持するオープンアドレス法のハッシュ表．
+	 * 既出の識別子はsubstringもTokenの生成も行わずに同じTokenを返す．
+	 */
+
+	private Token[] table;
+	private int[] hashes;
+	private int size;
+
+	IdentifierTable() {
+		this.table = new Token[256];
+		this.hashes = new int[256];
+		this.size = 0;
+	}
+
+	Token get(final String text, final int beginPoint, final int endPoint) {
+		final int h = hash(text, beginPoint, endPoint);
+		final int mask = table.length - 1;
+		int i = h & mask;
+		while (table[i] != null) {
+			if (hashes[i] == h && matches(table[i].GetSourceName(), text, beginPoint, endPoint)) {
+				return table[i];
+			}
+			i = (i + 1) & mask;
+		}
+
+		final Token token = new Token(text.substring(beginPoint, endPoint), "SIDENTIFIER", Lexer.SIDENTIFIER);
+		table[i] = token;
+		hashes[i] = h;
+		size++;
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return token;
+	}
+
+	private void rehash() {
+		final Token[] oldTable = table;
+		final int[] oldHashes = hashes;
+		table = new Token[oldTable.length * 2];
+		hashes = new int[oldTable.length * 2];
+		final int mask = table.length - 1;
+		int j;
+		for (j = 0; j < oldTable.length; j++) {
+			if (oldTable[j] != null) {
+				int i = oldHashes[j] & mask;
+				while (table[i] != null)
+					i = (i + 1) & mask;
+				table[i] = oldTable[j];
+				hashes[i] = oldHashes[j];
+			}
+		}
+	}
+
+	private static int hash(final String text, final int beginPoint, final int endPoint) {
+		int h = 0;
+		int i;
+		for (i = beginPoint; i < endPoint; i++)
+			h = 31 * h + text.charAt(i);
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(final String word, final String text, final int beginPoint, final int endPoint) {
+		return word.length() == endPoint - beginPoint && word.regionMatches(0, text, beginPoint, word.length());
+	}
+}
@@ -1,10 +1,17 @@
 package compiler.lexer;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 public class Lexer {
@@ -134,6 +141,15 @@ public class Lexer {
 			SUNDEFINED,
 	};
 
+	public static final String tokenNameTable[] = {
+			"SAND", "SARRAY", "SBEGIN", "SBOOLEAN", "SCHAR", "SDIVD", "SDO", "SELSE",
+			"SEND", "SFALSE", "SIF", "SINTEGER", "SMOD", "SNOT", "SOF", "SOR",
+			"SPROCEDURE", "SPROGRAM", "SREADLN", "STHEN", "STRUE", "SVAR", "SWHILE", "SWRITELN",
+			"SEQUAL", "SNOTEQUAL", "SLESS", "SLESSEQUAL", "SGREATEQUAL", "SGREAT", "SPLUS", "SMINUS",
+			"SSTAR", "SLPAREN", "SRPAREN", "SLBRACKET", "SRBRACKET", "SSEMICOLON", "SCOLON", "SRANGE",
+			"SASSIGN", "SCOMMA", "SDOT", "SIDENTIFIER", "SCONSTANT", "SSTRING"
+	};
+
 	public static final Token reservedWordArray[] = {
 			new Token("and", "SAND", SAND), new Token("array", "SARRAY", SARRAY),
 			new Token("begin", "SBEGIN", SBEGIN), new Token("boolean", "SBOOLEAN", SBOOLEAN),
@@ -149,15 +165,13 @@ public class Lexer {
 			new Token("while", "SWHILE", SWHILE), new Token("writeln", "SWRITELN", SWRITELN)
 	};
 
-	private Token whichReservedWord(String word) {
-		int i = 0;
-		while (i < reservedWordArray.length) {
-			if (word.equals(reservedWordArray[i].GetSourceName()))
-				return reservedWordArray[i];
-			else
-				i++;
-		}
-		return new Token(word, "SIDENTIFIER", SIDENTIFIER);
+	private final IdentifierTable identifierTable = new IdentifierTable();
+
+	private Token whichReservedWord(String text, int beginPoint, int endPoint) {
+		final int id = ReservedWords.lookup(text, beginPoint, endPoint);
+		if (id != SIDENTIFIER)
+			return reservedWordArray[id];
+		return identifierTable.get(text, beginPoint, endPoint);
 	}
 
 	public void run(final String inputFileName, final String outputFileName) {
@@ -209,7 +223,7 @@ public class Lexer {
 								|| asciiTable[text.charAt(endPoint)] == SDIGIT)
 							endPoint++;
 
-						token = whichReservedWord(text.substring(beginPoint, endPoint));
+						token = whichReservedWord(text, beginPoint, endPoint);
 						break;
 
 					case SDIGIT:
@@ -343,28 +357,67 @@ public class Lexer {
 			System.err.println("File not found");
 		}
 	}
-}
 
-class Token {
-	Token(String sourceName, String tokenName, int id) {
-		this.sourceName = sourceName;
-		this.tokenName = tokenName;
-		this.id = id;
-	}
+	/**
+	 * 仕様:
+	 * runと同じ入出力をもつが，pasファイルをメモリマップしてバイト列のまま走査する．
+	 * 行単位の読み込みや字句ごとのsubstringを行わず，トークンはTokenBufferに
+	 * (offset, length, kind, line) として記録し，tsファイルへはバッファから直接書き出す．
+	 * 出力ファイル名の拡張子が.tsbの場合はバイナリ形式(BinaryTokenFile)で書き出す．
+	 *
+	 * @param inputFileName 入力pasファイル名
+	 * @param outputFileName 出力tsファイル名
+	 * ex: new Lexer().runMapped("data/pas/in.pas", "data/ts/out.ts");
+	 */
+	public void runMapped(final String inputFileName, final String outputFileName) {
+		final MappedByteBuffer text;
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFileName), StandardOpenOption.READ)) {
+			text = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (final IOException e) {
+			System.err.println("File not found");
+			return;
+		}
 
-	private String sourceName;
-	private String tokenName;
-	private int id;
+		final TokenBuffer tokens = new TokenBuffer(text);
+		String error = null;
+		try {
+			scan(text, tokens);
+		} catch (final LexicalException e) {
+			error = e.getMessage();
+		}
 
-	public String GetSourceName() {
-		return this.sourceName;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFileName), 1 << 16)) {
+			if (outputFileName.endsWith(".tsb")) {
+				BinaryTokenFile.write(tokens, out);
+			} else {
+				tokens.writeText(out);
+			}
+		} catch (final IOException e) {
+			System.err.println("File not found");
+			return;
+		}
+
+		if (error != null) {
+			System.err.println(error);
+			return;
+		}
+		System.out.println("OK");
 	}
 
-	public String GetTokenName() {
-		return this.tokenName;
+	public TokenBuffer scan(final ByteBuffer text) {
+		final TokenBuffer tokens = new TokenBuffer(text);
+		scan(text, tokens);
+		return tokens;
 	}
 
-	public int GetId() {
-		return this.id;
+	/**
+	 * textの先頭からlimitまでを走査してtokensに追加する．
+	 * 字句エラーを見つけた場合はそれまでのトークンをtokensに残したままLexicalExceptionを投げる．
+	 */
+	public void scan(final ByteBuffer text, final TokenBuffer tokens) {
+		final TokenScanner scanner = new TokenScanner(text);
+		while (scanner.next()) {
+			tokens.add(scanner.getOffset(), scanner.getLength(), scanner.getKind(), scanner.getLine());
+		}
 	}
 }
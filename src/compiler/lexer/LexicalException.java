@@ -0,0 +1,7 @@
+package compiler.lexer;
+
+public class LexicalException extends RuntimeException {
+	public LexicalException(String msg) {
+		super(msg);
+	}
+}
@@ -0,0 +1,70 @@
+package compiler.lexer;
+
+import java.nio.ByteBuffer;
+
+public class ReservedWords {
+
+	/**
+	 * 仕様:
+	 * 予約語の判定を完全ハッシュで行う．
+	 * ハッシュ値は (長さ + 4 * 先頭文字 + 5 * 末尾文字) & 63 で，24個の予約語はすべて異なる位置に入る．
+	 * 定数は予約語表から事前に探索したもので，予約語を変更した場合は衝突しない値を選び直す必要がある．
+	 * 候補の予約語と一文字ずつ比較するだけなので，文字列やTokenを生成しない．
+	 */
+
+	private static final int TABLE_SIZE = 64;
+	private static final char[][] words = new char[TABLE_SIZE][];
+	private static final int[] ids = new int[TABLE_SIZE];
+
+	static {
+		int i;
+		for (i = 0; i < Lexer.reservedWordArray.length; i++) {
+			final char[] word = Lexer.reservedWordArray[i].GetSourceName().toCharArray();
+			final int h = hash(word.length, word[0], word[word.length - 1]);
+			if (words[h] != null) {
+				throw new IllegalStateException("reserved word hash collision: " + new String(word));
+			}
+			words[h] = word;
+			ids[h] = Lexer.reservedWordArray[i].GetId();
+		}
+	}
+
+	private static int hash(final int length, final int first, final int last) {
+		return (length + 4 * first + 5 * last) & (TABLE_SIZE - 1);
+	}
+
+	/**
+	 * text[beginPoint, endPoint) が予約語ならそのIDを，そうでなければSIDENTIFIERを返す．
+	 */
+	public static int lookup(final CharSequence text, final int beginPoint, final int endPoint) {
+		final int length = endPoint - beginPoint;
+		final int h = hash(length, text.charAt(beginPoint), text.charAt(endPoint - 1));
+		final char[] word = words[h];
+		if (word == null || word.length != length) {
+			return Lexer.SIDENTIFIER;
+		}
+		int i;
+		for (i = 0; i < length; i++) {
+			if (text.charAt(beginPoint + i) != word[i]) {
+				return Lexer.SIDENTIFIER;
+			}
+		}
+		return ids[h];
+	}
+
+	public static int lookup(final ByteBuffer text, final int beginPoint, final int endPoint) {
+		final int length = endPoint - beginPoint;
+		final int h = hash(length, text.get(beginPoint) & 0xFF, text.get(endPoint - 1) & 0xFF);
+		final char[] word = words[h];
+		if (word == null || word.length != length) {
+			return Lexer.SIDENTIFIER;
+		}
+		int i;
+		for (i = 0; i < length; i++) {
+			if (text.get(beginPoint + i) != word[i]) {
+				return Lexer.SIDENTIFIER;
+			}
+		}
+		return ids[h];
+	}
+}
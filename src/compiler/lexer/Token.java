@@ -0,0 +1,25 @@
+package compiler.lexer;
+
+class Token {
+	Token(String sourceName, String tokenName, int id) {
+		this.sourceName = sourceName;
+		this.tokenName = tokenName;
+		this.id = id;
+	}
+
+	private String sourceName;
+	private String tokenName;
+	private int id;
+
+	public String GetSourceName() {
+		return this.sourceName;
+	}
+
+	public String GetTokenName() {
+		return this.tokenName;
+	}
+
+	public int GetId() {
+		return this.id;
+	}
+}
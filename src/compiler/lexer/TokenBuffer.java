@@ -0,0 +1,127 @@
+package compiler.lexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TokenBuffer {
+
+	/**
+	 * 仕様:
+	 * 字句解析の結果を (offset, length, kind, line) の組として保持する．
+	 * 字面はソースのバッファを指すだけで，getTextが呼ばれるまでStringは作らない．
+	 */
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final byte[][] tokenNameBytes = new byte[Lexer.tokenNameTable.length][];
+	private static final byte[][] idBytes = new byte[Lexer.tokenNameTable.length][];
+
+	static {
+		int i;
+		for (i = 0; i < Lexer.tokenNameTable.length; i++) {
+			tokenNameBytes[i] = Lexer.tokenNameTable[i].getBytes(StandardCharsets.US_ASCII);
+			idBytes[i] = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	private final ByteBuffer source;
+	private int[] offset;
+	private int[] length;
+	private int[] kind;
+	private int[] line;
+	private int size;
+
+	public TokenBuffer(final ByteBuffer source) {
+		this.source = source;
+		this.offset = new int[INITIAL_CAPACITY];
+		this.length = new int[INITIAL_CAPACITY];
+		this.kind = new int[INITIAL_CAPACITY];
+		this.line = new int[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	public void add(final int offset, final int length, final int kind, final int line) {
+		if (size == this.kind.length) {
+			grow();
+		}
+		this.offset[size] = offset;
+		this.length[size] = length;
+		this.kind[size] = kind;
+		this.line[size] = line;
+		size++;
+	}
+
+	private void grow() {
+		final int capacity = kind.length * 2;
+		offset = Arrays.copyOf(offset, capacity);
+		length = Arrays.copyOf(length, capacity);
+		kind = Arrays.copyOf(kind, capacity);
+		line = Arrays.copyOf(line, capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public ByteBuffer getSource() {
+		return source;
+	}
+
+	public int getOffset(final int i) {
+		return offset[i];
+	}
+
+	public int getLength(final int i) {
+		return length[i];
+	}
+
+	public int getKind(final int i) {
+		return kind[i];
+	}
+
+	public int getLine(final int i) {
+		return line[i];
+	}
+
+	public String getTokenName(final int i) {
+		return Lexer.tokenNameTable[kind[i]];
+	}
+
+	public String getText(final int i) {
+		final byte[] bytes = new byte[length[i]];
+		source.get(offset[i], bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * tsファイルと同じ "字面\tトークン名\tID\t行番号\n" の形式でoutに書き出す．
+	 * 字面はソースのバッファからそのままコピーするため，トークンごとのStringは作らない．
+	 */
+	public void writeText(final OutputStream out) throws IOException {
+		byte[] text = new byte[64];
+		final byte[] number = new byte[11];
+		int i;
+		for (i = 0; i < size; i++) {
+			if (text.length < length[i]) {
+				text = new byte[length[i] * 2];
+			}
+			source.get(offset[i], text, 0, length[i]);
+			out.write(text, 0, length[i]);
+			out.write('\t');
+			out.write(tokenNameBytes[kind[i]]);
+			out.write('\t');
+			out.write(idBytes[kind[i]]);
+			out.write('\t');
+			int p = number.length;
+			int n = line[i];
+			do {
+				number[--p] = (byte) ('0' + n % 10);
+				n /= 10;
+			} while (n > 0);
+			out.write(number, p, number.length - p);
+			out.write('\n');
+		}
+	}
+}
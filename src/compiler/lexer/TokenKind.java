@@ -0,0 +1,30 @@
+package compiler.lexer;
+
+public enum TokenKind {
+
+	/**
+	 * 仕様:
+	 * トークンの種類．SAND〜SSTRINGの序数はLexerの S* 定数と一致する．
+	 * EOFはトークン列の末尾を越えて読んだことを表す．
+	 */
+
+	SAND, SARRAY, SBEGIN, SBOOLEAN, SCHAR, SDIVD, SDO, SELSE,
+	SEND, SFALSE, SIF, SINTEGER, SMOD, SNOT, SOF, SOR,
+	SPROCEDURE, SPROGRAM, SREADLN, STHEN, STRUE, SVAR, SWHILE, SWRITELN,
+	SEQUAL, SNOTEQUAL, SLESS, SLESSEQUAL, SGREATEQUAL, SGREAT, SPLUS, SMINUS,
+	SSTAR, SLPAREN, SRPAREN, SLBRACKET, SRBRACKET, SSEMICOLON, SCOLON, SRANGE,
+	SASSIGN, SCOMMA, SDOT, SIDENTIFIER, SCONSTANT, SSTRING,
+	EOF;
+
+	private static final TokenKind[] values = values();
+
+	/**
+	 * Lexerの S* 定数に対応する種類を返す．負の値はEOFとする．
+	 */
+	public static TokenKind of(final int id) {
+		if (id < 0) {
+			return EOF;
+		}
+		return values[id];
+	}
+}
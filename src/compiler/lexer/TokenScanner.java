@@ -0,0 +1,222 @@
+package compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class TokenScanner {
+
+	/**
+	 * 仕様:
+	 * バイト列のソースを先頭から一トークンずつ切り出す．
+	 * nextを呼ぶたびに次のトークンまで進み，その (offset, length, kind, line) を保持する．
+	 * 改行(\n, \r\n, \r)とバッファ末尾はLexer.runにおける行末の"\0"と同じくSNULLとして扱う．
+	 * 字句エラーを見つけた場合はLexicalExceptionを投げる．
+	 */
+
+	private final ByteBuffer text;
+	private final int limit;
+	private int beginPoint;
+	private int lineNumber;
+	private boolean flag;
+	private int errlineNumber;
+
+	private int offset;
+	private int length;
+	private int kind;
+	private int line;
+
+	public TokenScanner(final ByteBuffer text) {
+		this.text = text;
+		this.limit = text.limit();
+		this.beginPoint = 0;
+		this.lineNumber = 1;
+		this.flag = false;
+		this.errlineNumber = 0;
+	}
+
+	public ByteBuffer getSource() {
+		return text;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getKind() {
+		return kind;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public String getText() {
+		final byte[] bytes = new byte[length];
+		text.get(offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 次のトークンまで進む．ソースの末尾に達した場合はfalseを返す．
+	 */
+	public boolean next() {
+		while (true) {
+			final int c = charClass(beginPoint);
+
+			if (c == Lexer.SNULL) {
+				if (beginPoint >= limit) {
+					if (flag) {
+						throw new LexicalException(" { is not closed: line " + errlineNumber);
+					}
+					return false;
+				}
+				// 行末: Lexer.runと同様に"\0"以降は読み飛ばし，改行の次から次の行とする
+				while (beginPoint < limit && !isLineTerminator(text.get(beginPoint)))
+					beginPoint++;
+				if (beginPoint < limit) {
+					if (text.get(beginPoint) == '\r' && beginPoint + 1 < limit && text.get(beginPoint + 1) == '\n')
+						beginPoint++;
+					beginPoint++;
+				}
+				lineNumber++;
+				continue;
+			}
+
+			if (c == Lexer.SSPACE || c == Lexer.STAB) {
+				beginPoint++;
+				continue;
+			}
+
+			if (c == Lexer.SLBRACE || flag) {
+				if (!flag) {
+					flag = !flag;
+					beginPoint++;
+					errlineNumber = lineNumber;
+				}
+				while (charClass(beginPoint) != Lexer.SRBRACE && charClass(beginPoint) != Lexer.SNULL)
+					beginPoint++;
+
+				if (charClass(beginPoint) == Lexer.SRBRACE) {
+					beginPoint++;
+					flag = false;
+				}
+
+				continue;
+			}
+
+			int endPoint = beginPoint + 1;
+
+			switch (c) {
+
+			case Lexer.SALPHA:
+				while (charClass(endPoint) == Lexer.SALPHA || charClass(endPoint) == Lexer.SDIGIT)
+					endPoint++;
+
+				kind = ReservedWords.lookup(text, beginPoint, endPoint);
+				break;
+
+			case Lexer.SDIGIT:
+				while (charClass(endPoint) == Lexer.SDIGIT)
+					endPoint++;
+
+				kind = Lexer.SCONSTANT;
+				break;
+
+			case Lexer.SPLUS:
+			case Lexer.SMINUS:
+			case Lexer.SSTAR:
+			case Lexer.SDIVD:
+			case Lexer.SEQUAL:
+			case Lexer.SLPAREN:
+			case Lexer.SRPAREN:
+			case Lexer.SLBRACKET:
+			case Lexer.SRBRACKET:
+			case Lexer.SSEMICOLON:
+			case Lexer.SCOMMA:
+				kind = c;
+				break;
+
+			case Lexer.SLESS:
+				if (charClass(endPoint) == Lexer.SGREAT) {
+					endPoint++;
+					kind = Lexer.SNOTEQUAL;
+				} else if (charClass(endPoint) == Lexer.SEQUAL) {
+					endPoint++;
+					kind = Lexer.SLESSEQUAL;
+				} else {
+					kind = Lexer.SLESS;
+				}
+				break;
+
+			case Lexer.SGREAT:
+				if (charClass(endPoint) == Lexer.SEQUAL) {
+					endPoint++;
+					kind = Lexer.SGREATEQUAL;
+				} else {
+					kind = Lexer.SGREAT;
+				}
+				break;
+
+			case Lexer.SCOLON:
+				if (charClass(endPoint) == Lexer.SEQUAL) {
+					endPoint++;
+					kind = Lexer.SASSIGN;
+				} else {
+					kind = Lexer.SCOLON;
+				}
+				break;
+
+			case Lexer.SDOT:
+				if (charClass(endPoint) == Lexer.SDOT) {
+					endPoint++;
+					kind = Lexer.SRANGE;
+				} else {
+					kind = Lexer.SDOT;
+				}
+				break;
+
+			case Lexer.SQUOTE:
+				while (charClass(endPoint) != Lexer.SQUOTE) {
+					if (charClass(endPoint) == Lexer.SNULL) {
+						throw new LexicalException(" ' is not closed: line " + lineNumber);
+					} else {
+						endPoint++;
+					}
+				}
+				endPoint++;
+				kind = Lexer.SSTRING;
+				break;
+
+			default:
+				throw new LexicalException("undefined token that begin with \""
+						+ (char) (text.get(beginPoint) & 0xFF) + "\" is included: line " + lineNumber);
+
+			}
+
+			offset = beginPoint;
+			length = endPoint - beginPoint;
+			line = lineNumber;
+			beginPoint = endPoint;
+			return true;
+		}
+	}
+
+	private static boolean isLineTerminator(final byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	private int charClass(final int point) {
+		if (point >= limit) {
+			return Lexer.SNULL;
+		}
+		final byte b = text.get(point);
+		if (isLineTerminator(b)) {
+			return Lexer.SNULL;
+		}
+		return Lexer.asciiTable[b & 0xFF];
+	}
+}